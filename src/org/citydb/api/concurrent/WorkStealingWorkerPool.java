@@ -0,0 +1,501 @@
+/*
+ * 3D City Database - The Open Source CityGML Database
+ * http://www.3dcitydb.org/
+ * 
+ * Copyright 2013 - 2016
+ * Chair of Geoinformatics
+ * Technical University of Munich, Germany
+ * https://www.gis.bgu.tum.de/
+ * 
+ * The 3D City Database is jointly developed with the following
+ * cooperation partners:
+ * 
+ * virtualcitySYSTEMS GmbH, Berlin <http://www.virtualcitysystems.de/>
+ * M.O.S.S. Computer Grafik Systeme GmbH, Taufkirchen <http://www.moss.de/>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.citydb.api.concurrent;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.citydb.api.concurrent.WorkerPool.WorkQueue;
+
+public class WorkStealingWorkerPool<T> extends WorkerPool<T> {
+	private static final int MAX_STEAL_BATCH = 64;
+
+	public WorkStealingWorkerPool(String poolName,
+			int corePoolSize,
+			int maximumPoolSize,
+			PoolSizeAdaptationStrategy adaptationStrategy,
+			WorkerFactory<T> workerFactory,
+			int queueSize,
+			boolean fair,
+			boolean daemon) {
+		super(poolName, corePoolSize, maximumPoolSize, adaptationStrategy, workerFactory, new WorkStealingQueue<T>(queueSize, maximumPoolSize, fair), daemon);
+	}
+
+	public WorkStealingWorkerPool(String poolName,
+			int corePoolSize,
+			int maximumPoolSize,
+			PoolSizeAdaptationStrategy adaptationStrategy,
+			WorkerFactory<T> workerFactory,
+			int queueSize,
+			boolean fair) {
+		this(poolName, corePoolSize, maximumPoolSize, adaptationStrategy, workerFactory, queueSize, fair, true);
+	}
+
+	public WorkStealingWorkerPool(String poolName,
+			int corePoolSize,
+			int maximumPoolSize,
+			PoolSizeAdaptationStrategy adaptationStrategy,
+			WorkerFactory<T> workerFactory,
+			int queueSize) {
+		this(poolName, corePoolSize, maximumPoolSize, adaptationStrategy, workerFactory, queueSize, false);
+	}
+
+	// WorkStealingQueue
+	// Work items are distributed round-robin over one deque per worker. Workers
+	// take from their own deque and steal half of another deque in one batch once
+	// their own one has run dry. The shared lock of the work queue is only acquired
+	// for blocking, i.e. if the queue is full or no work is available, and for
+	// signaling waiting threads. Thus, the pool can still await an empty queue and
+	// block producers during a flush the same way as with a plain work queue.
+	// Producers re-check the flush flag after having reserved a slot. So either
+	// the pool waits for the reserved work item while flushing, or the producer
+	// backs off and waits for the flush to finish before inserting.
+	public static final class WorkStealingQueue<E> extends WorkQueue<E> {
+		private final List<WorkDeque<E>> deques;
+		private final ThreadLocal<WorkDeque<E>> homeDeque;
+		private final AtomicInteger count = new AtomicInteger();
+		private final AtomicInteger putIndex = new AtomicInteger();
+		private final AtomicInteger homeIndex = new AtomicInteger();
+		private volatile int takeWaiters;
+		private volatile int putWaiters;
+
+		public WorkStealingQueue(int capacity, int parallelism) {
+			this(capacity, parallelism, false);
+		}
+
+		public WorkStealingQueue(int capacity, int parallelism, boolean fair) {
+			super(capacity, fair, false);
+
+			if (parallelism <= 0)
+				throw new IllegalArgumentException();
+
+			deques = new ArrayList<WorkDeque<E>>(parallelism);
+			for (int i = 0; i < parallelism; i++)
+				deques.add(new WorkDeque<E>(i));
+
+			homeDeque = new ThreadLocal<WorkDeque<E>>() {
+				@Override
+				protected WorkDeque<E> initialValue() {
+					return deques.get(index(homeIndex.getAndIncrement()));
+				}
+			};
+		}
+
+		private int index(int i) {
+			return (i & Integer.MAX_VALUE) % deques.size();
+		}
+
+		private boolean reserve() {
+			for (;;) {
+				awaitFlushed();
+				if (!tryReserve())
+					return false;
+
+				if (!blockAndFlush)
+					return true;
+
+				// a flush has started meanwhile
+				release(1);
+			}
+		}
+
+		private boolean tryReserve() {
+			for (;;) {
+				int c = count.get();
+				if (c >= capacity)
+					return false;
+
+				if (count.compareAndSet(c, c + 1))
+					return true;
+			}
+		}
+
+		private void insert(E work) {
+			deques.get(index(putIndex.getAndIncrement())).add(work);
+
+			if (takeWaiters > 0) {
+				final ReentrantLock lock = this.lock;
+				lock.lock();
+				try {
+					notEmpty.signal();
+				} finally {
+					lock.unlock();
+				}
+			}
+		}
+
+		private E extract() {
+			WorkDeque<E> home = homeDeque.get();
+			E work = home.poll();
+			if (work == null)
+				work = steal(home);
+
+			if (work != null)
+				release(1);
+
+			return work;
+		}
+
+		private E steal(WorkDeque<E> thief) {
+			for (int i = 1; i < deques.size(); i++) {
+				List<E> batch = deques.get((thief.index + i) % deques.size()).pollBatch();
+				if (batch != null) {
+					thief.addAll(batch, 1);
+					return batch.get(0);
+				}
+			}
+
+			return null;
+		}
+
+		private void release(int n) {
+			int c = count.addAndGet(-n);
+
+			if (putWaiters > 0 || c == 0) {
+				final ReentrantLock lock = this.lock;
+				lock.lock();
+				try {
+					if (n == 1)
+						notFull.signal();
+					else
+						notFull.signalAll();
+
+					if (c == 0)
+						empty.signalAll();
+				} finally {
+					lock.unlock();
+				}
+			}
+		}
+
+		private void awaitFlushed() {
+			if (blockAndFlush) {
+				final ReentrantLock lock = this.lock;
+				lock.lock();
+				try {
+					while (blockAndFlush)
+						flushed.awaitUninterruptibly();
+				} finally {
+					lock.unlock();
+				}
+			}
+		}
+
+		private E awaitWork(boolean timed, long nanos) throws InterruptedException {
+			final ReentrantLock lock = this.lock;
+			lock.lockInterruptibly();
+			try {
+				++takeWaiters;
+				try {
+					for (;;) {
+						// re-check after announcing ourselves as waiter so
+						// that we cannot miss a signal from a producer
+						E work = extract();
+						if (work != null)
+							return work;
+
+						if (!timed)
+							notEmpty.await();
+						else if (nanos > 0)
+							nanos = notEmpty.awaitNanos(nanos);
+						else
+							return null;
+					}
+				} catch (InterruptedException ie) {
+					notEmpty.signal();
+					throw ie;
+				} finally {
+					--takeWaiters;
+				}
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		@Override
+		public boolean offer(E work) {
+			if (work == null)
+				throw new NullPointerException();
+
+			if (!reserve())
+				return false;
+
+			insert(work);
+			return true;
+		}
+
+		@Override
+		public boolean offer(E work, long timeout, TimeUnit unit) throws InterruptedException {
+			if (work == null)
+				throw new NullPointerException();
+
+			if (!reserve()) {
+				long nanos = unit.toNanos(timeout);
+				final ReentrantLock lock = this.lock;
+				lock.lockInterruptibly();
+				try {
+					++putWaiters;
+					try {
+						while (!reserve()) {
+							if (nanos <= 0)
+								return false;
+
+							nanos = notFull.awaitNanos(nanos);
+						}
+					} catch (InterruptedException ie) {
+						notFull.signal();
+						throw ie;
+					} finally {
+						--putWaiters;
+					}
+				} finally {
+					lock.unlock();
+				}
+			}
+
+			insert(work);
+			return true;
+		}
+
+		@Override
+		public void put(E work) {
+			if (work == null)
+				throw new NullPointerException();
+
+			if (!reserve()) {
+				final ReentrantLock lock = this.lock;
+				lock.lock();
+				try {
+					++putWaiters;
+					try {
+						while (!reserve())
+							notFull.awaitUninterruptibly();
+					} finally {
+						--putWaiters;
+					}
+				} finally {
+					lock.unlock();
+				}
+			}
+
+			insert(work);
+		}
+
+		@Override
+		public E poll() {
+			return extract();
+		}
+
+		@Override
+		public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+			if (Thread.interrupted())
+				throw new InterruptedException();
+
+			E work = extract();
+			return work != null ? work : awaitWork(true, unit.toNanos(timeout));
+		}
+
+		@Override
+		public E take() throws InterruptedException {
+			if (Thread.interrupted())
+				throw new InterruptedException();
+
+			E work = extract();
+			return work != null ? work : awaitWork(false, 0);
+		}
+
+		@Override
+		public E peek() {
+			for (WorkDeque<E> deque : deques) {
+				E work = deque.peek();
+				if (work != null)
+					return work;
+			}
+
+			return null;
+		}
+
+		@Override
+		public boolean remove(E work) {
+			if (work == null)
+				return false;
+
+			for (WorkDeque<E> deque : deques) {
+				if (deque.remove(work)) {
+					release(1);
+					return true;
+				}
+			}
+
+			return false;
+		}
+
+		@Override
+		public int size() {
+			return count.get();
+		}
+
+		@Override
+		public int remainingCapacity() {
+			return capacity - count.get();
+		}
+
+		@Override
+		public boolean isEmpty() {
+			return count.get() == 0;
+		}
+
+		@Override
+		public void clear() {
+			int n = 0;
+			for (WorkDeque<E> deque : deques)
+				n += deque.drainTo(null);
+
+			if (n > 0)
+				release(n);
+		}
+
+		@Override
+		public int drainTo(Collection<? super E> collection) {
+			if (collection == null)
+				throw new NullPointerException();
+
+			int n = 0;
+			for (WorkDeque<E> deque : deques)
+				n += deque.drainTo(collection);
+
+			if (n > 0)
+				release(n);
+
+			return n;
+		}
+	}
+
+	private static final class WorkDeque<E> {
+		private final ReentrantLock lock = new ReentrantLock();
+		private final ArrayDeque<E> workItems = new ArrayDeque<E>();
+		private final int index;
+
+		private WorkDeque(int index) {
+			this.index = index;
+		}
+
+		private void add(E work) {
+			final ReentrantLock lock = this.lock;
+			lock.lock();
+			try {
+				workItems.addLast(work);
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		private void addAll(List<E> batch, int fromIndex) {
+			if (fromIndex >= batch.size())
+				return;
+
+			final ReentrantLock lock = this.lock;
+			lock.lock();
+			try {
+				for (int i = fromIndex; i < batch.size(); i++)
+					workItems.addLast(batch.get(i));
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		private E poll() {
+			final ReentrantLock lock = this.lock;
+			lock.lock();
+			try {
+				return workItems.pollFirst();
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		private List<E> pollBatch() {
+			final ReentrantLock lock = this.lock;
+			lock.lock();
+			try {
+				int size = workItems.size();
+				if (size == 0)
+					return null;
+
+				int n = Math.min((size + 1) / 2, MAX_STEAL_BATCH);
+				List<E> batch = new ArrayList<E>(n);
+				while (n-- > 0)
+					batch.add(workItems.pollFirst());
+
+				return batch;
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		private E peek() {
+			final ReentrantLock lock = this.lock;
+			lock.lock();
+			try {
+				return workItems.peekFirst();
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		private boolean remove(E work) {
+			final ReentrantLock lock = this.lock;
+			lock.lock();
+			try {
+				return workItems.remove(work);
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		private int drainTo(Collection<? super E> collection) {
+			final ReentrantLock lock = this.lock;
+			lock.lock();
+			try {
+				int n = workItems.size();
+				if (collection != null)
+					collection.addAll(workItems);
+
+				workItems.clear();
+				return n;
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+}
@@ -71,25 +71,32 @@ public class WorkerPool<T> {
 	private Object eventSource;
 
 	// WorkQueue
-	public static final class WorkQueue<E> {
-		private final ReentrantLock lock;
-		private final Condition notEmpty;
-		private final Condition notFull;
-		private final Condition empty;
-		private final Condition flushed;
+	public static class WorkQueue<E> {
+		final ReentrantLock lock;
+		final Condition notEmpty;
+		final Condition notFull;
+		final Condition empty;
+		final Condition flushed;
+		final int capacity;
+		volatile boolean blockAndFlush;
 
 		private final E[] workItems;
 		private int putIndex;
 		private int takeIndex;
 		private int count;
-		private volatile boolean blockAndFlush;
 
 		public WorkQueue(int capacity) {
 			this(capacity, false);
 		}
 
-		@SuppressWarnings("unchecked")
 		public WorkQueue(int capacity, boolean fair) {
+			this(capacity, fair, true);
+		}
+
+		// subclasses providing their own storage only share
+		// the lock and conditions used for blocking and flushing
+		@SuppressWarnings("unchecked")
+		WorkQueue(int capacity, boolean fair, boolean allocate) {
 			lock = new ReentrantLock(fair);
 			notEmpty = lock.newCondition();
 			notFull = lock.newCondition();
@@ -99,7 +106,8 @@ public class WorkerPool<T> {
 			if (capacity <= 0)
 				throw new IllegalArgumentException();
 
-			workItems = (E[]) new Object[capacity];
+			this.capacity = capacity;
+			workItems = allocate ? (E[]) new Object[capacity] : null;
 		}
 
 		final int inc(int i) {
@@ -410,6 +418,16 @@ public class WorkerPool<T> {
 			int queueSize,
 			boolean fair,
 			boolean daemon) {
+		this(poolName, corePoolSize, maximumPoolSize, adaptationStrategy, workerFactory, new WorkQueue<T>(queueSize, fair), daemon);
+	}
+
+	protected WorkerPool(String poolName,
+			int corePoolSize,
+			int maximumPoolSize,
+			PoolSizeAdaptationStrategy adaptationStrategy,
+			WorkerFactory<T> workerFactory,
+			WorkQueue<T> workQueue,
+			boolean daemon) {
 		if (corePoolSize <= 0)
 			throw new IllegalArgumentException("Core pool size must be greater than zero.");
 
@@ -419,6 +437,9 @@ public class WorkerPool<T> {
 		if (workerFactory == null)
 			throw new IllegalArgumentException("WorkerFactory may not be null.");
 
+		if (workQueue == null)
+			throw new IllegalArgumentException("WorkQueue may not be null.");
+
 		this.poolName = poolName;
 		this.corePoolSize = corePoolSize;
 		this.maximumPoolSize = maximumPoolSize;
@@ -428,8 +449,8 @@ public class WorkerPool<T> {
 		this.defaultClassLoader = Thread.currentThread().getContextClassLoader();
 
 		// setting up work queue and workers map
-		this.queueSize = queueSize;
-		workQueue = new WorkQueue<T>(queueSize, fair);
+		this.workQueue = workQueue;
+		queueSize = workQueue.capacity;
 		workers = new ConcurrentHashMap<Worker<T>, Object>(maximumPoolSize);
 
 		log = ObjectRegistry.getInstance().getLogController();
@@ -29,6 +29,7 @@ package org.citydb.api.database;
 
 import java.sql.Connection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Set;
 
 public interface BalloonTemplateHandler {
@@ -42,6 +43,7 @@ public interface BalloonTemplateHandler {
 	public String getBalloonContent(String gmlId, int lod, Connection connection) throws Exception;
 	public String getBalloonContent(long id, int lod, Connection connection) throws Exception;
 	public String getBalloonContent(String temporaryTemplate, long id, int lod, Connection connection) throws Exception;
+	public void prefetch(List<Long> ids);
 	public Set<String> getSupportedAggregationFunctions();
 	public HashMap<String, Set<String>> getSupportedTablesAndColumns();		
 }
@@ -275,6 +275,16 @@ public class GeometryObject {
 			this.srid = srid;
 	}
 
+	public GeometryObject copy() {
+		GeometryObject copy = new GeometryObject(geometryType, dimension, srid);
+		copy.elementTypes = elementTypes.clone();
+		copy.coordinates = new double[coordinates.length][];
+		for (int i = 0; i < coordinates.length; i++)
+			copy.coordinates[i] = coordinates[i].clone();
+
+		return copy;
+	}
+
 	public GeometryObject toEnvelope() {
 		GeometryObject envelope = new GeometryObject(GeometryType.ENVELOPE, dimension, srid);
 		envelope.elementTypes = new ElementType[]{ElementType.BOUNDING_RECTANGLE};
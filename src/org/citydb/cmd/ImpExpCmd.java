@@ -41,6 +41,7 @@ import org.citydb.api.database.DatabaseConnectionWarning;
 import org.citydb.api.database.DatabaseSrs;
 import org.citydb.api.database.DatabaseVersionException;
 import org.citydb.api.event.EventDispatcher;
+import org.citydb.api.log.LogLevel;
 import org.citydb.api.registry.ObjectRegistry;
 import org.citydb.config.Config;
 import org.citydb.config.project.database.DBConnection;
@@ -51,6 +52,7 @@ import org.citydb.modules.citygml.exporter.controller.Exporter;
 import org.citydb.modules.citygml.importer.controller.CityGMLImportException;
 import org.citydb.modules.citygml.importer.controller.Importer;
 import org.citydb.modules.citygml.importer.controller.XMLValidator;
+import org.citydb.modules.common.metrics.Metrics;
 import org.citydb.modules.kml.controller.KmlExportException;
 import org.citydb.modules.kml.controller.KmlExporter;
 import org.citydb.util.Util;
@@ -73,6 +75,9 @@ public class ImpExpCmd {
 		this.jaxbColladaContext = jaxbColladaContext;
 		this.config = config;
 		dbPool = DatabaseConnectionPool.getInstance();
+
+		// there is no status dialog, so report progress on the console
+		Metrics.getInstance().setProgressLogLevel(LogLevel.INFO);
 	}
 
 	public void doImport(String importFiles) {
@@ -42,6 +42,14 @@ public class Config {
 		internal = new Internal();
 	}
 
+	public Config(Config other) {
+		// project and gui settings are shared, whereas internal
+		// variables can be changed without affecting the other config
+		project = other.project;
+		gui = other.gui;
+		internal = new Internal(other.internal);
+	}
+
 	public Project getProject() {
 		return project;
 	}
@@ -72,6 +72,25 @@ public class Internal {
 	public Internal() {
 	}
 
+	public Internal(Internal other) {
+		configPath = other.configPath;
+		currentLogPath = other.currentLogPath;
+		configProject = other.configProject;
+		configGui = other.configGui;
+		importPath = other.importPath;
+		importFiles = other.importFiles;
+		currentImportFile = other.currentImportFile;
+		exportPath = other.exportPath;
+		exportFileName = other.exportFileName;
+		exportTextureFilePath = other.exportTextureFilePath;
+		exportTargetSRS = other.exportTargetSRS;
+		currentGmlIdCodespace = other.currentGmlIdCodespace;
+		affineTransformer = other.affineTransformer;
+		transformCoordinates = other.transformCoordinates;
+		exportGlobalAppearances = other.exportGlobalAppearances;
+		registerGmlIdInCache = other.registerGmlIdInCache;
+	}
+
 	public String getExportPath() {
 		return exportPath;
 	}
@@ -34,7 +34,11 @@ import javax.xml.bind.annotation.XmlType;
 @XmlType(name="UpdateBatchingType", propOrder={
 		"featureBatchValue",
 		"gmlIdCacheBatchValue",
-		"tempBatchValue"
+		"tempBatchValue",
+		"sequenceBlockValue",
+		"useBulkLoad",
+		"blobBatchValue",
+		"blobBatchMegabytes"
 		})
 public class UpdateBatching {
 	@XmlElement(required=true, defaultValue="20")
@@ -46,6 +50,17 @@ public class UpdateBatching {
 	@XmlElement(required=true, defaultValue="1000")
 	@XmlSchemaType(name="positiveInteger")
 	private Integer tempBatchValue = 1000;
+	@XmlElement(defaultValue="100")
+	@XmlSchemaType(name="positiveInteger")
+	private Integer sequenceBlockValue = 100;
+	@XmlElement(defaultValue="false")
+	private Boolean useBulkLoad = false;
+	@XmlElement(defaultValue="100")
+	@XmlSchemaType(name="positiveInteger")
+	private Integer blobBatchValue = 100;
+	@XmlElement(defaultValue="32")
+	@XmlSchemaType(name="positiveInteger")
+	private Integer blobBatchMegabytes = 32;
 	
 	public UpdateBatching() {
 	}
@@ -79,5 +94,49 @@ public class UpdateBatching {
 				tempBatchValue <= Database.MAX_BATCH_SIZE)
 			this.tempBatchValue = tempBatchValue;
 	}
+
+	public Integer getSequenceBlockValue() {
+		return sequenceBlockValue;
+	}
+
+	public void setSequenceBlockValue(Integer sequenceBlockValue) {
+		if (sequenceBlockValue != null && sequenceBlockValue > 0 && 
+				sequenceBlockValue <= Database.MAX_BATCH_SIZE)
+			this.sequenceBlockValue = sequenceBlockValue;
+	}
+
+	public boolean isSetUseBulkLoad() {
+		if (useBulkLoad != null)
+			return useBulkLoad.booleanValue();
+
+		return false;
+	}
+
+	public Boolean getUseBulkLoad() {
+		return useBulkLoad;
+	}
+
+	public void setUseBulkLoad(Boolean useBulkLoad) {
+		this.useBulkLoad = useBulkLoad;
+	}
+
+	public Integer getBlobBatchValue() {
+		return blobBatchValue;
+	}
+
+	public void setBlobBatchValue(Integer blobBatchValue) {
+		if (blobBatchValue != null && blobBatchValue > 0 && 
+				blobBatchValue <= Database.MAX_BATCH_SIZE)
+			this.blobBatchValue = blobBatchValue;
+	}
+
+	public Integer getBlobBatchMegabytes() {
+		return blobBatchMegabytes;
+	}
+
+	public void setBlobBatchMegabytes(Integer blobBatchMegabytes) {
+		if (blobBatchMegabytes != null && blobBatchMegabytes > 0)
+			this.blobBatchMegabytes = blobBatchMegabytes;
+	}
 	
 }
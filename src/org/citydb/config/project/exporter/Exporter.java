@@ -32,7 +32,6 @@ import javax.xml.bind.annotation.XmlType;
 
 import org.citydb.api.database.DatabaseSrs;
 import org.citydb.config.project.general.Path;
-import org.citydb.config.project.resources.Resources;
 
 @XmlType(name="ExportType", propOrder={
 		"path",
@@ -55,7 +54,7 @@ public class Exporter {
 	private ExportFilterConfig filter;
 	private CityGMLVersionType cityGMLVersion = CityGMLVersionType.v2_0_0;
 	private XLink xlink;
-	private Resources resources;
+	private ExportResources resources;
 
 	public Exporter() {
 		path = new Path();
@@ -64,7 +63,7 @@ public class Exporter {
 		appearances = new ExportAppearance();
 		filter = new ExportFilterConfig();
 		xlink = new XLink();
-		resources = new Resources();
+		resources = new ExportResources();
 	}
 
 	public Path getPath() {
@@ -138,11 +137,11 @@ public class Exporter {
 			this.xlink = xlink;
 	}
 
-	public Resources getResources() {
+	public ExportResources getResources() {
 		return resources;
 	}
 
-	public void setResources(Resources system) {
+	public void setResources(ExportResources system) {
 		if (system != null)
 			this.resources = system;
 	}
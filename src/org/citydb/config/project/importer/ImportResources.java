@@ -28,17 +28,22 @@
 package org.citydb.config.project.importer;
 
 import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlSchemaType;
 import javax.xml.bind.annotation.XmlType;
 
 import org.citydb.config.project.resources.Resources;
 import org.citydb.config.project.resources.UIDCacheConfig;
 
 @XmlType(name="ImportResourcesType", propOrder={
-		"texImageCache"
+		"texImageCache",
+		"concurrentFiles"
 })
 public class ImportResources extends Resources {
 	@XmlElement(required=true)
 	private UIDCacheConfig texImageCache;
+	@XmlElement(defaultValue="1")
+	@XmlSchemaType(name="positiveInteger")
+	private Integer concurrentFiles = 1;
 	
 	public ImportResources() {
 		texImageCache = new UIDCacheConfig();
@@ -51,4 +56,13 @@ public class ImportResources extends Resources {
 	public void setTexImageCache(UIDCacheConfig texImageCache) {
 		this.texImageCache = texImageCache;
 	}
+
+	public Integer getConcurrentFiles() {
+		return concurrentFiles;
+	}
+
+	public void setConcurrentFiles(Integer concurrentFiles) {
+		if (concurrentFiles != null && concurrentFiles > 0)
+			this.concurrentFiles = concurrentFiles;
+	}
 }
@@ -84,6 +84,7 @@ import org.citydb.config.project.resources.Resources;
 		"showBoundingBox",
 		"showTileBorders",
 		"exportEmptyTiles",
+		"singlePassDisplayForms",
 		"autoTileSideLength",
 		"oneFilePerObject",
 		"singleObjectRegionSize",
@@ -96,6 +97,11 @@ import org.citydb.config.project.resources.Resources;
 		"pathOfGltfConverter",
 		"notCreateColladaFiles",
 		"embedTexturesInGltfFiles",
+		"useExternalGltfConverter",
+		"createGltfBinary",
+		"batchGltfModelsPerTile",
+		"textureImageCacheSize",
+		"cacheDecodedTextureImages",
 		"appearanceTheme",
 		"altitudeMode",
 		"altitudeOffsetMode",
@@ -170,6 +176,7 @@ public class KmlExporter {
 	private boolean showBoundingBox;
 	private boolean showTileBorders;
 	private boolean exportEmptyTiles;
+	private boolean singlePassDisplayForms;
 	private double autoTileSideLength;
 	private boolean oneFilePerObject;
 	private double singleObjectRegionSize;
@@ -182,6 +189,11 @@ public class KmlExporter {
 	private String pathOfGltfConverter;
 	private boolean notCreateColladaFiles;
 	private boolean embedTexturesInGltfFiles;
+	private boolean useExternalGltfConverter;
+	private boolean createGltfBinary;
+	private boolean batchGltfModelsPerTile;
+	private int textureImageCacheSize;
+	private boolean cacheDecodedTextureImages;
 	private boolean exportAsKmz;
 	private String appearanceTheme;
 	private AltitudeMode altitudeMode;
@@ -239,6 +251,7 @@ public class KmlExporter {
 		showBoundingBox = false;
 		showTileBorders = false;
 		exportEmptyTiles = true;
+		singlePassDisplayForms = false;
 		autoTileSideLength = 125.0;
 		oneFilePerObject = false;
 		singleObjectRegionSize = 50.0;
@@ -250,6 +263,11 @@ public class KmlExporter {
 		createGltfModel = false;
 		notCreateColladaFiles = false;
 		embedTexturesInGltfFiles = false;
+		useExternalGltfConverter = false;
+		createGltfBinary = false;
+		batchGltfModelsPerTile = false;
+		textureImageCacheSize = 256;
+		cacheDecodedTextureImages = false;
 
 		pathOfGltfConverter = "contribs" + File.separator + "collada2gltf";
 		String osName = System.getProperty("os.name").toLowerCase(Locale.ENGLISH);
@@ -444,6 +462,47 @@ public class KmlExporter {
 		return embedTexturesInGltfFiles;
 	}
 
+	public boolean isUseExternalGltfConverter() {
+		return useExternalGltfConverter;
+	}
+
+	public void setUseExternalGltfConverter(boolean useExternalGltfConverter) {
+		this.useExternalGltfConverter = useExternalGltfConverter;
+	}
+
+	public boolean isCreateGltfBinary() {
+		return createGltfBinary;
+	}
+
+	public void setCreateGltfBinary(boolean createGltfBinary) {
+		this.createGltfBinary = createGltfBinary;
+	}
+
+	public boolean isBatchGltfModelsPerTile() {
+		return batchGltfModelsPerTile;
+	}
+
+	public void setBatchGltfModelsPerTile(boolean batchGltfModelsPerTile) {
+		this.batchGltfModelsPerTile = batchGltfModelsPerTile;
+	}
+
+	public int getTextureImageCacheSize() {
+		return textureImageCacheSize;
+	}
+
+	public void setTextureImageCacheSize(int textureImageCacheSize) {
+		if (textureImageCacheSize >= 0)
+			this.textureImageCacheSize = textureImageCacheSize;
+	}
+
+	public boolean isCacheDecodedTextureImages() {
+		return cacheDecodedTextureImages;
+	}
+
+	public void setCacheDecodedTextureImages(boolean cacheDecodedTextureImages) {
+		this.cacheDecodedTextureImages = cacheDecodedTextureImages;
+	}
+
 	public void setShowBoundingBox(boolean showBoundingBox) {
 		this.showBoundingBox = showBoundingBox;
 	}
@@ -468,6 +527,14 @@ public class KmlExporter {
 		this.exportEmptyTiles = exportEmptyTiles;
 	}
 
+	public boolean isSinglePassDisplayForms() {
+		return singlePassDisplayForms;
+	}
+
+	public void setSinglePassDisplayForms(boolean singlePassDisplayForms) {
+		this.singlePassDisplayForms = singlePassDisplayForms;
+	}
+
 	public void setAppearanceTheme(String appearanceTheme) {
 		this.appearanceTheme = appearanceTheme;
 	}
@@ -34,7 +34,11 @@ import javax.xml.bind.annotation.XmlType;
 @XmlType(name="UIDCacheConfigType", propOrder={
 		"cacheSize",
 		"pageFactor",
-		"partitions"
+		"partitions",
+		"backUpMode",
+		"offHeapMemory",
+		"bloomFilterEntries",
+		"bloomFilterFalsePositiveRate"
 })
 public class UIDCacheConfig {
 	@XmlSchemaType(name="positiveInteger")
@@ -44,6 +48,16 @@ public class UIDCacheConfig {
 	private Float pageFactor = 0.85f;
 	@XmlElement(required=true, defaultValue="10")
 	private Integer partitions = 10;
+	@XmlElement(defaultValue="database")
+	private UIDCacheBackUpMode backUpMode = UIDCacheBackUpMode.DATABASE;
+	@XmlSchemaType(name="positiveInteger")
+	@XmlElement(defaultValue="1024")
+	private Integer offHeapMemory = 1024;
+	@XmlSchemaType(name="nonNegativeInteger")
+	@XmlElement(defaultValue="2000000")
+	private Long bloomFilterEntries = 2000000L;
+	@XmlElement(defaultValue="0.01")
+	private Double bloomFilterFalsePositiveRate = 0.01;
 	
 	public UIDCacheConfig() {
 	}
@@ -76,5 +90,45 @@ public class UIDCacheConfig {
 				concurrentTempTables <= 100)
 			this.partitions = concurrentTempTables;
 	}
-	
+
+	public UIDCacheBackUpMode getBackUpMode() {
+		return backUpMode;
+	}
+
+	public boolean isSetOffHeapBackUp() {
+		return backUpMode == UIDCacheBackUpMode.OFF_HEAP;
+	}
+
+	public void setBackUpMode(UIDCacheBackUpMode backUpMode) {
+		if (backUpMode != null)
+			this.backUpMode = backUpMode;
+	}
+
+	public Integer getOffHeapMemory() {
+		return offHeapMemory;
+	}
+
+	public void setOffHeapMemory(Integer offHeapMemory) {
+		if (offHeapMemory != null && offHeapMemory > 0)
+			this.offHeapMemory = offHeapMemory;
+	}
+
+	public Long getBloomFilterEntries() {
+		return bloomFilterEntries;
+	}
+
+	public void setBloomFilterEntries(Long bloomFilterEntries) {
+		if (bloomFilterEntries != null && bloomFilterEntries >= 0)
+			this.bloomFilterEntries = bloomFilterEntries;
+	}
+
+	public Double getBloomFilterFalsePositiveRate() {
+		return bloomFilterFalsePositiveRate;
+	}
+
+	public void setBloomFilterFalsePositiveRate(Double bloomFilterFalsePositiveRate) {
+		if (bloomFilterFalsePositiveRate != null && bloomFilterFalsePositiveRate > 0 && bloomFilterFalsePositiveRate < 1)
+			this.bloomFilterFalsePositiveRate = bloomFilterFalsePositiveRate;
+	}
+
 }
@@ -73,6 +73,10 @@ public abstract class AbstractSQLAdapter {
 	public abstract BlobImportAdapter getBlobImportAdapter(Connection connection, BlobType type) throws SQLException;
 	public abstract BlobExportAdapter getBlobExportAdapter(Connection connection, BlobType type);
 	
+	public BatchInsertStatement getBulkInsertStatement(Connection connection, String table, String[] columns, String[] values) throws SQLException {
+		return new BatchInsertStatementImpl(connection, table, columns, values);
+	}
+	
 	protected String getSequenceName(DBSequencerEnum sequence) {
 		switch (sequence) {
 		case SURFACE_GEOMETRY_ID_SEQ:
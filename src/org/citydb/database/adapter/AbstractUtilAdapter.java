@@ -36,7 +36,9 @@ import java.sql.Statement;
 import java.sql.Types;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 import org.citydb.api.database.DatabaseSrs;
@@ -48,12 +50,18 @@ import org.citydb.config.project.general.FeatureClassMode;
 import org.citydb.database.DatabaseMetaDataImpl;
 import org.citydb.database.IndexStatusInfo;
 import org.citydb.database.IndexStatusInfo.IndexType;
+import org.citydb.database.srs.CoordinateTransformer;
+import org.citydb.database.srs.SrsDefinition;
+import org.citydb.util.IdBitmap;
 import org.citydb.util.Util;
 import org.citygml4j.model.citygml.CityGMLClass;
 
 public abstract class AbstractUtilAdapter implements DatabaseUtil {
 	protected final AbstractDatabaseAdapter databaseAdapter;
 	protected final ConcurrentHashMap<Integer, DatabaseSrs> srsInfoMap;
+	private final ConcurrentHashMap<Integer, SrsDefinition> srsDefinitionMap;
+	private final ConcurrentHashMap<Long, CoordinateTransformer> transformerMap;
+	private final Set<Integer> unsupportedSrids;
 
 	protected CallableStatement interruptableCallableStatement;
 	protected Statement interruptableStatement;
@@ -62,17 +70,21 @@ public abstract class AbstractUtilAdapter implements DatabaseUtil {
 	protected AbstractUtilAdapter(AbstractDatabaseAdapter databaseAdapter) {
 		this.databaseAdapter = databaseAdapter;
 		srsInfoMap = new ConcurrentHashMap<>();
+		srsDefinitionMap = new ConcurrentHashMap<>();
+		transformerMap = new ConcurrentHashMap<>();
+		unsupportedSrids = ConcurrentHashMap.newKeySet();
 	}
 	
 	protected abstract void getCityDBVersion(DatabaseMetaDataImpl metaData, Connection connection) throws SQLException;
 	protected abstract void getDatabaseMetaData(DatabaseMetaDataImpl metaData, Connection connection) throws SQLException;
 	protected abstract void getSrsInfo(DatabaseSrs srs, Connection connection) throws SQLException;
 	protected abstract String[] createDatabaseReport(Connection connection) throws SQLException;
-	protected abstract BoundingBox calcBoundingBox(List<Integer> classIds, Connection connection) throws SQLException;
+	protected abstract BoundingBox calcBoundingBox(List<Integer> classIds, String predicate, Connection connection) throws SQLException;
 	protected abstract BoundingBox createBoundingBoxes(List<Integer> classIds, boolean onlyIfNull, Connection connection) throws SQLException;
 	protected abstract BoundingBox transformBoundingBox(BoundingBox bbox, DatabaseSrs sourceSrs, DatabaseSrs targetSrs, Connection connection) throws SQLException;
 	protected abstract GeometryObject transform(GeometryObject geometry, DatabaseSrs targetSrs, Connection connection) throws SQLException;
 	protected abstract int get2DSrid(DatabaseSrs srs, Connection connection) throws SQLException;	
+	protected abstract String getProj4Definition(int srid, Connection connection) throws SQLException;
 	protected abstract IndexStatusInfo manageIndexes(String operation, IndexType type, Connection connection) throws SQLException;
 	protected abstract boolean updateTableStats(IndexType type, Connection connection) throws SQLException;
 	public abstract DatabaseSrs getWGS843D();
@@ -162,7 +174,7 @@ public abstract class AbstractUtilAdapter implements DatabaseUtil {
 			if (databaseAdapter.hasVersioningSupport())
 				databaseAdapter.getWorkspaceManager().gotoWorkspace(conn, workspace);
 
-			return calcBoundingBox(getClassIds(featureClass), conn);
+			return calcBoundingBox(getClassIds(featureClass), null, conn);
 		} finally {
 			if (conn != null) {
 				try {
@@ -403,6 +415,23 @@ public abstract class AbstractUtilAdapter implements DatabaseUtil {
 	
 	@Override
 	public BoundingBox transformBoundingBox(BoundingBox bbox, DatabaseSrs sourceSrs, DatabaseSrs targetSrs) throws SQLException {
+		CoordinateTransformer transformer = getCoordinateTransformer(sourceSrs.getSrid(), targetSrs.getSrid());
+		if (transformer != null) {
+			BoundingBox result = new BoundingBox(bbox);
+			double[] coords = new double[]{
+					bbox.getLowerCorner().getX(), bbox.getLowerCorner().getY(),
+					bbox.getUpperCorner().getX(), bbox.getUpperCorner().getY()};
+
+			transformer.transform(coords, 2);
+			result.getLowerCorner().setX(coords[0]);
+			result.getLowerCorner().setY(coords[1]);
+			result.getUpperCorner().setX(coords[2]);
+			result.getUpperCorner().setY(coords[3]);
+			result.setSrs(targetSrs);
+
+			return result;
+		}
+
 		Connection conn = null;
 
 		try {
@@ -421,6 +450,16 @@ public abstract class AbstractUtilAdapter implements DatabaseUtil {
 	
 	@Override
 	public GeometryObject transform(GeometryObject geometry, DatabaseSrs targetSrs) throws SQLException {
+		CoordinateTransformer transformer = getCoordinateTransformer(geometry.getSrid(), targetSrs.getSrid());
+		if (transformer != null) {
+			GeometryObject result = geometry.copy();
+			for (double[] coords : result.getCoordinates())
+				transformer.transform(coords, result.getDimension());
+
+			result.changeSrid(targetSrs.getSrid());
+			return result;
+		}
+
 		Connection conn = null;
 
 		try {
@@ -437,6 +476,61 @@ public abstract class AbstractUtilAdapter implements DatabaseUtil {
 		}
 	}
 
+	private CoordinateTransformer getCoordinateTransformer(int sourceSrid, int targetSrid) throws SQLException {
+		if (unsupportedSrids.contains(sourceSrid) || unsupportedSrids.contains(targetSrid))
+			return null;
+
+		long key = ((long)sourceSrid << 32) | (targetSrid & 0xffffffffL);
+		CoordinateTransformer transformer = transformerMap.get(key);
+		if (transformer == null) {
+			SrsDefinition source = getSrsDefinition(sourceSrid);
+			SrsDefinition target = source != null ? getSrsDefinition(targetSrid) : null;
+			if (source == null || target == null)
+				return null;
+
+			transformer = new CoordinateTransformer(source, target);
+			CoordinateTransformer previous = transformerMap.putIfAbsent(key, transformer);
+			if (previous != null)
+				transformer = previous;
+		}
+
+		return transformer;
+	}
+
+	private SrsDefinition getSrsDefinition(int srid) throws SQLException {
+		SrsDefinition definition = srsDefinitionMap.get(srid);
+		if (definition != null)
+			return definition;
+
+		if (srid == 4326 || srid == getWGS843D().getSrid())
+			definition = SrsDefinition.WGS84;
+		else {
+			Connection conn = null;
+
+			try {
+				conn = databaseAdapter.connectionPool.getConnection();
+				definition = SrsDefinition.parse(getProj4Definition(srid, conn));
+			} finally {
+				if (conn != null) {
+					try {
+						conn.close();
+					} catch (SQLException e) {
+						throw e;
+					}
+				}
+			}
+		}
+
+		// reference systems we cannot handle are transformed by the database
+		if (definition == null) {
+			unsupportedSrids.add(srid);
+			return null;
+		}
+
+		srsDefinitionMap.put(srid, definition);
+		return definition;
+	}
+
 	public int get2DSrid(DatabaseSrs srs) throws SQLException {
 		if (!srs.is3D())
 			return srs.getSrid();
@@ -515,6 +609,94 @@ public abstract class AbstractUtilAdapter implements DatabaseUtil {
 		return appearanceThemes;
 	}
 	
+	public IdBitmap getGlobalAppearanceSurfaceGeometryIds(BoundingBox bbox, List<String> gmlIds, Workspace workspace) throws SQLException {
+		IdBitmap surfaceGeometryIds = new IdBitmap();
+		Connection conn = null;
+		Statement stmt = null;
+		ResultSet rs = null;
+
+		try {
+			conn = databaseAdapter.connectionPool.getConnection();
+			if (databaseAdapter.hasVersioningSupport())
+				databaseAdapter.getWorkspaceManager().gotoWorkspace(conn, workspace);
+
+			String from = "from TEXTUREPARAM tp "
+					+ "inner join APPEAR_TO_SURFACE_DATA asd on asd.SURFACE_DATA_ID = tp.SURFACE_DATA_ID "
+					+ "inner join APPEARANCE a on a.ID = asd.APPEARANCE_ID ";
+
+			String query = null;
+			List<String> predicates = new ArrayList<String>();
+			if (bbox != null)
+				predicates.add(databaseAdapter.getSQLAdapter().getBoundingBoxPredicate("ENVELOPE", "co", bbox, true));
+
+			if (gmlIds != null && !gmlIds.isEmpty())
+				predicates.add("co.GMLID in ('" + Util.collection2string(gmlIds, "', '") + "')");
+
+			if (!predicates.isEmpty()) {
+				// the envelopes of nested city objects are only contained in the envelope of
+				// their top-level feature. so we first determine the extent of all selected features
+				// and then load the surfaces of the city objects within this extent
+				BoundingBox extent = calcBoundingBox(Collections.<Integer>emptyList(), Util.collection2string(predicates, " and "), conn);
+				if (extent == null || extent.getLowerCorner().getX() > extent.getUpperCorner().getX())
+					return surfaceGeometryIds;
+
+				extent.setSrs(databaseAdapter.getConnectionMetaData().getReferenceSystem());
+				query = "select tp.SURFACE_GEOMETRY_ID " + from
+						+ "inner join SURFACE_GEOMETRY sg on sg.ID = tp.SURFACE_GEOMETRY_ID "
+						+ "inner join CITYOBJECT co on co.ID = sg.CITYOBJECT_ID "
+						+ "where a.CITYOBJECT_ID is null and " + databaseAdapter.getSQLAdapter().getBoundingBoxPredicate("ENVELOPE", "co", extent, true)
+						+ " union "
+						// surfaces of city objects lacking an envelope and of implicit geometries
+						+ "select tp.SURFACE_GEOMETRY_ID " + from
+						+ "inner join SURFACE_GEOMETRY sg on sg.ID = tp.SURFACE_GEOMETRY_ID "
+						+ "left join CITYOBJECT co on co.ID = sg.CITYOBJECT_ID "
+						+ "where a.CITYOBJECT_ID is null and (co.ENVELOPE is null "
+						+ "or sg.ROOT_ID in (select RELATIVE_BREP_ID from IMPLICIT_GEOMETRY)) "
+						+ "order by 1";
+			} else
+				query = "select distinct tp.SURFACE_GEOMETRY_ID " + from 
+						+ "where a.CITYOBJECT_ID is null order by tp.SURFACE_GEOMETRY_ID";
+
+			stmt = conn.createStatement();
+			rs = stmt.executeQuery(query);
+
+			while (rs.next())
+				surfaceGeometryIds.add(rs.getLong(1));
+
+			return surfaceGeometryIds;
+		} finally {
+			if (rs != null) {
+				try {
+					rs.close();
+				} catch (SQLException e) {
+					throw e;
+				}
+
+				rs = null;
+			}
+
+			if (stmt != null) {
+				try {
+					stmt.close();
+				} catch (SQLException e) {
+					throw e;
+				}
+
+				stmt = null;
+			}
+
+			if (conn != null) {
+				try {
+					conn.close();
+				} catch (SQLException e) {
+					throw e;
+				}
+
+				conn = null;
+			}
+		}
+	}
+
 	public int getNumGlobalAppearances(Workspace workspace) throws SQLException {
 		Connection conn = null;
 		Statement stmt = null;
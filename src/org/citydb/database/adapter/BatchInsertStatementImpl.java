@@ -0,0 +1,112 @@
+/*
+ * 3D City Database - The Open Source CityGML Database
+ * http://www.3dcitydb.org/
+ * 
+ * Copyright 2013 - 2016
+ * Chair of Geoinformatics
+ * Technical University of Munich, Germany
+ * https://www.gis.bgu.tum.de/
+ * 
+ * The 3D City Database is jointly developed with the following
+ * cooperation partners:
+ * 
+ * virtualcitySYSTEMS GmbH, Berlin <http://www.virtualcitysystems.de/>
+ * M.O.S.S. Computer Grafik Systeme GmbH, Taufkirchen <http://www.moss.de/>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.citydb.database.adapter;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+
+public class BatchInsertStatementImpl implements BatchInsertStatement {
+	private final PreparedStatement ps;
+
+	public BatchInsertStatementImpl(Connection connection, String table, String[] columns, String[] values) throws SQLException {
+		if (columns.length != values.length)
+			throw new IllegalArgumentException("The number of values does not match the number of columns.");
+
+		StringBuilder stmt = new StringBuilder("insert into ").append(table).append(" (");
+		for (int i = 0; i < columns.length; i++) {
+			if (i > 0)
+				stmt.append(", ");
+
+			stmt.append(columns[i]);
+		}
+
+		stmt.append(") values (");
+		for (int i = 0; i < values.length; i++) {
+			if (i > 0)
+				stmt.append(", ");
+
+			stmt.append(values[i]);
+		}
+
+		stmt.append(")");
+		ps = connection.prepareStatement(stmt.toString());
+	}
+
+	@Override
+	public void setLong(int parameterIndex, long value) throws SQLException {
+		ps.setLong(parameterIndex, value);
+	}
+
+	@Override
+	public void setInt(int parameterIndex, int value) throws SQLException {
+		ps.setInt(parameterIndex, value);
+	}
+
+	@Override
+	public void setString(int parameterIndex, String value) throws SQLException {
+		ps.setString(parameterIndex, value);
+	}
+
+	@Override
+	public void setTimestamp(int parameterIndex, Timestamp value) throws SQLException {
+		ps.setTimestamp(parameterIndex, value);
+	}
+
+	@Override
+	public void setObject(int parameterIndex, Object value) throws SQLException {
+		ps.setObject(parameterIndex, value);
+	}
+
+	@Override
+	public void setNull(int parameterIndex, int sqlType) throws SQLException {
+		ps.setNull(parameterIndex, sqlType);
+	}
+
+	@Override
+	public void setNull(int parameterIndex, int sqlType, String typeName) throws SQLException {
+		ps.setNull(parameterIndex, sqlType, typeName);
+	}
+
+	@Override
+	public void addBatch() throws SQLException {
+		ps.addBatch();
+	}
+
+	@Override
+	public void executeBatch() throws SQLException {
+		ps.executeBatch();
+	}
+
+	@Override
+	public void close() throws SQLException {
+		ps.close();
+	}
+
+}
@@ -32,5 +32,8 @@ import java.sql.SQLException;
 
 public interface BlobImportAdapter {
 	public boolean insert(long id, InputStream in, String fileName) throws SQLException;	
+	public boolean insertBatch(long id, byte[] data, String fileName) throws SQLException;
+	public boolean executeBatch() throws SQLException;
+	public void setBatchSize(int batchSize, long batchBytes);
 	public void close() throws SQLException;	
 }
@@ -31,6 +31,9 @@ import java.io.InputStream;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.citydb.log.Logger;
 
@@ -40,6 +43,10 @@ public class BlobImportAdapterImpl implements BlobImportAdapter {
 
 	private PreparedStatement psUpdate;
 	private BlobType blobType;
+	private int batchSize = 1;
+	private long batchBytes;
+	private long batchCounterBytes;
+	private List<BatchItem> batch;
 
 	public BlobImportAdapterImpl(Connection connection, BlobType blobType) throws SQLException {
 		this.connection = connection;
@@ -51,6 +58,10 @@ public class BlobImportAdapterImpl implements BlobImportAdapter {
 
 	@Override
 	public boolean insert(long id, InputStream in, String fileName) throws SQLException {
+		// the connection is shared with other xlink resolvers, so only
+		// undo our own update in case of errors
+		Savepoint savepoint = connection.setSavepoint();
+
 		try {
 			psUpdate.setBinaryStream(1, in);
 			psUpdate.setLong(2, id);
@@ -59,14 +70,110 @@ public class BlobImportAdapterImpl implements BlobImportAdapter {
 			
 			return true;
 		} catch (SQLException e) {
-			LOG.error("SQL error while importing " + (blobType == BlobType.TEXTURE_IMAGE ? "texture" : "library object") + " file '" + fileName + "': " + e.getMessage());
+			LOG.error("SQL error while importing " + getBlobName() + " file '" + fileName + "': " + e.getMessage());
+			connection.rollback(savepoint);
 			return false;
 		}
 	}
 
+	@Override
+	public boolean insertBatch(long id, byte[] data, String fileName) throws SQLException {
+		psUpdate.setBytes(1, data);
+		psUpdate.setLong(2, id);
+		psUpdate.addBatch();
+
+		if (batch == null)
+			batch = new ArrayList<BatchItem>(batchSize);
+
+		batch.add(new BatchItem(id, data, fileName));
+		batchCounterBytes += data.length;
+		if (batch.size() >= batchSize || (batchBytes > 0 && batchCounterBytes >= batchBytes))
+			return executeBatch();
+
+		return true;
+	}
+
+	@Override
+	public boolean executeBatch() throws SQLException {
+		if (batch == null || batch.isEmpty())
+			return true;
+
+		Savepoint savepoint = connection.setSavepoint();
+
+		try {
+			psUpdate.executeBatch();
+			connection.commit();
+
+			return true;
+		} catch (SQLException e) {
+			SQLException cause = e.getNextException() != null ? e.getNextException() : e;
+			LOG.debug("SQL error while importing a batch of " + batch.size() + " " + getBlobName() + " files: " + cause.getMessage());
+
+			try {
+				psUpdate.clearBatch();
+			} catch (SQLException sql) {
+				//
+			}
+
+			// undo the partially executed batch without touching the
+			// work of other xlink resolvers on the shared connection, and
+			// import the files one by one so that only broken files are lost
+			connection.rollback(savepoint);
+			return executeSingle();
+		} finally {
+			batch.clear();
+			batchCounterBytes = 0;
+		}
+	}
+
+	@Override
+	public void setBatchSize(int batchSize, long batchBytes) {
+		if (batchSize > 0)
+			this.batchSize = batchSize;
+
+		this.batchBytes = batchBytes;
+	}
+
 	@Override
 	public void close() throws SQLException {
 		psUpdate.close();
 	}
 
+	private boolean executeSingle() throws SQLException {
+		boolean success = true;
+
+		for (BatchItem item : batch) {
+			Savepoint savepoint = connection.setSavepoint();
+
+			try {
+				psUpdate.setBytes(1, item.data);
+				psUpdate.setLong(2, item.id);
+				psUpdate.executeUpdate();
+			} catch (SQLException e) {
+				LOG.error("SQL error while importing " + getBlobName() + " file '" + item.fileName + "': " + e.getMessage());
+				connection.rollback(savepoint);
+				success = false;
+			}
+		}
+
+		connection.commit();
+		return success;
+	}
+
+	private String getBlobName() {
+		return blobType == BlobType.TEXTURE_IMAGE ? "texture" : "library object";
+	}
+
+	private static final class BatchItem {
+		private final long id;
+		private final byte[] data;
+		private final String fileName;
+
+		private BatchItem(long id, byte[] data, String fileName) {
+			this.id = id;
+			this.data = data;
+			this.fileName = fileName;
+		}
+	}
+
 }
@@ -218,14 +218,17 @@ public class UtilAdapter extends AbstractUtilAdapter {
 	}
 
 	@Override
-	protected BoundingBox calcBoundingBox(List<Integer> classIds, Connection connection) throws SQLException {
+	protected BoundingBox calcBoundingBox(List<Integer> classIds, String predicate, Connection connection) throws SQLException {
 		BoundingBox bbox = null;
 		ResultSet rs = null;
 
 		try {		
-			String query = "select sdo_aggr_mbr(citydb_util.to_2d(ENVELOPE, (select srid from database_srs))) from CITYOBJECT where ENVELOPE is not NULL";
+			String query = "select sdo_aggr_mbr(citydb_util.to_2d(co.ENVELOPE, (select srid from database_srs))) from CITYOBJECT co where co.ENVELOPE is not NULL";
 			if (!classIds.isEmpty()) 
-				query += " and OBJECTCLASS_ID in (" + Util.collection2string(classIds, ", ") +") ";
+				query += " and co.OBJECTCLASS_ID in (" + Util.collection2string(classIds, ", ") +") ";
+
+			if (predicate != null)
+				query += " and " + predicate;
 
 			Position lowerCorner = new Position(Double.MAX_VALUE, Double.MAX_VALUE);
 			Position upperCorner = new Position(-Double.MAX_VALUE, -Double.MAX_VALUE);
@@ -500,6 +503,12 @@ public class UtilAdapter extends AbstractUtilAdapter {
 		return result;
 	}
 
+	@Override
+	protected String getProj4Definition(int srid, Connection connection) throws SQLException {
+		// Oracle only provides WKT definitions, so transformations are left to the database
+		return null;
+	}
+
 	@Override
 	protected int get2DSrid(DatabaseSrs srs, Connection connection) throws SQLException {
 		if (!srs.is3D())
@@ -521,7 +530,7 @@ public class UtilAdapter extends AbstractUtilAdapter {
 
 			int result = 0;
 			if (rs.next())
-				result = rs.getInt(1);
+				result = rs.getInt(1);
 			
 			if (result == 0)
 				throw new SQLException("Failed to discover 2D equivalent for the 3D SRID " + srs.getSrid() + '.');
@@ -0,0 +1,261 @@
+/*
+ * 3D City Database - The Open Source CityGML Database
+ * http://www.3dcitydb.org/
+ * 
+ * Copyright 2013 - 2016
+ * Chair of Geoinformatics
+ * Technical University of Munich, Germany
+ * https://www.gis.bgu.tum.de/
+ * 
+ * The 3D City Database is jointly developed with the following
+ * cooperation partners:
+ * 
+ * virtualcitySYSTEMS GmbH, Berlin <http://www.virtualcitysystems.de/>
+ * M.O.S.S. Computer Grafik Systeme GmbH, Taufkirchen <http://www.moss.de/>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.citydb.database.adapter.postgis;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.text.SimpleDateFormat;
+
+import org.citydb.database.adapter.BatchInsertStatement;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.postgresql.copy.CopyManager;
+import org.postgresql.util.PGobject;
+
+/**
+ * Collects the rows of a batch in COPY text format and transfers them with a single
+ * COPY FROM STDIN when the batch is executed. Columns bound to an SQL expression
+ * rather than a parameter are evaluated once per batch on the server so that
+ * values like CURRENT_TIMESTAMP keep the semantics of the corresponding insert.
+ */
+class CopyInsertStatement implements BatchInsertStatement {
+	private final Connection connection;
+	private final CopyManager copyManager;
+	private final String copyStmt;
+	private final String literalQuery;
+	private final int[] parameterColumns;
+	private final String[] row;
+	private final SimpleDateFormat timestampFormat;
+
+	private final StringBuilder line;
+	private byte[] buffer = new byte[8192];
+	private int position;
+	private boolean resolveLiterals = true;
+
+	CopyInsertStatement(Connection connection, String table, String[] columns, String[] values) throws SQLException {
+		if (columns.length != values.length)
+			throw new IllegalArgumentException("The number of values does not match the number of columns.");
+
+		this.connection = connection;
+		copyManager = connection.unwrap(PGConnection.class).getCopyAPI();
+		row = new String[columns.length];
+		timestampFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSSXXX");
+		line = new StringBuilder();
+
+		StringBuilder copy = new StringBuilder("copy ").append(table).append(" (");
+		StringBuilder literals = new StringBuilder("select ");
+		int parameters = 0;
+
+		for (int i = 0; i < columns.length; i++) {
+			if (i > 0)
+				copy.append(", ");
+
+			copy.append(columns[i]);
+			if ("?".equals(values[i].trim()))
+				parameters++;
+			else {
+				if (literals.length() > 7)
+					literals.append(", ");
+
+				literals.append(values[i]);
+			}
+		}
+
+		copyStmt = copy.append(") from stdin").toString();
+		literalQuery = parameters < columns.length ? literals.toString() : null;
+
+		parameterColumns = new int[parameters];
+		for (int i = 0, j = 0; i < values.length; i++)
+			if ("?".equals(values[i].trim()))
+				parameterColumns[j++] = i;
+	}
+
+	@Override
+	public void setLong(int parameterIndex, long value) throws SQLException {
+		row[getColumn(parameterIndex)] = String.valueOf(value);
+	}
+
+	@Override
+	public void setInt(int parameterIndex, int value) throws SQLException {
+		row[getColumn(parameterIndex)] = String.valueOf(value);
+	}
+
+	@Override
+	public void setString(int parameterIndex, String value) throws SQLException {
+		row[getColumn(parameterIndex)] = value;
+	}
+
+	@Override
+	public void setTimestamp(int parameterIndex, Timestamp value) throws SQLException {
+		row[getColumn(parameterIndex)] = value != null ? timestampFormat.format(value) : null;
+	}
+
+	@Override
+	public void setObject(int parameterIndex, Object value) throws SQLException {
+		if (value instanceof PGobject)
+			value = ((PGobject)value).getValue();
+
+		row[getColumn(parameterIndex)] = value != null ? value.toString() : null;
+	}
+
+	@Override
+	public void setNull(int parameterIndex, int sqlType) throws SQLException {
+		row[getColumn(parameterIndex)] = null;
+	}
+
+	@Override
+	public void setNull(int parameterIndex, int sqlType, String typeName) throws SQLException {
+		row[getColumn(parameterIndex)] = null;
+	}
+
+	@Override
+	public void addBatch() throws SQLException {
+		if (resolveLiterals) {
+			resolveLiterals();
+			resolveLiterals = false;
+		}
+
+		line.setLength(0);
+		for (int i = 0; i < row.length; i++) {
+			if (i > 0)
+				line.append('\t');
+
+			appendValue(row[i]);
+		}
+
+		line.append('\n');
+
+		byte[] bytes = line.toString().getBytes(StandardCharsets.UTF_8);
+		if (position + bytes.length > buffer.length) {
+			byte[] tmp = new byte[Math.max(buffer.length << 1, position + bytes.length)];
+			System.arraycopy(buffer, 0, tmp, 0, position);
+			buffer = tmp;
+		}
+
+		System.arraycopy(bytes, 0, buffer, position, bytes.length);
+		position += bytes.length;
+	}
+
+	@Override
+	public void executeBatch() throws SQLException {
+		if (position == 0)
+			return;
+
+		CopyIn copyIn = null;
+
+		try {
+			copyIn = copyManager.copyIn(copyStmt);
+			copyIn.writeToCopy(buffer, 0, position);
+			copyIn.endCopy();
+		} finally {
+			if (copyIn != null && copyIn.isActive())
+				copyIn.cancelCopy();
+
+			position = 0;
+			resolveLiterals = true;
+		}
+	}
+
+	@Override
+	public void close() throws SQLException {
+		buffer = null;
+	}
+
+	private int getColumn(int parameterIndex) throws SQLException {
+		if (parameterIndex < 1 || parameterIndex > parameterColumns.length)
+			throw new SQLException("The parameter index " + parameterIndex + " is out of range.");
+
+		return parameterColumns[parameterIndex - 1];
+	}
+
+	private void resolveLiterals() throws SQLException {
+		if (literalQuery == null)
+			return;
+
+		Statement stmt = null;
+		ResultSet rs = null;
+
+		try {
+			stmt = connection.createStatement();
+			rs = stmt.executeQuery(literalQuery);
+
+			if (rs.next()) {
+				for (int i = 0, column = 1; i < row.length; i++) {
+					if (!isParameterColumn(i))
+						row[i] = rs.getString(column++);
+				}
+			}
+		} finally {
+			if (rs != null)
+				rs.close();
+
+			if (stmt != null)
+				stmt.close();
+		}
+	}
+
+	private boolean isParameterColumn(int column) {
+		for (int parameterColumn : parameterColumns)
+			if (parameterColumn == column)
+				return true;
+
+		return false;
+	}
+
+	private void appendValue(String value) {
+		if (value == null) {
+			line.append("\\N");
+			return;
+		}
+
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			switch (c) {
+			case '\\':
+				line.append("\\\\");
+				break;
+			case '\t':
+				line.append("\\t");
+				break;
+			case '\n':
+				line.append("\\n");
+				break;
+			case '\r':
+				line.append("\\r");
+				break;
+			default:
+				line.append(c);
+			}
+		}
+	}
+
+}
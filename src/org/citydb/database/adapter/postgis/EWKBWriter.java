@@ -0,0 +1,235 @@
+/*
+ * 3D City Database - The Open Source CityGML Database
+ * http://www.3dcitydb.org/
+ * 
+ * Copyright 2013 - 2016
+ * Chair of Geoinformatics
+ * Technical University of Munich, Germany
+ * https://www.gis.bgu.tum.de/
+ * 
+ * The 3D City Database is jointly developed with the following
+ * cooperation partners:
+ * 
+ * virtualcitySYSTEMS GmbH, Berlin <http://www.virtualcitysystems.de/>
+ * M.O.S.S. Computer Grafik Systeme GmbH, Taufkirchen <http://www.moss.de/>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.citydb.database.adapter.postgis;
+
+import org.citydb.api.geometry.ElementType;
+import org.citydb.api.geometry.GeometryObject;
+
+/**
+ * Writes geometry objects as hex-encoded EWKB (little endian) without an intermediate
+ * text representation of the coordinates. The byte and character buffers are reused
+ * between calls, so an instance must not be shared between threads.
+ */
+final class EWKBWriter {
+	private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+	private static final int POINT = 1;
+	private static final int LINESTRING = 2;
+	private static final int POLYGON = 3;
+	private static final int MULTIPOINT = 4;
+	private static final int MULTILINESTRING = 5;
+	private static final int MULTIPOLYGON = 6;
+	private static final int POLYHEDRALSURFACE = 15;
+
+	private static final int Z_FLAG = 0x80000000;
+	private static final int SRID_FLAG = 0x20000000;
+
+	private byte[] buffer = new byte[1024];
+	private char[] chars = new char[2048];
+	private int position;
+
+	String write(GeometryObject geomObj) {
+		position = 0;
+		int dimension = geomObj.getDimension();
+		double[][] coordinates = geomObj.getCoordinates();
+
+		switch (geomObj.getGeometryType()) {
+		case POINT:
+			writeHeader(POINT, dimension, geomObj.getSrid());
+			writeCoordinates(coordinates[0], 0, dimension);
+			break;
+		case LINE_STRING:
+			writeHeader(LINESTRING, dimension, geomObj.getSrid());
+			writePointArray(coordinates[0], dimension);
+			break;
+		case POLYGON:
+			writeHeader(POLYGON, dimension, geomObj.getSrid());
+			writeRings(coordinates, 0, coordinates.length, dimension);
+			break;
+		case ENVELOPE:
+			writeHeader(POLYGON, dimension, geomObj.getSrid());
+			writeEnvelope(coordinates[0], dimension);
+			break;
+		case MULTI_POINT:
+			writeHeader(MULTIPOINT, dimension, geomObj.getSrid());
+			writeInt(coordinates.length);
+			for (double[] point : coordinates) {
+				writeHeader(POINT, dimension, 0);
+				writeCoordinates(point, 0, dimension);
+			}
+			break;
+		case MULTI_LINE_STRING:
+			writeHeader(MULTILINESTRING, dimension, geomObj.getSrid());
+			writeInt(coordinates.length);
+			for (double[] lineString : coordinates) {
+				writeHeader(LINESTRING, dimension, 0);
+				writePointArray(lineString, dimension);
+			}
+			break;
+		case MULTI_POLYGON:
+			writeHeader(MULTIPOLYGON, dimension, geomObj.getSrid());
+			writePolygonCollection(geomObj, dimension);
+			break;
+		case SOLID:
+			writeHeader(POLYHEDRALSURFACE, dimension, geomObj.getSrid());
+			writePolygonCollection(geomObj, dimension);
+			break;
+		case COMPOSITE_SOLID:
+			// CompositeSolids are not supported yet
+			return null;
+		}
+
+		return toHex();
+	}
+
+	private void writePolygonCollection(GeometryObject geomObj, int dimension) {
+		double[][] coordinates = geomObj.getCoordinates();
+
+		int numPolygons = 0;
+		for (int i = 0; i < geomObj.getNumElements(); i++)
+			if (geomObj.getElementType(i) == ElementType.EXTERIOR_LINEAR_RING)
+				numPolygons++;
+
+		writeInt(numPolygons);
+
+		int start = 0;
+		while (start < coordinates.length) {
+			int end = start + 1;
+			while (end < coordinates.length && geomObj.getElementType(end) != ElementType.EXTERIOR_LINEAR_RING)
+				end++;
+
+			writeHeader(POLYGON, dimension, 0);
+			writeRings(coordinates, start, end, dimension);
+			start = end;
+		}
+	}
+
+	private void writeRings(double[][] coordinates, int start, int end, int dimension) {
+		writeInt(end - start);
+		for (int i = start; i < end; i++)
+			writePointArray(coordinates[i], dimension);
+	}
+
+	private void writeEnvelope(double[] envelope, int dimension) {
+		writeInt(1);
+		writeInt(5);
+
+		if (dimension == 3) {
+			writeCoordinate(envelope[0], envelope[1], envelope[2]);
+			writeCoordinate(envelope[3], envelope[1], envelope[2]);
+			writeCoordinate(envelope[3], envelope[4], envelope[5]);
+			writeCoordinate(envelope[0], envelope[4], envelope[5]);
+			writeCoordinate(envelope[0], envelope[1], envelope[2]);
+		} else {
+			writeCoordinate(envelope[0], envelope[1]);
+			writeCoordinate(envelope[2], envelope[1]);
+			writeCoordinate(envelope[2], envelope[3]);
+			writeCoordinate(envelope[0], envelope[3]);
+			writeCoordinate(envelope[0], envelope[1]);
+		}
+	}
+
+	private void writePointArray(double[] coordinates, int dimension) {
+		writeInt(coordinates.length / dimension);
+		writeCoordinates(coordinates, 0, coordinates.length);
+	}
+
+	private void writeHeader(int type, int dimension, int srid) {
+		ensureCapacity(9);
+		buffer[position++] = 1;
+
+		if (dimension == 3)
+			type |= Z_FLAG;
+
+		if (srid > 0) {
+			writeInt(type | SRID_FLAG);
+			writeInt(srid);
+		} else
+			writeInt(type);
+	}
+
+	private void writeCoordinate(double x, double y) {
+		ensureCapacity(16);
+		writeDouble(x);
+		writeDouble(y);
+	}
+
+	private void writeCoordinate(double x, double y, double z) {
+		ensureCapacity(24);
+		writeDouble(x);
+		writeDouble(y);
+		writeDouble(z);
+	}
+
+	private void writeCoordinates(double[] coordinates, int offset, int length) {
+		ensureCapacity(length << 3);
+		for (int i = offset; i < offset + length; i++)
+			writeDouble(coordinates[i]);
+	}
+
+	private void writeInt(int value) {
+		ensureCapacity(4);
+		buffer[position++] = (byte)value;
+		buffer[position++] = (byte)(value >>> 8);
+		buffer[position++] = (byte)(value >>> 16);
+		buffer[position++] = (byte)(value >>> 24);
+	}
+
+	private void writeDouble(double value) {
+		long bits = Double.doubleToLongBits(value);
+		buffer[position++] = (byte)bits;
+		buffer[position++] = (byte)(bits >>> 8);
+		buffer[position++] = (byte)(bits >>> 16);
+		buffer[position++] = (byte)(bits >>> 24);
+		buffer[position++] = (byte)(bits >>> 32);
+		buffer[position++] = (byte)(bits >>> 40);
+		buffer[position++] = (byte)(bits >>> 48);
+		buffer[position++] = (byte)(bits >>> 56);
+	}
+
+	private void ensureCapacity(int length) {
+		if (position + length > buffer.length) {
+			byte[] tmp = new byte[Math.max(buffer.length << 1, position + length)];
+			System.arraycopy(buffer, 0, tmp, 0, position);
+			buffer = tmp;
+		}
+	}
+
+	private String toHex() {
+		if (chars.length < position << 1)
+			chars = new char[buffer.length << 1];
+
+		for (int i = 0, j = 0; i < position; i++) {
+			chars[j++] = HEX[(buffer[i] >> 4) & 0xf];
+			chars[j++] = HEX[buffer[i] & 0xf];
+		}
+
+		return new String(chars, 0, position << 1);
+	}
+
+}
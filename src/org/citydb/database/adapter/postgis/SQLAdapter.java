@@ -32,6 +32,7 @@ import java.sql.SQLException;
 
 import org.citydb.api.geometry.BoundingBox;
 import org.citydb.database.adapter.AbstractSQLAdapter;
+import org.citydb.database.adapter.BatchInsertStatement;
 import org.citydb.database.adapter.BlobExportAdapter;
 import org.citydb.database.adapter.BlobExportAdapterImpl;
 import org.citydb.database.adapter.BlobImportAdapter;
@@ -205,4 +206,9 @@ public class SQLAdapter extends AbstractSQLAdapter {
 		return new BlobExportAdapterImpl(connection, type);
 	}
 
+	@Override
+	public BatchInsertStatement getBulkInsertStatement(Connection connection, String table, String[] columns, String[] values) throws SQLException {
+		return new CopyInsertStatement(connection, table, columns, values);
+	}
+
 }
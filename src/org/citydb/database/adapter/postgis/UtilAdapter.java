@@ -215,14 +215,17 @@ public class UtilAdapter extends AbstractUtilAdapter {
 	}
 
 	@Override
-	protected BoundingBox calcBoundingBox(List<Integer> classIds, Connection connection) throws SQLException {
+	protected BoundingBox calcBoundingBox(List<Integer> classIds, String predicate, Connection connection) throws SQLException {
 		BoundingBox bbox = null;
 		ResultSet rs = null;
 
 		try {		
-			String query = "select ST_Extent(envelope) from cityobject where envelope is not null";
+			String query = "select ST_Extent(co.envelope) from cityobject co where co.envelope is not null";
 			if (!classIds.isEmpty()) 
-				query += " and OBJECTCLASS_ID in (" + Util.collection2string(classIds, ", ") +") ";
+				query += " and co.OBJECTCLASS_ID in (" + Util.collection2string(classIds, ", ") +") ";
+
+			if (predicate != null)
+				query += " and " + predicate;
 
 			Position lowerCorner = new Position(Double.MAX_VALUE, Double.MAX_VALUE);
 			Position upperCorner = new Position(-Double.MAX_VALUE, -Double.MAX_VALUE);
@@ -532,6 +535,40 @@ public class UtilAdapter extends AbstractUtilAdapter {
 		return result;
 	}
 
+	@Override
+	protected String getProj4Definition(int srid, Connection connection) throws SQLException {
+		PreparedStatement psQuery = null;
+		ResultSet rs = null;
+
+		try {
+			psQuery = connection.prepareStatement("select proj4text from spatial_ref_sys where srid = ?");
+			psQuery.setInt(1, srid);
+
+			rs = psQuery.executeQuery();
+			return rs.next() ? rs.getString(1) : null;
+		} finally {
+			if (rs != null) {
+				try {
+					rs.close();
+				} catch (SQLException sqlEx) {
+					throw sqlEx;
+				}
+
+				rs = null;
+			}
+
+			if (psQuery != null) {
+				try {
+					psQuery.close();
+				} catch (SQLException sqlEx) {
+					throw sqlEx;
+				}
+
+				psQuery = null;
+			}
+		}
+	}
+
 	@Override
 	protected int get2DSrid(DatabaseSrs srs, Connection connection) throws SQLException {
 		return srs.getSrid();
@@ -0,0 +1,57 @@
+/*
+ * 3D City Database - The Open Source CityGML Database
+ * http://www.3dcitydb.org/
+ * 
+ * Copyright 2013 - 2016
+ * Chair of Geoinformatics
+ * Technical University of Munich, Germany
+ * https://www.gis.bgu.tum.de/
+ * 
+ * The 3D City Database is jointly developed with the following
+ * cooperation partners:
+ * 
+ * virtualcitySYSTEMS GmbH, Berlin <http://www.virtualcitysystems.de/>
+ * M.O.S.S. Computer Grafik Systeme GmbH, Taufkirchen <http://www.moss.de/>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.citydb.database.srs;
+
+public class CoordinateTransformer {
+	private final SrsDefinition source;
+	private final SrsDefinition target;
+
+	public CoordinateTransformer(SrsDefinition source, SrsDefinition target) {
+		this.source = source;
+		this.target = target;
+	}
+
+	public void transform(double[] coords, int dimension) {
+		double[] point = new double[3];
+
+		for (int i = 0; i + dimension <= coords.length; i += dimension) {
+			point[0] = coords[i];
+			point[1] = coords[i + 1];
+			point[2] = dimension > 2 ? coords[i + 2] : 0;
+
+			source.toWGS84(point);
+			target.fromWGS84(point);
+
+			coords[i] = point[0];
+			coords[i + 1] = point[1];
+			if (dimension > 2)
+				coords[i + 2] = point[2];
+		}
+	}
+
+}
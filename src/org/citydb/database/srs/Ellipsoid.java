@@ -0,0 +1,148 @@
+/*
+ * 3D City Database - The Open Source CityGML Database
+ * http://www.3dcitydb.org/
+ * 
+ * Copyright 2013 - 2016
+ * Chair of Geoinformatics
+ * Technical University of Munich, Germany
+ * https://www.gis.bgu.tum.de/
+ * 
+ * The 3D City Database is jointly developed with the following
+ * cooperation partners:
+ * 
+ * virtualcitySYSTEMS GmbH, Berlin <http://www.virtualcitysystems.de/>
+ * M.O.S.S. Computer Grafik Systeme GmbH, Taufkirchen <http://www.moss.de/>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.citydb.database.srs;
+
+import java.util.HashMap;
+
+public final class Ellipsoid {
+	public static final Ellipsoid WGS84 = fromInverseFlattening(6378137.0, 298.257223563);
+	private static final HashMap<String, Ellipsoid> ELLIPSOIDS = new HashMap<String, Ellipsoid>();
+
+	static {
+		ELLIPSOIDS.put("WGS84", WGS84);
+		ELLIPSOIDS.put("GRS80", fromInverseFlattening(6378137.0, 298.257222101));
+		ELLIPSOIDS.put("GRS67", fromInverseFlattening(6378160.0, 298.2471674270));
+		ELLIPSOIDS.put("WGS72", fromInverseFlattening(6378135.0, 298.26));
+		ELLIPSOIDS.put("bessel", fromInverseFlattening(6377397.155, 299.1528128));
+		ELLIPSOIDS.put("intl", fromInverseFlattening(6378388.0, 297.0));
+		ELLIPSOIDS.put("krass", fromInverseFlattening(6378245.0, 298.3));
+		ELLIPSOIDS.put("clrk66", fromAxes(6378206.4, 6356583.8));
+		ELLIPSOIDS.put("clrk80", fromInverseFlattening(6378249.145, 293.4663));
+		ELLIPSOIDS.put("airy", fromAxes(6377563.396, 6356256.910));
+		ELLIPSOIDS.put("mod_airy", fromAxes(6377340.189, 6356034.446));
+		ELLIPSOIDS.put("aust_SA", fromInverseFlattening(6378160.0, 298.25));
+		ELLIPSOIDS.put("sphere", fromAxes(6370997.0, 6370997.0));
+	}
+
+	private final double a;
+	private final double b;
+	private final double e2;
+	private final double e;
+
+	private Ellipsoid(double a, double b) {
+		this.a = a;
+		this.b = b;
+		e2 = 1 - (b * b) / (a * a);
+		e = Math.sqrt(e2);
+	}
+
+	public static Ellipsoid fromAxes(double a, double b) {
+		return new Ellipsoid(a, b);
+	}
+
+	public static Ellipsoid fromInverseFlattening(double a, double rf) {
+		return new Ellipsoid(a, rf != 0 ? a * (1 - 1 / rf) : a);
+	}
+
+	public static Ellipsoid getEllipsoid(String name) {
+		return ELLIPSOIDS.get(name);
+	}
+
+	public double getSemiMajorAxis() {
+		return a;
+	}
+
+	public double getSemiMinorAxis() {
+		return b;
+	}
+
+	public double getEccentricity() {
+		return e;
+	}
+
+	public double getEccentricitySquared() {
+		return e2;
+	}
+
+	public boolean isSphere() {
+		return e2 == 0;
+	}
+
+	public boolean isSame(Ellipsoid other) {
+		return Math.abs(a - other.a) < 1e-4 && Math.abs(e2 - other.e2) < 1e-12;
+	}
+
+	// (lon, lat, h) in radians and meters to geocentric x, y, z
+	void toGeocentric(double[] coords) {
+		double lon = coords[0];
+		double lat = coords[1];
+		double h = coords[2];
+
+		double sinLat = Math.sin(lat);
+		double cosLat = Math.cos(lat);
+		double n = a / Math.sqrt(1 - e2 * sinLat * sinLat);
+
+		coords[0] = (n + h) * cosLat * Math.cos(lon);
+		coords[1] = (n + h) * cosLat * Math.sin(lon);
+		coords[2] = (n * (1 - e2) + h) * sinLat;
+	}
+
+	// geocentric x, y, z to (lon, lat, h) in radians and meters
+	void toGeodetic(double[] coords) {
+		double x = coords[0];
+		double y = coords[1];
+		double z = coords[2];
+		double p = Math.sqrt(x * x + y * y);
+
+		if (p < 1e-9) {
+			coords[0] = 0;
+			coords[1] = z >= 0 ? Math.PI / 2 : -Math.PI / 2;
+			coords[2] = Math.abs(z) - b;
+			return;
+		}
+
+		double lat = Math.atan2(z, p * (1 - e2));
+		double h = 0;
+		for (int i = 0; i < 10; i++) {
+			double sinLat = Math.sin(lat);
+			double n = a / Math.sqrt(1 - e2 * sinLat * sinLat);
+			h = p / Math.cos(lat) - n;
+
+			double next = Math.atan2(z, p * (1 - e2 * n / (n + h)));
+			boolean converged = Math.abs(next - lat) < 1e-14;
+			lat = next;
+			if (converged)
+				break;
+		}
+
+		coords[0] = Math.atan2(y, x);
+		coords[1] = lat;
+		coords[2] = h;
+	}
+
+}
@@ -0,0 +1,84 @@
+/*
+ * 3D City Database - The Open Source CityGML Database
+ * http://www.3dcitydb.org/
+ * 
+ * Copyright 2013 - 2016
+ * Chair of Geoinformatics
+ * Technical University of Munich, Germany
+ * https://www.gis.bgu.tum.de/
+ * 
+ * The 3D City Database is jointly developed with the following
+ * cooperation partners:
+ * 
+ * virtualcitySYSTEMS GmbH, Berlin <http://www.virtualcitysystems.de/>
+ * M.O.S.S. Computer Grafik Systeme GmbH, Taufkirchen <http://www.moss.de/>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.citydb.database.srs;
+
+class LambertConformalConic extends Projection {
+	private final double n;
+	private final double c;
+	private final double rho0;
+
+	LambertConformalConic(Ellipsoid ellipsoid, double lon0, double lat0, double lat1, double lat2, double k0) {
+		super(ellipsoid, lon0);
+
+		double sinLat1 = Math.sin(lat1);
+		double m1 = msfn(sinLat1, Math.cos(lat1));
+		double t1 = tsfn(lat1);
+
+		if (Math.abs(lat1 - lat2) > 1e-10) {
+			double m2 = msfn(Math.sin(lat2), Math.cos(lat2));
+			double t2 = tsfn(lat2);
+			n = Math.log(m1 / m2) / Math.log(t1 / t2);
+		} else
+			n = sinLat1;
+
+		c = k0 * a * m1 * Math.pow(t1, -n) / n;
+		rho0 = Math.abs(Math.abs(lat0) - HALF_PI) < 1e-10 ? 0 : c * Math.pow(tsfn(lat0), n);
+	}
+
+	@Override
+	void project(double[] coords) {
+		double lon = adjustLongitude(coords[0] - lon0);
+		double lat = coords[1];
+
+		double rho = Math.abs(Math.abs(lat) - HALF_PI) < 1e-10 ? 0 : c * Math.pow(tsfn(lat), n);
+		coords[0] = rho * Math.sin(n * lon);
+		coords[1] = rho0 - rho * Math.cos(n * lon);
+	}
+
+	@Override
+	void unproject(double[] coords) {
+		double x = coords[0];
+		double y = rho0 - coords[1];
+
+		double rho = Math.sqrt(x * x + y * y);
+		if (n < 0) {
+			rho = -rho;
+			x = -x;
+			y = -y;
+		}
+
+		if (rho != 0) {
+			coords[1] = phi2(Math.pow(rho / c, 1 / n));
+			coords[0] = adjustLongitude(Math.atan2(x, y) / n + lon0);
+		} else {
+			coords[1] = n > 0 ? HALF_PI : -HALF_PI;
+			coords[0] = lon0;
+		}
+	}
+
+}
@@ -25,23 +25,33 @@
  * See the License for the specific language governing permissions and
  * limitations under the License.
  */
-package org.citydb.modules.common.event;
+package org.citydb.database.srs;
 
-import java.util.HashMap;
+class Mercator extends Projection {
+	private final double k0a;
 
-import org.citydb.api.event.Event;
-import org.citygml4j.model.gml.GMLClass;
+	Mercator(Ellipsoid ellipsoid, double lon0, double latTs, double k0) {
+		super(ellipsoid, lon0);
 
-public class GeometryCounterEvent extends Event {
-	private HashMap<GMLClass, Long> geometryCounterMap;
+		// a latitude of true scale overrides the scale factor
+		if (latTs != 0)
+			k0 = msfn(Math.sin(latTs), Math.cos(latTs));
 
-	public GeometryCounterEvent(HashMap<GMLClass, Long> geometryCounterMap, Object source) {
-		super(EventType.GEOMETRY_COUNTER, GLOBAL_CHANNEL, source);
-		this.geometryCounterMap = geometryCounterMap;
+		k0a = k0 * a;
 	}
 
-	public HashMap<GMLClass, Long> getCounter() {
-		return geometryCounterMap;
+	@Override
+	void project(double[] coords) {
+		double lon = adjustLongitude(coords[0] - lon0);
+		coords[0] = k0a * lon;
+		coords[1] = -k0a * Math.log(tsfn(coords[1]));
+	}
+
+	@Override
+	void unproject(double[] coords) {
+		double lat = phi2(Math.exp(-coords[1] / k0a));
+		coords[0] = adjustLongitude(coords[0] / k0a + lon0);
+		coords[1] = lat;
 	}
 
 }
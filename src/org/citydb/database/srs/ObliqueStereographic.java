@@ -0,0 +1,111 @@
+/*
+ * 3D City Database - The Open Source CityGML Database
+ * http://www.3dcitydb.org/
+ * 
+ * Copyright 2013 - 2016
+ * Chair of Geoinformatics
+ * Technical University of Munich, Germany
+ * https://www.gis.bgu.tum.de/
+ * 
+ * The 3D City Database is jointly developed with the following
+ * cooperation partners:
+ * 
+ * virtualcitySYSTEMS GmbH, Berlin <http://www.virtualcitysystems.de/>
+ * M.O.S.S. Computer Grafik Systeme GmbH, Taufkirchen <http://www.moss.de/>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.citydb.database.srs;
+
+// double stereographic projection on the Gaussian conformal sphere
+// as used by PROJ for +proj=sterea
+class ObliqueStereographic extends Projection {
+	private final double k0;
+	private final double c;
+	private final double k;
+	private final double ratexp;
+	private final double phic0;
+	private final double sinc0;
+	private final double cosc0;
+	private final double r2;
+
+	ObliqueStereographic(Ellipsoid ellipsoid, double lon0, double lat0, double k0) {
+		super(ellipsoid, lon0);
+		this.k0 = k0;
+
+		double sinPhi = Math.sin(lat0);
+		double cosPhi = Math.cos(lat0);
+		cosPhi *= cosPhi;
+
+		double rc = Math.sqrt(1 - e2) / (1 - e2 * sinPhi * sinPhi);
+		c = Math.sqrt(1 + e2 * cosPhi * cosPhi / (1 - e2));
+		phic0 = Math.asin(sinPhi / c);
+		ratexp = 0.5 * c * e;
+		k = Math.tan(0.5 * phic0 + QUARTER_PI) / (Math.pow(Math.tan(0.5 * lat0 + QUARTER_PI), c) * srat(e * sinPhi, ratexp));
+
+		sinc0 = Math.sin(phic0);
+		cosc0 = Math.cos(phic0);
+		r2 = 2 * rc;
+	}
+
+	@Override
+	void project(double[] coords) {
+		double lon = c * adjustLongitude(coords[0] - lon0);
+		double lat = 2 * Math.atan(k * Math.pow(Math.tan(0.5 * coords[1] + QUARTER_PI), c) * srat(e * Math.sin(coords[1]), ratexp)) - HALF_PI;
+
+		double sinc = Math.sin(lat);
+		double cosc = Math.cos(lat);
+		double cosl = Math.cos(lon);
+		double scale = a * k0 * r2 / (1 + sinc0 * sinc + cosc0 * cosc * cosl);
+
+		coords[0] = scale * cosc * Math.sin(lon);
+		coords[1] = scale * (cosc0 * sinc - sinc0 * cosc * cosl);
+	}
+
+	@Override
+	void unproject(double[] coords) {
+		double x = coords[0] / (a * k0);
+		double y = coords[1] / (a * k0);
+		double rho = Math.sqrt(x * x + y * y);
+
+		double lon = 0;
+		double lat = phic0;
+		if (rho != 0) {
+			double angle = 2 * Math.atan2(rho, r2);
+			double sinc = Math.sin(angle);
+			double cosc = Math.cos(angle);
+			lat = Math.asin(cosc * sinc0 + y * sinc * cosc0 / rho);
+			lon = Math.atan2(x * sinc, rho * cosc0 * cosc - y * sinc0 * sinc);
+		}
+
+		// back from the conformal sphere to the ellipsoid
+		lon /= c;
+		double num = Math.pow(Math.tan(0.5 * lat + QUARTER_PI) / k, 1 / c);
+		double phi = lat;
+		for (int i = 0; i < 15; i++) {
+			double next = 2 * Math.atan(num * srat(e * Math.sin(phi), -0.5 * e)) - HALF_PI;
+			boolean converged = Math.abs(next - phi) < 1e-14;
+			phi = next;
+			if (converged)
+				break;
+		}
+
+		coords[0] = adjustLongitude(lon + lon0);
+		coords[1] = phi;
+	}
+
+	private double srat(double esinp, double exp) {
+		return Math.pow((1 - esinp) / (1 + esinp), exp);
+	}
+
+}
@@ -0,0 +1,84 @@
+/*
+ * 3D City Database - The Open Source CityGML Database
+ * http://www.3dcitydb.org/
+ * 
+ * Copyright 2013 - 2016
+ * Chair of Geoinformatics
+ * Technical University of Munich, Germany
+ * https://www.gis.bgu.tum.de/
+ * 
+ * The 3D City Database is jointly developed with the following
+ * cooperation partners:
+ * 
+ * virtualcitySYSTEMS GmbH, Berlin <http://www.virtualcitysystems.de/>
+ * M.O.S.S. Computer Grafik Systeme GmbH, Taufkirchen <http://www.moss.de/>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.citydb.database.srs;
+
+abstract class Projection {
+	protected static final double HALF_PI = Math.PI / 2;
+	protected static final double QUARTER_PI = Math.PI / 4;
+
+	protected final double a;
+	protected final double e;
+	protected final double e2;
+	protected final double lon0;
+
+	protected Projection(Ellipsoid ellipsoid, double lon0) {
+		a = ellipsoid.getSemiMajorAxis();
+		e = ellipsoid.getEccentricity();
+		e2 = ellipsoid.getEccentricitySquared();
+		this.lon0 = lon0;
+	}
+
+	// (lon, lat) in radians to (x, y) in meters without false easting and northing
+	abstract void project(double[] coords);
+
+	// (x, y) in meters without false easting and northing to (lon, lat) in radians
+	abstract void unproject(double[] coords);
+
+	protected double adjustLongitude(double lon) {
+		while (lon > Math.PI)
+			lon -= 2 * Math.PI;
+		while (lon < -Math.PI)
+			lon += 2 * Math.PI;
+
+		return lon;
+	}
+
+	protected double msfn(double sinPhi, double cosPhi) {
+		return cosPhi / Math.sqrt(1 - e2 * sinPhi * sinPhi);
+	}
+
+	protected double tsfn(double phi) {
+		double sinPhi = Math.sin(phi);
+		return Math.tan(QUARTER_PI - phi / 2) / Math.pow((1 - e * sinPhi) / (1 + e * sinPhi), e / 2);
+	}
+
+	protected double phi2(double ts) {
+		double phi = HALF_PI - 2 * Math.atan(ts);
+		for (int i = 0; i < 15; i++) {
+			double con = e * Math.sin(phi);
+			double next = HALF_PI - 2 * Math.atan(ts * Math.pow((1 - con) / (1 + con), e / 2));
+			boolean converged = Math.abs(next - phi) < 1e-14;
+			phi = next;
+			if (converged)
+				break;
+		}
+
+		return phi;
+	}
+
+}
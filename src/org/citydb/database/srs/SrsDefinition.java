@@ -0,0 +1,346 @@
+/*
+ * 3D City Database - The Open Source CityGML Database
+ * http://www.3dcitydb.org/
+ * 
+ * Copyright 2013 - 2016
+ * Chair of Geoinformatics
+ * Technical University of Munich, Germany
+ * https://www.gis.bgu.tum.de/
+ * 
+ * The 3D City Database is jointly developed with the following
+ * cooperation partners:
+ * 
+ * virtualcitySYSTEMS GmbH, Berlin <http://www.virtualcitysystems.de/>
+ * M.O.S.S. Computer Grafik Systeme GmbH, Taufkirchen <http://www.moss.de/>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.citydb.database.srs;
+
+import java.util.HashMap;
+
+/**
+ * Client-side subset of a PROJ.4 coordinate reference system definition.
+ * Supported are geographic coordinates and the projections tmerc, utm,
+ * merc, lcc and sterea together with 3 or 7 parameter datum shifts to WGS84.
+ * Definitions relying on anything else are rejected by {@link #parse(String)}
+ * so that the caller can fall back to the database.
+ */
+public final class SrsDefinition {
+	public static final SrsDefinition WGS84 = new SrsDefinition(Ellipsoid.WGS84, null, null, 0, 0, 1);
+	private static final HashMap<String, Datum> DATUMS = new HashMap<String, Datum>();
+
+	static {
+		DATUMS.put("WGS84", new Datum("WGS84", new double[]{0, 0, 0}));
+		DATUMS.put("NAD83", new Datum("GRS80", new double[]{0, 0, 0}));
+		DATUMS.put("potsdam", new Datum("bessel", new double[]{598.1, 73.7, 418.2, 0.202, 0.045, -2.455, 6.7}));
+		DATUMS.put("hermannskogel", new Datum("bessel", new double[]{577.326, 90.129, 463.919, 5.137, 1.474, 5.297, 2.4232}));
+		DATUMS.put("ire65", new Datum("mod_airy", new double[]{482.530, -130.596, 564.557, -1.042, -0.214, -0.631, 8.15}));
+		DATUMS.put("nzgd49", new Datum("intl", new double[]{59.47, -5.04, 187.44, 0.47, -0.1, 1.024, -4.5993}));
+		DATUMS.put("OSGB36", new Datum("airy", new double[]{446.448, -125.157, 542.060, 0.1502, 0.2470, 0.8421, -20.4894}));
+		DATUMS.put("GGRS87", new Datum("GRS80", new double[]{-199.87, 74.79, 246.62}));
+		DATUMS.put("carthage", new Datum("clrk80", new double[]{-263.0, 6.0, 431.0}));
+	}
+
+	private static final double SEC_TO_RAD = Math.PI / (180 * 3600);
+
+	private final Ellipsoid ellipsoid;
+	private final Projection projection;
+	private final double[] towgs84;
+	private final double x0;
+	private final double y0;
+	private final double toMeter;
+
+	private SrsDefinition(Ellipsoid ellipsoid, Projection projection, double[] towgs84, double x0, double y0, double toMeter) {
+		this.ellipsoid = ellipsoid;
+		this.projection = projection;
+		this.towgs84 = towgs84;
+		this.x0 = x0;
+		this.y0 = y0;
+		this.toMeter = toMeter;
+	}
+
+	public static SrsDefinition parse(String proj4) {
+		if (proj4 == null || proj4.trim().isEmpty())
+			return null;
+
+		HashMap<String, String> params = new HashMap<String, String>();
+		for (String token : proj4.trim().split("\\s+")) {
+			if (!token.startsWith("+"))
+				return null;
+
+			int index = token.indexOf('=');
+			if (index > 0)
+				params.put(token.substring(1, index), token.substring(index + 1));
+			else
+				params.put(token.substring(1), null);
+		}
+
+		try {
+			return parse(params);
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+
+	private static SrsDefinition parse(HashMap<String, String> params) {
+		String proj = params.remove("proj");
+		if (proj == null)
+			return null;
+
+		// parameters without effect on horizontal coordinates
+		params.remove("no_defs");
+		params.remove("wktext");
+		params.remove("type");
+		params.remove("vunits");
+		if (!removeIfEquals(params, "nadgrids", "@null")
+				|| !removeIfEquals(params, "axis", "enu")
+				|| !removeIfEquals(params, "pm", "greenwich"))
+			return null;
+
+		// ellipsoid and datum
+		Ellipsoid ellipsoid = null;
+		double[] towgs84 = null;
+
+		String datumName = params.remove("datum");
+		if (datumName != null) {
+			Datum datum = DATUMS.get(datumName);
+			if (datum == null)
+				return null;
+
+			ellipsoid = Ellipsoid.getEllipsoid(datum.ellipsoid);
+			towgs84 = datum.towgs84;
+		}
+
+		String ellpsName = params.remove("ellps");
+		if (ellpsName != null) {
+			ellipsoid = Ellipsoid.getEllipsoid(ellpsName);
+			if (ellipsoid == null)
+				return null;
+		}
+
+		String a = params.remove("a");
+		String b = params.remove("b");
+		String rf = params.remove("rf");
+		String r = params.remove("R");
+		if (r != null) {
+			double radius = Double.parseDouble(r);
+			ellipsoid = Ellipsoid.fromAxes(radius, radius);
+		} else if (a != null) {
+			if (b != null)
+				ellipsoid = Ellipsoid.fromAxes(Double.parseDouble(a), Double.parseDouble(b));
+			else if (rf != null)
+				ellipsoid = Ellipsoid.fromInverseFlattening(Double.parseDouble(a), Double.parseDouble(rf));
+			else
+				ellipsoid = Ellipsoid.fromAxes(Double.parseDouble(a), Double.parseDouble(a));
+		}
+
+		if (ellipsoid == null)
+			ellipsoid = Ellipsoid.WGS84;
+
+		String shift = params.remove("towgs84");
+		if (shift != null) {
+			String[] values = shift.split(",");
+			if (values.length != 3 && values.length != 7)
+				return null;
+
+			towgs84 = new double[values.length];
+			for (int i = 0; i < values.length; i++)
+				towgs84[i] = Double.parseDouble(values[i]);
+		}
+
+		if (towgs84 != null) {
+			boolean isZero = true;
+			for (double value : towgs84)
+				isZero &= value == 0;
+
+			if (isZero && ellipsoid.isSame(Ellipsoid.WGS84))
+				towgs84 = null;
+			else if (towgs84.length == 7) {
+				double[] tmp = towgs84.clone();
+				tmp[3] *= SEC_TO_RAD;
+				tmp[4] *= SEC_TO_RAD;
+				tmp[5] *= SEC_TO_RAD;
+				tmp[6] = 1 + tmp[6] * 1e-6;
+				towgs84 = tmp;
+			}
+		}
+
+		// units
+		double toMeter = 1;
+		String units = params.remove("units");
+		if (units != null) {
+			if (units.equals("ft"))
+				toMeter = 0.3048;
+			else if (units.equals("us-ft"))
+				toMeter = 0.3048006096012192;
+			else if (!units.equals("m"))
+				return null;
+		}
+
+		String toMeterValue = params.remove("to_meter");
+		if (toMeterValue != null)
+			toMeter = Double.parseDouble(toMeterValue);
+
+		// projection
+		double lon0 = Math.toRadians(getDouble(params, "lon_0", 0));
+		double lat0 = Math.toRadians(getDouble(params, "lat_0", 0));
+		double k0 = params.containsKey("k_0") ? getDouble(params, "k_0", 1) : getDouble(params, "k", 1);
+		params.remove("k");
+		double x0 = getDouble(params, "x_0", 0);
+		double y0 = getDouble(params, "y_0", 0);
+
+		Projection projection = null;
+		if (proj.equals("longlat") || proj.equals("latlong") || proj.equals("lonlat")) {
+			if (lon0 != 0 || lat0 != 0 || x0 != 0 || y0 != 0)
+				return null;
+		} else if (proj.equals("tmerc")) {
+			projection = new TransverseMercator(ellipsoid, lon0, lat0, k0);
+		} else if (proj.equals("utm")) {
+			String zone = params.remove("zone");
+			if (zone == null)
+				return null;
+
+			boolean south = params.containsKey("south");
+			params.remove("south");
+
+			lon0 = Math.toRadians((Integer.parseInt(zone) - 1) * 6 - 180 + 3);
+			projection = new TransverseMercator(ellipsoid, lon0, 0, 0.9996);
+			x0 = 500000;
+			y0 = south ? 10000000 : 0;
+		} else if (proj.equals("merc")) {
+			double latTs = Math.toRadians(getDouble(params, "lat_ts", 0));
+			projection = new Mercator(ellipsoid, lon0, latTs, k0);
+		} else if (proj.equals("lcc")) {
+			if (!params.containsKey("lat_1"))
+				return null;
+
+			double lat1 = Math.toRadians(getDouble(params, "lat_1", 0));
+			double lat2 = params.containsKey("lat_2") ? Math.toRadians(getDouble(params, "lat_2", 0)) : lat1;
+			if (!params.containsKey("lat_0") && lat1 == lat2)
+				lat0 = lat1;
+
+			projection = new LambertConformalConic(ellipsoid, lon0, lat0, lat1, lat2, k0);
+		} else if (proj.equals("sterea")) {
+			projection = new ObliqueStereographic(ellipsoid, lon0, lat0, k0);
+		} else
+			return null;
+
+		// reject definitions with parameters we do not understand
+		if (!params.isEmpty())
+			return null;
+
+		return new SrsDefinition(ellipsoid, projection, towgs84, x0, y0, toMeter);
+	}
+
+	public boolean isGeographic() {
+		return projection == null;
+	}
+
+	// coordinates in the units of this reference system (geographic in degrees) to WGS84 (lon, lat, h) in degrees
+	public void toWGS84(double[] coords) {
+		if (projection != null) {
+			coords[0] = coords[0] * toMeter - x0;
+			coords[1] = coords[1] * toMeter - y0;
+			projection.unproject(coords);
+		} else {
+			coords[0] = Math.toRadians(coords[0]);
+			coords[1] = Math.toRadians(coords[1]);
+		}
+
+		if (towgs84 != null) {
+			ellipsoid.toGeocentric(coords);
+			shiftToWGS84(coords);
+			Ellipsoid.WGS84.toGeodetic(coords);
+		}
+
+		coords[0] = Math.toDegrees(coords[0]);
+		coords[1] = Math.toDegrees(coords[1]);
+	}
+
+	// WGS84 (lon, lat, h) in degrees to coordinates in the units of this reference system
+	public void fromWGS84(double[] coords) {
+		coords[0] = Math.toRadians(coords[0]);
+		coords[1] = Math.toRadians(coords[1]);
+
+		if (towgs84 != null) {
+			Ellipsoid.WGS84.toGeocentric(coords);
+			shiftFromWGS84(coords);
+			ellipsoid.toGeodetic(coords);
+		}
+
+		if (projection != null) {
+			projection.project(coords);
+			coords[0] = (coords[0] + x0) / toMeter;
+			coords[1] = (coords[1] + y0) / toMeter;
+		} else {
+			coords[0] = Math.toDegrees(coords[0]);
+			coords[1] = Math.toDegrees(coords[1]);
+		}
+	}
+
+	private void shiftToWGS84(double[] coords) {
+		if (towgs84.length == 3) {
+			coords[0] += towgs84[0];
+			coords[1] += towgs84[1];
+			coords[2] += towgs84[2];
+		} else {
+			double x = coords[0], y = coords[1], z = coords[2];
+			double rx = towgs84[3], ry = towgs84[4], rz = towgs84[5], m = towgs84[6];
+
+			coords[0] = towgs84[0] + m * (x - rz * y + ry * z);
+			coords[1] = towgs84[1] + m * (rz * x + y - rx * z);
+			coords[2] = towgs84[2] + m * (-ry * x + rx * y + z);
+		}
+	}
+
+	private void shiftFromWGS84(double[] coords) {
+		if (towgs84.length == 3) {
+			coords[0] -= towgs84[0];
+			coords[1] -= towgs84[1];
+			coords[2] -= towgs84[2];
+		} else {
+			double rx = towgs84[3], ry = towgs84[4], rz = towgs84[5], m = towgs84[6];
+			double x = (coords[0] - towgs84[0]) / m;
+			double y = (coords[1] - towgs84[1]) / m;
+			double z = (coords[2] - towgs84[2]) / m;
+
+			coords[0] = x + rz * y - ry * z;
+			coords[1] = -rz * x + y + rx * z;
+			coords[2] = ry * x - rx * y + z;
+		}
+	}
+
+	private static double getDouble(HashMap<String, String> params, String key, double defaultValue) {
+		String value = params.remove(key);
+		return value != null ? Double.parseDouble(value) : defaultValue;
+	}
+
+	private static boolean removeIfEquals(HashMap<String, String> params, String key, String expected) {
+		if (!params.containsKey(key))
+			return true;
+
+		return expected.equalsIgnoreCase(params.remove(key));
+	}
+
+	private static final class Datum {
+		private final String ellipsoid;
+		private final double[] towgs84;
+
+		private Datum(String ellipsoid, double[] towgs84) {
+			this.ellipsoid = ellipsoid;
+			this.towgs84 = towgs84;
+		}
+	}
+
+}
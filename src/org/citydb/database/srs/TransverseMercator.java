@@ -0,0 +1,115 @@
+/*
+ * 3D City Database - The Open Source CityGML Database
+ * http://www.3dcitydb.org/
+ * 
+ * Copyright 2013 - 2016
+ * Chair of Geoinformatics
+ * Technical University of Munich, Germany
+ * https://www.gis.bgu.tum.de/
+ * 
+ * The 3D City Database is jointly developed with the following
+ * cooperation partners:
+ * 
+ * virtualcitySYSTEMS GmbH, Berlin <http://www.virtualcitysystems.de/>
+ * M.O.S.S. Computer Grafik Systeme GmbH, Taufkirchen <http://www.moss.de/>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.citydb.database.srs;
+
+// Krueger series to fourth order in the third flattening, see
+// C. F. F. Karney: Transverse Mercator with an accuracy of a few nanometers (2011)
+class TransverseMercator extends Projection {
+	private final double k0A;
+	private double xi0;
+	private final double[] alpha;
+	private final double[] beta;
+
+	TransverseMercator(Ellipsoid ellipsoid, double lon0, double lat0, double k0) {
+		super(ellipsoid, lon0);
+
+		double f = 1 - ellipsoid.getSemiMinorAxis() / a;
+		double n = f / (2 - f);
+		double n2 = n * n;
+		double n3 = n2 * n;
+		double n4 = n3 * n;
+
+		k0A = k0 * a / (1 + n) * (1 + n2 / 4 + n4 / 64);
+
+		alpha = new double[] {
+				n / 2 - 2 * n2 / 3 + 5 * n3 / 16 + 41 * n4 / 180,
+				13 * n2 / 48 - 3 * n3 / 5 + 557 * n4 / 1440,
+				61 * n3 / 240 - 103 * n4 / 140,
+				49561 * n4 / 161280
+		};
+
+		beta = new double[] {
+				n / 2 - 2 * n2 / 3 + 37 * n3 / 96 - n4 / 360,
+				n2 / 48 + n3 / 15 - 437 * n4 / 1440,
+				17 * n3 / 480 - 37 * n4 / 840,
+				4397 * n4 / 161280
+		};
+
+		// rectifying coordinate of the latitude of origin
+		double[] origin = new double[]{lon0, lat0};
+		xi0 = 0;
+		project(origin);
+		xi0 = origin[1] / k0A;
+	}
+
+	@Override
+	void project(double[] coords) {
+		double lon = adjustLongitude(coords[0] - lon0);
+		double sinLat = Math.sin(coords[1]);
+
+		double t = Math.sinh(atanh(sinLat) - e * atanh(e * sinLat));
+		double cosLon = Math.cos(lon);
+		double xiP = Math.atan2(t, cosLon);
+		double etaP = atanh(Math.sin(lon) / Math.sqrt(1 + t * t));
+
+		double xi = xiP;
+		double eta = etaP;
+		for (int j = 1; j <= alpha.length; j++) {
+			xi += alpha[j - 1] * Math.sin(2 * j * xiP) * Math.cosh(2 * j * etaP);
+			eta += alpha[j - 1] * Math.cos(2 * j * xiP) * Math.sinh(2 * j * etaP);
+		}
+
+		coords[0] = k0A * eta;
+		coords[1] = k0A * (xi - xi0);
+	}
+
+	@Override
+	void unproject(double[] coords) {
+		double xi = coords[1] / k0A + xi0;
+		double eta = coords[0] / k0A;
+
+		double xiP = xi;
+		double etaP = eta;
+		for (int j = 1; j <= beta.length; j++) {
+			xiP -= beta[j - 1] * Math.sin(2 * j * xi) * Math.cosh(2 * j * eta);
+			etaP -= beta[j - 1] * Math.cos(2 * j * xi) * Math.sinh(2 * j * eta);
+		}
+
+		// conformal latitude and longitude
+		double chi = Math.asin(Math.sin(xiP) / Math.cosh(etaP));
+		double lon = Math.atan2(Math.sinh(etaP), Math.cos(xiP));
+
+		coords[0] = adjustLongitude(lon + lon0);
+		coords[1] = phi2(Math.tan(QUARTER_PI - chi / 2));
+	}
+
+	private double atanh(double x) {
+		return 0.5 * Math.log((1 + x) / (1 - x));
+	}
+
+}
@@ -32,6 +32,8 @@ import java.awt.Dimension;
 import java.awt.Font;
 import java.awt.GridBagConstraints;
 import java.awt.GridBagLayout;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
 
@@ -44,6 +46,7 @@ import javax.swing.JPanel;
 import javax.swing.JProgressBar;
 import javax.swing.SwingConstants;
 import javax.swing.SwingUtilities;
+import javax.swing.Timer;
 
 import org.citydb.api.event.Event;
 import org.citydb.api.event.EventDispatcher;
@@ -57,6 +60,7 @@ import org.citydb.modules.common.event.ProgressBarEventType;
 import org.citydb.modules.common.event.StatusDialogMessage;
 import org.citydb.modules.common.event.StatusDialogProgressBar;
 import org.citydb.modules.common.event.StatusDialogTitle;
+import org.citydb.modules.common.metrics.Metrics;
 import org.citydb.util.gui.GuiUtil;
 
 @SuppressWarnings("serial")
@@ -77,8 +81,7 @@ public class ExportStatusDialog extends JDialog implements EventHandler {
 	private JProgressBar progressBar;
 	public JButton cancelButton;
 	
-	private long featureCounter;
-	private long textureCounter;
+	private Timer counterTimer;
 	private int progressBarCounter;
 	private volatile boolean acceptStatusUpdate = true;
 	private boolean showTileCounter;
@@ -159,8 +162,21 @@ public class ExportStatusDialog extends JDialog implements EventHandler {
 		pack();
 		progressBar.setIndeterminate(true);
 
+		// poll the counters of the running operation
+		final Metrics metrics = Metrics.getInstance();
+		counterTimer = new Timer(500, new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+				if (metrics.isRunning()) {
+					featureCounterLabel.setText(String.valueOf(metrics.getTopLevelFeatureCount()));
+					textureCounterLabel.setText(String.valueOf(metrics.getTextureImageCount()));
+				}
+			}
+		});
+		counterTimer.start();
+
 		addWindowListener(new WindowAdapter() {
 			public void windowClosed(WindowEvent e) {
+				counterTimer.stop();
 				eventDispatcher.removeEventHandler(ExportStatusDialog.this);
 			}
 		});
@@ -175,15 +191,8 @@ public class ExportStatusDialog extends JDialog implements EventHandler {
 
 		if (e.getEventType() == EventType.COUNTER) {
 			CounterEvent counter = (CounterEvent)e;
-			if (counter.getType() == CounterType.TOPLEVEL_FEATURE) {
-				featureCounter += counter.getCounter();
-				featureCounterLabel.setText(String.valueOf(featureCounter));
-			} else if (counter.getType() == CounterType.TEXTURE_IMAGE) {
-				textureCounter += counter.getCounter();
-				textureCounterLabel.setText(String.valueOf(textureCounter));
-			} else if (counter.getType() == CounterType.REMAINING_TILES && showTileCounter) {
+			if (counter.getType() == CounterType.REMAINING_TILES && showTileCounter)
 				tileCounterLabel.setText(String.valueOf(counter.getCounter()));
-			}
 		}
 
 		else if (e.getEventType() == EventType.INTERRUPT) {
@@ -29,8 +29,12 @@ package org.citydb.io;
 
 import java.io.File;
 import java.io.FilenameFilter;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Enumeration;
 import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
 import org.citydb.log.Logger;
 
@@ -103,6 +107,52 @@ public class DirectoryScanner {
 		return files;
 	}
 
+	public List<InputFile> getInputFiles(File[] baseDir) {
+		List<File> files = getFiles(baseDir);
+		List<InputFile> inputFiles = new ArrayList<InputFile>(files.size());
+		isScanning = true;
+
+		for (File file : files) {
+			if (!shouldRun)
+				break;
+
+			String filename = file.getName();
+			if (InputFile.isZipFile(filename))
+				addZipEntries(file, inputFiles);
+			else if (InputFile.isGZipFile(filename))
+				inputFiles.add(new GZipInputFile(file));
+			else
+				inputFiles.add(new RegularInputFile(file));
+		}
+
+		isScanning = false;
+		return inputFiles;
+	}
+
+	private void addZipEntries(File archive, List<InputFile> inputFiles) {
+		LOG.debug("Scanning archive '" + archive.toString() + "'.");
+
+		try (ZipFile zipFile = new ZipFile(archive)) {
+			Enumeration<? extends ZipEntry> entries = zipFile.entries();
+			while (shouldRun && entries.hasMoreElements()) {
+				ZipEntry entry = entries.nextElement();
+				if (entry.isDirectory())
+					continue;
+
+				// nested archives are not supported
+				String entryName = entry.getName();
+				String filename = entryName.substring(entryName.lastIndexOf('/') + 1);
+				if (filename.isEmpty() || InputFile.isZipFile(filename) || InputFile.isGZipFile(filename))
+					continue;
+
+				if (filenameFilter.accept(archive, filename))
+					inputFiles.add(new ZipEntryInputFile(archive, entryName));
+			}
+		} catch (IOException e) {
+			LOG.error("Failed to read archive '" + archive.toString() + "'.");
+		}
+	}
+
 	private void buildFileList(File file, List<File> files, boolean scanDir) {
 		if (!shouldRun)
 			return;
@@ -150,6 +200,12 @@ public class DirectoryScanner {
 	public static final class CityGMLFilenameFilter implements FilenameFilter {
 		public boolean accept(File dir, String name) {
 			name = name.toUpperCase();
+			if (name.endsWith(".ZIP"))
+				return true;
+
+			if (name.endsWith(".GZ"))
+				name = name.substring(0, name.length() - 3);
+
 			return (name.endsWith(".GML") ||
 					name.endsWith(".XML") ||
 					name.endsWith(".CITYGML"));
@@ -0,0 +1,169 @@
+/*
+ * 3D City Database - The Open Source CityGML Database
+ * http://www.3dcitydb.org/
+ * 
+ * Copyright 2013 - 2016
+ * Chair of Geoinformatics
+ * Technical University of Munich, Germany
+ * https://www.gis.bgu.tum.de/
+ * 
+ * The 3D City Database is jointly developed with the following
+ * cooperation partners:
+ * 
+ * virtualcitySYSTEMS GmbH, Berlin <http://www.virtualcitysystems.de/>
+ * M.O.S.S. Computer Grafik Systeme GmbH, Taufkirchen <http://www.moss.de/>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.citydb.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Reads the underlying stream on a separate thread into a bounded queue of 
+ * buffers. This way, expensive work such as inflating compressed input is 
+ * done concurrently to the consumer of the stream.
+ */
+public class ReadAheadInputStream extends InputStream {
+	private static final byte[] EOF = new byte[0];
+
+	private final InputStream stream;
+	private final BlockingQueue<byte[]> buffers;
+	private final Thread reader;
+
+	private volatile IOException exception;
+	private volatile boolean closed;
+	private boolean eof;
+	private byte[] buffer;
+	private int pos;
+
+	public ReadAheadInputStream(InputStream stream, final int bufferSize, int maxBuffers, String name) {
+		this.stream = stream;
+		buffers = new ArrayBlockingQueue<byte[]>(maxBuffers);
+
+		reader = new Thread(name) {
+			@Override
+			public void run() {
+				try {
+					int length;
+					do {
+						byte[] buffer = new byte[bufferSize];
+						length = fill(buffer);
+						if (length > 0)
+							buffers.put(length == bufferSize ? buffer : Arrays.copyOf(buffer, length));
+					} while (length == bufferSize && !closed);
+
+					buffers.put(EOF);
+				} catch (IOException e) {
+					exception = e;
+					try {
+						buffers.put(EOF);
+					} catch (InterruptedException ie) {
+						//
+					}
+				} catch (InterruptedException e) {
+					// the stream has been closed
+				}
+			}
+		};
+
+		reader.setDaemon(true);
+		reader.start();
+	}
+
+	private int fill(byte[] buffer) throws IOException {
+		int length = 0;
+		int read;
+		while (length < buffer.length && (read = stream.read(buffer, length, buffer.length - length)) != -1)
+			length += read;
+
+		return length;
+	}
+
+	private boolean nextBuffer() throws IOException {
+		if (eof)
+			return false;
+
+		if (closed)
+			throw new IOException("Stream closed.");
+
+		try {
+			buffer = buffers.take();
+			pos = 0;
+		} catch (InterruptedException e) {
+			throw new InterruptedIOException();
+		}
+
+		if (buffer == EOF) {
+			eof = true;
+			if (exception != null)
+				throw exception;
+
+			return false;
+		}
+
+		return true;
+	}
+
+	@Override
+	public int read() throws IOException {
+		if ((buffer == null || pos == buffer.length) && !nextBuffer())
+			return -1;
+
+		return buffer[pos++] & 0xff;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (len == 0)
+			return 0;
+
+		if ((buffer == null || pos == buffer.length) && !nextBuffer())
+			return -1;
+
+		int length = Math.min(len, buffer.length - pos);
+		System.arraycopy(buffer, pos, b, off, length);
+		pos += length;
+
+		return length;
+	}
+
+	@Override
+	public int available() throws IOException {
+		return buffer != null ? buffer.length - pos : 0;
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (closed)
+			return;
+
+		closed = true;
+		reader.interrupt();
+
+		try {
+			reader.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			buffers.clear();
+			stream.close();
+		}
+	}
+
+}
@@ -25,23 +25,38 @@
  * See the License for the specific language governing permissions and
  * limitations under the License.
  */
-package org.citydb.modules.common.event;
+package org.citydb.io;
 
-import java.util.HashMap;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 
-import org.citydb.api.event.Event;
-import org.citygml4j.model.citygml.CityGMLClass;
+public class RegularInputFile extends InputFile {
+	private final File file;
 
-public class FeatureCounterEvent extends Event {
-	private HashMap<CityGMLClass, Long> featureCounterMap;
+	public RegularInputFile(File file) {
+		this.file = file;
+	}
+
+	@Override
+	public File getFile() {
+		return file;
+	}
+
+	@Override
+	public String getImportPath() {
+		return file.getParent();
+	}
 
-	public FeatureCounterEvent(HashMap<CityGMLClass, Long> featureCounterMap, Object source) {
-		super(EventType.FEATURE_COUNTER, GLOBAL_CHANNEL, source);
-		this.featureCounterMap = featureCounterMap;
+	@Override
+	public String getSystemId() {
+		return file.toURI().normalize().toString();
 	}
 
-	public HashMap<CityGMLClass, Long> getCounter() {
-		return featureCounterMap;
+	@Override
+	public InputStream openStream() throws IOException {
+		return new FileInputStream(file);
 	}
 
 }
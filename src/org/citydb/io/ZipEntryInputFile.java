@@ -0,0 +1,151 @@
+/*
+ * 3D City Database - The Open Source CityGML Database
+ * http://www.3dcitydb.org/
+ * 
+ * Copyright 2013 - 2016
+ * Chair of Geoinformatics
+ * Technical University of Munich, Germany
+ * https://www.gis.bgu.tum.de/
+ * 
+ * The 3D City Database is jointly developed with the following
+ * cooperation partners:
+ * 
+ * virtualcitySYSTEMS GmbH, Berlin <http://www.virtualcitysystems.de/>
+ * M.O.S.S. Computer Grafik Systeme GmbH, Taufkirchen <http://www.moss.de/>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.citydb.io;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+public class ZipEntryInputFile extends InputFile {
+	private static final String JAR_SCHEME = "jar:";
+	private static final String ENTRY_SEPARATOR = "!/";
+
+	private final File archive;
+	private final String entryName;
+
+	public ZipEntryInputFile(File archive, String entryName) {
+		this.archive = archive;
+		this.entryName = entryName;
+	}
+
+	public File getArchive() {
+		return archive;
+	}
+
+	public String getEntryName() {
+		return entryName;
+	}
+
+	@Override
+	public File getFile() {
+		return new File(archive, entryName);
+	}
+
+	@Override
+	public String getImportPath() {
+		// relative references of the entry are resolved inside the archive
+		int index = entryName.lastIndexOf('/');
+		return JAR_SCHEME + archive.toURI().normalize().toString() + ENTRY_SEPARATOR + entryName.substring(0, index + 1);
+	}
+
+	@Override
+	public String getSystemId() {
+		return JAR_SCHEME + archive.toURI().normalize().toString() + ENTRY_SEPARATOR + encode(entryName);
+	}
+
+	@Override
+	public InputStream openStream() throws IOException {
+		final ZipFile zipFile = new ZipFile(archive);
+
+		try {
+			ZipEntry entry = zipFile.getEntry(entryName);
+			if (entry == null)
+				throw new FileNotFoundException("Failed to find entry '" + entryName + "' in archive '" + archive + "'.");
+
+			InputStream stream = new FilterInputStream(zipFile.getInputStream(entry)) {
+				@Override
+				public void close() throws IOException {
+					try {
+						super.close();
+					} finally {
+						zipFile.close();
+					}
+				}
+			};
+
+			// inflate the entry ahead of the parser on a separate thread
+			return new ReadAheadInputStream(stream, READ_AHEAD_BUFFER_SIZE, READ_AHEAD_BUFFERS, "zip_reader");
+		} catch (IOException e) {
+			zipFile.close();
+			throw e;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return archive.toString() + ENTRY_SEPARATOR + entryName;
+	}
+
+	public static boolean isEntryPath(String importPath) {
+		return importPath != null && importPath.startsWith(JAR_SCHEME);
+	}
+
+	public static String resolve(String importPath, String path) {
+		int index = importPath.indexOf(ENTRY_SEPARATOR) + ENTRY_SEPARATOR.length();
+
+		// normalize the path since entries are looked up by name
+		Deque<String> segments = new ArrayDeque<String>();
+		for (String segment : (importPath.substring(index) + path.replace('\\', '/')).split("/")) {
+			if (segment.isEmpty() || segment.equals("."))
+				continue;
+
+			if (segment.equals("..")) {
+				if (!segments.isEmpty())
+					segments.removeLast();
+			} else
+				segments.addLast(segment);
+		}
+
+		StringBuilder entryName = new StringBuilder();
+		for (String segment : segments) {
+			if (entryName.length() > 0)
+				entryName.append('/');
+
+			entryName.append(segment);
+		}
+
+		return importPath.substring(0, index) + encode(entryName.toString());
+	}
+
+	private static String encode(String entryName) {
+		try {
+			return new URI(null, null, entryName, null).toASCIIString();
+		} catch (URISyntaxException e) {
+			return entryName;
+		}
+	}
+
+}
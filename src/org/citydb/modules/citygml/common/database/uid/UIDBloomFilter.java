@@ -0,0 +1,120 @@
+/*
+ * 3D City Database - The Open Source CityGML Database
+ * http://www.3dcitydb.org/
+ * 
+ * Copyright 2013 - 2016
+ * Chair of Geoinformatics
+ * Technical University of Munich, Germany
+ * https://www.gis.bgu.tum.de/
+ * 
+ * The 3D City Database is jointly developed with the following
+ * cooperation partners:
+ * 
+ * virtualcitySYSTEMS GmbH, Berlin <http://www.virtualcitysystems.de/>
+ * M.O.S.S. Computer Grafik Systeme GmbH, Taufkirchen <http://www.moss.de/>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.citydb.modules.citygml.common.database.uid;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Concurrent Bloom filter on the gml:ids that have been handed over to the back-up
+ * of a {@link UIDCache}.
+ * 
+ * The filter never reports a false negative, so a key it rejects is guaranteed not
+ * to be in the back-up and the lookup can be skipped. Bits are set using CAS on a
+ * long array, and the bit positions are derived from a single 64-bit hash of the
+ * key by double hashing.
+ */
+final class UIDBloomFilter {
+	private static final double LN2 = Math.log(2);
+
+	private final AtomicLongArray words;
+	private final long bits;
+	private final int hashFunctions;
+	private final AtomicLong bitsSet = new AtomicLong();
+
+	UIDBloomFilter(long expectedEntries, double falsePositiveRate) {
+		long bits = (long)Math.ceil(-expectedEntries * Math.log(falsePositiveRate) / (LN2 * LN2));
+		int noOfWords = (int)Math.min(Integer.MAX_VALUE - 8, Math.max(1, (bits + 63) >>> 6));
+
+		words = new AtomicLongArray(noOfWords);
+		this.bits = (long)noOfWords << 6;
+		hashFunctions = Math.max(1, (int)Math.round((double)this.bits / expectedEntries * LN2));
+	}
+
+	void put(String key) {
+		long hash = hash(key);
+		int h1 = (int)hash;
+		int h2 = (int)(hash >>> 32);
+
+		for (int i = 0; i < hashFunctions; i++) {
+			long bit = ((h1 + (long)i * h2) & Long.MAX_VALUE) % bits;
+			int index = (int)(bit >>> 6);
+			long mask = 1L << bit;
+
+			for (;;) {
+				long word = words.get(index);
+				if ((word & mask) != 0)
+					break;
+
+				if (words.compareAndSet(index, word, word | mask)) {
+					bitsSet.incrementAndGet();
+					break;
+				}
+			}
+		}
+	}
+
+	boolean mightContain(String key) {
+		long hash = hash(key);
+		int h1 = (int)hash;
+		int h2 = (int)(hash >>> 32);
+
+		for (int i = 0; i < hashFunctions; i++) {
+			long bit = ((h1 + (long)i * h2) & Long.MAX_VALUE) % bits;
+			if ((words.get((int)(bit >>> 6)) & (1L << bit)) == 0)
+				return false;
+		}
+
+		return true;
+	}
+
+	double getExpectedFalsePositiveRate() {
+		return Math.pow((double)bitsSet.get() / bits, hashFunctions);
+	}
+
+	long getSizeInBytes() {
+		return bits >>> 3;
+	}
+
+	private long hash(String key) {
+		// FNV-1a followed by the MurmurHash3 finalizer
+		long hash = 0xcbf29ce484222325L;
+		for (int i = 0; i < key.length(); i++) {
+			hash ^= key.charAt(i);
+			hash *= 0x100000001b3L;
+		}
+
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+		hash *= 0xc4ceb9fe1a85ec53L;
+		hash ^= hash >>> 33;
+
+		return hash;
+	}
+}
@@ -28,11 +28,10 @@
 package org.citydb.modules.citygml.common.database.uid;
 
 import java.sql.SQLException;
-import java.util.Iterator;
-import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -43,15 +42,19 @@ public class UIDCache {
 	private final Logger LOG = Logger.getInstance();
 	
 	private final ConcurrentHashMap<String, UIDCacheEntry> map;
+	private final UIDReverseIndex reverseIndex;
 	private final UIDCachingModel cacheModel;
 	private final int capacity;
 	private final float drainFactor;
+	private final UIDBloomFilter backUpFilter;
 
 	private final ReentrantLock mainLock = new ReentrantLock(true);
 	private final Condition drainingDone = mainLock.newCondition();
 
 	private final AtomicBoolean isDraining = new AtomicBoolean(false);
 	private final AtomicInteger entries = new AtomicInteger(0);
+	private final AtomicLong skippedLookups = new AtomicLong(0);
+	private final AtomicLong falsePositives = new AtomicLong(0);
 	private volatile boolean backUp = false;
 
 	public UIDCache(
@@ -59,11 +62,27 @@ public class UIDCache {
 			int capacity,
 			float drainFactor,
 			int concurrencyLevel) {
+		this(cacheModel, capacity, drainFactor, concurrencyLevel, 0, 0);
+	}
+
+	public UIDCache(
+			UIDCachingModel cacheModel,
+			int capacity,
+			float drainFactor,
+			int concurrencyLevel,
+			long filterEntries,
+			double filterFalsePositiveRate) {
 		this.cacheModel = cacheModel;
 		this.capacity = capacity;
 		this.drainFactor = drainFactor;
 
 		map = new ConcurrentHashMap<String, UIDCacheEntry>(capacity, .75f, concurrencyLevel);
+		reverseIndex = new UIDReverseIndex(map, capacity, concurrencyLevel);
+
+		// keys are recorded upon insertion so that every key
+		// in the back-up has passed the filter before
+		backUpFilter = filterEntries > 0 && filterFalsePositiveRate > 0 && filterFalsePositiveRate < 1 ?
+				new UIDBloomFilter(Math.max(filterEntries, capacity), filterFalsePositiveRate) : null;
 	}
 
 	public void put(String key, long id, long rootId, boolean reverse, String mapping, CityGMLClass type) {
@@ -129,24 +148,21 @@ public class UIDCache {
 	}
 
 	private String lookupMap(long id, CityGMLClass type) {
-		Iterator<Map.Entry<String, UIDCacheEntry>> iter = map.entrySet().iterator();
-		while (iter.hasNext()) {
-			Map.Entry<String, UIDCacheEntry> entry = iter.next();
-			if (entry.getValue().getId() == id)
-				if (entry.getValue().getType().isInstance(type))
-					return entry.getKey();
-		}
-
-		return null;
+		return reverseIndex.lookup(id, type);
 	}
 
 	private UIDCacheEntry getOrCreate(String key, long id, long rootId, boolean reverse, String mapping, CityGMLClass type) {
 		UIDCacheEntry entry = map.get(key);
 		if (entry == null) {
+			if (backUpFilter != null)
+				backUpFilter.put(key);
+
 			UIDCacheEntry newEntry = new UIDCacheEntry(id, rootId, reverse, mapping, type);
 			entry = map.putIfAbsent(key, newEntry);
-			if (entry == null)
+			if (entry == null) {
 				entry = newEntry;
+				reverseIndex.put(id, key);
+			}
 		}
 
 		return entry;
@@ -161,8 +177,10 @@ public class UIDCache {
 			try {
 				cacheModel.drainToDB(map, drain);
 				entries.set(map.size());
+				reverseIndex.purge();
 
 				LOG.debug("Entries written to " + cacheModel.getType() + " cache.");
+				logFilterStatistics();
 
 			} catch (SQLException sqlEx) {
 				LOG.error("SQL error while writing entries to " + cacheModel.getType() + " cache: " + sqlEx.getMessage());
@@ -181,6 +199,12 @@ public class UIDCache {
 	}
 
 	private UIDCacheEntry lookupDB(String key) {
+		// definite misses of the filter need not be looked up
+		if (backUpFilter != null && !backUpFilter.mightContain(key)) {
+			skippedLookups.incrementAndGet();
+			return null;
+		}
+
 		if (isDraining.get()) {
 			final ReentrantLock lock = this.mainLock;
 			lock.lock();
@@ -196,7 +220,11 @@ public class UIDCache {
 		}
 
 		try {			
-			return cacheModel.lookupDB(key);
+			UIDCacheEntry entry = cacheModel.lookupDB(key);
+			if (entry == null && backUpFilter != null)
+				falsePositives.incrementAndGet();
+
+			return entry;
 		} catch (SQLException sqlEx) {
 			LOG.error("SQL error while querying the " + cacheModel.getType() + " cache: " + sqlEx.getMessage());
 			return null;
@@ -226,7 +254,22 @@ public class UIDCache {
 		} 
 	}
 	
+	private void logFilterStatistics() {
+		if (backUpFilter != null) {
+			long skipped = skippedLookups.get();
+			long misses = skipped + falsePositives.get();
+
+			LOG.debug("Bloom filter of " + cacheModel.getType() + " cache skipped " + skipped + " back-up lookup(s). " +
+					"False positive rate: " + String.format("%.4f", misses > 0 ? (double)falsePositives.get() / misses : 0) +
+					" (expected " + String.format("%.4f", backUpFilter.getExpectedFalsePositiveRate()) + ", " +
+					(backUpFilter.getSizeInBytes() >> 10) + " KB).");
+		}
+	}
+
 	public void shutdown() throws SQLException {
+		if (backUp)
+			logFilterStatistics();
+
 		cacheModel.close();
 	}
 }
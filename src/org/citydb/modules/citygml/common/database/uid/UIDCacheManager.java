@@ -54,6 +54,25 @@ public class UIDCacheManager {
 		));
 	}
 
+	public void initCache(
+		UIDCacheType cacheType,
+		UIDCachingModel model,
+		int cacheSize,
+		float drainFactor,
+		int concurrencyLevel,
+		long filterEntries,
+		double filterFalsePositiveRate) {
+
+		cacheMap.put(cacheType, new UIDCache(
+				model,
+				cacheSize,
+				drainFactor,
+				concurrencyLevel,
+				filterEntries,
+				filterFalsePositiveRate
+		));
+	}
+
 	public UIDCache getCache(CityGMLClass type) {
 		UIDCacheType cacheType;
 
@@ -0,0 +1,189 @@
+/*
+ * 3D City Database - The Open Source CityGML Database
+ * http://www.3dcitydb.org/
+ * 
+ * Copyright 2013 - 2016
+ * Chair of Geoinformatics
+ * Technical University of Munich, Germany
+ * https://www.gis.bgu.tum.de/
+ * 
+ * The 3D City Database is jointly developed with the following
+ * cooperation partners:
+ * 
+ * virtualcitySYSTEMS GmbH, Berlin <http://www.virtualcitysystems.de/>
+ * M.O.S.S. Computer Grafik Systeme GmbH, Taufkirchen <http://www.moss.de/>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.citydb.modules.citygml.common.database.uid;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.citygml4j.model.citygml.CityGMLClass;
+
+/**
+ * Reverse index from database ids to the gml:ids held by a {@link UIDCache}.
+ * 
+ * The index is a striped, open-addressing hash table on primitive long keys.
+ * Several gml:ids may share the same database id (e.g., features and appearances
+ * stored in different tables), so duplicate keys are allowed. Entries are validated
+ * against the cache map upon lookup, and stale entries of drained gml:ids are purged
+ * lazily or by calling {@link #purge()}.
+ */
+final class UIDReverseIndex {
+	private static final String REMOVED = new String("");
+	private static final float LOAD_FACTOR = 0.5f;
+
+	private final ConcurrentHashMap<String, UIDCacheEntry> map;
+	private final Segment[] segments;
+	private final int segmentMask;
+
+	UIDReverseIndex(ConcurrentHashMap<String, UIDCacheEntry> map, int capacity, int concurrencyLevel) {
+		this.map = map;
+
+		int noOfSegments = 1;
+		while (noOfSegments < concurrencyLevel * 4)
+			noOfSegments <<= 1;
+
+		segments = new Segment[noOfSegments];
+		segmentMask = noOfSegments - 1;
+
+		int segmentCapacity = Math.max(16, (int)(capacity / noOfSegments / LOAD_FACTOR));
+		for (int i = 0; i < noOfSegments; i++)
+			segments[i] = new Segment(segmentCapacity);
+	}
+
+	void put(long id, String key) {
+		long hash = hash(id);
+		segments[(int)(hash >>> 32) & segmentMask].put(id, key, (int)hash);
+	}
+
+	String lookup(long id, CityGMLClass type) {
+		long hash = hash(id);
+		return segments[(int)(hash >>> 32) & segmentMask].lookup(id, type, (int)hash);
+	}
+
+	void purge() {
+		for (Segment segment : segments)
+			segment.purge();
+	}
+
+	private boolean isValid(long id, String key) {
+		UIDCacheEntry entry = map.get(key);
+		return entry != null && entry.getId() == id;
+	}
+
+	private static long hash(long id) {
+		id ^= id >>> 33;
+		id *= 0xff51afd7ed558ccdL;
+		id ^= id >>> 33;
+		id *= 0xc4ceb9fe1a85ec53L;
+		id ^= id >>> 33;
+		return id;
+	}
+
+	private final class Segment {
+		private long[] ids;
+		private String[] keys;
+		private int used;
+
+		Segment(int capacity) {
+			int size = 1;
+			while (size < capacity)
+				size <<= 1;
+
+			ids = new long[size];
+			keys = new String[size];
+		}
+
+		synchronized void put(long id, String key, int hash) {
+			if (used + 1 > keys.length * LOAD_FACTOR)
+				rehash();
+
+			int mask = keys.length - 1;
+			int index = hash & mask;
+
+			while (keys[index] != null)
+				index = (index + 1) & mask;
+
+			ids[index] = id;
+			keys[index] = key;
+			used++;
+		}
+
+		synchronized String lookup(long id, CityGMLClass type, int hash) {
+			int mask = keys.length - 1;
+			int index = hash & mask;
+
+			String key;
+			while ((key = keys[index]) != null) {
+				if (key != REMOVED && ids[index] == id) {
+					UIDCacheEntry entry = map.get(key);
+					if (entry == null || entry.getId() != id)
+						keys[index] = REMOVED;
+					else if (entry.getType().isInstance(type))
+						return key;
+				}
+
+				index = (index + 1) & mask;
+			}
+
+			return null;
+		}
+
+		synchronized void purge() {
+			for (int i = 0; i < keys.length; i++) {
+				String key = keys[i];
+				if (key != null && key != REMOVED && !isValid(ids[i], key))
+					keys[i] = REMOVED;
+			}
+
+			rehash();
+		}
+
+		private void rehash() {
+			long[] oldIds = ids;
+			String[] oldKeys = keys;
+
+			int live = 0;
+			for (String key : oldKeys)
+				if (key != null && key != REMOVED)
+					live++;
+
+			// grow the table only if live entries fill it up
+			int size = oldKeys.length;
+			if (live + 1 > size * LOAD_FACTOR / 2)
+				size <<= 1;
+
+			ids = new long[size];
+			keys = new String[size];
+			used = 0;
+
+			int mask = size - 1;
+			for (int i = 0; i < oldKeys.length; i++) {
+				String key = oldKeys[i];
+				if (key == null || key == REMOVED)
+					continue;
+
+				int index = (int)hash(oldIds[i]) & mask;
+				while (keys[index] != null)
+					index = (index + 1) & mask;
+
+				ids[index] = oldIds[i];
+				keys[index] = key;
+				used++;
+			}
+		}
+	}
+
+}
@@ -60,14 +60,13 @@ import org.citydb.modules.citygml.exporter.database.content.DBTunnel;
 import org.citydb.modules.citygml.exporter.database.content.DBWaterBody;
 import org.citydb.modules.citygml.exporter.util.FeatureProcessException;
 import org.citydb.modules.citygml.exporter.util.FeatureProcessor;
-import org.citydb.modules.common.event.CounterEvent;
-import org.citydb.modules.common.event.CounterType;
 import org.citydb.modules.common.event.EventType;
-import org.citydb.modules.common.event.FeatureCounterEvent;
-import org.citydb.modules.common.event.GeometryCounterEvent;
 import org.citydb.modules.common.event.InterruptEvent;
 import org.citydb.modules.common.event.InterruptReason;
 import org.citydb.modules.common.filter.ExportFilter;
+import org.citydb.modules.common.metrics.LatencyHistogram;
+import org.citydb.modules.common.metrics.Metrics;
+import org.citydb.util.IdBitmap;
 import org.citygml4j.builder.jaxb.JAXBBuilder;
 import org.xml.sax.SAXException;
 
@@ -83,11 +82,13 @@ public class DBExportWorker extends Worker<DBSplittingResult> implements EventHa
 	private final UIDCacheManager uidCacheManager;
 	private final CacheTableManager cacheTableManager;
 	private final ExportFilter exportFilter;
+	private final IdBitmap globalAppearanceSurfaces;
 	private final Config config;
 	private Connection connection;	
 	private DBExporterManager dbExporterManager;
 	private final EventDispatcher eventDispatcher;
-	private int exportCounter = 0;
+	private final Metrics metrics;
+	private final LatencyHistogram featureLatency;
 
 	public DBExportWorker(DatabaseConnectionPool dbConnectionPool,
 			JAXBBuilder jaxbBuilder,
@@ -96,6 +97,7 @@ public class DBExportWorker extends Worker<DBSplittingResult> implements EventHa
 			UIDCacheManager uidCacheManager,
 			CacheTableManager cacheTableManager,
 			ExportFilter exportFilter,
+			IdBitmap globalAppearanceSurfaces,
 			Config config,
 			EventDispatcher eventDispatcher) throws SQLException, SAXException {
 		this.dbConnectionPool = dbConnectionPool;
@@ -105,8 +107,13 @@ public class DBExportWorker extends Worker<DBSplittingResult> implements EventHa
 		this.uidCacheManager = uidCacheManager;
 		this.cacheTableManager = cacheTableManager;
 		this.exportFilter = exportFilter;
+		this.globalAppearanceSurfaces = globalAppearanceSurfaces;
 		this.config = config;
 		this.eventDispatcher = eventDispatcher;
+
+		metrics = Metrics.getInstance();
+		featureLatency = metrics.getLatencyHistogram("export.feature");
+
 		init();
 	}
 
@@ -129,6 +136,7 @@ public class DBExportWorker extends Worker<DBSplittingResult> implements EventHa
 				uidCacheManager,
 				cacheTableManager,
 				exportFilter,
+				globalAppearanceSurfaces,
 				config,
 				eventDispatcher);
 
@@ -177,10 +185,6 @@ public class DBExportWorker extends Worker<DBSplittingResult> implements EventHa
 			} catch (SQLException e) {
 				//
 			}
-
-			eventDispatcher.triggerEvent(new CounterEvent(CounterType.TOPLEVEL_FEATURE, exportCounter, this));
-			eventDispatcher.triggerEvent(new FeatureCounterEvent(dbExporterManager.getFeatureCounter(), this));
-			eventDispatcher.triggerEvent(new GeometryCounterEvent(dbExporterManager.getGeometryCounter(), this));
 		} finally {
 			if (connection != null) {
 				try {
@@ -197,6 +201,7 @@ public class DBExportWorker extends Worker<DBSplittingResult> implements EventHa
 	private void doWork(DBSplittingResult work) {
 		final ReentrantLock runLock = this.runLock;
 		runLock.lock();
+		long start = System.nanoTime();
 
 		try {
 			if (!shouldWork)
@@ -284,12 +289,7 @@ public class DBExportWorker extends Worker<DBSplittingResult> implements EventHa
 			}
 
 			if (success)
-				++exportCounter;
-
-			if (exportCounter == 20) {
-				eventDispatcher.triggerEvent(new CounterEvent(CounterType.TOPLEVEL_FEATURE, exportCounter, this));
-				exportCounter = 0;
-			}
+				metrics.updateTopLevelFeatureCounter(1);
 
 		} catch (SQLException e) {
 			eventDispatcher.triggerSyncEvent(new InterruptEvent(InterruptReason.SQL_ERROR, "Aborting export due to SQL errors.", LogLevel.WARN, e, eventChannel, this));
@@ -299,6 +299,7 @@ public class DBExportWorker extends Worker<DBSplittingResult> implements EventHa
 			// this is to catch general exceptions that may occur during the export
 			eventDispatcher.triggerSyncEvent(new InterruptEvent(InterruptReason.UNKNOWN_ERROR, "Aborting due to an unexpected " + e.getClass().getName() + " error.", LogLevel.ERROR, e, eventChannel, this));
 		} finally {
+			featureLatency.record(System.nanoTime() - start);
 			runLock.unlock();
 		}
 	}
@@ -42,6 +42,7 @@ import org.citydb.modules.citygml.common.database.xlink.DBXlink;
 import org.citydb.modules.citygml.exporter.database.content.DBSplittingResult;
 import org.citydb.modules.citygml.exporter.util.FeatureProcessorFactory;
 import org.citydb.modules.common.filter.ExportFilter;
+import org.citydb.util.IdBitmap;
 import org.citygml4j.builder.jaxb.JAXBBuilder;
 import org.xml.sax.SAXException;
 
@@ -55,6 +56,7 @@ public class DBExportWorkerFactory implements WorkerFactory<DBSplittingResult> {
 	private final UIDCacheManager uidCacheManager;
 	private final CacheTableManager cacheTableManager;
 	private final ExportFilter exportFilter;
+	private final IdBitmap globalAppearanceSurfaces;
 	private final Config config;
 	private final EventDispatcher eventDispatcher;
 
@@ -66,6 +68,7 @@ public class DBExportWorkerFactory implements WorkerFactory<DBSplittingResult> {
 			UIDCacheManager uidCacheManager,
 			CacheTableManager cacheTableManager,
 			ExportFilter exportFilter,
+			IdBitmap globalAppearanceSurfaces,
 			Config config,
 			EventDispatcher eventDispatcher) {
 		this.dbConnectionPool = dbConnectionPool;
@@ -75,6 +78,7 @@ public class DBExportWorkerFactory implements WorkerFactory<DBSplittingResult> {
 		this.uidCacheManager = uidCacheManager;
 		this.cacheTableManager = cacheTableManager;
 		this.exportFilter = exportFilter;
+		this.globalAppearanceSurfaces = globalAppearanceSurfaces;
 		this.config = config;
 		this.eventDispatcher = eventDispatcher;
 	}
@@ -92,6 +96,7 @@ public class DBExportWorkerFactory implements WorkerFactory<DBSplittingResult> {
 					uidCacheManager,
 					cacheTableManager,
 					exportFilter,
+					globalAppearanceSurfaces,
 					config,
 					eventDispatcher);
 		} catch (SQLException e) {
@@ -28,18 +28,21 @@
 package org.citydb.modules.citygml.exporter.controller;
 
 import java.io.File;
-import java.io.FileOutputStream;
-import java.io.IOException;
-import java.io.OutputStreamWriter;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.EnumMap;
-import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
-import org.citydb.api.concurrent.PoolSizeAdaptationStrategy;
-import org.citydb.api.concurrent.SingleWorkerPool;
-import org.citydb.api.concurrent.WorkerPool;
 import org.citydb.api.database.DatabaseSrs;
 import org.citydb.api.event.Event;
 import org.citydb.api.event.EventDispatcher;
@@ -55,43 +58,24 @@ import org.citydb.config.project.filter.TilingMode;
 import org.citydb.database.DatabaseConnectionPool;
 import org.citydb.database.IndexStatusInfo.IndexType;
 import org.citydb.log.Logger;
-import org.citydb.modules.citygml.common.database.cache.CacheTableManager;
-import org.citydb.modules.citygml.common.database.uid.UIDCacheManager;
-import org.citydb.modules.citygml.common.database.uid.UIDCacheType;
-import org.citydb.modules.citygml.common.database.xlink.DBXlink;
-import org.citydb.modules.citygml.exporter.concurrent.DBExportWorkerFactory;
-import org.citydb.modules.citygml.exporter.concurrent.DBExportXlinkWorkerFactory;
-import org.citydb.modules.citygml.exporter.database.content.DBSplitter;
-import org.citydb.modules.citygml.exporter.database.content.DBSplittingResult;
-import org.citydb.modules.citygml.exporter.database.uid.FeatureGmlIdCache;
-import org.citydb.modules.citygml.exporter.database.uid.GeometryGmlIdCache;
-import org.citydb.modules.citygml.exporter.util.FeatureWriterFactory;
-import org.citydb.modules.common.concurrent.IOWriterWorkerFactory;
 import org.citydb.modules.common.event.CounterEvent;
 import org.citydb.modules.common.event.CounterType;
 import org.citydb.modules.common.event.EventType;
-import org.citydb.modules.common.event.FeatureCounterEvent;
-import org.citydb.modules.common.event.GeometryCounterEvent;
 import org.citydb.modules.common.event.InterruptEvent;
 import org.citydb.modules.common.event.StatusDialogMessage;
 import org.citydb.modules.common.event.StatusDialogTitle;
 import org.citydb.modules.common.filter.ExportFilter;
+import org.citydb.modules.common.metrics.Metrics;
+import org.citydb.util.IdBitmap;
 import org.citydb.util.Util;
 import org.citygml4j.builder.jaxb.JAXBBuilder;
-import org.citygml4j.builder.jaxb.xml.io.writer.JAXBModelWriter;
-import org.citygml4j.builder.jaxb.xml.io.writer.JAXBOutputFactory;
 import org.citygml4j.model.citygml.CityGMLClass;
-import org.citygml4j.model.gml.GMLClass;
 import org.citygml4j.model.module.Module;
 import org.citygml4j.model.module.ModuleContext;
 import org.citygml4j.model.module.citygml.CityGMLModule;
 import org.citygml4j.model.module.citygml.CityGMLModuleType;
 import org.citygml4j.model.module.citygml.CityGMLVersion;
-import org.citygml4j.util.xml.SAXEventBuffer;
 import org.citygml4j.util.xml.SAXWriter;
-import org.citygml4j.xml.io.writer.CityGMLWriteException;
-import org.citygml4j.xml.io.writer.CityModelInfo;
-import org.xml.sax.SAXException;
 
 public class Exporter implements EventHandler {
 	private final Logger LOG = Logger.getInstance();
@@ -100,23 +84,22 @@ public class Exporter implements EventHandler {
 	private final DatabaseConnectionPool dbPool;
 	private final Config config;
 	private final EventDispatcher eventDispatcher;
-	private DBSplitter dbSplitter;
+	private final List<TileExporter> activeTiles = new CopyOnWriteArrayList<TileExporter>();
 
 	private volatile boolean shouldRun = true;
 	private AtomicBoolean isInterrupted = new AtomicBoolean(false);
 
-	private WorkerPool<DBSplittingResult> dbWorkerPool;
-	private SingleWorkerPool<SAXEventBuffer> ioWriterPool;
-	private WorkerPool<DBXlink> xlinkExporterPool;
-	private CacheTableManager cacheTableManager;
-	private UIDCacheManager uidCacheManager;
 	private ExportFilter exportFilter;
 	private boolean useTiling;
+	private Tiling tiling;
+	private ModuleContext moduleContext;
+	private String fileName;
+	private String folderName;
+	private String fileExtension;
+	private AtomicInteger remainingTiles;
+	private IdBitmap globalAppearanceSurfaces;
 
-	private EnumMap<CityGMLClass, Long> totalFeatureCounterMap;
-	private EnumMap<GMLClass, Long> totalGeometryCounterMap;
-	private EnumMap<CityGMLClass, Long> featureCounterMap;
-	private EnumMap<GMLClass, Long> geometryCounterMap;
+	private final Metrics metrics;
 
 	public Exporter(JAXBBuilder jaxbBuilder, DatabaseConnectionPool dbPool, Config config, EventDispatcher eventDispatcher) {
 		this.jaxbBuilder = jaxbBuilder;
@@ -124,10 +107,7 @@ public class Exporter implements EventHandler {
 		this.config = config;
 		this.eventDispatcher = eventDispatcher;
 
-		featureCounterMap = new EnumMap<CityGMLClass, Long>(CityGMLClass.class);
-		geometryCounterMap = new EnumMap<GMLClass, Long>(GMLClass.class);
-		totalFeatureCounterMap = new EnumMap<CityGMLClass, Long>(CityGMLClass.class);
-		totalGeometryCounterMap = new EnumMap<GMLClass, Long>(GMLClass.class);
+		metrics = Metrics.getInstance();
 	}
 
 	public void cleanup() {
@@ -135,9 +115,16 @@ public class Exporter implements EventHandler {
 	}
 
 	public boolean doProcess() throws CityGMLExportException {
+		metrics.start("Export");
+		try {
+			return doExport();
+		} finally {
+			metrics.stop();
+		}
+	}
+
+	private boolean doExport() throws CityGMLExportException {
 		// adding listeners
-		eventDispatcher.addEventHandler(EventType.FEATURE_COUNTER, this);
-		eventDispatcher.addEventHandler(EventType.GEOMETRY_COUNTER, this);
 		eventDispatcher.addEventHandler(EventType.INTERRUPT, this);
 
 		// checking workspace
@@ -147,31 +134,9 @@ public class Exporter implements EventHandler {
 				!dbPool.getActiveDatabaseAdapter().getWorkspaceManager().existsWorkspace(workspace, true))
 			return false;
 
-		// prepare SAX writer
-		SAXWriter saxWriter = new SAXWriter();
-		saxWriter.setWriteEncoding(true);
-		saxWriter.setIndentString("  ");
-		saxWriter.setHeaderComment("Written by " + this.getClass().getPackage().getImplementationTitle() + ", version \"" +
-				this.getClass().getPackage().getImplementationVersion() + '"', 
-				this.getClass().getPackage().getImplementationVendor());
-
 		// set CityGML prefixes and schema locations
 		CityGMLVersion version = Util.toCityGMLVersion(config.getProject().getExporter().getCityGMLVersion());
-		ModuleContext moduleContext = new ModuleContext(version);
-		saxWriter.setDefaultNamespace(moduleContext.getModule(CityGMLModuleType.CORE).getNamespaceURI());
-
-		for (Module module : moduleContext.getModules()) {
-			if (module.getType() == CityGMLModuleType.CORE)
-				continue;
-
-			if (!config.getProject().getExporter().getAppearances().isSetExportAppearance() 
-					&& module.getType() == CityGMLModuleType.APPEARANCE)
-				continue;
-
-			saxWriter.setPrefix(module.getNamespacePrefix(), module.getNamespaceURI());
-			if (module instanceof CityGMLModule)
-				saxWriter.setSchemaLocation(module.getNamespaceURI(), module.getSchemaLocation());
-		}
+		moduleContext = new ModuleContext(version);
 
 		// set target reference system for export
 		DatabaseSrs targetSRS = config.getProject().getExporter().getTargetSRS();
@@ -216,23 +181,45 @@ public class Exporter implements EventHandler {
 		// getting export filter
 		exportFilter = new ExportFilter(config);
 
+		// load the textured surface geometries of global appearances once for all tiles
+		if (config.getInternal().isExportGlobalAppearances()) {
+			try {
+				// restrict the surfaces to the features selected by the bbox and gml:id filters
+				BoundingBox bbox = exportFilter.getBoundingBoxFilter().getFilterState();
+				if (bbox != null) {
+					DatabaseSrs dbSrs = dbPool.getActiveDatabaseAdapter().getConnectionMetaData().getReferenceSystem();
+					if (!bbox.getSrs().isSupported())
+						bbox = null;
+					else if (bbox.getSrs().getSrid() != dbSrs.getSrid())
+						bbox = dbPool.getActiveDatabaseAdapter().getUtil().transformBoundingBox(bbox, bbox.getSrs(), dbSrs);
+				}
+
+				globalAppearanceSurfaces = dbPool.getActiveDatabaseAdapter().getUtil().getGlobalAppearanceSurfaceGeometryIds(bbox, 
+						exportFilter.getGmlIdFilter().getFilterState(), workspace);
+				LOG.debug("Loaded " + globalAppearanceSurfaces.getCardinality() + " textured surface geometries of global appearances (" 
+						+ (globalAppearanceSurfaces.getSizeInBytes() >> 10) + " KB).");
+			} catch (SQLException e) {
+				throw new CityGMLExportException("Database error while querying the surface geometries of global appearances.", e);
+			}
+		}
+
 		// cache gml:ids of city objects in case we have to export groups
 		config.getInternal().setRegisterGmlIdInCache((!exportFilter.getFeatureClassFilter().isActive() 
 				|| !exportFilter.getFeatureClassFilter().filter(CityGMLClass.CITY_OBJECT_GROUP))
 				&& !config.getProject().getExporter().getCityObjectGroup().isExportMemberAsXLinks());
 
 		// bounding box config
-		Tiling tiling = config.getProject().getExporter().getFilter().getComplexFilter().getTiledBoundingBox().getTiling();
+		tiling = config.getProject().getExporter().getFilter().getComplexFilter().getTiledBoundingBox().getTiling();
 		useTiling = exportFilter.getBoundingBoxFilter().isActive() && tiling.getMode() != TilingMode.NO_TILING;
 		int rows = useTiling ? tiling.getRows() : 1;  
 		int columns = useTiling ? tiling.getColumns() : 1;
 		
 		// prepare files and folders
 		File exportFile = new File(config.getInternal().getExportFileName());
-		String fileName = exportFile.getName();
-		String folderName = exportFile.getAbsoluteFile().getParent();
+		fileName = exportFile.getName();
+		folderName = exportFile.getAbsoluteFile().getParent();
 
-		String fileExtension = Util.getFileExtension(fileName);		
+		fileExtension = Util.getFileExtension(fileName);		
 		if (fileExtension == null)
 			fileExtension = "gml";
 		else
@@ -242,355 +229,308 @@ public class Exporter implements EventHandler {
 		if (!folder.exists() && !folder.mkdirs())
 			throw new CityGMLExportException("Failed to create folder '" + folderName + "'.");
 
-		int remainingTiles = rows * columns;
-		long start = System.currentTimeMillis();
-
-		for (int i = 0; shouldRun && i < rows; i++) {
-			for (int j = 0; shouldRun && j < columns; j++) {
+		// thread budget of the export
+		int minThreads = config.getProject().getExporter().getResources().getThreadPool().getDefaultPool().getMinThreads();
+		int maxThreads = config.getProject().getExporter().getResources().getThreadPool().getDefaultPool().getMaxThreads();
 
-				try {
-					File file = null;
-
-					if (useTiling) {
-						exportFilter.getBoundingBoxFilter().setActiveTile(i, j);
-
-						// create suffix for folderName and fileName
-						TileSuffixMode suffixMode = tiling.getTilePathSuffix();
-						String suffix = "";
-
-						BoundingBox bbox = exportFilter.getBoundingBoxFilter().getFilterState();
-						double minX = bbox.getLowerCorner().getX();
-						double minY = bbox.getLowerCorner().getY();
-						double maxX = bbox.getUpperCorner().getX();
-						double maxY = bbox.getUpperCorner().getY();
-
-						switch (suffixMode) {
-						case XMIN_YMIN:
-							suffix = String.valueOf(minX) + '_' + String.valueOf(minY);
-							break;
-						case XMAX_YMIN:
-							suffix = String.valueOf(maxX) + '_' + String.valueOf(minY);
-							break;
-						case XMIN_YMAX:
-							suffix = String.valueOf(minX) + '_' + String.valueOf(maxY);
-							break;
-						case XMAX_YMAX:
-							suffix = String.valueOf(maxX) + '_' + String.valueOf(maxY);
-							break;
-						case XMIN_YMIN_XMAX_YMAX:
-							suffix = String.valueOf(minX) + '_' + String.valueOf(minY) + '_' + String.valueOf(maxX) + '_' + String.valueOf(maxY);
-							break;
-						default:
-							suffix = String.valueOf(i) + '_' + String.valueOf(j);
-						}
-
-						File subfolder = new File(folderName, tiling.getTilePath() + '_'  + suffix);
-						if (!subfolder.exists() && !subfolder.mkdirs())
-							throw new CityGMLExportException("Failed to create tiling subfolder '" + subfolder + "'.");
+		// export several tiles concurrently
+		int concurrentTiles = Math.min(config.getProject().getExporter().getResources().getConcurrentTiles(), rows * columns);
+		remainingTiles = new AtomicInteger(rows * columns);
+		long start = System.currentTimeMillis();
 
-						if (tiling.getTileNameSuffix() == TileNameSuffixMode.SAME_AS_PATH)
-							file = new File(subfolder, fileName + '_'  + suffix + '.' + fileExtension);
-						else // no suffix for filename
-							file = new File(subfolder, fileName + '.' + fileExtension);
+		if (concurrentTiles > 1) {
+			LOG.info("Exporting " + concurrentTiles + " tiles concurrently.");
+			doConcurrentExport(rows, columns, concurrentTiles, minThreads, maxThreads);
+		} else {
+			for (int i = 0; shouldRun && i < rows; i++) {
+				for (int j = 0; shouldRun && j < columns; j++) {
+					EnumMap<CityGMLClass, Long> previousCounterMap = metrics.getFeatureCounter();
+					long geometryObjects = metrics.getGeometryObjectCount();
+
+					exportTile(i, j, config, exportFilter, minThreads, maxThreads);
+
+					// show exported features of this tile
+					EnumMap<CityGMLClass, Long> featureCounterMap = metrics.getFeatureCounter();
+					for (CityGMLClass type : previousCounterMap.keySet()) {
+						long counter = featureCounterMap.get(type) - previousCounterMap.get(type);
+						if (counter != 0)
+							featureCounterMap.put(type, counter);
+						else
+							featureCounterMap.remove(type);
 					}
 
-					else // no tiling
-						file = new File(folderName, fileName + '.' + fileExtension);
-
-					config.getInternal().setExportFileName(file.getAbsolutePath());
-					File path = new File(file.getAbsolutePath());
-					config.getInternal().setExportPath(path.getParent());
-
-					eventDispatcher.triggerEvent(new StatusDialogMessage(Language.I18N.getString("export.dialog.cityObj.msg"), this));
-					eventDispatcher.triggerEvent(new StatusDialogTitle(file.getName(), this));
-					eventDispatcher.triggerEvent(new CounterEvent(CounterType.REMAINING_TILES, --remainingTiles, this));
+					if (!featureCounterMap.isEmpty()) {
+						LOG.info("Exported CityGML features:");
+						for (CityGMLClass type : featureCounterMap.keySet())
+							LOG.info(type + ": " + featureCounterMap.get(type));
+					}
 
-					// checking export path for texture images
-					if (config.getProject().getExporter().getAppearances().isSetExportAppearance()) {
-						String textureExportPath = null;
-						boolean isRelative = config.getProject().getExporter().getAppearances().getTexturePath().isRelative();
+					geometryObjects = metrics.getGeometryObjectCount() - geometryObjects;
+					if (geometryObjects != 0)
+						LOG.info("Processed geometry objects: " + geometryObjects);
+				}
+			}
+		}
 
-						if (isRelative)
-							textureExportPath = config.getProject().getExporter().getAppearances().getTexturePath().getRelativePath();
-						else
-							textureExportPath = config.getProject().getExporter().getAppearances().getTexturePath().getAbsolutePath();
+		// show totally exported features
+		if (useTiling && (rows > 1 || columns > 1)) {
+			EnumMap<CityGMLClass, Long> totalFeatureCounterMap = metrics.getFeatureCounter();
+			if (!totalFeatureCounterMap.isEmpty()) {
+				LOG.info("Totally exported CityGML features:");
+				for (CityGMLClass type : totalFeatureCounterMap.keySet())
+					LOG.info(type + ": " + totalFeatureCounterMap.get(type));
+			}
 
-						if (textureExportPath != null && textureExportPath.length() > 0) {
-							File tmp = new File(textureExportPath);
-							textureExportPath = tmp.getPath();
+			long geometryObjects = metrics.getGeometryObjectCount();
+			if (geometryObjects != 0)
+				LOG.info("Total processed geometry objects: " + geometryObjects);
+		}
 
-							if (isRelative) {
-								File exportPath = new File(path.getParent(), textureExportPath);
+		if (shouldRun)
+			LOG.info("Total export time: " + Util.formatElapsedTime(System.currentTimeMillis() - start) + ".");
 
-								if (exportPath.isFile() || (exportPath.isDirectory() && !exportPath.canWrite())) {
-									throw new CityGMLExportException("Failed to open texture files subfolder '" + exportPath.toString() + "' for writing.");
-								} else if (!exportPath.isDirectory()) {
-									boolean success = exportPath.mkdirs();
+		return shouldRun;
+	}
 
-									if (!success)
-										throw new CityGMLExportException("Failed to create texture files subfolder '" + exportPath.toString() + "'.");
-									else
-										LOG.info("Created texture files subfolder '" + textureExportPath + "'.");
-								}
+	private void doConcurrentExport(final int rows,
+			final int columns,
+			int concurrentTiles,
+			int minThreads,
+			int maxThreads) throws CityGMLExportException {
+		// every tile gets an equal share of the thread and connection budget
+		final int minThreadShare = Math.max(1, minThreads / concurrentTiles);
+		final int maxThreadShare = Math.max(minThreadShare, maxThreads / concurrentTiles);
+		final AtomicInteger tileCounter = new AtomicInteger();
 
-								config.getInternal().setExportTextureFilePath(textureExportPath);
-							} else {
-								File exportPath = new File(tmp.getAbsolutePath());
-								if (!exportPath.exists() || !exportPath.isDirectory() || !exportPath.canWrite())
-									throw new CityGMLExportException("Failed to open texture files folder '" + exportPath.toString() + "' for writing.");
+		ExecutorService tileExecutor = Executors.newFixedThreadPool(concurrentTiles);
+		List<Future<Void>> results = new ArrayList<Future<Void>>(concurrentTiles);
 
-								config.getInternal().setExportTextureFilePath(exportPath.toString());
+		try {
+			for (int i = 0; i < concurrentTiles; i++) {
+				results.add(tileExecutor.submit(new Callable<Void>() {
+					@Override
+					public Void call() throws Exception {
+						try {
+							int tile;
+							while (shouldRun && (tile = tileCounter.getAndIncrement()) < rows * columns) {
+								Config tileConfig = new Config(config);
+								exportTile(tile / columns, tile % columns, tileConfig, new ExportFilter(tileConfig), minThreadShare, maxThreadShare);
 							}
+						} finally {
+							// no tiles left for this thread, so hand over its share
+							// of the thread budget to the tile with the largest backlog
+							rebalance(maxThreadShare);
 						}
-					}
 
-					// open file for writing
-					try {
-						saxWriter.setOutput(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
-					} catch (IOException e) {
-						throw new CityGMLExportException("Failed to open file '" + fileName + "' for writing.", e);
-					}					
-
-					// create instance of temp table manager
-					try {
-						cacheTableManager = new CacheTableManager(dbPool, 
-								config.getProject().getExporter().getResources().getThreadPool().getDefaultPool().getMaxThreads(), 
-								config);
-					} catch (SQLException | IOException e) {
-						throw new CityGMLExportException("Failed to initialize internal cache manager.", e);
+						return null;
 					}
+				}));
+			}
 
-					// create instance of gml:id lookup server manager...
-					uidCacheManager = new UIDCacheManager();
-
-					// ...and start servers
-					try {		
-						uidCacheManager.initCache(
-								UIDCacheType.GEOMETRY,
-								new GeometryGmlIdCache(cacheTableManager, 
-										config.getProject().getExporter().getResources().getGmlIdCache().getGeometry().getPartitions(),
-										config.getProject().getDatabase().getUpdateBatching().getGmlIdCacheBatchValue()),
-								config.getProject().getExporter().getResources().getGmlIdCache().getGeometry().getCacheSize(),
-								config.getProject().getExporter().getResources().getGmlIdCache().getGeometry().getPageFactor(),
-								config.getProject().getExporter().getResources().getThreadPool().getDefaultPool().getMaxThreads());
-
-						uidCacheManager.initCache(
-								UIDCacheType.FEATURE,
-								new FeatureGmlIdCache(cacheTableManager, 
-										config.getProject().getExporter().getResources().getGmlIdCache().getFeature().getPartitions(), 
-										config.getProject().getDatabase().getUpdateBatching().getGmlIdCacheBatchValue()),
-								config.getProject().getExporter().getResources().getGmlIdCache().getFeature().getCacheSize(),
-								config.getProject().getExporter().getResources().getGmlIdCache().getFeature().getPageFactor(),
-								config.getProject().getExporter().getResources().getThreadPool().getDefaultPool().getMaxThreads());
-					} catch (SQLException e) {
-						throw new CityGMLExportException("Failed to initialize internal gml:id caches.", e);
-					}	
-
-					// create worker pools
-					// here we have an open issue: queue sizes are fix...
-					xlinkExporterPool = new WorkerPool<DBXlink>(
-							"xlink_exporter_pool",
-							1,
-							Math.max(1, config.getProject().getExporter().getResources().getThreadPool().getDefaultPool().getMaxThreads() / 2),
-							PoolSizeAdaptationStrategy.AGGRESSIVE,
-							new DBExportXlinkWorkerFactory(dbPool, config, eventDispatcher),
-							300,
-							false);
-
-					ioWriterPool = new SingleWorkerPool<SAXEventBuffer>(
-							"citygml_writer_pool",
-							new IOWriterWorkerFactory(saxWriter, eventDispatcher),
-							100,
-							false);
-
-					dbWorkerPool = new WorkerPool<DBSplittingResult>(
-							"db_exporter_pool",
-							config.getProject().getExporter().getResources().getThreadPool().getDefaultPool().getMinThreads(),
-							config.getProject().getExporter().getResources().getThreadPool().getDefaultPool().getMaxThreads(),
-							PoolSizeAdaptationStrategy.AGGRESSIVE,
-							new DBExportWorkerFactory(
-									dbPool,
-									jaxbBuilder,
-									new FeatureWriterFactory(ioWriterPool, jaxbBuilder, config),
-									xlinkExporterPool,
-									uidCacheManager,
-									cacheTableManager,
-									exportFilter,
-									config,
-									eventDispatcher),
-							300,
-							false);
-
-					// prestart pool workers
-					xlinkExporterPool.prestartCoreWorkers();
-					ioWriterPool.prestartCoreWorkers();
-					dbWorkerPool.prestartCoreWorkers();
-
-					// fail if we could not start a single import worker
-					if (dbWorkerPool.getPoolSize() == 0)
-						throw new CityGMLExportException("Failed to start database export worker pool. Check the database connection pool settings.");
-
-					// ok, preparations done. inform user...
-					LOG.info("Exporting to file: " + file.getAbsolutePath());
-
-					// write CityModel header element
-					JAXBModelWriter writer = null;
-					try {
-						writer = new JAXBModelWriter(
-								saxWriter, 
-								(JAXBOutputFactory)jaxbBuilder.createCityGMLOutputFactory(moduleContext), 
-								moduleContext, 
-								new CityModelInfo());
-
-						writer.writeStartDocument();
-					} catch (CityGMLWriteException e) {
-						throw new CityGMLExportException("Failed to write CityGML file.", e);
-					}
+			for (Future<Void> result : results) {
+				try {
+					result.get();
+				} catch (InterruptedException e) {
+					stopTiles();
+					throw new CityGMLExportException("Interrupted while exporting tiles.", e);
+				} catch (ExecutionException e) {
+					stopTiles();
+					if (e.getCause() instanceof CityGMLExportException)
+						throw (CityGMLExportException)e.getCause();
+
+					throw new CityGMLExportException("Failed to export tile.", e.getCause());
+				}
+			}
+		} finally {
+			tileExecutor.shutdown();
 
-					// get database splitter and start query
-					dbSplitter = null;
-					try {
-						dbSplitter = new DBSplitter(
-								dbPool,
-								dbWorkerPool,
-								exportFilter,
-								uidCacheManager.getCache(CityGMLClass.ABSTRACT_CITY_OBJECT),
-								cacheTableManager,
-								eventDispatcher,
-								config);
-
-						if (shouldRun)
-							dbSplitter.startQuery();
-					} catch (SQLException e) {
-						throw new CityGMLExportException("Failed to query the database.", e);
-					}
+			// the running tiles still write files and hold connections,
+			// so wait for them before the caller starts cleaning up
+			boolean interrupted = false;
+			while (!tileExecutor.isTerminated()) {
+				try {
+					tileExecutor.awaitTermination(1, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					interrupted = true;
+					stopTiles();
+				}
+			}
 
-					try {
-						dbWorkerPool.shutdownAndWait();
-						xlinkExporterPool.shutdownAndWait();
-						ioWriterPool.shutdownAndWait();
-					} catch (InterruptedException e) {
-						throw new CityGMLExportException("Failed to shutdown worker pools.", e);
-					}
+			if (interrupted)
+				Thread.currentThread().interrupt();
+		}
+	}
 
-					// write footer element and flush sax writer
-					try {
-						writer.writeEndDocument();						
-						saxWriter.flush();
-						saxWriter.getOutputWriter().close();
-					} catch (CityGMLWriteException | SAXException | IOException e) {
-						throw new CityGMLExportException("Failed to write CityGML file.", e);
-					}
+	private void stopTiles() {
+		shouldRun = false;
+		for (TileExporter tileExporter : activeTiles)
+			tileExporter.interrupt();
+	}
 
-					eventDispatcher.triggerEvent(new StatusDialogMessage(Language.I18N.getString("export.dialog.finish.msg"), this));
-				} finally {
-					// clean up
-					if (xlinkExporterPool != null && !xlinkExporterPool.isTerminated())
-						xlinkExporterPool.shutdownNow();
+	private void exportTile(int row, int column, Config tileConfig, ExportFilter tileFilter, int minThreads, int maxThreads) throws CityGMLExportException {
+		File file = null;
+
+		if (useTiling) {
+			tileFilter.getBoundingBoxFilter().setActiveTile(row, column);
+
+			// create suffix for folderName and fileName
+			TileSuffixMode suffixMode = tiling.getTilePathSuffix();
+			String suffix = "";
+
+			BoundingBox bbox = tileFilter.getBoundingBoxFilter().getFilterState();
+			double minX = bbox.getLowerCorner().getX();
+			double minY = bbox.getLowerCorner().getY();
+			double maxX = bbox.getUpperCorner().getX();
+			double maxY = bbox.getUpperCorner().getY();
+
+			switch (suffixMode) {
+			case XMIN_YMIN:
+				suffix = String.valueOf(minX) + '_' + String.valueOf(minY);
+				break;
+			case XMAX_YMIN:
+				suffix = String.valueOf(maxX) + '_' + String.valueOf(minY);
+				break;
+			case XMIN_YMAX:
+				suffix = String.valueOf(minX) + '_' + String.valueOf(maxY);
+				break;
+			case XMAX_YMAX:
+				suffix = String.valueOf(maxX) + '_' + String.valueOf(maxY);
+				break;
+			case XMIN_YMIN_XMAX_YMAX:
+				suffix = String.valueOf(minX) + '_' + String.valueOf(minY) + '_' + String.valueOf(maxX) + '_' + String.valueOf(maxY);
+				break;
+			default:
+				suffix = String.valueOf(row) + '_' + String.valueOf(column);
+			}
 
-					if (dbWorkerPool != null && !dbWorkerPool.isTerminated())
-						dbWorkerPool.shutdownNow();
+			File subfolder = new File(folderName, tiling.getTilePath() + '_'  + suffix);
+			if (!subfolder.exists() && !subfolder.mkdirs())
+				throw new CityGMLExportException("Failed to create tiling subfolder '" + subfolder + "'.");
 
-					if (ioWriterPool != null && !ioWriterPool.isTerminated())
-						ioWriterPool.shutdownNow();
+			if (tiling.getTileNameSuffix() == TileNameSuffixMode.SAME_AS_PATH)
+				file = new File(subfolder, fileName + '_'  + suffix + '.' + fileExtension);
+			else // no suffix for filename
+				file = new File(subfolder, fileName + '.' + fileExtension);
+		}
 
-					try {
-						eventDispatcher.flushEvents();
-					} catch (InterruptedException e) {
-						//
-					}
+		else // no tiling
+			file = new File(folderName, fileName + '.' + fileExtension);
 
-					try {
-						uidCacheManager.shutdownAll();
-					} catch (SQLException e) {
-						throw new CityGMLExportException("Failed to clean gml:id caches.", e);
-					}
+		tileConfig.getInternal().setExportFileName(file.getAbsolutePath());
+		File path = new File(file.getAbsolutePath());
+		tileConfig.getInternal().setExportPath(path.getParent());
 
-					try {
-						LOG.info("Cleaning temporary cache.");
-						cacheTableManager.dropAll();
-						cacheTableManager = null;
-					} catch (SQLException e) {
-						throw new CityGMLExportException("Failed to clean temporary cache.", e);
-					}					
-				}
+		eventDispatcher.triggerEvent(new StatusDialogMessage(Language.I18N.getString("export.dialog.cityObj.msg"), this));
+		eventDispatcher.triggerEvent(new StatusDialogTitle(file.getName(), this));
+		eventDispatcher.triggerEvent(new CounterEvent(CounterType.REMAINING_TILES, remainingTiles.decrementAndGet(), this));
 
-				// show exported features
-				if (!featureCounterMap.isEmpty()) {
-					LOG.info("Exported CityGML features:");
-					for (CityGMLClass type : featureCounterMap.keySet())
-						LOG.info(type + ": " + featureCounterMap.get(type));
-				}
+		// checking export path for texture images
+		if (tileConfig.getProject().getExporter().getAppearances().isSetExportAppearance()) {
+			String textureExportPath = null;
+			boolean isRelative = tileConfig.getProject().getExporter().getAppearances().getTexturePath().isRelative();
 
-				long geometryObjects = 0;
-				for (GMLClass type : geometryCounterMap.keySet())
-					geometryObjects += geometryCounterMap.get(type);
+			if (isRelative)
+				textureExportPath = tileConfig.getProject().getExporter().getAppearances().getTexturePath().getRelativePath();
+			else
+				textureExportPath = tileConfig.getProject().getExporter().getAppearances().getTexturePath().getAbsolutePath();
 
-				if (geometryObjects != 0)
-					LOG.info("Processed geometry objects: " + geometryObjects);
+			if (textureExportPath != null && textureExportPath.length() > 0) {
+				File tmp = new File(textureExportPath);
+				textureExportPath = tmp.getPath();
 
-				featureCounterMap.clear();
-				geometryCounterMap.clear();
-			}
-		}
+				if (isRelative) {
+					File exportPath = new File(path.getParent(), textureExportPath);
 
-		// show totally exported features
-		if (useTiling && (rows > 1 || columns > 1)) {
-			if (!totalFeatureCounterMap.isEmpty()) {
-				LOG.info("Totally exported CityGML features:");
-				for (CityGMLClass type : totalFeatureCounterMap.keySet())
-					LOG.info(type + ": " + totalFeatureCounterMap.get(type));
-			}
+					if (exportPath.isFile() || (exportPath.isDirectory() && !exportPath.canWrite())) {
+						throw new CityGMLExportException("Failed to open texture files subfolder '" + exportPath.toString() + "' for writing.");
+					} else if (!exportPath.isDirectory()) {
+						boolean success = exportPath.mkdirs();
 
-			long geometryObjects = 0;
-			for (GMLClass type : totalGeometryCounterMap.keySet())
-				geometryObjects += totalGeometryCounterMap.get(type);
+						if (!success)
+							throw new CityGMLExportException("Failed to create texture files subfolder '" + exportPath.toString() + "'.");
+						else
+							LOG.info("Created texture files subfolder '" + textureExportPath + "'.");
+					}
 
-			if (geometryObjects != 0)
-				LOG.info("Total processed geometry objects: " + geometryObjects);
-		}
+					tileConfig.getInternal().setExportTextureFilePath(textureExportPath);
+				} else {
+					File exportPath = new File(tmp.getAbsolutePath());
+					if (!exportPath.exists() || !exportPath.isDirectory() || !exportPath.canWrite())
+						throw new CityGMLExportException("Failed to open texture files folder '" + exportPath.toString() + "' for writing.");
 
-		if (shouldRun)
-			LOG.info("Total export time: " + Util.formatElapsedTime(System.currentTimeMillis() - start) + ".");
+					tileConfig.getInternal().setExportTextureFilePath(exportPath.toString());
+				}
+			}
+		}
 
-		return shouldRun;
-	}
+		// prepare SAX writer
+		SAXWriter saxWriter = new SAXWriter();
+		saxWriter.setWriteEncoding(true);
+		saxWriter.setIndentString("  ");
+		saxWriter.setHeaderComment("Written by " + this.getClass().getPackage().getImplementationTitle() + ", version \"" +
+				this.getClass().getPackage().getImplementationVersion() + '"', 
+				this.getClass().getPackage().getImplementationVendor());
 
-	@Override
-	public void handleEvent(Event e) throws Exception {
-		if (e.getEventType() == EventType.FEATURE_COUNTER) {
-			HashMap<CityGMLClass, Long> counterMap = ((FeatureCounterEvent)e).getCounter();
+		// set CityGML prefixes and schema locations
+		saxWriter.setDefaultNamespace(moduleContext.getModule(CityGMLModuleType.CORE).getNamespaceURI());
 
-			for (CityGMLClass type : counterMap.keySet()) {
-				Long update = counterMap.get(type);
+		for (Module module : moduleContext.getModules()) {
+			if (module.getType() == CityGMLModuleType.CORE)
+				continue;
 
-				Long counter = featureCounterMap.get(type);
-				featureCounterMap.put(type, counter == null ? update : counter + update);
+			if (!tileConfig.getProject().getExporter().getAppearances().isSetExportAppearance() 
+					&& module.getType() == CityGMLModuleType.APPEARANCE)
+				continue;
 
-				if (useTiling) {
-					counter = totalFeatureCounterMap.get(type);
-					totalFeatureCounterMap.put(type, counter == null ? update : counter + update);
-				}
-			}
+			saxWriter.setPrefix(module.getNamespacePrefix(), module.getNamespaceURI());
+			if (module instanceof CityGMLModule)
+				saxWriter.setSchemaLocation(module.getNamespaceURI(), module.getSchemaLocation());
 		}
 
-		else if (e.getEventType() == EventType.GEOMETRY_COUNTER) {
-			HashMap<GMLClass, Long> counterMap = ((GeometryCounterEvent)e).getCounter();
+		TileExporter tileExporter = new TileExporter(jaxbBuilder, 
+				dbPool, 
+				tileConfig, 
+				eventDispatcher, 
+				tileFilter, 
+				globalAppearanceSurfaces, 
+				moduleContext, 
+				saxWriter, 
+				file, 
+				minThreads, 
+				maxThreads);
+
+		activeTiles.add(tileExporter);
+		try {
+			if (shouldRun)
+				tileExporter.doExport();
+		} finally {
+			activeTiles.remove(tileExporter);
+		}
 
-			for (GMLClass type : counterMap.keySet()) {
-				Long update = counterMap.get(type);
+		eventDispatcher.triggerEvent(new StatusDialogMessage(Language.I18N.getString("export.dialog.finish.msg"), this));
+	}
 
-				Long counter = geometryCounterMap.get(type);
-				geometryCounterMap.put(type, counter == null ? update : counter + update);
+	private void rebalance(int threads) {
+		TileExporter densest = null;
+		int maxBacklog = 0;
 
-				if (useTiling) {
-					counter = totalGeometryCounterMap.get(type);
-					totalGeometryCounterMap.put(type, counter == null ? update : counter + update);
-				}
+		for (TileExporter tileExporter : activeTiles) {
+			int backlog = tileExporter.getBacklog();
+			if (backlog > maxBacklog) {
+				densest = tileExporter;
+				maxBacklog = backlog;
 			}
 		}
 
-		else if (e.getEventType() == EventType.INTERRUPT) {
+		if (densest != null) {
+			LOG.debug("Assigning " + threads + " additional export thread(s) to tile '" + densest.getFile().getName() + "'.");
+			densest.addThreads(threads);
+		}
+	}
+
+	@Override
+	public void handleEvent(Event e) throws Exception {
+		if (e.getEventType() == EventType.INTERRUPT) {
 			if (isInterrupted.compareAndSet(false, true)) {
 				shouldRun = false;
 				InterruptEvent interruptEvent = (InterruptEvent)e;
@@ -614,14 +554,8 @@ public class Exporter implements EventHandler {
 				if (log != null)
 					LOG.log(interruptEvent.getLogLevelType(), log);
 
-				if (dbSplitter != null)
-					dbSplitter.shutdown();
-
-				if (dbWorkerPool != null)
-					dbWorkerPool.drainWorkQueue();
-
-				if (xlinkExporterPool != null)
-					xlinkExporterPool.drainWorkQueue();
+				for (TileExporter tileExporter : activeTiles)
+					tileExporter.interrupt();
 			}
 		}
 	}
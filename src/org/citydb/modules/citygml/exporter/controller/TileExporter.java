@@ -0,0 +1,327 @@
+/*
+ * 3D City Database - The Open Source CityGML Database
+ * http://www.3dcitydb.org/
+ * 
+ * Copyright 2013 - 2016
+ * Chair of Geoinformatics
+ * Technical University of Munich, Germany
+ * https://www.gis.bgu.tum.de/
+ * 
+ * The 3D City Database is jointly developed with the following
+ * cooperation partners:
+ * 
+ * virtualcitySYSTEMS GmbH, Berlin <http://www.virtualcitysystems.de/>
+ * M.O.S.S. Computer Grafik Systeme GmbH, Taufkirchen <http://www.moss.de/>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.citydb.modules.citygml.exporter.controller;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.sql.SQLException;
+
+import org.citydb.api.concurrent.PoolSizeAdaptationStrategy;
+import org.citydb.api.concurrent.SingleWorkerPool;
+import org.citydb.api.concurrent.WorkerPool;
+import org.citydb.api.event.EventDispatcher;
+import org.citydb.config.Config;
+import org.citydb.database.DatabaseConnectionPool;
+import org.citydb.log.Logger;
+import org.citydb.modules.citygml.common.database.cache.CacheTableManager;
+import org.citydb.modules.citygml.common.database.uid.UIDCacheManager;
+import org.citydb.modules.citygml.common.database.uid.UIDCacheType;
+import org.citydb.modules.citygml.common.database.xlink.DBXlink;
+import org.citydb.modules.citygml.exporter.concurrent.DBExportWorkerFactory;
+import org.citydb.modules.citygml.exporter.concurrent.DBExportXlinkWorkerFactory;
+import org.citydb.modules.citygml.exporter.database.content.DBSplitter;
+import org.citydb.modules.citygml.exporter.database.content.DBSplittingResult;
+import org.citydb.modules.citygml.exporter.database.uid.FeatureGmlIdCache;
+import org.citydb.modules.citygml.exporter.database.uid.GeometryGmlIdCache;
+import org.citydb.modules.citygml.exporter.util.FeatureWriterFactory;
+import org.citydb.modules.common.concurrent.IOWriterWorkerFactory;
+import org.citydb.modules.common.filter.ExportFilter;
+import org.citydb.modules.common.metrics.Metrics;
+import org.citydb.util.IdBitmap;
+import org.citygml4j.builder.jaxb.JAXBBuilder;
+import org.citygml4j.builder.jaxb.xml.io.writer.JAXBModelWriter;
+import org.citygml4j.builder.jaxb.xml.io.writer.JAXBOutputFactory;
+import org.citygml4j.model.citygml.CityGMLClass;
+import org.citygml4j.model.module.ModuleContext;
+import org.citygml4j.util.xml.SAXEventBuffer;
+import org.citygml4j.util.xml.SAXWriter;
+import org.citygml4j.xml.io.writer.CityGMLWriteException;
+import org.citygml4j.xml.io.writer.CityModelInfo;
+import org.xml.sax.SAXException;
+
+public class TileExporter {
+	private final Logger LOG = Logger.getInstance();
+
+	private final JAXBBuilder jaxbBuilder;
+	private final DatabaseConnectionPool dbPool;
+	private final Config config;
+	private final EventDispatcher eventDispatcher;
+	private final ExportFilter exportFilter;
+	private final IdBitmap globalAppearanceSurfaces;
+	private final ModuleContext moduleContext;
+	private final SAXWriter saxWriter;
+	private final File file;
+	private final int minThreads;
+	private final int maxThreads;
+
+	private volatile boolean shouldRun = true;
+	private DBSplitter dbSplitter;
+	private WorkerPool<DBSplittingResult> dbWorkerPool;
+	private SingleWorkerPool<SAXEventBuffer> ioWriterPool;
+	private WorkerPool<DBXlink> xlinkExporterPool;
+	private CacheTableManager cacheTableManager;
+	private UIDCacheManager uidCacheManager;
+
+	public TileExporter(JAXBBuilder jaxbBuilder,
+			DatabaseConnectionPool dbPool,
+			Config config,
+			EventDispatcher eventDispatcher,
+			ExportFilter exportFilter,
+			IdBitmap globalAppearanceSurfaces,
+			ModuleContext moduleContext,
+			SAXWriter saxWriter,
+			File file,
+			int minThreads,
+			int maxThreads) {
+		this.jaxbBuilder = jaxbBuilder;
+		this.dbPool = dbPool;
+		this.config = config;
+		this.eventDispatcher = eventDispatcher;
+		this.exportFilter = exportFilter;
+		this.globalAppearanceSurfaces = globalAppearanceSurfaces;
+		this.moduleContext = moduleContext;
+		this.saxWriter = saxWriter;
+		this.file = file;
+		this.minThreads = minThreads;
+		this.maxThreads = maxThreads;
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	public void doExport() throws CityGMLExportException {
+		try {
+			// open file for writing
+			try {
+				saxWriter.setOutput(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+			} catch (IOException e) {
+				throw new CityGMLExportException("Failed to open file '" + file.getName() + "' for writing.", e);
+			}					
+
+			// create instance of temp table manager
+			try {
+				cacheTableManager = new CacheTableManager(dbPool, maxThreads, config);
+			} catch (SQLException | IOException e) {
+				throw new CityGMLExportException("Failed to initialize internal cache manager.", e);
+			}
+
+			// create instance of gml:id lookup server manager...
+			uidCacheManager = new UIDCacheManager();
+
+			// ...and start servers
+			try {		
+				uidCacheManager.initCache(
+						UIDCacheType.GEOMETRY,
+						new GeometryGmlIdCache(cacheTableManager, 
+								config.getProject().getExporter().getResources().getGmlIdCache().getGeometry().getPartitions(),
+								config.getProject().getDatabase().getUpdateBatching().getGmlIdCacheBatchValue()),
+						config.getProject().getExporter().getResources().getGmlIdCache().getGeometry().getCacheSize(),
+						config.getProject().getExporter().getResources().getGmlIdCache().getGeometry().getPageFactor(),
+						maxThreads,
+						config.getProject().getExporter().getResources().getGmlIdCache().getGeometry().getBloomFilterEntries(),
+						config.getProject().getExporter().getResources().getGmlIdCache().getGeometry().getBloomFilterFalsePositiveRate());
+
+				uidCacheManager.initCache(
+						UIDCacheType.FEATURE,
+						new FeatureGmlIdCache(cacheTableManager, 
+								config.getProject().getExporter().getResources().getGmlIdCache().getFeature().getPartitions(), 
+								config.getProject().getDatabase().getUpdateBatching().getGmlIdCacheBatchValue()),
+						config.getProject().getExporter().getResources().getGmlIdCache().getFeature().getCacheSize(),
+						config.getProject().getExporter().getResources().getGmlIdCache().getFeature().getPageFactor(),
+						maxThreads,
+						config.getProject().getExporter().getResources().getGmlIdCache().getFeature().getBloomFilterEntries(),
+						config.getProject().getExporter().getResources().getGmlIdCache().getFeature().getBloomFilterFalsePositiveRate());
+			} catch (SQLException e) {
+				throw new CityGMLExportException("Failed to initialize internal gml:id caches.", e);
+			}	
+
+			// create worker pools
+			// here we have an open issue: queue sizes are fix...
+			xlinkExporterPool = new WorkerPool<DBXlink>(
+					"xlink_exporter_pool",
+					1,
+					Math.max(1, maxThreads / 2),
+					PoolSizeAdaptationStrategy.AGGRESSIVE,
+					new DBExportXlinkWorkerFactory(dbPool, config, eventDispatcher),
+					300,
+					false);
+
+			ioWriterPool = new SingleWorkerPool<SAXEventBuffer>(
+					"citygml_writer_pool",
+					new IOWriterWorkerFactory(saxWriter, eventDispatcher),
+					100,
+					false);
+
+			dbWorkerPool = new WorkerPool<DBSplittingResult>(
+					"db_exporter_pool",
+					minThreads,
+					maxThreads,
+					PoolSizeAdaptationStrategy.AGGRESSIVE,
+					new DBExportWorkerFactory(
+							dbPool,
+							jaxbBuilder,
+							new FeatureWriterFactory(ioWriterPool, jaxbBuilder, config),
+							xlinkExporterPool,
+							uidCacheManager,
+							cacheTableManager,
+							exportFilter,
+							globalAppearanceSurfaces,
+							config,
+							eventDispatcher),
+					300,
+					false);
+
+			Metrics metrics = Metrics.getInstance();
+			metrics.registerWorkerPool(xlinkExporterPool);
+			metrics.registerWorkerPool(ioWriterPool);
+			metrics.registerWorkerPool(dbWorkerPool);
+
+			// prestart pool workers
+			xlinkExporterPool.prestartCoreWorkers();
+			ioWriterPool.prestartCoreWorkers();
+			dbWorkerPool.prestartCoreWorkers();
+
+			// fail if we could not start a single import worker
+			if (dbWorkerPool.getPoolSize() == 0)
+				throw new CityGMLExportException("Failed to start database export worker pool. Check the database connection pool settings.");
+
+			// ok, preparations done. inform user...
+			LOG.info("Exporting to file: " + file.getAbsolutePath());
+
+			// write CityModel header element
+			JAXBModelWriter writer = null;
+			try {
+				writer = new JAXBModelWriter(
+						saxWriter, 
+						(JAXBOutputFactory)jaxbBuilder.createCityGMLOutputFactory(moduleContext), 
+						moduleContext, 
+						new CityModelInfo());
+
+				writer.writeStartDocument();
+			} catch (CityGMLWriteException e) {
+				throw new CityGMLExportException("Failed to write CityGML file.", e);
+			}
+
+			// get database splitter and start query
+			try {
+				dbSplitter = new DBSplitter(
+						dbPool,
+						dbWorkerPool,
+						exportFilter,
+						uidCacheManager.getCache(CityGMLClass.ABSTRACT_CITY_OBJECT),
+						cacheTableManager,
+						eventDispatcher,
+						config);
+
+				if (shouldRun)
+					dbSplitter.startQuery();
+			} catch (SQLException e) {
+				throw new CityGMLExportException("Failed to query the database.", e);
+			}
+
+			try {
+				dbWorkerPool.shutdownAndWait();
+				xlinkExporterPool.shutdownAndWait();
+				ioWriterPool.shutdownAndWait();
+			} catch (InterruptedException e) {
+				throw new CityGMLExportException("Failed to shutdown worker pools.", e);
+			}
+
+			// write footer element and flush sax writer
+			try {
+				writer.writeEndDocument();						
+				saxWriter.flush();
+				saxWriter.getOutputWriter().close();
+			} catch (CityGMLWriteException | SAXException | IOException e) {
+				throw new CityGMLExportException("Failed to write CityGML file.", e);
+			}
+		} finally {
+			// clean up
+			if (xlinkExporterPool != null && !xlinkExporterPool.isTerminated())
+				xlinkExporterPool.shutdownNow();
+
+			if (dbWorkerPool != null && !dbWorkerPool.isTerminated())
+				dbWorkerPool.shutdownNow();
+
+			if (ioWriterPool != null && !ioWriterPool.isTerminated())
+				ioWriterPool.shutdownNow();
+
+			try {
+				eventDispatcher.flushEvents();
+			} catch (InterruptedException e) {
+				//
+			}
+
+			if (uidCacheManager != null) {
+				try {
+					uidCacheManager.shutdownAll();
+				} catch (SQLException e) {
+					throw new CityGMLExportException("Failed to clean gml:id caches.", e);
+				}
+			}
+
+			if (cacheTableManager != null) {
+				try {
+					LOG.info("Cleaning temporary cache.");
+					cacheTableManager.dropAll();
+					cacheTableManager = null;
+				} catch (SQLException e) {
+					throw new CityGMLExportException("Failed to clean temporary cache.", e);
+				}
+			}
+		}
+	}
+
+	public int getBacklog() {
+		WorkerPool<DBSplittingResult> dbWorkerPool = this.dbWorkerPool;
+		return dbWorkerPool != null && !dbWorkerPool.isTerminating() ? dbWorkerPool.getWorkQueue().size() : 0;
+	}
+
+	public void addThreads(int threads) {
+		WorkerPool<DBSplittingResult> dbWorkerPool = this.dbWorkerPool;
+		if (dbWorkerPool != null && !dbWorkerPool.isTerminating())
+			dbWorkerPool.setMaximumPoolSize(dbWorkerPool.getMaximumPoolSize() + threads);
+	}
+
+	public void interrupt() {
+		shouldRun = false;
+
+		if (dbSplitter != null)
+			dbSplitter.shutdown();
+
+		if (dbWorkerPool != null)
+			dbWorkerPool.drainWorkQueue();
+
+		if (xlinkExporterPool != null)
+			xlinkExporterPool.drainWorkQueue();
+	}
+
+}
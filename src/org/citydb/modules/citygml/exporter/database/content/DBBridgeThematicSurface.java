@@ -34,6 +34,7 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 
 import org.citydb.api.geometry.GeometryObject;
 import org.citydb.config.Config;
@@ -124,10 +125,10 @@ public class DBBridgeThematicSurface implements DBExporter {
 					.append("a.STREET, a.HOUSE_NUMBER, a.PO_BOX, a.ZIP_CODE, a.CITY, a.STATE, a.COUNTRY, a.MULTI_POINT, a.XAL_SOURCE").append(handleAddressGmlId ? ", a.GMLID " : " ")
 					.append("from BRIDGE_THEMATIC_SURFACE ts left join BRIDGE_OPEN_TO_THEM_SRF o2t on ts.ID = o2t.BRIDGE_THEMATIC_SURFACE_ID left join BRIDGE_OPENING op on op.ID = o2t.BRIDGE_OPENING_ID left join ADDRESS a on op.ADDRESS_ID=a.ID where ");
 
-			psBridgeThematicSurface = connection.prepareStatement(query.toString() + "ts.BRIDGE_ID = ?");
-			psBridgeInstallationThematicSurface = connection.prepareStatement(query.toString() + "ts.BRIDGE_INSTALLATION_ID = ?");
-			psBridgeRoomThematicSurface = connection.prepareStatement(query.toString() + "ts.BRIDGE_ROOM_ID = ?");
-			psBridgeConstrElementThematicSurface = connection.prepareStatement(query.toString() + "ts.BRIDGE_CONSTR_ELEMENT_ID = ?");
+			psBridgeThematicSurface = connection.prepareStatement(query.toString() + "ts.BRIDGE_ID = ?", ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY);
+			psBridgeInstallationThematicSurface = connection.prepareStatement(query.toString() + "ts.BRIDGE_INSTALLATION_ID = ?", ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY);
+			psBridgeRoomThematicSurface = connection.prepareStatement(query.toString() + "ts.BRIDGE_ROOM_ID = ?", ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY);
+			psBridgeConstrElementThematicSurface = connection.prepareStatement(query.toString() + "ts.BRIDGE_CONSTR_ELEMENT_ID = ?", ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY);
 		} else {
 			int srid = config.getInternal().getExportTargetSRS().getSrid();
 			String transformOrNull = dbExporterManager.getDatabaseAdapter().getSQLAdapter().resolveDatabaseOperationName("citydb_srs.transform_or_null");
@@ -143,10 +144,10 @@ public class DBBridgeThematicSurface implements DBExporter {
 					.append(transformOrNull).append("(a.MULTI_POINT, ").append(srid).append(") AS MULTI_POINT, a.XAL_SOURCE").append(handleAddressGmlId ? ", a.GMLID " : " ")
 					.append("from BRIDGE_THEMATIC_SURFACE ts left join BRIDGE_OPEN_TO_THEM_SRF o2t on ts.ID = o2t.BRIDGE_THEMATIC_SURFACE_ID left join BRIDGE_OPENING op on op.ID = o2t.BRIDGE_OPENING_ID left join ADDRESS a on op.ADDRESS_ID=a.ID where ");
 
-			psBridgeThematicSurface = connection.prepareStatement(query.toString() + "ts.BRIDGE_ID = ?");
-			psBridgeInstallationThematicSurface = connection.prepareStatement(query.toString() + "ts.BRIDGE_INSTALLATION_ID = ?");
-			psBridgeRoomThematicSurface = connection.prepareStatement(query.toString() + "ts.BRIDGE_ROOM_ID = ?");
-			psBridgeConstrElementThematicSurface = connection.prepareStatement(query.toString() + "ts.BRIDGE_CONSTR_ELEMENT_ID = ?");
+			psBridgeThematicSurface = connection.prepareStatement(query.toString() + "ts.BRIDGE_ID = ?", ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY);
+			psBridgeInstallationThematicSurface = connection.prepareStatement(query.toString() + "ts.BRIDGE_INSTALLATION_ID = ?", ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY);
+			psBridgeRoomThematicSurface = connection.prepareStatement(query.toString() + "ts.BRIDGE_ROOM_ID = ?", ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY);
+			psBridgeConstrElementThematicSurface = connection.prepareStatement(query.toString() + "ts.BRIDGE_CONSTR_ELEMENT_ID = ?", ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY);
 		}
 
 		surfaceGeometryExporter = (DBSurfaceGeometry)dbExporterManager.getDBExporter(DBExporterEnum.SURFACE_GEOMETRY);
@@ -177,6 +178,7 @@ public class DBBridgeThematicSurface implements DBExporter {
 
 	private void read(AbstractCityObject cityObject, long parentId) throws SQLException {
 		final List<Long> boundarySurfaceIds = new ArrayList<Long>();
+		Set<Long> prefetchedRootIds = null;
 		ResultSet rs = null;
 
 		try {
@@ -203,6 +205,9 @@ public class DBBridgeThematicSurface implements DBExporter {
 				return;
 			}
 
+			// load the geometries of all boundary surfaces and openings at once
+			prefetchedRootIds = surfaceGeometryExporter.prefetch(rs, 3, 4, 5, 9, 10);
+
 			long currentBoundarySurfaceId = 0;
 			AbstractBoundarySurface boundarySurface = null;
 
@@ -497,6 +502,9 @@ public class DBBridgeThematicSurface implements DBExporter {
 		} finally {
 			if (rs != null)
 				rs.close();
+
+			if (prefetchedRootIds != null)
+				surfaceGeometryExporter.discardPrefetched(prefetchedRootIds);
 		}
 	}
 
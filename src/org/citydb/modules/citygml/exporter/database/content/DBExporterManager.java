@@ -31,7 +31,6 @@ import java.io.Reader;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.EnumMap;
-import java.util.HashMap;
 
 import javax.xml.bind.JAXBException;
 import javax.xml.bind.Unmarshaller;
@@ -51,6 +50,8 @@ import org.citydb.modules.citygml.common.xal.AddressExportFactory;
 import org.citydb.modules.citygml.exporter.util.FeatureProcessException;
 import org.citydb.modules.citygml.exporter.util.FeatureProcessor;
 import org.citydb.modules.common.filter.ExportFilter;
+import org.citydb.modules.common.metrics.Metrics;
+import org.citydb.util.IdBitmap;
 import org.citygml4j.builder.jaxb.JAXBBuilder;
 import org.citygml4j.builder.jaxb.unmarshal.JAXBUnmarshaller;
 import org.citygml4j.model.citygml.CityGMLClass;
@@ -68,14 +69,14 @@ public class DBExporterManager {
 	private final UIDCacheManager uidCacheManager;
 	private final CacheTableManager cacheTableManager;
 	private final ExportFilter exportFilter;
+	private final IdBitmap globalAppearanceSurfaces;
 	private final Config config;
 	private final EventDispatcher eventDispatcher;
 
 	private final JAXBUnmarshaller jaxbUnmarshaller;
 	private AddressExportFactory addressExportFactory;
 	private EnumMap<DBExporterEnum, DBExporter> dbExporterMap;
-	private HashMap<CityGMLClass, Long> featureCounterMap;
-	private HashMap<GMLClass, Long> geometryCounterMap;
+	private final Metrics metrics;
 
 	public DBExporterManager(Connection connection,
 			AbstractDatabaseAdapter databaseAdapter,
@@ -85,6 +86,7 @@ public class DBExporterManager {
 			UIDCacheManager uidCacheManager,
 			CacheTableManager cacheTableManager,
 			ExportFilter exportFilter,
+			IdBitmap globalAppearanceSurfaces,
 			Config config,
 			EventDispatcher eventDispatcher) throws SAXException {
 		this.connection = connection;
@@ -95,12 +97,12 @@ public class DBExporterManager {
 		this.uidCacheManager = uidCacheManager;
 		this.cacheTableManager = cacheTableManager;
 		this.exportFilter = exportFilter;
+		this.globalAppearanceSurfaces = globalAppearanceSurfaces;
 		this.config = config;
 		this.eventDispatcher = eventDispatcher;
 
 		dbExporterMap = new EnumMap<DBExporterEnum, DBExporter>(DBExporterEnum.class);
-		featureCounterMap = new HashMap<CityGMLClass, Long>();
-		geometryCounterMap = new HashMap<GMLClass, Long>();
+		metrics = Metrics.getInstance();
 
 		jaxbUnmarshaller = jaxbBuilder.createJAXBUnmarshaller();
 		jaxbUnmarshaller.setThrowMissingADESchema(false);
@@ -117,7 +119,7 @@ public class DBExporterManager {
 				if (config.getInternal().isExportGlobalAppearances())
 					globalAppTempTable = cacheTableManager.getCacheTable(CacheTableModelEnum.GLOBAL_APPEARANCE);
 
-				dbExporter = new DBSurfaceGeometry(connection, globalAppTempTable, config, this);
+				dbExporter = new DBSurfaceGeometry(connection, globalAppTempTable, globalAppearanceSurfaces, config, this);
 				break;
 			case IMPLICIT_GEOMETRY:
 				dbExporter = new DBImplicitGeometry(connection, this);
@@ -274,27 +276,11 @@ public class DBExporterManager {
 	}
 
 	public void updateFeatureCounter(CityGMLClass featureType) {
-		Long counter = featureCounterMap.get(featureType);
-		if (counter == null)
-			featureCounterMap.put(featureType, new Long(1));
-		else
-			featureCounterMap.put(featureType, counter + 1);
-	}
-
-	public HashMap<CityGMLClass, Long> getFeatureCounter() {
-		return featureCounterMap;
+		metrics.updateFeatureCounter(featureType, 1);
 	}
 
 	public void updateGeometryCounter(GMLClass geometryType) {
-		Long counter = geometryCounterMap.get(geometryType);
-		if (counter == null)
-			geometryCounterMap.put(geometryType, new Long(1));
-		else
-			geometryCounterMap.put(geometryType, counter + 1);
-	}
-
-	public HashMap<GMLClass, Long> getGeometryCounter() {
-		return geometryCounterMap;
+		metrics.updateGeometryCounter(geometryType, 1);
 	}
 	
 	public AbstractDatabaseAdapter getDatabaseAdapter() {
@@ -34,6 +34,7 @@ import java.util.List;
 import org.citydb.api.geometry.GeometryObject;
 import org.citydb.api.geometry.GeometryType;
 import org.citydb.config.Config;
+import org.citydb.modules.citygml.exporter.util.PositionListView;
 import org.citygml4j.model.gml.geometry.AbstractGeometry;
 import org.citygml4j.model.gml.geometry.GeometryProperty;
 import org.citygml4j.model.gml.geometry.aggregates.MultiCurve;
@@ -191,7 +192,7 @@ public class DBOtherGeometry implements DBExporter {
 			lineString = new LineString();
 
 			DirectPositionList directPositionList = new DirectPositionList();
-			directPositionList.setValue(geomObj.getCoordinatesAsList(0));
+			directPositionList.setValue(new PositionListView(geomObj.getCoordinates(0), geomObj.getDimension()));
 			directPositionList.setSrsDimension(geomObj.getDimension());
 			if (setSrsName)
 				directPositionList.setSrsName(gmlSrsName);
@@ -225,7 +226,7 @@ public class DBOtherGeometry implements DBExporter {
 					LineString lineString = new LineString();
 					
 					DirectPositionList directPositionList = new DirectPositionList();
-					directPositionList.setValue(geomObj.getCoordinatesAsList(i));
+					directPositionList.setValue(new PositionListView(geomObj.getCoordinates(i), geomObj.getDimension()));
 					directPositionList.setSrsDimension(geomObj.getDimension());
 					if (setSrsName)
 						directPositionList.setSrsName(gmlSrsName);
@@ -390,7 +391,7 @@ public class DBOtherGeometry implements DBExporter {
 					LinearRing linearRing = new LinearRing();
 					
 					DirectPositionList directPositionList = new DirectPositionList();
-					directPositionList.setValue(geomObj.getCoordinatesAsList(i));
+					directPositionList.setValue(new PositionListView(geomObj.getCoordinates(i), geomObj.getDimension()));
 					directPositionList.setSrsDimension(geomObj.getDimension());
 					if (setSrsName)
 						directPositionList.setSrsName(gmlSrsName);
@@ -403,7 +404,7 @@ public class DBOtherGeometry implements DBExporter {
 					LinearRing linearRing = new LinearRing();
 					
 					DirectPositionList directPositionList = new DirectPositionList();
-					directPositionList.setValue(geomObj.getCoordinatesAsList(i));
+					directPositionList.setValue(new PositionListView(geomObj.getCoordinates(i), geomObj.getDimension()));
 					directPositionList.setSrsDimension(geomObj.getDimension());
 					if (setSrsName)
 						directPositionList.setSrsName(gmlSrsName);
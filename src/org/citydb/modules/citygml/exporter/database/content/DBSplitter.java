@@ -34,6 +34,13 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.citydb.api.concurrent.WorkerPool;
 import org.citydb.api.database.DatabaseSrs;
@@ -62,6 +69,8 @@ import org.citygml4j.model.citygml.CityGMLClass;
 
 public class DBSplitter {
 	private final Logger LOG = Logger.getInstance();
+	private final int SCAN_PAGE_SIZE = 10000;
+	private final int RANGES_PER_CONNECTION = 4;
 
 	private final DatabaseConnectionPool dbConnectionPool;
 	private final WorkerPool<DBSplittingResult> dbWorkerPool;
@@ -80,6 +89,7 @@ public class DBSplitter {
 	private String gmlNameFilter;
 	private String bboxFilter;
 	private String optimizerHint;
+	private int scanPartitions;
 
 	private FeatureClassFilter featureClassFilter;
 	private FeatureCounterFilter featureCounterFilter;
@@ -136,6 +146,7 @@ public class DBSplitter {
 		boundingBoxFilter = exportFilter.getBoundingBoxFilter();
 
 		expFilterConfig = config.getProject().getExporter().getFilter();
+		scanPartitions = config.getProject().getExporter().getResources().getScanPartitions();
 	}
 
 	private void initFilter() throws SQLException {
@@ -244,7 +255,7 @@ public class DBSplitter {
 				query.append("and ").append(gmlIdFilter);
 
 		} else {
-			query.append("select ").append(optimizerHint).append(" co.ID, co.OBJECTCLASS_ID from CITYOBJECT co where ");
+			StringBuilder predicate = new StringBuilder();
 
 			List<Integer> classIds = new ArrayList<Integer>();
 			List<CityGMLClass> allowedFeature = featureClassFilter.getNotFilterState();
@@ -259,13 +270,20 @@ public class DBSplitter {
 				return;
 
 			String classIdQuery = Util.collection2string(classIds, ", ");
-			query.append("co.OBJECTCLASS_ID in (").append(classIdQuery).append(") "); 
+			predicate.append("co.OBJECTCLASS_ID in (").append(classIdQuery).append(") "); 
 
 			if (gmlNameFilter != null)
-				query.append("and upper(co.NAME) like '%").append(gmlNameFilter).append("%' ");
+				predicate.append("and upper(co.NAME) like '%").append(gmlNameFilter).append("%' ");
 
 			if (bboxFilter != null)
-				query.append("and ").append(bboxFilter);
+				predicate.append("and ").append(bboxFilter);
+
+			if (scanPartitions > 1) {
+				queryCityObjectInPartitions(predicate.toString());
+				return;
+			}
+
+			query.append("select ").append(optimizerHint).append(" co.ID, co.OBJECTCLASS_ID from CITYOBJECT co where ").append(predicate);
 
 			if (featureCounterFilter.isActive())
 				query.append("order by ID");
@@ -321,6 +339,238 @@ public class DBSplitter {
 		}
 	}
 
+	private void queryCityObjectInPartitions(String predicate) throws SQLException {
+		List<Connection> connections = new ArrayList<Connection>(scanPartitions);
+		connections.add(connection);
+
+		try {
+			// every partition is scanned on its own connection
+			try {
+				while (connections.size() < scanPartitions) {
+					Connection scanConnection = dbConnectionPool.getConnection();
+
+					// do not scan a different workspace than the main connection
+					if (dbConnectionPool.getActiveDatabaseAdapter().hasVersioningSupport()
+							&& !dbConnectionPool.getActiveDatabaseAdapter().getWorkspaceManager().gotoWorkspace(
+									scanConnection, 
+									config.getProject().getDatabase().getWorkspaces().getExportWorkspace())) {
+						scanConnection.close();
+						throw new SQLException("Failed to change workspace.");
+					}
+
+					connections.add(scanConnection);
+				}
+			} catch (SQLException e) {
+				LOG.warn("Failed to open further database connections. Scanning city objects with " + connections.size() + " connection(s).");
+			}
+
+			List<ScanRange> ranges = getScanRanges(connections.size() * RANGES_PER_CONNECTION);
+			if (ranges.isEmpty())
+				return;
+
+			LOG.debug("Scanning city objects in " + ranges.size() + " ID ranges using " + connections.size() + " connection(s).");
+
+			String rangePredicate = predicate + " and co.ID > ? and co.ID <= ?";
+			AtomicLong scanned = new AtomicLong();
+
+			if (featureCounterFilter.isActive()) {
+				// the feature counter refers to the ID order of all city objects,
+				// so we need the number of matches in each range before scanning
+				scanRanges(connections, ranges, "select " + optimizerHint + " count(*) from CITYOBJECT co where " + rangePredicate, true, scanned);
+
+				long offset = 0;
+				for (ScanRange range : ranges) {
+					range.offset = offset;
+					offset += range.count;
+				}
+
+				elementCounter = lastElement != null && offset > lastElement ? lastElement + 1 : offset;
+			}
+
+			scanRanges(connections, ranges, "select " + optimizerHint + " co.ID, co.OBJECTCLASS_ID from CITYOBJECT co where " + rangePredicate + " order by co.ID", false, scanned);
+
+			if (!featureCounterFilter.isActive())
+				elementCounter = scanned.get();
+
+		} finally {
+			for (Connection scanConnection : connections) {
+				if (scanConnection == connection)
+					continue;
+
+				try {
+					scanConnection.close();
+				} catch (SQLException sqlEx) {
+					//
+				}
+			}
+		}
+	}
+
+	private List<ScanRange> getScanRanges(int maxRanges) throws SQLException {
+		List<ScanRange> ranges = new ArrayList<ScanRange>(maxRanges);
+		Statement stmt = null;
+		ResultSet rs = null;
+
+		try {
+			stmt = connection.createStatement();
+			rs = stmt.executeQuery("select min(ID), max(ID) from CITYOBJECT");
+
+			if (rs.next()) {
+				long minId = rs.getLong(1);
+				long maxId = rs.getLong(2);
+
+				if (!rs.wasNull()) {
+					long width = (maxId - minId + maxRanges) / maxRanges;
+					for (long lowerId = minId - 1; lowerId < maxId; lowerId += width)
+						ranges.add(new ScanRange(lowerId, Math.min(lowerId + width, maxId)));
+				}
+			}
+
+			return ranges;
+		} finally {
+			if (rs != null) {
+				try {
+					rs.close();
+				} catch (SQLException sqlEx) {
+					throw sqlEx;
+				}
+
+				rs = null;
+			}
+
+			if (stmt != null) {
+				try {
+					stmt.close();
+				} catch (SQLException sqlEx) {
+					throw sqlEx;
+				}
+
+				stmt = null;
+			}
+		}
+	}
+
+	private void scanRanges(List<Connection> connections, 
+			final List<ScanRange> ranges, 
+			final String query, 
+			final boolean count, 
+			final AtomicLong scanned) throws SQLException {
+		final AtomicInteger rangeCounter = new AtomicInteger();
+
+		ExecutorService scanExecutor = Executors.newFixedThreadPool(connections.size());
+		List<Future<Void>> results = new ArrayList<Future<Void>>(connections.size());
+		SQLException failure = null;
+
+		try {
+			for (final Connection scanConnection : connections) {
+				results.add(scanExecutor.submit(new Callable<Void>() {
+					@Override
+					public Void call() throws SQLException {
+						PreparedStatement stmt = scanConnection.prepareStatement(query);
+
+						try {
+							if (!count)
+								stmt.setMaxRows(SCAN_PAGE_SIZE);
+
+							int range;
+							while (shouldRun && (range = rangeCounter.getAndIncrement()) < ranges.size()) {
+								if (count)
+									countRange(stmt, ranges.get(range));
+								else
+									scanRange(stmt, ranges.get(range), scanned);
+							}
+						} finally {
+							stmt.close();
+						}
+
+						return null;
+					}
+				}));
+			}
+
+			// wait for all scans since they share the connections we close afterwards
+			for (Future<Void> result : results) {
+				try {
+					result.get();
+				} catch (InterruptedException e) {
+					shouldRun = false;
+					if (failure == null)
+						failure = new SQLException("Interrupted while scanning city objects.", e);
+				} catch (ExecutionException e) {
+					shouldRun = false;
+					if (failure == null)
+						failure = e.getCause() instanceof SQLException ? 
+								(SQLException)e.getCause() : new SQLException("Failed to scan city objects.", e.getCause());
+				}
+			}
+		} finally {
+			scanExecutor.shutdownNow();
+		}
+
+		if (failure != null)
+			throw failure;
+	}
+
+	private void countRange(PreparedStatement stmt, ScanRange range) throws SQLException {
+		stmt.setLong(1, range.lowerId);
+		stmt.setLong(2, range.upperId);
+
+		ResultSet rs = stmt.executeQuery();
+		try {
+			if (rs.next())
+				range.count = rs.getLong(1);
+		} finally {
+			rs.close();
+		}
+	}
+
+	private void scanRange(PreparedStatement stmt, ScanRange range, AtomicLong scanned) throws SQLException {
+		if (featureCounterFilter.isActive()) {
+			if (range.count == 0
+					|| (firstElement != null && range.offset + range.count < firstElement)
+					|| (lastElement != null && range.offset >= lastElement))
+				return;
+		}
+
+		// keyset pagination keeps cursors short-lived and bounds the
+		// number of rows a driver may buffer on the client side
+		long lowerId = range.lowerId;
+		long element = range.offset;
+		int rows;
+
+		do {
+			stmt.setLong(1, lowerId);
+			stmt.setLong(2, range.upperId);
+
+			ResultSet rs = stmt.executeQuery();
+			rows = 0;
+
+			try {
+				while (rs.next() && shouldRun) {
+					rows++;
+					lowerId = rs.getLong(1);
+					element++;
+
+					if (firstElement != null && element < firstElement)
+						continue;
+
+					if (lastElement != null && element > lastElement)
+						return;
+
+					int classId = rs.getInt(2);
+					CityGMLClass cityObjectType = Util.classId2cityObject(classId);
+
+					// set initial context...
+					DBSplittingResult splitter = new DBSplittingResult(lowerId, cityObjectType);
+					dbWorkerPool.addWork(splitter);
+					scanned.incrementAndGet();
+				}
+			} finally {
+				rs.close();
+			}
+		} while (rows == SCAN_PAGE_SIZE && shouldRun);
+	}
+
 	private void queryCityObjectGroups() throws SQLException {
 		if (!shouldRun)
 			return;
@@ -555,4 +805,16 @@ public class DBSplitter {
 			}
 		}
 	}
+
+	private static final class ScanRange {
+		private final long lowerId;
+		private final long upperId;
+		private long count;
+		private long offset;
+
+		private ScanRange(long lowerId, long upperId) {
+			this.lowerId = lowerId;
+			this.upperId = upperId;
+		}
+	}
 }
@@ -32,13 +32,19 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 
 import org.citydb.api.geometry.GeometryObject;
 import org.citydb.config.Config;
 import org.citydb.log.Logger;
 import org.citydb.modules.citygml.common.database.cache.CacheTable;
+import org.citydb.modules.citygml.exporter.util.PositionListView;
+import org.citydb.util.IdBitmap;
 import org.citydb.util.Util;
 import org.citygml4j.model.citygml.CityGMLClass;
 import org.citygml4j.model.gml.GMLClass;
@@ -66,15 +72,19 @@ import org.citygml4j.util.gmlid.DefaultGMLIdManager;
 
 public class DBSurfaceGeometry implements DBExporter {
 	private final Logger LOG = Logger.getInstance();
+	private final int PREFETCH_BATCH_SIZE = 100;
 
 	private final Connection connection;
 	private final CacheTable tempTable;
+	private final IdBitmap globalAppearanceSurfaces;
 	private final DBExporterManager dbExporterManager;
 	private final Config config;
 
 	private PreparedStatement psSurfaceGeometry;
 	private PreparedStatement psTransformSurfaceGeometry;
+	private PreparedStatement psPrefetchSurfaceGeometry;
 	private PreparedStatement psImportGmlId;
+	private HashMap<Long, GeometryTree> prefetchedGeometries;
 
 	private boolean exportAppearance;
 	private boolean useXLink;
@@ -86,9 +96,10 @@ public class DBSurfaceGeometry implements DBExporter {
 	private int commitAfter;
 	private int batchCounter;
 
-	public DBSurfaceGeometry(Connection connection, CacheTable tempTable, Config config, DBExporterManager dbExporterManager) throws SQLException {
+	public DBSurfaceGeometry(Connection connection, CacheTable tempTable, IdBitmap globalAppearanceSurfaces, Config config, DBExporterManager dbExporterManager) throws SQLException {
 		this.connection = connection;
 		this.tempTable = tempTable;
+		this.globalAppearanceSurfaces = globalAppearanceSurfaces;
 		this.config = config;
 		this.dbExporterManager = dbExporterManager;
 
@@ -104,12 +115,18 @@ public class DBSurfaceGeometry implements DBExporter {
 			if (commitAfterProp != null && commitAfterProp > 0 && commitAfterProp <= dbExporterManager.getDatabaseAdapter().getMaxBatchSize())
 				commitAfter = commitAfterProp;
 
-			StringBuilder query = new StringBuilder("insert into ").append(tempTable.getTableName()).append(" ")
-					.append("select ? ");
-			if (dbExporterManager.getDatabaseAdapter().getSQLAdapter().requiresPseudoTableInSelect())
-				query.append("from ").append(dbExporterManager.getDatabaseAdapter().getSQLAdapter().getPseudoTableName()).append(" ");
+			StringBuilder query = new StringBuilder("insert into ").append(tempTable.getTableName()).append(" ");
+			if (globalAppearanceSurfaces != null) {
+				// textured surfaces are already known, so only ids actually needed are inserted
+				query.append("(ID) values (?)");
+			} else {
+				query.append("select ? ");
+				if (dbExporterManager.getDatabaseAdapter().getSQLAdapter().requiresPseudoTableInSelect())
+					query.append("from ").append(dbExporterManager.getDatabaseAdapter().getSQLAdapter().getPseudoTableName()).append(" ");
+
+				query.append("where exists (select 1 from TEXTUREPARAM where SURFACE_GEOMETRY_ID = ?)");
+			}
 
-			query.append("where exists (select 1 from TEXTUREPARAM where SURFACE_GEOMETRY_ID = ?)");
 			psImportGmlId = tempTable.getConnection().prepareStatement(query.toString());
 		}
 
@@ -123,19 +140,110 @@ public class DBSurfaceGeometry implements DBExporter {
 		.append("GEOMETRY, IMPLICIT_GEOMETRY from SURFACE_GEOMETRY where ROOT_ID = ?");
 		psSurfaceGeometry = connection.prepareStatement(query.toString());
 
+		String geometry = "GEOMETRY";
 		applyTransformation = config.getInternal().isTransformCoordinates();
 		if (applyTransformation) {	
 			int srid = config.getInternal().getExportTargetSRS().getSrid();
 			String transformOrNull = dbExporterManager.getDatabaseAdapter().getSQLAdapter().resolveDatabaseOperationName("citydb_srs.transform_or_null");
+			geometry = transformOrNull + "(GEOMETRY, " + srid + ") AS GEOMETRY";
 
 			query = new StringBuilder("select ID, GMLID, PARENT_ID, IS_SOLID, IS_COMPOSITE, IS_TRIANGULATED, IS_XLINK, IS_REVERSE, ")
-			.append(transformOrNull).append("(GEOMETRY, ").append(srid).append(") AS GEOMETRY, ")
+			.append(geometry).append(", ")
 			.append("IMPLICIT_GEOMETRY from SURFACE_GEOMETRY where ROOT_ID = ?");
 			psTransformSurfaceGeometry = connection.prepareStatement(query.toString());
 		}
+
+		// fetches the geometries of several roots at once
+		query = new StringBuilder("select ID, GMLID, PARENT_ID, IS_SOLID, IS_COMPOSITE, IS_TRIANGULATED, IS_XLINK, IS_REVERSE, ")
+		.append(geometry).append(", ")
+		.append("IMPLICIT_GEOMETRY, ROOT_ID from SURFACE_GEOMETRY where ROOT_ID in (?");
+		for (int i = 1; i < PREFETCH_BATCH_SIZE; i++)
+			query.append(", ?");
+
+		query.append(")");
+		psPrefetchSurfaceGeometry = connection.prepareStatement(query.toString());
+		prefetchedGeometries = new HashMap<Long, GeometryTree>();
+	}
+
+	public Set<Long> prefetch(ResultSet rs, int... rootIdColumns) throws SQLException {
+		Set<Long> rootIds = new HashSet<Long>();
+
+		// collect the root ids from a scrollable result set 
+		// and rewind it afterwards
+		while (rs.next()) {
+			for (int column : rootIdColumns) {
+				long rootId = rs.getLong(column);
+				if (!rs.wasNull() && rootId != 0)
+					rootIds.add(rootId);
+			}
+		}
+
+		rs.beforeFirst();
+		prefetch(rootIds);
+
+		return rootIds;
+	}
+
+	public void prefetch(Collection<Long> rootIds) throws SQLException {
+		// a single geometry is read on demand anyways
+		if (rootIds.size() < 2)
+			return;
+
+		Iterator<Long> iter = rootIds.iterator();
+		while (iter.hasNext()) {
+			long rootId = 0;
+			for (int i = 1; i <= PREFETCH_BATCH_SIZE; i++) {
+				// pad the last batch with the previous id
+				if (iter.hasNext())
+					rootId = iter.next();
+
+				psPrefetchSurfaceGeometry.setLong(i, rootId);
+			}
+
+			ResultSet rs = null;
+			try {
+				rs = psPrefetchSurfaceGeometry.executeQuery();
+				while (rs.next()) {
+					rootId = rs.getLong(11);
+
+					GeometryTree geomTree = prefetchedGeometries.get(rootId);
+					if (geomTree == null) {
+						geomTree = new GeometryTree();
+						prefetchedGeometries.put(rootId, geomTree);
+					}
+
+					GeometryNode geomNode = readGeometryNode(rs, 9);
+					if (geomNode != null)
+						geomTree.insertNode(geomNode, geomNode.parentId);
+				}
+			} finally {
+				if (rs != null)
+					rs.close();
+			}
+		}
+	}
+
+	public void discardPrefetched(Collection<Long> rootIds) {
+		for (Long rootId : rootIds)
+			prefetchedGeometries.remove(rootId);
 	}
 
 	public DBSurfaceGeometryResult read(long rootId) throws SQLException {
+		// prototypes of implicit geometries are never prefetched
+		GeometryTree geomTree = !isImplicit ? prefetchedGeometries.remove(rootId) : null;
+		if (geomTree == null)
+			geomTree = readGeometryTree(rootId);
+
+		// interpret geometry tree as a single abstract geometry
+		if (geomTree.root != 0)
+			return rebuildGeometry(geomTree.getNode(geomTree.root), false, false);
+		else {
+			LOG.error("Failed to interpret geometry object.");
+			return null;
+		}
+	}
+
+	private GeometryTree readGeometryTree(long rootId) throws SQLException {
 		ResultSet rs = null;
 
 		try {
@@ -152,53 +260,53 @@ public class DBSurfaceGeometry implements DBExporter {
 			// firstly, read the geometry entries into a
 			// flat geometry tree structure
 			while (rs.next()) {
-				long id = rs.getLong(1);
-				
-				// constructing a geometry node
-				GeometryNode geomNode = new GeometryNode();
-				geomNode.id = id;				
-				geomNode.gmlId = rs.getString(2);
-				geomNode.parentId = rs.getLong(3);
-				geomNode.isSolid = rs.getBoolean(4);
-				geomNode.isComposite = rs.getBoolean(5);
-				geomNode.isTriangulated = rs.getBoolean(6);
-				geomNode.isXlink = rs.getBoolean(7);
-				geomNode.isReverse = rs.getBoolean(8);
-
-				GeometryObject geometry = null;
-				Object object = rs.getObject(!isImplicit ? 9 : 10);
-				if (!rs.wasNull() && object != null) {
-					try {
-						geometry = dbExporterManager.getDatabaseAdapter().getGeometryConverter().getPolygon(object);
-					} catch (IllegalArgumentException e) {
-						StringBuilder msg = new StringBuilder("Skipping ").append(Util.getGeometrySignature(
-								GMLClass.POLYGON, 
-								geomNode.gmlId));
-						msg.append(": ").append(e.getMessage());
-
-						LOG.error(msg.toString());
-						continue;
-					}
-				}
-
-				geomNode.geometry = geometry;
+				GeometryNode geomNode = readGeometryNode(rs, !isImplicit ? 9 : 10);
 
 				// put it into our geometry tree
-				geomTree.insertNode(geomNode, geomNode.parentId);
+				if (geomNode != null)
+					geomTree.insertNode(geomNode, geomNode.parentId);
 			}
 
-			// interpret geometry tree as a single abstract geometry
-			if (geomTree.root != 0)
-				return rebuildGeometry(geomTree.getNode(geomTree.root), false, false);
-			else {
-				LOG.error("Failed to interpret geometry object.");
-				return null;
-			}
+			return geomTree;
 		} finally {
 			if (rs != null)
 				rs.close();
 		}
 	}
+
+	private GeometryNode readGeometryNode(ResultSet rs, int geometryColumn) throws SQLException {
+		long id = rs.getLong(1);
+
+		// constructing a geometry node
+		GeometryNode geomNode = new GeometryNode();
+		geomNode.id = id;				
+		geomNode.gmlId = rs.getString(2);
+		geomNode.parentId = rs.getLong(3);
+		geomNode.isSolid = rs.getBoolean(4);
+		geomNode.isComposite = rs.getBoolean(5);
+		geomNode.isTriangulated = rs.getBoolean(6);
+		geomNode.isXlink = rs.getBoolean(7);
+		geomNode.isReverse = rs.getBoolean(8);
+
+		GeometryObject geometry = null;
+		Object object = rs.getObject(geometryColumn);
+		if (!rs.wasNull() && object != null) {
+			try {
+				geometry = dbExporterManager.getDatabaseAdapter().getGeometryConverter().getPolygon(object);
+			} catch (IllegalArgumentException e) {
+				StringBuilder msg = new StringBuilder("Skipping ").append(Util.getGeometrySignature(
+						GMLClass.POLYGON, 
+						geomNode.gmlId));
+				msg.append(": ").append(e.getMessage());
+
+				LOG.error(msg.toString());
+				return null;
+			}
+		}
+
+		geomNode.geometry = geometry;
+		return geomNode;
+	}
 	
 	public DBSurfaceGeometryResult readImplicitGeometry(long rootId) throws SQLException {
 		try {
@@ -308,20 +416,8 @@ public class DBSurfaceGeometry implements DBExporter {
 			// we suppose we have one outer ring and one or more inner rings
 			boolean isExterior = true;
 			for (int ringIndex = 0; ringIndex < geomNode.geometry.getNumElements(); ringIndex++) {
-				List<Double> values = null;
-
 				// check whether we have to reverse the coordinate order
-				if (!geomNode.isReverse) { 
-					values = geomNode.geometry.getCoordinatesAsList(ringIndex);
-				} else {
-					values = new ArrayList<Double>(geomNode.geometry.getCoordinates(ringIndex).length);
-					double[] coordinates = geomNode.geometry.getCoordinates(ringIndex);
-					for (int i = coordinates.length - 3; i >= 0; i -= 3) {
-						values.add(coordinates[i]);
-						values.add(coordinates[i + 1]);
-						values.add(coordinates[i + 2]);
-					}
-				}
+				List<Double> values = new PositionListView(geomNode.geometry.getCoordinates(ringIndex), 3, geomNode.isReverse);
 
 				if (isExterior) {
 					LinearRing linearRing = new LinearRing();
@@ -637,8 +733,16 @@ public class DBSurfaceGeometry implements DBExporter {
 	}
 
 	private void writeToAppearanceCache(GeometryNode geomNode) throws SQLException {
-		psImportGmlId.setLong(1, geomNode.id);
-		psImportGmlId.setLong(2, geomNode.id);
+		if (globalAppearanceSurfaces != null) {
+			if (!globalAppearanceSurfaces.contains(geomNode.id))
+				return;
+
+			psImportGmlId.setLong(1, geomNode.id);
+		} else {
+			psImportGmlId.setLong(1, geomNode.id);
+			psImportGmlId.setLong(2, geomNode.id);
+		}
+
 		psImportGmlId.addBatch();
 		batchCounter++;
 
@@ -655,6 +759,8 @@ public class DBSurfaceGeometry implements DBExporter {
 		if (psTransformSurfaceGeometry != null)
 			psTransformSurfaceGeometry.close();
 
+		psPrefetchSurfaceGeometry.close();
+
 		if (psImportGmlId != null) {
 			psImportGmlId.executeBatch();
 			psImportGmlId.close();
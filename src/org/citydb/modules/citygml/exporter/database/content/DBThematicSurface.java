@@ -34,6 +34,7 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 
 import org.citydb.api.geometry.GeometryObject;
 import org.citydb.config.Config;
@@ -122,9 +123,9 @@ public class DBThematicSurface implements DBExporter {
 					.append("a.STREET, a.HOUSE_NUMBER, a.PO_BOX, a.ZIP_CODE, a.CITY, a.STATE, a.COUNTRY, a.MULTI_POINT, a.XAL_SOURCE").append(handleAddressGmlId ? ", a.GMLID " : " ")
 					.append("from THEMATIC_SURFACE ts left join OPENING_TO_THEM_SURFACE o2t on ts.ID = o2t.THEMATIC_SURFACE_ID left join OPENING op on op.ID = o2t.OPENING_ID left join ADDRESS a on op.ADDRESS_ID=a.ID where ");
 
-			psBuildingThematicSurface = connection.prepareStatement(query.toString() + "ts.BUILDING_ID = ?");
-			psBuildingInstallationThematicSurface = connection.prepareStatement(query.toString() + "ts.BUILDING_INSTALLATION_ID = ?");
-			psRoomThematicSurface = connection.prepareStatement(query.toString() + "ts.ROOM_ID = ?");
+			psBuildingThematicSurface = connection.prepareStatement(query.toString() + "ts.BUILDING_ID = ?", ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY);
+			psBuildingInstallationThematicSurface = connection.prepareStatement(query.toString() + "ts.BUILDING_INSTALLATION_ID = ?", ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY);
+			psRoomThematicSurface = connection.prepareStatement(query.toString() + "ts.ROOM_ID = ?", ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY);
 		} else {
 			int srid = config.getInternal().getExportTargetSRS().getSrid();
 			String transformOrNull = dbExporterManager.getDatabaseAdapter().getSQLAdapter().resolveDatabaseOperationName("citydb_srs.transform_or_null");
@@ -140,9 +141,9 @@ public class DBThematicSurface implements DBExporter {
 					.append(transformOrNull).append("(a.MULTI_POINT, ").append(srid).append(") AS MULTI_POINT, a.XAL_SOURCE").append(handleAddressGmlId ? ", a.GMLID " : " ")
 					.append("from THEMATIC_SURFACE ts left join OPENING_TO_THEM_SURFACE o2t on ts.ID = o2t.THEMATIC_SURFACE_ID left join OPENING op on op.ID = o2t.OPENING_ID left join ADDRESS a on op.ADDRESS_ID=a.ID where ");
 
-			psBuildingThematicSurface = connection.prepareStatement(query.toString() + "ts.BUILDING_ID = ?");
-			psBuildingInstallationThematicSurface = connection.prepareStatement(query.toString() + "ts.BUILDING_INSTALLATION_ID = ?");
-			psRoomThematicSurface = connection.prepareStatement(query.toString() + "ts.ROOM_ID = ?");
+			psBuildingThematicSurface = connection.prepareStatement(query.toString() + "ts.BUILDING_ID = ?", ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY);
+			psBuildingInstallationThematicSurface = connection.prepareStatement(query.toString() + "ts.BUILDING_INSTALLATION_ID = ?", ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY);
+			psRoomThematicSurface = connection.prepareStatement(query.toString() + "ts.ROOM_ID = ?", ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY);
 		}
 
 		surfaceGeometryExporter = (DBSurfaceGeometry)dbExporterManager.getDBExporter(DBExporterEnum.SURFACE_GEOMETRY);
@@ -169,6 +170,7 @@ public class DBThematicSurface implements DBExporter {
 
 	private void read(AbstractCityObject cityObject, long parentId) throws SQLException {
 		final List<Long> boundarySurfaceIds = new ArrayList<Long>();
+		Set<Long> prefetchedRootIds = null;
 		ResultSet rs = null;
 
 		try {
@@ -191,6 +193,9 @@ public class DBThematicSurface implements DBExporter {
 				return;
 			}
 
+			// load the geometries of all boundary surfaces and openings at once
+			prefetchedRootIds = surfaceGeometryExporter.prefetch(rs, 3, 4, 5, 9, 10);
+
 			long currentBoundarySurfaceId = 0;
 			AbstractBoundarySurface boundarySurface = null;
 
@@ -479,6 +484,9 @@ public class DBThematicSurface implements DBExporter {
 		} finally {
 			if (rs != null)
 				rs.close();
+
+			if (prefetchedRootIds != null)
+				surfaceGeometryExporter.discardPrefetched(prefetchedRootIds);
 		}
 	}
 
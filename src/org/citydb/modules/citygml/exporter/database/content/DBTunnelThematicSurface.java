@@ -33,6 +33,7 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 
 import org.citydb.api.geometry.GeometryObject;
 import org.citydb.config.Config;
@@ -111,9 +112,9 @@ public class DBTunnelThematicSurface implements DBExporter {
 			.append("op.LOD3_IMPLICIT_REP_ID, op.LOD4_IMPLICIT_REP_ID, op.LOD3_IMPLICIT_REF_POINT, op.LOD4_IMPLICIT_REF_POINT, op.LOD3_IMPLICIT_TRANSFORMATION, op.LOD4_IMPLICIT_TRANSFORMATION ")
 			.append("from TUNNEL_THEMATIC_SURFACE ts left join TUNNEL_OPEN_TO_THEM_SRF o2t on ts.ID = o2t.TUNNEL_THEMATIC_SURFACE_ID left join TUNNEL_OPENING op on op.ID = o2t.TUNNEL_OPENING_ID where ");
 
-			psTunnelThematicSurface = connection.prepareStatement(query.toString() + "ts.TUNNEL_ID = ?");
-			psTunnelInstallationThematicSurface = connection.prepareStatement(query.toString() + "ts.TUNNEL_INSTALLATION_ID = ?");
-			psHollowSpaceThematicSurface = connection.prepareStatement(query.toString() + "ts.TUNNEL_HOLLOW_SPACE_ID = ?");
+			psTunnelThematicSurface = connection.prepareStatement(query.toString() + "ts.TUNNEL_ID = ?", ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY);
+			psTunnelInstallationThematicSurface = connection.prepareStatement(query.toString() + "ts.TUNNEL_INSTALLATION_ID = ?", ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY);
+			psHollowSpaceThematicSurface = connection.prepareStatement(query.toString() + "ts.TUNNEL_HOLLOW_SPACE_ID = ?", ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY);
 		} else {
 			int srid = config.getInternal().getExportTargetSRS().getSrid();
 			String transformOrNull = dbExporterManager.getDatabaseAdapter().getSQLAdapter().resolveDatabaseOperationName("citydb_srs.transform_or_null");
@@ -127,9 +128,9 @@ public class DBTunnelThematicSurface implements DBExporter {
 			.append("op.LOD3_IMPLICIT_TRANSFORMATION, op.LOD4_IMPLICIT_TRANSFORMATION ")
 			.append("from TUNNEL_THEMATIC_SURFACE ts left join TUNNEL_OPEN_TO_THEM_SRF o2t on ts.ID = o2t.TUNNEL_THEMATIC_SURFACE_ID left join TUNNEL_OPENING op on op.ID = o2t.TUNNEL_OPENING_ID where ");
 
-			psTunnelThematicSurface = connection.prepareStatement(query.toString() + "ts.TUNNEL_ID = ?");
-			psTunnelInstallationThematicSurface = connection.prepareStatement(query.toString() + "ts.TUNNEL_INSTALLATION_ID = ?");
-			psHollowSpaceThematicSurface = connection.prepareStatement(query.toString() + "ts.TUNNEL_HOLLOW_SPACE_ID = ?");
+			psTunnelThematicSurface = connection.prepareStatement(query.toString() + "ts.TUNNEL_ID = ?", ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY);
+			psTunnelInstallationThematicSurface = connection.prepareStatement(query.toString() + "ts.TUNNEL_INSTALLATION_ID = ?", ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY);
+			psHollowSpaceThematicSurface = connection.prepareStatement(query.toString() + "ts.TUNNEL_HOLLOW_SPACE_ID = ?", ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY);
 		}
 
 		surfaceGeometryExporter = (DBSurfaceGeometry)dbExporterManager.getDBExporter(DBExporterEnum.SURFACE_GEOMETRY);
@@ -155,6 +156,7 @@ public class DBTunnelThematicSurface implements DBExporter {
 
 	private void read(AbstractCityObject cityObject, long parentId) throws SQLException {
 		final List<Long> boundarySurfaceIds = new ArrayList<Long>();
+		Set<Long> prefetchedRootIds = null;
 		ResultSet rs = null;
 
 		try {
@@ -177,6 +179,9 @@ public class DBTunnelThematicSurface implements DBExporter {
 				return;
 			}
 
+			// load the geometries of all boundary surfaces and openings at once
+			prefetchedRootIds = surfaceGeometryExporter.prefetch(rs, 3, 4, 5, 8, 9);
+
 			long currentBoundarySurfaceId = 0;
 			AbstractBoundarySurface boundarySurface = null;
 
@@ -417,6 +422,9 @@ public class DBTunnelThematicSurface implements DBExporter {
 		} finally {
 			if (rs != null)
 				rs.close();
+
+			if (prefetchedRootIds != null)
+				surfaceGeometryExporter.discardPrefetched(prefetchedRootIds);
 		}
 	}
 
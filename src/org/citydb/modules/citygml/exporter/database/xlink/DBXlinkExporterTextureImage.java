@@ -38,8 +38,7 @@ import org.citydb.database.adapter.BlobExportAdapter;
 import org.citydb.database.adapter.BlobType;
 import org.citydb.log.Logger;
 import org.citydb.modules.citygml.common.database.xlink.DBXlinkTextureFile;
-import org.citydb.modules.common.event.CounterEvent;
-import org.citydb.modules.common.event.CounterType;
+import org.citydb.modules.common.metrics.Metrics;
 import org.citydb.util.Util;
 
 public class DBXlinkExporterTextureImage implements DBXlinkExporter {
@@ -55,7 +54,7 @@ public class DBXlinkExporterTextureImage implements DBXlinkExporter {
 	private boolean overwriteTextureImage;
 	private boolean useBuckets;
 	private boolean[] buckets; 
-	private CounterEvent counter;
+	private Metrics metrics;
 
 	public DBXlinkExporterTextureImage(Connection connection, Config config, DBXlinkExporterManager xlinkExporterManager) throws SQLException {
 		this.xlinkExporterManager = xlinkExporterManager;
@@ -70,7 +69,7 @@ public class DBXlinkExporterTextureImage implements DBXlinkExporter {
 		texturePathIsLocal = config.getProject().getExporter().getAppearances().getTexturePath().isRelative();
 		texturePath = config.getInternal().getExportTextureFilePath();
 		overwriteTextureImage = config.getProject().getExporter().getAppearances().isSetOverwriteTextureFiles();
-		counter = new CounterEvent(CounterType.TEXTURE_IMAGE, 1, this);
+		metrics = Metrics.getInstance();
 		useBuckets = config.getProject().getExporter().getAppearances().getTexturePath().isUseBuckets() &&
 				config.getProject().getExporter().getAppearances().getTexturePath().getNoOfBuckets() > 0;
 
@@ -127,7 +126,7 @@ public class DBXlinkExporterTextureImage implements DBXlinkExporter {
 		}
 
 		// load image data into file
-		xlinkExporterManager.propagateEvent(counter);
+		metrics.updateTextureImageCounter(1);
 		return textureImageExportAdapter.getInFile(xlink.getId(), fileName, fileURI);
 	}
 
@@ -50,6 +50,8 @@ public class FeatureWriter implements FeatureProcessor {
 	private final WorkerPool<SAXEventBuffer> ioWriterPool;
 	private final JAXBBuilder jaxbBuilder;
 	private final JAXBMarshaller jaxbMarshaller;
+	private final PositionListWriter posListWriter;
+	private Marshaller marshaller;
 	
 	public FeatureWriter(WorkerPool<SAXEventBuffer> ioWriterPool, JAXBBuilder jaxbBuilder, Config config) {
 		this.ioWriterPool = ioWriterPool;
@@ -57,6 +59,7 @@ public class FeatureWriter implements FeatureProcessor {
 				
 		CityGMLVersion version = Util.toCityGMLVersion(config.getProject().getExporter().getCityGMLVersion());
 		jaxbMarshaller = jaxbBuilder.createJAXBMarshaller(version);
+		posListWriter = new PositionListWriter();
 	}
 	
 	@Override
@@ -81,13 +84,24 @@ public class FeatureWriter implements FeatureProcessor {
 
 		if (member != null) {
 			try {
+				// feature writers are created per worker, so the marshaller can be reused
+				if (marshaller == null) {
+					marshaller = jaxbBuilder.getJAXBContext().createMarshaller();
+					marshaller.setProperty(Marshaller.JAXB_FRAGMENT, Boolean.TRUE);
+				}
+
 				SAXEventBuffer buffer = new SAXEventBuffer();
-				Marshaller marshaller = jaxbBuilder.getJAXBContext().createMarshaller();
-				marshaller.setProperty(Marshaller.JAXB_FRAGMENT, Boolean.TRUE);
+				posListWriter.setContentHandler(buffer);
 
-				JAXBElement<?> jaxbElement = jaxbMarshaller.marshalJAXBElement(member);
-				if (jaxbElement != null)
-					marshaller.marshal(jaxbElement, buffer);
+				// coordinates are written from their arrays instead of the JAXB tree
+				posListWriter.detach(abstractFeature);
+				try {
+					JAXBElement<?> jaxbElement = jaxbMarshaller.marshalJAXBElement(member);
+					if (jaxbElement != null)
+						marshaller.marshal(jaxbElement, posListWriter);
+				} finally {
+					posListWriter.restore();
+				}
 
 				if (!buffer.isEmpty())
 					ioWriterPool.addWork(buffer);
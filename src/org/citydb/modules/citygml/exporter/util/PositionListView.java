@@ -0,0 +1,88 @@
+/*
+ * 3D City Database - The Open Source CityGML Database
+ * http://www.3dcitydb.org/
+ * 
+ * Copyright 2013 - 2016
+ * Chair of Geoinformatics
+ * Technical University of Munich, Germany
+ * https://www.gis.bgu.tum.de/
+ * 
+ * The 3D City Database is jointly developed with the following
+ * cooperation partners:
+ * 
+ * virtualcitySYSTEMS GmbH, Berlin <http://www.virtualcitysystems.de/>
+ * M.O.S.S. Computer Grafik Systeme GmbH, Taufkirchen <http://www.moss.de/>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.citydb.modules.citygml.exporter.util;
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+/**
+ * Read-only list view on the coordinate array of a geometry object. Used as 
+ * value of gml:posList elements so that coordinates are neither copied nor boxed 
+ * before they are marshalled. If reverse is set, the order of the positions is 
+ * reversed whereas the order of the ordinates within a position is kept.
+ */
+public class PositionListView extends AbstractList<Double> implements RandomAccess {
+	private final double[] coordinates;
+	private final int dimension;
+	private final boolean reverse;
+
+	public PositionListView(double[] coordinates, int dimension, boolean reverse) {
+		this.coordinates = coordinates;
+		this.dimension = dimension;
+		this.reverse = reverse;
+	}
+
+	public PositionListView(double[] coordinates, int dimension) {
+		this(coordinates, dimension, false);
+	}
+
+	@Override
+	public Double get(int index) {
+		if (index < 0 || index >= coordinates.length)
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + coordinates.length);
+
+		if (!reverse)
+			return coordinates[index];
+
+		int position = index / dimension;
+		return coordinates[coordinates.length - (position + 1) * dimension + index % dimension];
+	}
+
+	@Override
+	public int size() {
+		return coordinates.length;
+	}
+
+	public void appendTo(StringBuilder builder) {
+		// same lexical representation of xs:double values as used by JAXB
+		for (int i = 0; i < coordinates.length; i++) {
+			if (i > 0)
+				builder.append(' ');
+
+			int index = reverse ? coordinates.length - (i / dimension + 1) * dimension + i % dimension : i;
+			double value = coordinates[index];
+			if (Double.isNaN(value))
+				builder.append("NaN");
+			else if (Double.isInfinite(value))
+				builder.append(value > 0 ? "INF" : "-INF");
+			else
+				builder.append(value);
+		}
+	}
+
+}
@@ -0,0 +1,127 @@
+/*
+ * 3D City Database - The Open Source CityGML Database
+ * http://www.3dcitydb.org/
+ * 
+ * Copyright 2013 - 2016
+ * Chair of Geoinformatics
+ * Technical University of Munich, Germany
+ * https://www.gis.bgu.tum.de/
+ * 
+ * The 3D City Database is jointly developed with the following
+ * cooperation partners:
+ * 
+ * virtualcitySYSTEMS GmbH, Berlin <http://www.virtualcitysystems.de/>
+ * M.O.S.S. Computer Grafik Systeme GmbH, Taufkirchen <http://www.moss.de/>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.citydb.modules.citygml.exporter.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.citygml4j.model.gml.feature.AbstractFeature;
+import org.citygml4j.model.gml.geometry.primitives.DirectPositionList;
+import org.citygml4j.model.gml.geometry.primitives.LineString;
+import org.citygml4j.model.gml.geometry.primitives.LinearRing;
+import org.citygml4j.model.module.gml.GMLCoreModule;
+import org.citygml4j.util.walker.GMLWalker;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+import org.xml.sax.helpers.XMLFilterImpl;
+
+/**
+ * SAX filter that writes the gml:posList values of exported geometries directly 
+ * from the coordinate arrays of their {@link PositionListView}. Before a feature 
+ * is marshalled, the views are detached from the feature and the position lists 
+ * are tagged with a marker srsName, so JAXB neither copies nor formats the 
+ * coordinates. When the marked element passes the filter, the marker is removed 
+ * and the coordinates are written as character data. Instances are not thread-safe.
+ */
+public class PositionListWriter extends XMLFilterImpl {
+	private static final String MARKER = "#citydb-posList-";
+	private static final String SRS_NAME = "srsName";
+
+	private final List<DirectPositionList> posLists = new ArrayList<DirectPositionList>();
+	private final List<PositionListView> views = new ArrayList<PositionListView>();
+	private final StringBuilder builder = new StringBuilder();
+	private char[] buffer = new char[1024];
+
+	private final GMLWalker walker = new GMLWalker() {
+		@Override
+		public void visit(LinearRing linearRing) {
+			detach(linearRing.getPosList());
+			super.visit(linearRing);
+		}
+
+		@Override
+		public void visit(LineString lineString) {
+			detach(lineString.getPosList());
+			super.visit(lineString);
+		}
+	};
+
+	public void detach(AbstractFeature feature) {
+		walker.reset();
+		feature.accept(walker);
+	}
+
+	public void restore() {
+		for (int i = 0; i < posLists.size(); i++) {
+			DirectPositionList posList = posLists.get(i);
+			posList.unsetSrsName();
+			posList.setValue(views.get(i));
+		}
+
+		posLists.clear();
+		views.clear();
+	}
+
+	private void detach(DirectPositionList posList) {
+		// position lists shared by several geometries are detached only once
+		if (posList == null || posList.isSetSrsName() || !(posList.getValue() instanceof PositionListView))
+			return;
+
+		posList.setSrsName(MARKER + views.size());
+		views.add((PositionListView)posList.getValue());
+		posLists.add(posList);
+		posList.unsetValue();
+	}
+
+	@Override
+	public void startElement(String uri, String localName, String qName, Attributes atts) throws SAXException {
+		int index = atts.getIndex(SRS_NAME);
+		if (index == -1 || !localName.equals("posList") || !atts.getValue(index).startsWith(MARKER)
+				|| !uri.equals(GMLCoreModule.v3_1_1.getNamespaceURI())) {
+			super.startElement(uri, localName, qName, atts);
+			return;
+		}
+
+		PositionListView view = views.get(Integer.parseInt(atts.getValue(index).substring(MARKER.length())));
+		AttributesImpl attributes = new AttributesImpl(atts);
+		attributes.removeAttribute(index);
+		super.startElement(uri, localName, qName, attributes);
+
+		builder.setLength(0);
+		view.appendTo(builder);
+
+		int length = builder.length();
+		if (buffer.length < length)
+			buffer = new char[Math.max(length, buffer.length * 2)];
+
+		builder.getChars(0, length, buffer, 0);
+		super.characters(buffer, 0, length);
+	}
+
+}
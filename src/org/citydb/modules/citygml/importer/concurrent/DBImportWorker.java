@@ -30,6 +30,11 @@ package org.citydb.modules.citygml.importer.concurrent;
 import java.io.IOException;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.locks.ReentrantLock;
 
 import org.citydb.api.concurrent.Worker;
@@ -60,19 +65,18 @@ import org.citydb.modules.citygml.importer.database.content.DBSolitaryVegetatObj
 import org.citydb.modules.citygml.importer.database.content.DBTransportationComplex;
 import org.citydb.modules.citygml.importer.database.content.DBTunnel;
 import org.citydb.modules.citygml.importer.database.content.DBWaterBody;
+import org.citydb.modules.citygml.importer.util.ImportFileContext;
 import org.citydb.modules.citygml.importer.util.ImportLogger;
 import org.citydb.modules.citygml.importer.util.ImportLogger.ImportLogEntry;
-import org.citydb.modules.common.event.CounterEvent;
-import org.citydb.modules.common.event.CounterType;
 import org.citydb.modules.common.event.EventType;
-import org.citydb.modules.common.event.FeatureCounterEvent;
-import org.citydb.modules.common.event.GeometryCounterEvent;
 import org.citydb.modules.common.event.InterruptEvent;
 import org.citydb.modules.common.event.InterruptReason;
 import org.citydb.modules.common.filter.ImportFilter;
 import org.citydb.modules.common.filter.feature.BoundingBoxFilter;
 import org.citydb.modules.common.filter.feature.GmlIdFilter;
 import org.citydb.modules.common.filter.feature.GmlNameFilter;
+import org.citydb.modules.common.metrics.LatencyHistogram;
+import org.citydb.modules.common.metrics.Metrics;
 import org.citydb.util.Util;
 import org.citygml4j.builder.jaxb.JAXBBuilder;
 import org.citygml4j.model.citygml.CityGML;
@@ -109,9 +113,14 @@ public class DBImportWorker extends Worker<CityGML> implements EventHandler {
 	private final EventDispatcher eventDispatcher;
 	private final ImportFilter importFilter;
 	private final ImportLogger importLogger;
+	private final Metrics metrics;
+	private final LatencyHistogram featureLatency;
+	private final LatencyHistogram commitLatency;
 
 	private Connection batchConn;
-	private DBImporterManager dbImporterManager;
+	private DBImporterManager importerManager;
+	private HashMap<ImportFileContext, DBImporterManager> fileImporterManagers;
+	private List<ImportFileContext> uncommittedFiles;
 	private int updateCounter = 0;
 	private int commitAfter = 20;
 
@@ -137,6 +146,10 @@ public class DBImportWorker extends Worker<CityGML> implements EventHandler {
 		this.config = config;
 		this.eventDispatcher = eventDispatcher;
 
+		metrics = Metrics.getInstance();
+		featureLatency = metrics.getLatencyHistogram("import.feature");
+		commitLatency = metrics.getLatencyHistogram("import.commit");
+
 		init();
 	}
 
@@ -157,7 +170,7 @@ public class DBImportWorker extends Worker<CityGML> implements EventHandler {
 		featureGmlIdFilter = importFilter.getGmlIdFilter();
 		featureGmlNameFilter = importFilter.getGmlNameFilter();		
 
-		dbImporterManager = new DBImporterManager(
+		importerManager = new DBImporterManager(
 				batchConn,
 				dbConnectionPool.getActiveDatabaseAdapter(),
 				jaxbBuilder,
@@ -166,6 +179,9 @@ public class DBImportWorker extends Worker<CityGML> implements EventHandler {
 				uidCacheManager,
 				eventDispatcher);
 
+		fileImporterManagers = new HashMap<ImportFileContext, DBImporterManager>();
+		uncommittedFiles = new ArrayList<ImportFileContext>();
+
 		Integer commitAfterProp = database.getUpdateBatching().getFeatureBatchValue();
 		if (commitAfterProp != null && commitAfterProp > 0)
 			commitAfter = commitAfterProp;
@@ -212,7 +228,7 @@ public class DBImportWorker extends Worker<CityGML> implements EventHandler {
 
 			try {
 				if (shouldWork) {
-					dbImporterManager.executeBatch();
+					executeBatch();
 					batchConn.commit();
 					updateImportContext();
 				}
@@ -230,7 +246,9 @@ public class DBImportWorker extends Worker<CityGML> implements EventHandler {
 
 		} finally {
 			try {
-				dbImporterManager.close();
+				importerManager.close();
+				for (DBImporterManager fileImporterManager : fileImporterManagers.values())
+					fileImporterManager.close();
 			} catch (SQLException e) {
 				// 
 			}
@@ -249,11 +267,18 @@ public class DBImportWorker extends Worker<CityGML> implements EventHandler {
 	private void doWork(CityGML work) {
 		final ReentrantLock runLock = this.runLock;
 		runLock.lock();
+		long start = System.nanoTime();
+
+		// features of concurrently imported files are imported using
+		// the gml:id codespace and import log of their file
+		ImportFileContext context = ImportFileContext.get(work);
+		boolean release = context != null;
 
 		try {
 			if (!shouldWork)
 				return;
 
+			DBImporterManager dbImporterManager = getDBImporterManager(context);
 			long id = 0;
 
 			if (work.getCityGMLClass() == CityGMLClass.APPEARANCE) {
@@ -398,12 +423,21 @@ public class DBImportWorker extends Worker<CityGML> implements EventHandler {
 				}
 			}
 
-			if (id != 0)
+			if (id != 0) {
 				updateCounter++;
 
+				// the file is released once the feature has been committed
+				if (context != null) {
+					uncommittedFiles.add(context);
+					release = false;
+				}
+			}
+
 			if (updateCounter == commitAfter) {
-				dbImporterManager.executeBatch();
+				long commitStart = System.nanoTime();
+				executeBatch();
 				batchConn.commit();
+				commitLatency.record(System.nanoTime() - commitStart);
 				updateImportContext();
 			}
 
@@ -414,23 +448,82 @@ public class DBImportWorker extends Worker<CityGML> implements EventHandler {
 				//
 			}
 
+			release = false;
 			eventDispatcher.triggerSyncEvent(new InterruptEvent(InterruptReason.SQL_ERROR, "Aborting import due to SQL errors.", LogLevel.WARN, e, eventChannel, this));
 		} catch (IOException e) {
+			release = false;
 			eventDispatcher.triggerSyncEvent(new InterruptEvent(InterruptReason.IMPORT_LOG_ERROR, "Aborting import due I/O errors.", LogLevel.WARN, e, eventChannel, this));
 		} catch (Throwable e) {
 			// this is to catch general exceptions that may occur during the import
+			release = false;
 			eventDispatcher.triggerSyncEvent(new InterruptEvent(InterruptReason.UNKNOWN_ERROR, "Aborting due to an unexpected " + e.getClass().getName() + " error.", LogLevel.ERROR, e, eventChannel, this));
 		} finally {
+			// filtered or skipped features do not have to wait for the next commit.
+			// on errors, the importer closes the file as failed instead
+			if (release)
+				context.release();
+
+			featureLatency.record(System.nanoTime() - start);
 			runLock.unlock();
 		}
 	}
 
-	private void updateImportContext() throws IOException {
-		eventDispatcher.triggerEvent(new FeatureCounterEvent(dbImporterManager.getAndResetFeatureCounter(), this));
-		eventDispatcher.triggerEvent(new GeometryCounterEvent(dbImporterManager.getAndResetGeometryCounter(), this));
-		eventDispatcher.triggerEvent(new CounterEvent(CounterType.TOPLEVEL_FEATURE, updateCounter, this));
+	private DBImporterManager getDBImporterManager(ImportFileContext context) throws SQLException {
+		if (context == null)
+			return importerManager;
+
+		DBImporterManager dbImporterManager = fileImporterManagers.get(context);
+		if (dbImporterManager == null) {
+			dbImporterManager = new DBImporterManager(
+					batchConn,
+					dbConnectionPool.getActiveDatabaseAdapter(),
+					jaxbBuilder,
+					config,
+					tmpXlinkPool,
+					uidCacheManager,
+					eventDispatcher,
+					context);
+
+			fileImporterManagers.put(context, dbImporterManager);
+		}
+
+		return dbImporterManager;
+	}
+
+	private void executeBatch() throws SQLException {
+		importerManager.executeBatch();
+		for (DBImporterManager dbImporterManager : fileImporterManagers.values())
+			dbImporterManager.executeBatch();
+	}
+
+	private void updateImportContext() throws IOException, SQLException {
+		updateImportContext(importerManager, importLogger);
+		for (Map.Entry<ImportFileContext, DBImporterManager> entry : fileImporterManagers.entrySet())
+			updateImportContext(entry.getValue(), entry.getKey().getImportLogger());
+
+		metrics.updateTopLevelFeatureCounter(updateCounter);
 		updateCounter = 0;
 
+		// all features of the committed files are in the database now
+		for (ImportFileContext context : uncommittedFiles)
+			context.release();
+
+		uncommittedFiles.clear();
+
+		// free resources of files that have been completely imported
+		Iterator<Map.Entry<ImportFileContext, DBImporterManager>> iter = fileImporterManagers.entrySet().iterator();
+		while (iter.hasNext()) {
+			Map.Entry<ImportFileContext, DBImporterManager> entry = iter.next();
+			if (entry.getKey().isClosed()) {
+				entry.getValue().close();
+				iter.remove();
+			}
+		}
+	}
+
+	private void updateImportContext(DBImporterManager dbImporterManager, ImportLogger importLogger) throws IOException {
+		dbImporterManager.publishAndResetCounters(metrics);
+
 		// log imported top-level features
 		if (importLogger != null) {
 			for (ImportLogEntry entry : dbImporterManager.getAndResetImportedFeatures())
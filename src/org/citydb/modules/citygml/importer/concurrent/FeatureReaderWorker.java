@@ -35,8 +35,11 @@ import org.citydb.api.event.EventDispatcher;
 import org.citydb.api.log.LogLevel;
 import org.citydb.config.Config;
 import org.citydb.log.Logger;
+import org.citydb.modules.citygml.importer.util.ImportFileChunk;
+import org.citydb.modules.citygml.importer.util.XMLChunkFilter;
 import org.citydb.modules.common.event.InterruptEvent;
 import org.citydb.modules.common.event.InterruptReason;
+import org.citydb.modules.common.filter.ImportFilter;
 import org.citygml4j.model.citygml.CityGML;
 import org.citygml4j.xml.io.reader.MissingADESchemaException;
 import org.citygml4j.xml.io.reader.UnmarshalException;
@@ -50,14 +53,19 @@ public class FeatureReaderWorker extends Worker<XMLChunk> {
 	private final WorkerPool<CityGML> dbWorkerPool;
 	private final EventDispatcher eventDispatcher;
 	private final boolean useValidation;
+	private final XMLChunkFilter chunkFilter;
 
 	public FeatureReaderWorker(WorkerPool<CityGML> dbWorkerPool,
+			ImportFilter importFilter,
 			Config config,
 			EventDispatcher eventDispatcher) {
 		this.dbWorkerPool = dbWorkerPool;
 		this.eventDispatcher = eventDispatcher;
 
 		useValidation = config.getProject().getImporter().getXMLValidation().isSetUseXMLValidation();
+
+		// chunks have to be unmarshalled for validation errors to be reported
+		chunkFilter = !useValidation ? new XMLChunkFilter(importFilter) : null;
 	}
 	
 	@Override
@@ -101,11 +109,19 @@ public class FeatureReaderWorker extends Worker<XMLChunk> {
 		final ReentrantLock runLock = this.runLock;
 		runLock.lock();
 
+		boolean forwarded = false;
+
 		try {
 			try {
+				// skip features that will not pass the import filter anyways
+				if (chunkFilter != null && chunkFilter.filter(work))
+					return;
+
 				CityGML cityGML = work.unmarshal();
-				if (!useValidation || work.hasPassedXMLValidation())
+				if (!useValidation || work.hasPassedXMLValidation()) {
 					dbWorkerPool.addWork(cityGML);
+					forwarded = true;
+				}
 			} catch (UnmarshalException e) {
 				if (!useValidation || work.hasPassedXMLValidation()) {
 					StringBuilder msg = new StringBuilder();				
@@ -119,6 +135,10 @@ public class FeatureReaderWorker extends Worker<XMLChunk> {
 				eventDispatcher.triggerEvent(new InterruptEvent(InterruptReason.UNKNOWN_ERROR, "Aborting due to an unexpected " + e.getClass().getName() + " error.", LogLevel.ERROR, e, eventChannel, this));
 			}
 		} finally {
+			// the import file is not waiting for chunks that will never be imported
+			if (!forwarded && work instanceof ImportFileChunk)
+				((ImportFileChunk)work).getContext().release();
+
 			runLock.unlock();
 		}
 	}
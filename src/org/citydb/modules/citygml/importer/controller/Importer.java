@@ -29,18 +29,28 @@ package org.citydb.modules.citygml.importer.controller;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.EnumMap;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.xml.bind.ValidationEvent;
 import javax.xml.bind.ValidationEventHandler;
 import javax.xml.namespace.QName;
 
 import org.citydb.api.concurrent.PoolSizeAdaptationStrategy;
+import org.citydb.api.concurrent.WorkStealingWorkerPool;
 import org.citydb.api.concurrent.WorkerPool;
 import org.citydb.api.event.Event;
 import org.citydb.api.event.EventDispatcher;
@@ -53,9 +63,11 @@ import org.citydb.config.project.database.Database;
 import org.citydb.config.project.database.Workspace;
 import org.citydb.config.project.general.AffineTransformation;
 import org.citydb.config.project.importer.ImportGmlId;
+import org.citydb.config.project.importer.ImportLog;
 import org.citydb.config.project.importer.ImportResources;
 import org.citydb.config.project.importer.Index;
 import org.citydb.config.project.importer.XMLValidation;
+import org.citydb.config.project.resources.UIDCacheConfig;
 import org.citydb.database.DatabaseConnectionPool;
 import org.citydb.database.IndexStatusInfo;
 import org.citydb.database.IndexStatusInfo.IndexInfoObject;
@@ -64,10 +76,12 @@ import org.citydb.database.IndexStatusInfo.IndexType;
 import org.citydb.database.adapter.AbstractUtilAdapter;
 import org.citydb.io.DirectoryScanner;
 import org.citydb.io.DirectoryScanner.CityGMLFilenameFilter;
+import org.citydb.io.InputFile;
 import org.citydb.log.Logger;
 import org.citydb.modules.citygml.common.database.cache.CacheTableManager;
 import org.citydb.modules.citygml.common.database.uid.UIDCacheManager;
 import org.citydb.modules.citygml.common.database.uid.UIDCacheType;
+import org.citydb.modules.citygml.common.database.uid.UIDCachingModel;
 import org.citydb.modules.citygml.common.database.xlink.DBXlink;
 import org.citydb.modules.citygml.importer.concurrent.DBImportWorkerFactory;
 import org.citydb.modules.citygml.importer.concurrent.DBImportXlinkResolverWorkerFactory;
@@ -75,15 +89,16 @@ import org.citydb.modules.citygml.importer.concurrent.DBImportXlinkWorkerFactory
 import org.citydb.modules.citygml.importer.concurrent.FeatureReaderWorkerFactory;
 import org.citydb.modules.citygml.importer.database.uid.FeatureGmlIdCache;
 import org.citydb.modules.citygml.importer.database.uid.GeometryGmlIdCache;
+import org.citydb.modules.citygml.importer.database.uid.OffHeapGmlIdCache;
 import org.citydb.modules.citygml.importer.database.uid.TextureImageCache;
 import org.citydb.modules.citygml.importer.database.xlink.resolver.DBXlinkSplitter;
 import org.citydb.modules.citygml.importer.util.AffineTransformer;
+import org.citydb.modules.citygml.importer.util.ImportFileChunk;
+import org.citydb.modules.citygml.importer.util.ImportFileContext;
 import org.citydb.modules.citygml.importer.util.ImportLogger;
 import org.citydb.modules.common.event.CounterEvent;
 import org.citydb.modules.common.event.CounterType;
 import org.citydb.modules.common.event.EventType;
-import org.citydb.modules.common.event.FeatureCounterEvent;
-import org.citydb.modules.common.event.GeometryCounterEvent;
 import org.citydb.modules.common.event.InterruptEvent;
 import org.citydb.modules.common.event.InterruptReason;
 import org.citydb.modules.common.event.StatusDialogMessage;
@@ -92,12 +107,12 @@ import org.citydb.modules.common.event.StatusDialogTitle;
 import org.citydb.modules.common.filter.FilterMode;
 import org.citydb.modules.common.filter.ImportFilter;
 import org.citydb.modules.common.filter.statistic.FeatureCounterFilter;
+import org.citydb.modules.common.metrics.Metrics;
 import org.citydb.util.Util;
 import org.citygml4j.builder.jaxb.JAXBBuilder;
 import org.citygml4j.model.citygml.CityGML;
 import org.citygml4j.model.citygml.CityGMLClass;
 import org.citygml4j.model.citygml.core.CityModel;
-import org.citygml4j.model.gml.GMLClass;
 import org.citygml4j.xml.io.CityGMLInputFactory;
 import org.citygml4j.xml.io.reader.CityGMLInputFilter;
 import org.citygml4j.xml.io.reader.CityGMLReadException;
@@ -117,10 +132,9 @@ public class Importer implements EventHandler {
 	private volatile boolean shouldRun = true;
 	private AtomicBoolean isInterrupted = new AtomicBoolean(false);
 	private InterruptReason interruptReason;
-	private EnumMap<CityGMLClass, Long> featureCounterMap;
-	private EnumMap<GMLClass, Long> geometryCounterMap;
 	private DirectoryScanner directoryScanner;
-	private long xmlValidationErrorCounter;
+	private final AtomicLong xmlValidationErrorCounter = new AtomicLong();
+	private final Metrics metrics;
 
 	public Importer(JAXBBuilder jaxbBuilder, 
 			DatabaseConnectionPool dbPool, 
@@ -131,8 +145,7 @@ public class Importer implements EventHandler {
 		this.config = config;
 		this.eventDispatcher = eventDispatcher;
 
-		featureCounterMap = new EnumMap<CityGMLClass, Long>(CityGMLClass.class);
-		geometryCounterMap = new EnumMap<GMLClass, Long>(GMLClass.class);
+		metrics = Metrics.getInstance();
 	}
 
 	public void cleanup() {
@@ -140,9 +153,16 @@ public class Importer implements EventHandler {
 	}
 
 	public boolean doProcess() throws CityGMLImportException {
+		metrics.start("Import");
+		try {
+			return doImport();
+		} finally {
+			metrics.stop();
+		}
+	}
+
+	private boolean doImport() throws CityGMLImportException {
 		// adding listeners
-		eventDispatcher.addEventHandler(EventType.FEATURE_COUNTER, this);
-		eventDispatcher.addEventHandler(EventType.GEOMETRY_COUNTER, this);
 		eventDispatcher.addEventHandler(EventType.INTERRUPT, this);
 
 		// get config shortcuts
@@ -151,16 +171,12 @@ public class Importer implements EventHandler {
 		Internal internalConfig = config.getInternal();		
 		ImportResources resourcesConfig = importerConfig.getResources();
 		Index indexConfig = importerConfig.getIndexes();
-		ImportGmlId gmlIdConfig = importerConfig.getGmlId();
 
 		// worker pool settings 
 		int minThreads = resourcesConfig.getThreadPool().getDefaultPool().getMinThreads();
 		int maxThreads = resourcesConfig.getThreadPool().getDefaultPool().getMaxThreads();
 		int queueSize = maxThreads * 2;
 
-		// gml:id lookup cache update
-		int lookupCacheBatchSize = databaseConfig.getUpdateBatching().getGmlIdCacheBatchValue();
-
 		// check database workspace
 		Workspace workspace = databaseConfig.getWorkspaces().getImportWorkspace();
 		if (shouldRun && dbPool.getActiveDatabaseAdapter().hasVersioningSupport() && 
@@ -198,7 +214,7 @@ public class Importer implements EventHandler {
 		LOG.info("Creating list of CityGML files to be imported...");	
 		directoryScanner = new DirectoryScanner(true);
 		directoryScanner.addFilenameFilter(new CityGMLFilenameFilter());
-		List<File> importFiles = directoryScanner.getFiles(internalConfig.getImportFiles());
+		List<InputFile> importFiles = directoryScanner.getInputFiles(internalConfig.getImportFiles());
 
 		if (importFiles.size() == 0) {
 			LOG.warn("Failed to find CityGML files at the specified locations.");
@@ -263,105 +279,56 @@ public class Importer implements EventHandler {
 			}
 		};
 
+		// import several files concurrently
+		int concurrentFiles = Math.min(resourcesConfig.getConcurrentFiles(), importFiles.size());
+		if (concurrentFiles > 1 && counterFilter.isActive()) {
+			LOG.warn("The feature counter filter requires to import files sequentially.");
+			concurrentFiles = 1;
+		}
+
+		long start = System.currentTimeMillis();
+		if (concurrentFiles > 1) {
+			LOG.info("Importing " + concurrentFiles + " files concurrently.");
+			if (!doConcurrentImport(importFiles, concurrentFiles, in, inputFilter, importFilter, minThreads, maxThreads, queueSize))
+				return false;
+		}
+
 		CacheTableManager cacheTableManager = null;
 		UIDCacheManager uidCacheManager = null;
 		WorkerPool<CityGML> dbWorkerPool = null;
 		WorkerPool<XMLChunk> featureWorkerPool = null;
 		WorkerPool<DBXlink> tmpXlinkPool = null;
-		WorkerPool<DBXlink> xlinkResolverPool = null;
-		DBXlinkSplitter tmpSplitter = null;
 		ImportLogger importLogger = null;
-		long start = System.currentTimeMillis();
 
-		while (shouldRun && fileCounter < importFiles.size()) {
+		while (shouldRun && concurrentFiles == 1 && fileCounter < importFiles.size()) {
 			try {
 				// check whether we reached the counter limit
 				if (counterLastElement != null && elementCounter > counterLastElement)
 					break;
 
-				File file = importFiles.get(fileCounter++);
-				internalConfig.setImportPath(file.getParent());
+				InputFile inputFile = importFiles.get(fileCounter++);
+				File file = inputFile.getFile();
+				internalConfig.setImportPath(inputFile.getImportPath());
 				internalConfig.setCurrentImportFile(file);
 
 				eventDispatcher.triggerEvent(new StatusDialogTitle(file.getName(), this));
 				eventDispatcher.triggerEvent(new StatusDialogMessage(Language.I18N.getString("import.dialog.cityObj.msg"), this));
 				eventDispatcher.triggerEvent(new StatusDialogProgressBar(true, this));
 				eventDispatcher.triggerEvent(new CounterEvent(CounterType.FILE, --remainingFiles, this));
-				LOG.info("Importing file: " + file.toString());	
-
-				// set gml:id codespace starting from version 3.1
-				if (dbPool.getActiveDatabaseAdapter().getConnectionMetaData().getCityDBVersion().compareTo(3, 1, 0) >= 0) {
-					if (gmlIdConfig.isSetNoneCodeSpaceMode())
-						internalConfig.setCurrentGmlIdCodespace(null);
-					else if (gmlIdConfig.isSetRelativeCodeSpaceMode())
-						internalConfig.setCurrentGmlIdCodespace(file.getName());
-					else if (gmlIdConfig.isSetAbsoluteCodeSpaceMode())
-						internalConfig.setCurrentGmlIdCodespace(file.getAbsolutePath());
-					else if (gmlIdConfig.isSetUserCodeSpaceMode()) {
-						String codespace = gmlIdConfig.getCodeSpace();
-						if (codespace != null && codespace.length() > 0)
-							internalConfig.setCurrentGmlIdCodespace(codespace);
-					}
-				} else
-					internalConfig.setCurrentGmlIdCodespace(null);
-				
+				LOG.info("Importing file: " + inputFile.toString());	
+
+				// set gml:id codespace
+				internalConfig.setCurrentGmlIdCodespace(getGmlIdCodespace(file));
+
 				// create import logger
-				if (importerConfig.getImportLog().isSetLogImportedFeatures()) {
-					try {
-						String logPath = importerConfig.getImportLog().isSetLogPath() ? importerConfig.getImportLog().getLogPath() : Internal.DEFAULT_IMPORT_LOG_PATH;
-						importLogger = new ImportLogger(logPath, file, databaseConfig.getActiveConnection());
-						LOG.info("Log file of imported top-level features: " + importLogger.getLogFilePath().toString());
-					} catch (IOException e) {
-						throw new CityGMLImportException("Failed to create log file for imported top-level features. Aborting.", e);
-					}
-				}
+				if (importerConfig.getImportLog().isSetLogImportedFeatures())
+					importLogger = createImportLogger(file);
 
 				// create instance of the cache table manager
-				try {
-					cacheTableManager = new CacheTableManager(dbPool, maxThreads, config);
-				} catch (SQLException e) {
-					throw new CityGMLImportException("SQL error while initializing cache manager.", e);
-				} catch (IOException e) {
-					throw new CityGMLImportException("I/O error while initializing cache manager.", e);
-				}
+				cacheTableManager = createCacheTableManager(maxThreads);
 
-				// create instance of gml:id lookup server manager...
-				uidCacheManager = new UIDCacheManager();
-
-				// ...and start servers
-				try {
-					uidCacheManager.initCache(
-							UIDCacheType.GEOMETRY,
-							new GeometryGmlIdCache(cacheTableManager, 
-									resourcesConfig.getGmlIdCache().getGeometry().getPartitions(), 
-									lookupCacheBatchSize),
-									resourcesConfig.getGmlIdCache().getGeometry().getCacheSize(),
-									resourcesConfig.getGmlIdCache().getGeometry().getPageFactor(),
-									maxThreads);
-
-					uidCacheManager.initCache(
-							UIDCacheType.FEATURE,
-							new FeatureGmlIdCache(cacheTableManager, 
-									resourcesConfig.getGmlIdCache().getFeature().getPartitions(),
-									lookupCacheBatchSize),
-									resourcesConfig.getGmlIdCache().getFeature().getCacheSize(),
-									resourcesConfig.getGmlIdCache().getFeature().getPageFactor(),
-									maxThreads);
-
-					if (config.getProject().getImporter().getAppearances().isSetImportAppearance() &&
-							config.getProject().getImporter().getAppearances().isSetImportTextureFiles()) {
-						uidCacheManager.initCache(
-								UIDCacheType.TEX_IMAGE,
-								new TextureImageCache(cacheTableManager, 
-										resourcesConfig.getTexImageCache().getPartitions(),
-										lookupCacheBatchSize),
-										resourcesConfig.getTexImageCache().getCacheSize(),
-										resourcesConfig.getTexImageCache().getPageFactor(),
-										maxThreads);
-					}
-				} catch (SQLException e) {
-					throw new CityGMLImportException("SQL error while initializing database import.", e);
-				}
+				// create instance of gml:id lookup server manager
+				uidCacheManager = createUIDCacheManager(cacheTableManager, maxThreads);
 
 				// creating worker pools needed for data import
 				// this pool is for registering xlinks
@@ -392,15 +359,19 @@ public class Importer implements EventHandler {
 								false);
 
 				// this worker pool unmarshals the input file and passes xml chunks to the dbworker pool
-				featureWorkerPool = new WorkerPool<XMLChunk>(
+				featureWorkerPool = new WorkStealingWorkerPool<XMLChunk>(
 						"citygml_parser_pool",
 						minThreads,
 						maxThreads,
 						PoolSizeAdaptationStrategy.AGGRESSIVE,
-						new FeatureReaderWorkerFactory(dbWorkerPool, config, eventDispatcher),
+						new FeatureReaderWorkerFactory(dbWorkerPool, importFilter, config, eventDispatcher),
 						queueSize,
 						false);
 
+				metrics.registerWorkerPool(tmpXlinkPool);
+				metrics.registerWorkerPool(dbWorkerPool);
+				metrics.registerWorkerPool(featureWorkerPool);
+
 				// prestart threads
 				tmpXlinkPool.prestartCoreWorkers();
 				dbWorkerPool.prestartCoreWorkers();
@@ -415,7 +386,7 @@ public class Importer implements EventHandler {
 				// ok, preparation done. start parsing the input file
 				CityGMLReader reader = null;
 				try {
-					reader = in.createFilteredCityGMLReader(in.createCityGMLReader(file), inputFilter);	
+					reader = in.createFilteredCityGMLReader(createCityGMLReader(in, inputFile), inputFilter);	
 
 					while (shouldRun && reader.hasNext()) {
 						XMLChunk chunk = reader.nextChunk();
@@ -449,45 +420,8 @@ public class Importer implements EventHandler {
 					throw new CityGMLImportException("Failed to close CityGML reader.", e);
 				}
 
-				if (shouldRun) {
-					// get an xlink resolver pool
-					LOG.info("Resolving XLink references.");
-					xlinkResolverPool = new WorkerPool<DBXlink>(
-							"xlink_resolver_pool",
-							minThreads,
-							maxThreads,
-							PoolSizeAdaptationStrategy.AGGRESSIVE,
-							new DBImportXlinkResolverWorkerFactory(dbPool, 
-									tmpXlinkPool, 
-									uidCacheManager, 
-									cacheTableManager, 
-									importFilter,
-									config, 
-									eventDispatcher),
-									queueSize,
-									false);
-
-					// prestart its workers
-					xlinkResolverPool.prestartCoreWorkers();
-
-					// resolve xlinks based on temp tables
-					if (shouldRun) {
-						tmpSplitter = new DBXlinkSplitter(cacheTableManager, 
-								xlinkResolverPool, 
-								tmpXlinkPool,
-								Event.GLOBAL_CHANNEL,
-								eventDispatcher);
-
-						tmpSplitter.startQuery();
-					}
-
-					// shutdown worker pools
-					try {
-						xlinkResolverPool.shutdownAndWait();
-					} catch (InterruptedException e) {
-						throw new CityGMLImportException("Failed to shutdown worker pools.", e);
-					}
-				}
+				if (shouldRun)
+					resolveXlinks(tmpXlinkPool, uidCacheManager, cacheTableManager, importFilter, minThreads, maxThreads, queueSize);
 
 				// shutdown tmp xlink pool
 				try {
@@ -500,10 +434,10 @@ public class Importer implements EventHandler {
 				eventDispatcher.triggerEvent(new StatusDialogProgressBar(true, this));
 
 				// show XML validation errors
-				if (xmlValidation.isSetUseXMLValidation() && xmlValidationErrorCounter > 0)
+				if (xmlValidation.isSetUseXMLValidation() && xmlValidationErrorCounter.get() > 0)
 					LOG.warn(xmlValidationErrorCounter + " error(s) encountered while validating the document.");
 
-				xmlValidationErrorCounter = 0;
+				xmlValidationErrorCounter.set(0);
 			} finally {
 				// clean up
 				if (featureWorkerPool != null && !featureWorkerPool.isTerminated())
@@ -512,9 +446,6 @@ public class Importer implements EventHandler {
 				if (dbWorkerPool != null && !dbWorkerPool.isTerminated())
 					dbWorkerPool.shutdownNow();
 
-				if (xlinkResolverPool != null && !xlinkResolverPool.isTerminated())
-					xlinkResolverPool.shutdownNow();
-
 				if (tmpXlinkPool != null && !tmpXlinkPool.isTerminated())
 					tmpXlinkPool.shutdownNow();
 
@@ -524,25 +455,8 @@ public class Importer implements EventHandler {
 					//
 				}
 
-				if (uidCacheManager != null) {
-					try {
-						uidCacheManager.shutdownAll();
-					} catch (SQLException e) {
-						LOG.error("Failed to shutdown gml:id cache: " + e.getMessage());
-						shouldRun = false;
-					}
-				}
-
-				if (cacheTableManager != null) {
-					try {
-						LOG.info("Cleaning temporary cache.");
-						cacheTableManager.dropAll();
-						cacheTableManager = null;
-					} catch (SQLException e) {
-						LOG.error("SQL error while cleaning temporary cache: " + e.getMessage());
-						shouldRun = false;
-					}
-				}
+				shutdownCaches(uidCacheManager, cacheTableManager);
+				cacheTableManager = null;
 
 				if (importLogger != null) {
 					if (interruptReason != InterruptReason.IMPORT_LOG_ERROR) {
@@ -576,25 +490,425 @@ public class Importer implements EventHandler {
 		}
 
 		// show imported features
+		EnumMap<CityGMLClass, Long> featureCounterMap = metrics.getFeatureCounter();
 		if (!featureCounterMap.isEmpty()) {
 			LOG.info("Imported CityGML features:");
 			for (CityGMLClass type : featureCounterMap.keySet())
 				LOG.info(type + ": " + featureCounterMap.get(type));
 		}
 
-		long geometryObjects = 0;
-		for (long counter : geometryCounterMap.values())
-			geometryObjects += counter;
-
+		long geometryObjects = metrics.getGeometryObjectCount();
 		if (geometryObjects != 0)
 			LOG.info("Processed geometry objects: " + geometryObjects);
 
+		long savedSequenceRoundTrips = metrics.getSavedSequenceRoundTrips();
+		if (savedSequenceRoundTrips != 0)
+			LOG.info("Sequence round trips saved by block allocation: " + savedSequenceRoundTrips);
+
 		if (shouldRun)
 			LOG.info("Total import time: " + Util.formatElapsedTime(System.currentTimeMillis() - start) + ".");
 
 		return shouldRun;
 	}
 
+	private boolean doConcurrentImport(final List<InputFile> importFiles,
+			int concurrentFiles,
+			final CityGMLInputFactory in,
+			final CityGMLInputFilter inputFilter,
+			ImportFilter importFilter,
+			int minThreads,
+			int maxThreads,
+			int queueSize) throws CityGMLImportException {
+		final boolean logImportedFeatures = config.getProject().getImporter().getImportLog().isSetLogImportedFeatures();
+		final List<ImportFileContext> contexts = Collections.synchronizedList(new ArrayList<ImportFileContext>());
+		final AtomicInteger fileCounter = new AtomicInteger();
+		final AtomicInteger remainingFiles = new AtomicInteger(importFiles.size());
+
+		CacheTableManager cacheTableManager = null;
+		UIDCacheManager uidCacheManager = null;
+		WorkerPool<CityGML> dbWorkerPool = null;
+		WorkerPool<XMLChunk> featureWorkerPool = null;
+		WorkerPool<DBXlink> tmpXlinkPool = null;
+		ExecutorService fileReaders = null;
+
+		try {
+			// all files share the caches and worker pools. so gml:ids and 
+			// xlinks are resolved across all import files in a single pass
+			cacheTableManager = createCacheTableManager(maxThreads);
+			uidCacheManager = createUIDCacheManager(cacheTableManager, maxThreads);
+
+			tmpXlinkPool = new WorkerPool<DBXlink>(
+					"xlink_importer_pool",
+					minThreads,
+					maxThreads,
+					PoolSizeAdaptationStrategy.AGGRESSIVE,
+					new DBImportXlinkWorkerFactory(dbPool, cacheTableManager, config, eventDispatcher),
+					queueSize,
+					false);
+
+			// import logs are written per file by the import workers
+			dbWorkerPool = new WorkerPool<CityGML>(
+					"db_importer_pool",
+					minThreads,
+					maxThreads,
+					PoolSizeAdaptationStrategy.AGGRESSIVE,
+					new DBImportWorkerFactory(dbPool, 
+							jaxbBuilder,
+							tmpXlinkPool, 
+							uidCacheManager, 
+							importFilter,
+							null,
+							config, 
+							eventDispatcher),
+							queueSize,
+							false);
+
+			featureWorkerPool = new WorkStealingWorkerPool<XMLChunk>(
+					"citygml_parser_pool",
+					minThreads,
+					maxThreads,
+					PoolSizeAdaptationStrategy.AGGRESSIVE,
+					new FeatureReaderWorkerFactory(dbWorkerPool, importFilter, config, eventDispatcher),
+					queueSize,
+					false);
+
+			metrics.registerWorkerPool(tmpXlinkPool);
+			metrics.registerWorkerPool(dbWorkerPool);
+			metrics.registerWorkerPool(featureWorkerPool);
+
+			tmpXlinkPool.prestartCoreWorkers();
+			dbWorkerPool.prestartCoreWorkers();
+			featureWorkerPool.prestartCoreWorkers();
+
+			if (dbWorkerPool.getPoolSize() == 0) {
+				LOG.error("Failed to start database import worker pool. Check the database connection pool settings.");
+				return false;
+			}
+
+			eventDispatcher.triggerEvent(new StatusDialogMessage(Language.I18N.getString("import.dialog.cityObj.msg"), this));
+			eventDispatcher.triggerEvent(new StatusDialogProgressBar(true, this));
+
+			// each file reader parses one file after the other
+			final WorkerPool<XMLChunk> chunkPool = featureWorkerPool;
+			fileReaders = Executors.newFixedThreadPool(concurrentFiles);
+			List<Future<Void>> results = new ArrayList<Future<Void>>(concurrentFiles);
+
+			for (int i = 0; i < concurrentFiles; i++) {
+				results.add(fileReaders.submit(new Callable<Void>() {
+					@Override
+					public Void call() throws Exception {
+						int index;
+						while (shouldRun && (index = fileCounter.getAndIncrement()) < importFiles.size()) {
+							InputFile inputFile = importFiles.get(index);
+							File file = inputFile.getFile();
+
+							eventDispatcher.triggerEvent(new StatusDialogTitle(file.getName(), Importer.this));
+							eventDispatcher.triggerEvent(new CounterEvent(CounterType.FILE, remainingFiles.decrementAndGet(), Importer.this));
+							LOG.info("Importing file: " + inputFile.toString());
+
+							CityGMLReader reader = in.createFilteredCityGMLReader(createCityGMLReader(in, inputFile), inputFilter);
+							ImportLogger importLogger = null;
+							if (logImportedFeatures) {
+								try {
+									importLogger = createImportLogger(file);
+								} catch (CityGMLImportException e) {
+									reader.close();
+									throw e;
+								}
+							}
+
+							ImportFileContext context = new ImportFileContext(inputFile, getGmlIdCodespace(file), importLogger, reader);
+							contexts.add(context);
+
+							try {
+								while (shouldRun && reader.hasNext()) {
+									context.acquire();
+									chunkPool.addWork(new ImportFileChunk(reader.nextChunk(), context));
+								}
+							} finally {
+								context.release();
+							}
+						}
+
+						return null;
+					}
+				}));
+			}
+
+			for (Future<Void> result : results) {
+				try {
+					result.get();
+				} catch (InterruptedException e) {
+					throw new CityGMLImportException("Interrupted while parsing CityGML files.", e);
+				} catch (ExecutionException e) {
+					shouldRun = false;
+					if (e.getCause() instanceof CityGMLImportException)
+						throw (CityGMLImportException)e.getCause();
+
+					throw new CityGMLImportException("Failed to parse CityGML file. Aborting.", e.getCause());
+				}
+			}
+
+			// we are done with parsing. so shutdown the workers.
+			// the xlink pool is not shutdown because we need it afterwards
+			try {
+				featureWorkerPool.shutdownAndWait();
+				dbWorkerPool.shutdownAndWait();
+				tmpXlinkPool.join();
+			} catch (InterruptedException e) {
+				throw new CityGMLImportException("Failed to shutdown worker pools.", e);
+			}
+
+			if (shouldRun)
+				resolveXlinks(tmpXlinkPool, uidCacheManager, cacheTableManager, importFilter, minThreads, maxThreads, queueSize);
+
+			try {
+				tmpXlinkPool.shutdownAndWait();
+			} catch (InterruptedException e) {
+				throw new CityGMLImportException("Failed to shutdown worker pools.", e);
+			}
+
+			eventDispatcher.triggerEvent(new StatusDialogMessage(Language.I18N.getString("import.dialog.finish.msg"), this));
+			eventDispatcher.triggerEvent(new StatusDialogProgressBar(true, this));
+
+			if (config.getProject().getImporter().getXMLValidation().isSetUseXMLValidation() && xmlValidationErrorCounter.get() > 0)
+				LOG.warn(xmlValidationErrorCounter + " error(s) encountered while validating the documents.");
+
+			xmlValidationErrorCounter.set(0);
+		} finally {
+			if (fileReaders != null)
+				fileReaders.shutdownNow();
+
+			if (featureWorkerPool != null && !featureWorkerPool.isTerminated())
+				featureWorkerPool.shutdownNow();
+
+			if (dbWorkerPool != null && !dbWorkerPool.isTerminated())
+				dbWorkerPool.shutdownNow();
+
+			if (tmpXlinkPool != null && !tmpXlinkPool.isTerminated())
+				tmpXlinkPool.shutdownNow();
+
+			try {
+				eventDispatcher.flushEvents();
+			} catch (InterruptedException e) {
+				//
+			}
+
+			shutdownCaches(uidCacheManager, cacheTableManager);
+
+			// finish the import logs and readers of files that have not 
+			// been imported completely
+			synchronized (contexts) {
+				for (ImportFileContext context : contexts)
+					context.close(shouldRun);
+			}
+
+			if (interruptReason == InterruptReason.IMPORT_LOG_ERROR)
+				LOG.warn("The feature import log is most likely corrupt.");
+		}
+
+		return true;
+	}
+
+	private CityGMLReader createCityGMLReader(CityGMLInputFactory in, InputFile inputFile) throws CityGMLReadException {
+		InputStream stream = null;
+		try {
+			stream = inputFile.openStream();
+			return in.createCityGMLReader(inputFile.getSystemId(), stream);
+		} catch (IOException e) {
+			throw new CityGMLReadException("Failed to open file '" + inputFile.toString() + "'.", e);
+		} catch (CityGMLReadException e) {
+			try {
+				stream.close();
+			} catch (IOException ioe) {
+				//
+			}
+
+			throw e;
+		}
+	}
+
+	private String getGmlIdCodespace(File file) {
+		// set gml:id codespace starting from version 3.1
+		if (dbPool.getActiveDatabaseAdapter().getConnectionMetaData().getCityDBVersion().compareTo(3, 1, 0) >= 0) {
+			ImportGmlId gmlIdConfig = config.getProject().getImporter().getGmlId();
+
+			if (gmlIdConfig.isSetRelativeCodeSpaceMode())
+				return file.getName();
+			else if (gmlIdConfig.isSetAbsoluteCodeSpaceMode())
+				return file.getAbsolutePath();
+			else if (gmlIdConfig.isSetUserCodeSpaceMode()) {
+				String codespace = gmlIdConfig.getCodeSpace();
+				if (codespace != null && codespace.length() > 0)
+					return codespace;
+			}
+		}
+
+		return null;
+	}
+
+	private ImportLogger createImportLogger(File file) throws CityGMLImportException {
+		ImportLog importLog = config.getProject().getImporter().getImportLog();
+
+		try {
+			String logPath = importLog.isSetLogPath() ? importLog.getLogPath() : Internal.DEFAULT_IMPORT_LOG_PATH;
+			ImportLogger importLogger = new ImportLogger(logPath, file, config.getProject().getDatabase().getActiveConnection());
+			LOG.info("Log file of imported top-level features: " + importLogger.getLogFilePath().toString());
+			return importLogger;
+		} catch (IOException e) {
+			throw new CityGMLImportException("Failed to create log file for imported top-level features. Aborting.", e);
+		}
+	}
+
+	private CacheTableManager createCacheTableManager(int maxThreads) throws CityGMLImportException {
+		try {
+			return new CacheTableManager(dbPool, maxThreads, config);
+		} catch (SQLException e) {
+			throw new CityGMLImportException("SQL error while initializing cache manager.", e);
+		} catch (IOException e) {
+			throw new CityGMLImportException("I/O error while initializing cache manager.", e);
+		}
+	}
+
+	private UIDCacheManager createUIDCacheManager(CacheTableManager cacheTableManager, int maxThreads) throws CityGMLImportException {
+		ImportResources resourcesConfig = config.getProject().getImporter().getResources();
+		int lookupCacheBatchSize = config.getProject().getDatabase().getUpdateBatching().getGmlIdCacheBatchValue();
+		String localCachePath = config.getProject().getGlobal().getCache().getLocalCachePath();
+
+		UIDCacheManager uidCacheManager = new UIDCacheManager();
+
+		// start servers
+		try {
+			UIDCacheConfig geometryCacheConfig = resourcesConfig.getGmlIdCache().getGeometry();
+			UIDCachingModel geometryCacheModel = geometryCacheConfig.isSetOffHeapBackUp() ?
+					new OffHeapGmlIdCache("geometry", localCachePath, geometryCacheConfig.getPartitions(), geometryCacheConfig.getOffHeapMemory() * 1024L * 1024L,
+							new GeometryGmlIdCache(cacheTableManager, geometryCacheConfig.getPartitions(), lookupCacheBatchSize)) :
+					new GeometryGmlIdCache(cacheTableManager, geometryCacheConfig.getPartitions(), lookupCacheBatchSize);
+
+			uidCacheManager.initCache(
+					UIDCacheType.GEOMETRY,
+					geometryCacheModel,
+					geometryCacheConfig.getCacheSize(),
+					geometryCacheConfig.getPageFactor(),
+					maxThreads,
+					geometryCacheConfig.getBloomFilterEntries(),
+					geometryCacheConfig.getBloomFilterFalsePositiveRate());
+
+			UIDCacheConfig featureCacheConfig = resourcesConfig.getGmlIdCache().getFeature();
+			UIDCachingModel featureCacheModel = featureCacheConfig.isSetOffHeapBackUp() ?
+					new OffHeapGmlIdCache("feature", localCachePath, featureCacheConfig.getPartitions(), featureCacheConfig.getOffHeapMemory() * 1024L * 1024L,
+							new FeatureGmlIdCache(cacheTableManager, featureCacheConfig.getPartitions(), lookupCacheBatchSize)) :
+					new FeatureGmlIdCache(cacheTableManager, featureCacheConfig.getPartitions(), lookupCacheBatchSize);
+
+			uidCacheManager.initCache(
+					UIDCacheType.FEATURE,
+					featureCacheModel,
+					featureCacheConfig.getCacheSize(),
+					featureCacheConfig.getPageFactor(),
+					maxThreads,
+					featureCacheConfig.getBloomFilterEntries(),
+					featureCacheConfig.getBloomFilterFalsePositiveRate());
+
+			if (config.getProject().getImporter().getAppearances().isSetImportAppearance() &&
+					config.getProject().getImporter().getAppearances().isSetImportTextureFiles()) {
+				UIDCacheConfig texImageCacheConfig = resourcesConfig.getTexImageCache();
+				UIDCachingModel texImageCacheModel = texImageCacheConfig.isSetOffHeapBackUp() ?
+						new OffHeapGmlIdCache("texture image", localCachePath, texImageCacheConfig.getPartitions(), texImageCacheConfig.getOffHeapMemory() * 1024L * 1024L,
+								new TextureImageCache(cacheTableManager, texImageCacheConfig.getPartitions(), lookupCacheBatchSize)) :
+						new TextureImageCache(cacheTableManager, texImageCacheConfig.getPartitions(), lookupCacheBatchSize);
+
+				uidCacheManager.initCache(
+						UIDCacheType.TEX_IMAGE,
+						texImageCacheModel,
+						texImageCacheConfig.getCacheSize(),
+						texImageCacheConfig.getPageFactor(),
+						maxThreads,
+						texImageCacheConfig.getBloomFilterEntries(),
+						texImageCacheConfig.getBloomFilterFalsePositiveRate());
+			}
+		} catch (SQLException e) {
+			throw new CityGMLImportException("SQL error while initializing database import.", e);
+		} catch (IOException e) {
+			throw new CityGMLImportException("I/O error while initializing gml:id cache.", e);
+		}
+
+		return uidCacheManager;
+	}
+
+	private void resolveXlinks(WorkerPool<DBXlink> tmpXlinkPool, 
+			UIDCacheManager uidCacheManager, 
+			CacheTableManager cacheTableManager, 
+			ImportFilter importFilter,
+			int minThreads,
+			int maxThreads,
+			int queueSize) throws CityGMLImportException {
+		// get an xlink resolver pool
+		LOG.info("Resolving XLink references.");
+		WorkerPool<DBXlink> xlinkResolverPool = new WorkerPool<DBXlink>(
+				"xlink_resolver_pool",
+				minThreads,
+				maxThreads,
+				PoolSizeAdaptationStrategy.AGGRESSIVE,
+				new DBImportXlinkResolverWorkerFactory(dbPool, 
+						tmpXlinkPool, 
+						uidCacheManager, 
+						cacheTableManager, 
+						importFilter,
+						config, 
+						eventDispatcher),
+						queueSize,
+						false);
+
+		metrics.registerWorkerPool(xlinkResolverPool);
+
+		try {
+			// prestart its workers
+			xlinkResolverPool.prestartCoreWorkers();
+
+			// resolve xlinks based on temp tables
+			if (shouldRun) {
+				DBXlinkSplitter tmpSplitter = new DBXlinkSplitter(cacheTableManager, 
+						xlinkResolverPool, 
+						tmpXlinkPool,
+						Event.GLOBAL_CHANNEL,
+						eventDispatcher);
+
+				tmpSplitter.startQuery();
+			}
+
+			// shutdown worker pools
+			try {
+				xlinkResolverPool.shutdownAndWait();
+			} catch (InterruptedException e) {
+				throw new CityGMLImportException("Failed to shutdown worker pools.", e);
+			}
+		} finally {
+			if (!xlinkResolverPool.isTerminated())
+				xlinkResolverPool.shutdownNow();
+		}
+	}
+
+	private void shutdownCaches(UIDCacheManager uidCacheManager, CacheTableManager cacheTableManager) {
+		if (uidCacheManager != null) {
+			try {
+				uidCacheManager.shutdownAll();
+			} catch (SQLException e) {
+				LOG.error("Failed to shutdown gml:id cache: " + e.getMessage());
+				shouldRun = false;
+			}
+		}
+
+		if (cacheTableManager != null) {
+			try {
+				LOG.info("Cleaning temporary cache.");
+				cacheTableManager.dropAll();
+			} catch (SQLException e) {
+				LOG.error("SQL error while cleaning temporary cache: " + e.getMessage());
+				shouldRun = false;
+			}
+		}
+	}
+
 	private void manageIndexes(boolean enable, boolean workOnSpatialIndexes) throws SQLException {
 		AbstractUtilAdapter utilAdapter = dbPool.getActiveDatabaseAdapter().getUtil();
 		LOG.info((enable ? "Activating " : "Deactivating ") + (workOnSpatialIndexes ? "spatial" : "normal") + " indexes...");
@@ -620,35 +934,7 @@ public class Importer implements EventHandler {
 
 	@Override
 	public void handleEvent(Event e) throws Exception {
-		if (e.getEventType() == EventType.FEATURE_COUNTER) {
-			HashMap<CityGMLClass, Long> counterMap = ((FeatureCounterEvent)e).getCounter();
-
-			for (CityGMLClass type : counterMap.keySet()) {
-				Long counter = featureCounterMap.get(type);
-				Long update = counterMap.get(type);
-
-				if (counter == null)
-					featureCounterMap.put(type, update);
-				else
-					featureCounterMap.put(type, counter + update);
-			}
-		}
-
-		else if (e.getEventType() == EventType.GEOMETRY_COUNTER) {
-			HashMap<GMLClass, Long> counterMap = ((GeometryCounterEvent)e).getCounter();
-
-			for (GMLClass type : counterMap.keySet()) {
-				Long counter = geometryCounterMap.get(type);
-				Long update = counterMap.get(type);
-
-				if (counter == null)
-					geometryCounterMap.put(type, update);
-				else
-					geometryCounterMap.put(type, counter + update);
-			}
-		}
-
-		else if (e.getEventType() == EventType.INTERRUPT) {
+		if (e.getEventType() == EventType.INTERRUPT) {
 			if (isInterrupted.compareAndSet(false, true)) {
 				shouldRun = false;
 				InterruptEvent interruptEvent = (InterruptEvent)e;
@@ -704,7 +990,7 @@ public class Importer implements EventHandler {
 			msg.append(": ").append(event.getMessage());
 			LOG.log(type, msg.toString());
 
-			xmlValidationErrorCounter++;
+			xmlValidationErrorCounter.incrementAndGet();
 			return allErrors;
 		}
 	}
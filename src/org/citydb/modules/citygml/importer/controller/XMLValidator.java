@@ -27,8 +27,6 @@
  */
 package org.citydb.modules.citygml.importer.controller;
 
-import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.List;
@@ -48,6 +46,7 @@ import org.citydb.config.internal.Internal;
 import org.citydb.config.language.Language;
 import org.citydb.io.DirectoryScanner;
 import org.citydb.io.DirectoryScanner.CityGMLFilenameFilter;
+import org.citydb.io.InputFile;
 import org.citydb.log.Logger;
 import org.citydb.modules.common.event.CounterEvent;
 import org.citydb.modules.common.event.CounterType;
@@ -90,7 +89,7 @@ public class XMLValidator implements EventHandler {
 		LOG.info("Creating list of CityGML files to be validated...");
 		directoryScanner = new DirectoryScanner(true);
 		directoryScanner.addFilenameFilter(new CityGMLFilenameFilter());
-		List<File> importFiles = directoryScanner.getFiles(intConfig.getImportFiles());
+		List<InputFile> importFiles = directoryScanner.getInputFiles(intConfig.getImportFiles());
 
 		if (!shouldRun)
 			return true;
@@ -122,10 +121,10 @@ public class XMLValidator implements EventHandler {
 		long start = System.currentTimeMillis();
 		
 		while (shouldRun && fileCounter < importFiles.size()) {			
-			File file = importFiles.get(fileCounter++);
-			intConfig.setImportPath(file.getParent());
+			InputFile file = importFiles.get(fileCounter++);
+			intConfig.setImportPath(file.getImportPath());
 
-			eventDispatcher.triggerEvent(new StatusDialogTitle(file.getName(), this));
+			eventDispatcher.triggerEvent(new StatusDialogTitle(file.getFile().getName(), this));
 			eventDispatcher.triggerEvent(new StatusDialogMessage(Language.I18N.getString("validate.dialog.validate.msg"), this));
 			eventDispatcher.triggerEvent(new CounterEvent(CounterType.FILE, --remainingFiles, this));
 
@@ -137,11 +136,19 @@ public class XMLValidator implements EventHandler {
 				validator.setErrorHandler(errorHandler);
 				errorHandler.reset();
 				
-				inputStream = new FileInputStream(file);
-				validator.validate(new StreamSource(inputStream));	
+				inputStream = file.openStream();
+				validator.validate(new StreamSource(inputStream, file.getSystemId()));	
 			} catch (SAXException | IOException e) {
 				if (!errorHandler.isAborted && shouldRun)
 					LOG.error("Failed to validate CityGML file: " + e.getMessage());
+			} finally {
+				if (inputStream != null) {
+					try {
+						inputStream.close();
+					} catch (IOException e) {
+						//
+					}
+				}
 			}
 
 			eventDispatcher.triggerEvent(new StatusDialogMessage(Language.I18N.getString("validate.dialog.finish.msg"), this));
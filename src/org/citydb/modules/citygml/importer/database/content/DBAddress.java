@@ -114,7 +114,7 @@ public class DBAddress implements DBImporter {
 		String gmlIdCodespace = null;
 
 		if (handleGmlId) {
-			gmlIdCodespace = config.getInternal().getCurrentGmlIdCodespace();
+			gmlIdCodespace = dbImporterManager.getGmlIdCodespace();
 
 			if (gmlIdCodespace != null && gmlIdCodespace.length() > 0)
 				gmlIdCodespace = "'" + gmlIdCodespace + "', ";
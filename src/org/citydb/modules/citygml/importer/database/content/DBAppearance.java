@@ -65,7 +65,7 @@ public class DBAppearance implements DBImporter {
 
 	private void init() throws SQLException {
 		replaceGmlId = config.getProject().getImporter().getGmlId().isUUIDModeReplace();
-		String gmlIdCodespace = config.getInternal().getCurrentGmlIdCodespace();
+		String gmlIdCodespace = dbImporterManager.getGmlIdCodespace();
 		
 		if (gmlIdCodespace != null && gmlIdCodespace.length() > 0)
 			gmlIdCodespace = "'" + gmlIdCodespace + "', ";
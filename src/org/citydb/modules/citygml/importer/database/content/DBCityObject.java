@@ -28,11 +28,12 @@
 package org.citydb.modules.citygml.importer.database.content;
 
 import java.sql.Connection;
-import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.sql.Types;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.GregorianCalendar;
 import java.util.List;
 
@@ -42,6 +43,7 @@ import org.citydb.config.project.importer.CreationDateMode;
 import org.citydb.config.project.importer.TerminationDateMode;
 import org.citydb.database.DatabaseConnectionPool;
 import org.citydb.database.TableEnum;
+import org.citydb.database.adapter.BatchInsertStatement;
 import org.citydb.log.Logger;
 import org.citydb.modules.citygml.common.database.xlink.DBXlinkBasic;
 import org.citydb.modules.citygml.importer.util.LocalGeometryXlinkResolver;
@@ -64,7 +66,7 @@ public class DBCityObject implements DBImporter {
 	private final Connection batchConn;
 	private final DBImporterManager dbImporterManager;
 
-	private PreparedStatement psCityObject;
+	private BatchInsertStatement psCityObject;
 	private DBCityObjectGenericAttrib genericAttributeImporter;
 	private DBExternalReference externalReferenceImporter;
 	private DBAppearance appearanceImporter;
@@ -88,7 +90,7 @@ public class DBCityObject implements DBImporter {
 		this.batchConn = batchConn;
 		this.dbImporterManager = dbImporterManager;
 
-		gmlIdCodespace = config.getInternal().getCurrentGmlIdCodespace();
+		gmlIdCodespace = dbImporterManager.getGmlIdCodespace();
 		replaceGmlId = config.getProject().getImporter().getGmlId().isUUIDModeReplace();
 		rememberGmlId = config.getProject().getImporter().getGmlId().isSetKeepGmlIdAsExternalReference();
 		affineTransformation = config.getProject().getImporter().getAffineTransformation().isSetUseAffineTransformation();
@@ -100,12 +102,12 @@ public class DBCityObject implements DBImporter {
 		terminationDateMode = config.getProject().getImporter().getContinuation().getTerminationDateMode();
 
 		if (gmlIdCodespace != null && gmlIdCodespace.length() > 0)
-			gmlIdCodespace = "'" + gmlIdCodespace + "', ";
+			gmlIdCodespace = "'" + gmlIdCodespace + "'";
 		else
 			gmlIdCodespace = null;
 		
 		if (replaceGmlId && rememberGmlId)
-			importFileName = config.getInternal().getCurrentImportFile().getAbsolutePath();
+			importFileName = dbImporterManager.getImportFile().getAbsolutePath();
 
 		if (config.getProject().getImporter().getContinuation().isUpdatingPersonModeDatabase())
 			updatingPerson = config.getProject().getDatabase().getActiveConnection().getUser();
@@ -130,15 +132,21 @@ public class DBCityObject implements DBImporter {
 		init();
 	}
 
-	private void init() throws SQLException {
-		StringBuilder stmt = new StringBuilder()
-		.append("insert into CITYOBJECT (ID, OBJECTCLASS_ID, GMLID, ").append(gmlIdCodespace != null ? "GMLID_CODESPACE, " : "").append("NAME, NAME_CODESPACE, DESCRIPTION, ENVELOPE, CREATION_DATE, TERMINATION_DATE, ")
-		.append("RELATIVE_TO_TERRAIN, RELATIVE_TO_WATER, LAST_MODIFICATION_DATE, UPDATING_PERSON, REASON_FOR_UPDATE, LINEAGE, XML_SOURCE) values ")
-		.append("(?, ?, ?, ").append(gmlIdCodespace != null ? gmlIdCodespace : "").append("?, ?, ?, ?, ?, ?, ?, ?, CURRENT_TIMESTAMP, ")
-		.append(updatingPerson).append(", ")
-		.append(reasonForUpdate).append(", ")
-		.append(lineage).append(", null)");
-		psCityObject = batchConn.prepareStatement(stmt.toString());
+	private void init() throws SQLException {
+		List<String> columns = new ArrayList<String>(Arrays.asList("ID", "OBJECTCLASS_ID", "GMLID"));
+		List<String> values = new ArrayList<String>(Arrays.asList("?", "?", "?"));
+
+		if (gmlIdCodespace != null) {
+			columns.add("GMLID_CODESPACE");
+			values.add(gmlIdCodespace);
+		}
+
+		columns.addAll(Arrays.asList("NAME", "NAME_CODESPACE", "DESCRIPTION", "ENVELOPE", "CREATION_DATE", "TERMINATION_DATE", "RELATIVE_TO_TERRAIN", "RELATIVE_TO_WATER",
+				"LAST_MODIFICATION_DATE", "UPDATING_PERSON", "REASON_FOR_UPDATE", "LINEAGE", "XML_SOURCE"));
+		values.addAll(Collections.nCopies(8, "?"));
+		values.addAll(Arrays.asList("CURRENT_TIMESTAMP", String.valueOf(updatingPerson), String.valueOf(reasonForUpdate), String.valueOf(lineage), "null"));
+
+		psCityObject = dbImporterManager.getBatchInsertStatement("CITYOBJECT", columns.toArray(new String[columns.size()]), values.toArray(new String[values.size()]));
 
 		genericAttributeImporter = (DBCityObjectGenericAttrib)dbImporterManager.getDBImporter(DBImporterEnum.CITYOBJECT_GENERICATTRIB);
 		externalReferenceImporter = (DBExternalReference)dbImporterManager.getDBImporter(DBImporterEnum.EXTERNAL_REFERENCE);
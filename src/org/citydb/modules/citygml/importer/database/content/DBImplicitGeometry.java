@@ -159,7 +159,7 @@ public class DBImplicitGeometry implements DBImporter {
 					// propagate the link to the library object
 					dbImporterManager.propagateXlink(new DBXlinkLibraryObject(
 							implicitGeometryId,
-							libraryURI
+							dbImporterManager.resolveFileURI(libraryURI)
 							));
 				} else
 					psUpdateImplicitGeometry.setNull(1, Types.VARCHAR);
@@ -28,7 +28,10 @@
 package org.citydb.modules.citygml.importer.database.content;
 
 import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.ArrayList;
@@ -44,13 +47,18 @@ import org.citydb.api.event.Event;
 import org.citydb.api.event.EventDispatcher;
 import org.citydb.config.Config;
 import org.citydb.database.adapter.AbstractDatabaseAdapter;
+import org.citydb.database.adapter.BatchInsertStatement;
+import org.citydb.database.adapter.BatchInsertStatementImpl;
+import org.citydb.io.ZipEntryInputFile;
 import org.citydb.modules.citygml.common.database.uid.UIDCache;
 import org.citydb.modules.citygml.common.database.uid.UIDCacheEntry;
 import org.citydb.modules.citygml.common.database.uid.UIDCacheManager;
 import org.citydb.modules.citygml.common.database.xlink.DBXlink;
 import org.citydb.modules.citygml.importer.util.AffineTransformer;
+import org.citydb.modules.citygml.importer.util.ImportFileContext;
 import org.citydb.modules.citygml.importer.util.ImportLogger.ImportLogEntry;
 import org.citydb.modules.citygml.importer.util.LocalTextureCoordinatesResolver;
+import org.citydb.modules.common.metrics.Metrics;
 import org.citygml4j.builder.jaxb.JAXBBuilder;
 import org.citygml4j.builder.jaxb.marshal.JAXBMarshaller;
 import org.citygml4j.model.citygml.CityGMLClass;
@@ -62,6 +70,9 @@ import org.citygml4j.xml.CityGMLNamespaceContext;
 import org.xml.sax.SAXException;
 
 public class DBImporterManager {
+	private static final CityGMLClass[] FEATURE_TYPES = CityGMLClass.values();
+	private static final GMLClass[] GEOMETRY_TYPES = GMLClass.values();
+
 	private final Connection batchConn;
 	private final AbstractDatabaseAdapter databaseAdapter;
 	private final JAXBBuilder jaxbBuilder;
@@ -69,10 +80,11 @@ public class DBImporterManager {
 	private final UIDCacheManager uidCacheManager;
 	private final EventDispatcher eventDipatcher;
 	private final Config config;
+	private final ImportFileContext importFileContext;
 
 	private final HashMap<DBImporterEnum, DBImporter> dbImporterMap;
-	private final HashMap<CityGMLClass, Long> featureCounterMap;
-	private final HashMap<GMLClass, Long> geometryCounterMap;
+	private final long[] featureCounter;
+	private final long[] geometryCounter;
 	private final List<ImportLogEntry> importedFeatures;
 	private final DBSequencer dbSequencer;
 
@@ -82,6 +94,7 @@ public class DBImporterManager {
 	private JAXBMarshaller jaxbMarshaller;
 	private SAXWriter saxWriter;
 	private boolean isLogImportedFeatures;
+	private boolean useBulkLoad;
 
 	public DBImporterManager(Connection batchConn,
 			AbstractDatabaseAdapter databaseAdapter,
@@ -90,6 +103,17 @@ public class DBImporterManager {
 			WorkerPool<DBXlink> tmpXlinkPool,
 			UIDCacheManager uidCacheManager,
 			EventDispatcher eventDipatcher) throws SQLException {
+		this(batchConn, databaseAdapter, jaxbBuilder, config, tmpXlinkPool, uidCacheManager, eventDipatcher, null);
+	}
+
+	public DBImporterManager(Connection batchConn,
+			AbstractDatabaseAdapter databaseAdapter,
+			JAXBBuilder jaxbBuilder,
+			Config config,
+			WorkerPool<DBXlink> tmpXlinkPool,
+			UIDCacheManager uidCacheManager,
+			EventDispatcher eventDipatcher,
+			ImportFileContext importFileContext) throws SQLException {
 		this.batchConn = batchConn;
 		this.databaseAdapter = databaseAdapter;
 		this.jaxbBuilder = jaxbBuilder;
@@ -97,12 +121,13 @@ public class DBImporterManager {
 		this.uidCacheManager = uidCacheManager;
 		this.tmpXlinkPool = tmpXlinkPool;
 		this.eventDipatcher = eventDipatcher;
+		this.importFileContext = importFileContext;
 
 		dbImporterMap = new HashMap<DBImporterEnum, DBImporter>();
-		featureCounterMap = new HashMap<CityGMLClass, Long>();
-		geometryCounterMap = new HashMap<GMLClass, Long>();
+		featureCounter = new long[FEATURE_TYPES.length];
+		geometryCounter = new long[GEOMETRY_TYPES.length];
 		importedFeatures = new ArrayList<ImportLogEntry>();
-		dbSequencer = new DBSequencer(batchConn, databaseAdapter);
+		dbSequencer = new DBSequencer(batchConn, databaseAdapter, config.getProject().getDatabase().getUpdateBatching().getSequenceBlockValue());
 
 		if (config.getProject().getImporter().getAffineTransformation().isSetUseAffineTransformation())
 			affineTransformer = config.getInternal().getAffineTransformer();
@@ -117,6 +142,7 @@ public class DBImporterManager {
 		}
 		
 		isLogImportedFeatures = config.getProject().getImporter().getImportLog().isSetLogImportedFeatures();
+		useBulkLoad = config.getProject().getDatabase().getUpdateBatching().isSetUseBulkLoad();
 	}
 
 	public DBImporter getDBImporter(DBImporterEnum dbImporterType) throws SQLException {
@@ -343,6 +369,11 @@ public class DBImporterManager {
 		return dbImporter;
 	}
 
+	public BatchInsertStatement getBatchInsertStatement(String table, String[] columns, String[] values) throws SQLException {
+		return useBulkLoad ? databaseAdapter.getSQLAdapter().getBulkInsertStatement(batchConn, table, columns, values) :
+			new BatchInsertStatementImpl(batchConn, table, columns, values);
+	}
+
 	public long getDBId(DBSequencerEnum sequence) throws SQLException {
 		return dbSequencer.getDBId(sequence);
 	}
@@ -398,6 +429,39 @@ public class DBImporterManager {
 		eventDipatcher.triggerEvent(event);
 	}
 
+	public String getGmlIdCodespace() {
+		return importFileContext != null ? importFileContext.getGmlIdCodespace() : config.getInternal().getCurrentGmlIdCodespace();
+	}
+
+	public String getImportPath() {
+		return importFileContext != null ? importFileContext.getImportPath() : config.getInternal().getImportPath();
+	}
+
+	public File getImportFile() {
+		return importFileContext != null ? importFileContext.getFile() : config.getInternal().getCurrentImportFile();
+	}
+
+	public String resolveFileURI(String fileURI) {
+		// xlinks are resolved after all files have been imported when importing
+		// files concurrently. so relative file references must be resolved against
+		// the path of their import file before they are propagated.
+		if (importFileContext == null)
+			return fileURI;
+
+		try {
+			new URL(fileURI);
+			return fileURI;
+		} catch (MalformedURLException e) {
+			File file = new File(File.separatorChar == '/' ? fileURI.replace("\\", "/") : fileURI);
+			if (file.isAbsolute())
+				return fileURI;
+
+			String importPath = importFileContext.getImportPath();
+			return ZipEntryInputFile.isEntryPath(importPath) ? 
+					ZipEntryInputFile.resolve(importPath, fileURI) : new File(importPath, file.getPath()).getAbsolutePath();
+		}
+	}
+
 	public AffineTransformer getAffineTransformer() {
 		return affineTransformer;
 	}
@@ -407,34 +471,34 @@ public class DBImporterManager {
 	}
 	
 	public void updateFeatureCounter(CityGMLClass featureType, long id, String gmlId, boolean isTopLevel) {
-		Long counter = featureCounterMap.get(featureType);
-		if (counter == null)
-			featureCounterMap.put(featureType, new Long(1));
-		else
-			featureCounterMap.put(featureType, counter + 1);
+		featureCounter[featureType.ordinal()]++;
 		
 		if (isLogImportedFeatures && isTopLevel)
 			importedFeatures.add(new ImportLogEntry(featureType, id, gmlId));
 	}
 
-	public HashMap<CityGMLClass, Long> getAndResetFeatureCounter() {
-		HashMap<CityGMLClass, Long> tmp = new HashMap<CityGMLClass, Long>(featureCounterMap);
-		featureCounterMap.clear();
-		return tmp;
-	}
-
 	public void updateGeometryCounter(GMLClass geometryType) {
-		Long counter = geometryCounterMap.get(geometryType);
-		if (counter == null)
-			geometryCounterMap.put(geometryType, new Long(1));
-		else
-			geometryCounterMap.put(geometryType, counter + 1);
+		geometryCounter[geometryType.ordinal()]++;
 	}
 
-	public HashMap<GMLClass, Long> getAndResetGeometryCounter() {
-		HashMap<GMLClass, Long> tmp = new HashMap<GMLClass, Long>(geometryCounterMap);
-		geometryCounterMap.clear();
-		return tmp;
+	public void publishAndResetCounters(Metrics metrics) {
+		// called after commit, so the counters only cover features
+		// that are actually stored in the database
+		for (int i = 0; i < featureCounter.length; i++) {
+			if (featureCounter[i] != 0) {
+				metrics.updateFeatureCounter(FEATURE_TYPES[i], featureCounter[i]);
+				featureCounter[i] = 0;
+			}
+		}
+
+		for (int i = 0; i < geometryCounter.length; i++) {
+			if (geometryCounter[i] != 0) {
+				metrics.updateGeometryCounter(GEOMETRY_TYPES[i], geometryCounter[i]);
+				geometryCounter[i] = 0;
+			}
+		}
+
+		metrics.updateSavedSequenceRoundTrips(dbSequencer.getAndResetSavedRoundTrips());
 	}
 	
 	public List<ImportLogEntry> getAndResetImportedFeatures() {
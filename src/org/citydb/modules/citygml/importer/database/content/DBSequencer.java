@@ -31,6 +31,7 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.EnumMap;
 import java.util.HashMap;
 
 import org.citydb.database.adapter.AbstractDatabaseAdapter;
@@ -38,18 +39,55 @@ import org.citydb.database.adapter.AbstractDatabaseAdapter;
 public class DBSequencer {
 	private final Connection conn;
 	private final AbstractDatabaseAdapter databaseAdapter;
+	private final int blockSize;
 	private HashMap<DBSequencerEnum, PreparedStatement> psIdMap;
+	private EnumMap<DBSequencerEnum, IdBlock> idBlockMap;
 
-	public DBSequencer(Connection conn, AbstractDatabaseAdapter databaseAdapter) throws SQLException {
+	private long requestedIds;
+	private long roundTrips;
+
+	public DBSequencer(Connection conn, AbstractDatabaseAdapter databaseAdapter, int blockSize) throws SQLException {
 		this.conn = conn;
 		this.databaseAdapter = databaseAdapter;
+		this.blockSize = blockSize > 0 ? blockSize : 1;
 		psIdMap = new HashMap<DBSequencerEnum, PreparedStatement>();
+		idBlockMap = new EnumMap<DBSequencerEnum, IdBlock>(DBSequencerEnum.class);
+	}
+
+	public DBSequencer(Connection conn, AbstractDatabaseAdapter databaseAdapter) throws SQLException {
+		this(conn, databaseAdapter, 1);
 	}
 
 	public long getDBId(DBSequencerEnum sequence) throws SQLException {
 		if (sequence == null)
 			return 0;
 
+		requestedIds++;
+		if (blockSize == 1)
+			return getNextSequenceValue(sequence);
+
+		// sequence values are allocated in blocks and handed out locally.
+		// unused values of a block are lost when the sequencer is closed
+		IdBlock block = idBlockMap.get(sequence);
+		if (block == null) {
+			block = new IdBlock(blockSize);
+			idBlockMap.put(sequence, block);
+		}
+
+		if (!block.hasNext())
+			retrieveBlock(sequence, block);
+
+		return block.next();
+	}
+
+	public long getAndResetSavedRoundTrips() {
+		long saved = requestedIds - roundTrips;
+		requestedIds = 0;
+		roundTrips = 0;
+		return saved > 0 ? saved : 0;
+	}
+
+	private long getNextSequenceValue(DBSequencerEnum sequence) throws SQLException {
 		PreparedStatement pstsmt = psIdMap.get(sequence);
 		if (pstsmt == null) {
 			StringBuilder query = new StringBuilder()
@@ -57,7 +95,7 @@ public class DBSequencer {
 			.append(databaseAdapter.getSQLAdapter().getNextSequenceValue(sequence));
 			if (databaseAdapter.getSQLAdapter().requiresPseudoTableInSelect())
 				query.append(" from ").append(databaseAdapter.getSQLAdapter().getPseudoTableName());
-			
+
 			pstsmt = conn.prepareStatement(query.toString());
 			psIdMap.put(sequence, pstsmt);
 		}
@@ -67,12 +105,11 @@ public class DBSequencer {
 
 		try {
 			rs = pstsmt.executeQuery();
+			roundTrips++;
 
 			if (rs.next())
 				id = rs.getLong(1);
 
-		} catch (SQLException sqlEx) {
-			throw sqlEx;
 		} finally {
 			if (rs != null) {
 				try {
@@ -87,9 +124,66 @@ public class DBSequencer {
 
 		return id;
 	}
-	
+
+	private void retrieveBlock(DBSequencerEnum sequence, IdBlock block) throws SQLException {
+		PreparedStatement pstsmt = psIdMap.get(sequence);
+		if (pstsmt == null) {
+			pstsmt = conn.prepareStatement(databaseAdapter.getSQLAdapter().getNextSequenceValuesQuery(sequence));
+			psIdMap.put(sequence, pstsmt);
+		}
+
+		ResultSet rs = null;
+		block.clear();
+
+		try {
+			pstsmt.setInt(1, blockSize);
+			rs = pstsmt.executeQuery();
+			roundTrips++;
+
+			while (rs.next() && block.size < blockSize)
+				block.ids[block.size++] = rs.getLong(1);
+
+		} finally {
+			if (rs != null) {
+				try {
+					rs.close();
+				} catch (SQLException sqlEx) {
+					throw sqlEx;
+				}
+
+				rs = null;
+			}
+		}
+
+		if (!block.hasNext())
+			throw new SQLException("Failed to retrieve a block of values from sequence " + sequence + ".");
+	}
+
 	public void close() throws SQLException {
 		for (PreparedStatement stmt : psIdMap.values())
 			stmt.close();
 	}
+
+	private static final class IdBlock {
+		private final long[] ids;
+		private int size;
+		private int index;
+
+		private IdBlock(int blockSize) {
+			ids = new long[blockSize];
+		}
+
+		private boolean hasNext() {
+			return index < size;
+		}
+
+		private long next() {
+			return ids[index++];
+		}
+
+		private void clear() {
+			size = 0;
+			index = 0;
+		}
+	}
 }
@@ -33,13 +33,15 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Types;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
-import org.citydb.api.database.DatabaseType;
 import org.citydb.api.geometry.GeometryObject;
 import org.citydb.config.Config;
 import org.citydb.config.internal.Internal;
 import org.citydb.database.DatabaseConnectionPool;
+import org.citydb.database.adapter.BatchInsertStatement;
 import org.citydb.log.Logger;
 import org.citydb.modules.citygml.common.database.xlink.DBXlinkLinearRing;
 import org.citydb.modules.citygml.common.database.xlink.DBXlinkSolidGeometry;
@@ -95,7 +97,7 @@ public class DBSurfaceGeometry implements DBImporter {
 	private final Config config;
 	private final DBImporterManager dbImporterManager;
 
-	private PreparedStatement psGeomElem;
+	private BatchInsertStatement psGeomElem;
 	private PreparedStatement psNextSeqValues;
 	private DBDeprecatedMaterialModel materialModelImporter;
 	private DBOtherGeometry otherGeometryImporter;
@@ -128,27 +130,19 @@ public class DBSurfaceGeometry implements DBImporter {
 		nullGeometryType = dbImporterManager.getDatabaseAdapter().getGeometryConverter().getNullGeometryType();
 		nullGeometryTypeName = dbImporterManager.getDatabaseAdapter().getGeometryConverter().getNullGeometryTypeName();
 
-		String gmlIdCodespace = config.getInternal().getCurrentGmlIdCodespace();
-		if (gmlIdCodespace != null && gmlIdCodespace.length() > 0)
-			gmlIdCodespace = "'" + gmlIdCodespace + "', ";
-		else
-			gmlIdCodespace = null;		
+		List<String> columns = new ArrayList<String>(Arrays.asList("ID", "GMLID"));
+		List<String> values = new ArrayList<String>(Arrays.asList("?", "?"));
 
-		StringBuilder stmt = new StringBuilder()
-		.append("insert into SURFACE_GEOMETRY (ID, GMLID, ").append(gmlIdCodespace != null ? "GMLID_CODESPACE, " : "").append("PARENT_ID, ROOT_ID, IS_SOLID, IS_COMPOSITE, IS_TRIANGULATED, IS_XLINK, IS_REVERSE, GEOMETRY, SOLID_GEOMETRY, IMPLICIT_GEOMETRY, CITYOBJECT_ID) values ")
-		.append("(?, ?, ").append(gmlIdCodespace != null ? gmlIdCodespace : "").append("?, ?, ?, ?, ?, ?, ?, ?, ");
-
-		if (dbImporterManager.getDatabaseAdapter().getDatabaseType() == DatabaseType.POSTGIS) {
-			// the current PostGIS JDBC driver lacks support for geometry objects of type PolyhedralSurface
-			// thus, we have to use the database function ST_GeomFromEWKT to insert such geometries
-			// TODO: rework as soon as the JDBC driver supports PolyhedralSurface
-			stmt.append("ST_GeomFromEWKT(?), ");	
-		} else
-			stmt.append("?, ");
+		String gmlIdCodespace = dbImporterManager.getGmlIdCodespace();
+		if (gmlIdCodespace != null && gmlIdCodespace.length() > 0) {
+			columns.add("GMLID_CODESPACE");
+			values.add("'" + gmlIdCodespace + "'");
+		}
 
-		stmt.append("?, ?)");
+		columns.addAll(Arrays.asList("PARENT_ID", "ROOT_ID", "IS_SOLID", "IS_COMPOSITE", "IS_TRIANGULATED", "IS_XLINK", "IS_REVERSE", "GEOMETRY", "SOLID_GEOMETRY", "IMPLICIT_GEOMETRY", "CITYOBJECT_ID"));
+		values.addAll(Collections.nCopies(11, "?"));
 
-		psGeomElem = batchConn.prepareStatement(stmt.toString());
+		psGeomElem = dbImporterManager.getBatchInsertStatement("SURFACE_GEOMETRY", columns.toArray(new String[columns.size()]), values.toArray(new String[values.size()]));
 		psNextSeqValues = batchConn.prepareStatement(dbImporterManager.getDatabaseAdapter().getSQLAdapter().getNextSequenceValuesQuery(DBSequencerEnum.SURFACE_GEOMETRY_ID_SEQ));
 
 		materialModelImporter = (DBDeprecatedMaterialModel)dbImporterManager.getDBImporter(DBImporterEnum.DEPRECATED_MATERIAL_MODEL);
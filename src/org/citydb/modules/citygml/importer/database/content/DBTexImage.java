@@ -36,6 +36,7 @@ import java.sql.SQLException;
 import java.util.concurrent.locks.ReentrantLock;
 
 import org.citydb.config.Config;
+import org.citydb.io.ZipEntryInputFile;
 import org.citydb.modules.citygml.common.database.xlink.DBXlinkTextureFile;
 import org.citydb.modules.citygml.importer.util.ConcurrentLockManager;
 import org.citygml4j.model.citygml.CityGMLClass;
@@ -64,7 +65,7 @@ public class DBTexImage implements DBImporter {
 	}
 
 	private void init() throws SQLException {
-		localPath = config.getInternal().getImportPath();
+		localPath = importerManager.getImportPath();
 		replacePathSeparator = File.separatorChar == '/';
 		importTextureImage = config.getProject().getImporter().getAppearances().isSetImportTextureFiles();
 
@@ -85,7 +86,8 @@ public class DBTexImage implements DBImporter {
 			return 0;
 		
 		long texImageId = 0;
-		String md5URI = toHexString(md5.digest(imageURI.getBytes()));
+		String fileURI = importerManager.resolveFileURI(imageURI);
+		String md5URI = toHexString(md5.digest(fileURI.getBytes()));
 		boolean insertIntoTexImage = false;
 
 		// synchronize concurrent processing of the same texture image
@@ -130,7 +132,7 @@ public class DBTexImage implements DBImporter {
 				// propagte xlink to import the texture file itself
 				importerManager.propagateXlink(new DBXlinkTextureFile(
 						texImageId,
-						imageURI,
+						fileURI,
 						false));
 
 				// do we have a world file?!
@@ -138,7 +140,7 @@ public class DBTexImage implements DBImporter {
 						!((GeoreferencedTexture)abstractTexture).isSetOrientation() && !((GeoreferencedTexture)abstractTexture).isSetReferencePoint()) {
 					importerManager.propagateXlink(new DBXlinkTextureFile(
 							surfaceDataId,
-							imageURI,
+							fileURI,
 							true));
 				}
 			}
@@ -163,6 +165,10 @@ public class DBTexImage implements DBImporter {
 
 		File imageFile = new File(fileURI);
 		if (!imageFile.isAbsolute()) {
+			// textures of archive entries are read from the archive
+			if (ZipEntryInputFile.isEntryPath(localPath))
+				return imageFile.getName();
+
 			fileURI = localPath + File.separator + imageFile.getPath();
 			imageFile = new File(fileURI);
 		}
@@ -28,17 +28,18 @@
 package org.citydb.modules.citygml.importer.database.content;
 
 import java.sql.Connection;
-import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.sql.Types;
+import java.util.Arrays;
 
+import org.citydb.database.adapter.BatchInsertStatement;
 import org.citydb.modules.citygml.importer.util.LocalTextureCoordinatesResolver.SurfaceGeometryTarget;
 
 public class DBTextureParam implements DBImporter {
 	private final Connection batchConn;
 	private final DBImporterManager dbImporterManager;
 
-	private PreparedStatement psTextureParam;
+	private BatchInsertStatement psTextureParam;
 	private int batchCounter;
 
 	public DBTextureParam(Connection batchConn, DBImporterManager dbImporterManager) throws SQLException {
@@ -49,10 +50,11 @@ public class DBTextureParam implements DBImporter {
 	}
 
 	private void init() throws SQLException {		
-		StringBuilder texCoordListStmt = new StringBuilder()
-		.append("insert into TEXTUREPARAM (SURFACE_GEOMETRY_ID, IS_TEXTURE_PARAMETRIZATION, WORLD_TO_TEXTURE, TEXTURE_COORDINATES, SURFACE_DATA_ID, SURFACE_OF_MULTI_GEOM_ID) values ")
-		.append("(?, ?, ?, ?, ?, ?)");
-		psTextureParam = batchConn.prepareStatement(texCoordListStmt.toString());
+		String[] columns = new String[]{"SURFACE_GEOMETRY_ID", "IS_TEXTURE_PARAMETRIZATION", "WORLD_TO_TEXTURE", "TEXTURE_COORDINATES", "SURFACE_DATA_ID", "SURFACE_OF_MULTI_GEOM_ID"};
+		String[] values = new String[columns.length];
+		Arrays.fill(values, "?");
+
+		psTextureParam = dbImporterManager.getBatchInsertStatement("TEXTUREPARAM", columns, values);
 	}
 
 	public void insert(SurfaceGeometryTarget target, long surfaceDataId) throws SQLException {
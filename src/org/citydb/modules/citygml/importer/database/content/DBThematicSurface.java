@@ -28,11 +28,12 @@
 package org.citydb.modules.citygml.importer.database.content;
 
 import java.sql.Connection;
-import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.sql.Types;
+import java.util.Arrays;
 
 import org.citydb.database.TableEnum;
+import org.citydb.database.adapter.BatchInsertStatement;
 import org.citydb.log.Logger;
 import org.citydb.modules.citygml.common.database.xlink.DBXlinkBasic;
 import org.citydb.modules.citygml.common.database.xlink.DBXlinkSurfaceGeometry;
@@ -49,7 +50,7 @@ public class DBThematicSurface implements DBImporter {
 	private final Connection batchConn;
 	private final DBImporterManager dbImporterManager;
 
-	private PreparedStatement psThematicSurface;
+	private BatchInsertStatement psThematicSurface;
 	private DBCityObject cityObjectImporter;
 	private DBSurfaceGeometry surfaceGeometryImporter;
 	private DBOpening openingImporter;
@@ -64,12 +65,13 @@ public class DBThematicSurface implements DBImporter {
 	}
 
 	private void init() throws SQLException {
-		StringBuilder stmt = new StringBuilder()
-		.append("insert into THEMATIC_SURFACE (ID, OBJECTCLASS_ID, BUILDING_ID, ROOM_ID, BUILDING_INSTALLATION_ID, LOD2_MULTI_SURFACE_ID, LOD3_MULTI_SURFACE_ID, LOD4_MULTI_SURFACE_ID, ")
-		.append("STOREY_ID, PODIUM_ID, BEAM_ID,BUILDING_COLUMN_ID, COVERING_ID, FLOW_TERMINAL_ID, RAILING_ID, ")
-		.append("RAMP_ID, RAMP_FLIGHT_ID, SLAB_ID, STAIR_ID, STAIR_FLIGHT_ID) values")
-		.append("(?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
-		psThematicSurface = batchConn.prepareStatement(stmt.toString());
+		String[] columns = new String[]{"ID", "OBJECTCLASS_ID", "BUILDING_ID", "ROOM_ID", "BUILDING_INSTALLATION_ID", "LOD2_MULTI_SURFACE_ID", "LOD3_MULTI_SURFACE_ID", "LOD4_MULTI_SURFACE_ID",
+				"STOREY_ID", "PODIUM_ID", "BEAM_ID", "BUILDING_COLUMN_ID", "COVERING_ID", "FLOW_TERMINAL_ID", "RAILING_ID",
+				"RAMP_ID", "RAMP_FLIGHT_ID", "SLAB_ID", "STAIR_ID", "STAIR_FLIGHT_ID"};
+		String[] values = new String[columns.length];
+		Arrays.fill(values, "?");
+
+		psThematicSurface = dbImporterManager.getBatchInsertStatement("THEMATIC_SURFACE", columns, values);
 
 		surfaceGeometryImporter = (DBSurfaceGeometry)dbImporterManager.getDBImporter(DBImporterEnum.SURFACE_GEOMETRY);
 		cityObjectImporter = (DBCityObject)dbImporterManager.getDBImporter(DBImporterEnum.CITYOBJECT);
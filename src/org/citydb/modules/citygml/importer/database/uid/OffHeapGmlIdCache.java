@@ -0,0 +1,508 @@
+/*
+ * 3D City Database - The Open Source CityGML Database
+ * http://www.3dcitydb.org/
+ * 
+ * Copyright 2013 - 2016
+ * Chair of Geoinformatics
+ * Technical University of Munich, Germany
+ * https://www.gis.bgu.tum.de/
+ * 
+ * The 3D City Database is jointly developed with the following
+ * cooperation partners:
+ * 
+ * virtualcitySYSTEMS GmbH, Berlin <http://www.virtualcitysystems.de/>
+ * M.O.S.S. Computer Grafik Systeme GmbH, Taufkirchen <http://www.moss.de/>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.citydb.modules.citygml.importer.database.uid;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.citydb.log.Logger;
+import org.citydb.modules.citygml.common.database.uid.UIDCacheEntry;
+import org.citydb.modules.citygml.common.database.uid.UIDCachingModel;
+import org.citygml4j.model.citygml.CityGMLClass;
+
+/**
+ * Caching model that backs up drained cache entries in an off-heap, open-addressing
+ * hash table instead of temporary cache tables.
+ * 
+ * The hash table itself is kept in direct memory, which is limited by the given
+ * amount of bytes shared by all partitions. Each slot references a record
+ * holding the UTF-8 bytes of the key together with the packed id, root id, flags and
+ * type of the entry. Records are appended to memory-mapped files in the local cache
+ * directory, so the operating system pages them out once they exceed physical memory.
+ * 
+ * Once a partition has reached its maximum number of slots or cannot grow within the
+ * memory limit, new entries of that partition are spilled to the given caching model
+ * based on temporary cache tables.
+ */
+public class OffHeapGmlIdCache implements UIDCachingModel {
+	private final Logger LOG = Logger.getInstance();
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private static final int SEGMENT_SIZE = 1 << 28;
+	private static final int MAX_SLOTS = 1 << 27;
+	private static final int INITIAL_SLOTS = 1 << 16;
+	private static final float LOAD_FACTOR = 0.6f;
+
+	private static final long ADDRESS_MASK = (1L << 40) - 1;
+	private static final int TAG_SHIFT = 40;
+
+	// record layout
+	private static final int HASH = 0;
+	private static final int ID = 4;
+	private static final int ROOT_ID = 12;
+	private static final int TYPE = 20;
+	private static final int FLAGS = 24;
+	private static final int KEY_LENGTH = 25;
+	private static final int MAPPING_LENGTH = 29;
+	private static final int HEADER_SIZE = 33;
+
+	private final String type;
+	private final File cacheDir;
+	private final Partition[] partitions;
+	private final UIDCachingModel spillModel;
+	private final long maxMemory;
+	private final AtomicLong memory = new AtomicLong();
+	private volatile boolean isSpilled;
+
+	public OffHeapGmlIdCache(String type, String cachePath, int partitions, long maxMemory, UIDCachingModel spillModel) throws IOException {
+		this.type = type;
+		this.maxMemory = maxMemory;
+		this.spillModel = spillModel;
+
+		File parent = new File(cachePath != null && cachePath.trim().length() > 0 ? cachePath : System.getProperty("java.io.tmpdir"));
+		if (!parent.exists() && !parent.mkdirs())
+			throw new IOException("Failed to create temp directory '" + parent.getAbsolutePath() + "'.");
+
+		cacheDir = File.createTempFile("gmlid_" + type.replace(' ', '_') + "_", "", parent);
+		if (!cacheDir.delete() || !cacheDir.mkdir())
+			throw new IOException("Failed to create off-heap cache directory '" + cacheDir.getAbsolutePath() + "'.");
+
+		this.partitions = new Partition[partitions];
+		for (int i = 0; i < partitions; i++)
+			this.partitions[i] = new Partition(new File(cacheDir, "partition_" + i));
+
+		LOG.debug("Using off-heap back up for " + type + " cache in '" + cacheDir.getAbsolutePath() + "'.");
+	}
+
+	@Override
+	public void drainToDB(ConcurrentHashMap<String, UIDCacheEntry> map, int drain) throws SQLException {
+		ConcurrentHashMap<String, UIDCacheEntry> spill = null;
+		int drainCounter = 0;
+
+		try {
+			// firstly, try and write those entries which have not been requested so far
+			Iterator<Map.Entry<String, UIDCacheEntry>> iter = map.entrySet().iterator();
+			while (drainCounter <= drain && iter.hasNext()) {
+				Map.Entry<String, UIDCacheEntry> entry = iter.next();
+				if (!entry.getValue().isRequested()) {
+					if (!write(entry.getKey(), entry.getValue()))
+						spill = addToSpill(spill, entry);
+
+					iter.remove();
+					++drainCounter;
+				}
+			}
+
+			// secondly, drain remaining entries until drain limit
+			iter = map.entrySet().iterator();
+			while (drainCounter <= drain && iter.hasNext()) {
+				Map.Entry<String, UIDCacheEntry> entry = iter.next();
+				if (!write(entry.getKey(), entry.getValue()))
+					spill = addToSpill(spill, entry);
+
+				iter.remove();
+				++drainCounter;
+			}
+		} catch (IOException e) {
+			throw new SQLException("Failed to write to off-heap cache.", e);
+		}
+
+		// entries of full partitions are written to the cache tables
+		if (spill != null)
+			spillModel.drainToDB(spill, spill.size());
+	}
+
+	@Override
+	public UIDCacheEntry lookupDB(String key) throws SQLException {
+		int hash = hash(key);
+		UIDCacheEntry entry = partitions[partition(hash)].lookup(key.getBytes(UTF8), hash);
+		if (entry == null && isSpilled)
+			entry = spillModel.lookupDB(key);
+
+		return entry;
+	}
+
+	@Override
+	public String lookupDB(long id, CityGMLClass type) throws SQLException {
+		// nothing to do here 
+		return null;
+	}
+
+	@Override
+	public void close() throws SQLException {
+		for (Partition partition : partitions)
+			partition.close();
+
+		if (!cacheDir.delete())
+			cacheDir.deleteOnExit();
+
+		spillModel.close();
+	}
+
+	@Override
+	public String getType() {
+		return type;
+	}
+
+	private boolean write(String key, UIDCacheEntry entry) throws IOException {
+		int hash = hash(key);
+		return partitions[partition(hash)].put(key.getBytes(UTF8), hash, entry);
+	}
+
+	private ConcurrentHashMap<String, UIDCacheEntry> addToSpill(ConcurrentHashMap<String, UIDCacheEntry> spill, Map.Entry<String, UIDCacheEntry> entry) {
+		if (spill == null) {
+			spill = new ConcurrentHashMap<String, UIDCacheEntry>();
+			if (!isSpilled) {
+				LOG.debug("The off-heap " + type + " cache is full. Spilling further entries to temporary cache tables.");
+				isSpilled = true;
+			}
+		}
+
+		spill.put(entry.getKey(), entry.getValue());
+		return spill;
+	}
+
+	private ByteBuffer allocate(int numSlots) {
+		long bytes = (long)numSlots << 3;
+		if (memory.addAndGet(bytes) > maxMemory) {
+			memory.addAndGet(-bytes);
+			return null;
+		}
+
+		try {
+			return ByteBuffer.allocateDirect((int)bytes);
+		} catch (OutOfMemoryError e) {
+			memory.addAndGet(-bytes);
+			LOG.debug("Failed to allocate direct memory for the off-heap " + type + " cache: " + e.getMessage());
+			return null;
+		}
+	}
+
+	private void free(ByteBuffer slotBuffer) {
+		memory.addAndGet(-slotBuffer.capacity());
+		release(slotBuffer);
+	}
+
+	private static void release(ByteBuffer buffer) {
+		// direct and mapped buffers are otherwise only released by the garbage
+		// collector, which keeps the memory and the mapped files in use
+		try {
+			Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+			cleanerMethod.setAccessible(true);
+			Object cleaner = cleanerMethod.invoke(buffer);
+			if (cleaner != null)
+				cleaner.getClass().getMethod("clean").invoke(cleaner);
+		} catch (Exception e) {
+			//
+		}
+	}
+
+	private int partition(int hash) {
+		return (hash >>> 24) % partitions.length;
+	}
+
+	private int hash(String key) {
+		int hash = key.hashCode();
+		hash *= 0x9e3779b9;
+		return hash ^ (hash >>> 16);
+	}
+
+	private static long slot(long address, int hash) {
+		return ((long)tag(hash) << TAG_SHIFT) | (address + 1);
+	}
+
+	private static boolean matchesTag(long slot, int hash) {
+		return (int)(slot >>> TAG_SHIFT) == tag(hash);
+	}
+
+	private static int tag(int hash) {
+		// the low bits of the hash already select the slot
+		return hash >>> 8;
+	}
+
+	private static long address(long slot) {
+		return (slot & ADDRESS_MASK) - 1;
+	}
+
+	private final class Partition {
+		private final ReentrantLock lock = new ReentrantLock(true);
+		private final File file;
+		private final List<MappedByteBuffer> segments;
+
+		private RandomAccessFile raf;
+		private FileChannel channel;
+		private ByteBuffer slotBuffer;
+		private LongBuffer slots;
+		private int size;
+		private boolean isFull;
+		private long position;
+
+		private Partition(File file) {
+			this.file = file;
+			segments = new ArrayList<MappedByteBuffer>();
+		}
+
+		private boolean put(byte[] key, int hash, UIDCacheEntry entry) throws IOException {
+			final ReentrantLock lock = this.lock;
+			lock.lock();
+
+			try {
+				if (slots == null) {
+					if (isFull || !initialize()) {
+						isFull = true;
+						return false;
+					}
+				} else if (!isFull && size + 1 > slots.capacity() * LOAD_FACTOR) {
+					if (slots.capacity() >= MAX_SLOTS || !resize())
+						isFull = true;
+				}
+
+				int mask = slots.capacity() - 1;
+				int index = hash & mask;
+
+				long slot;
+				while ((slot = slots.get(index)) != 0) {
+					// replace entries that have been drained before
+					if (matchesTag(slot, hash) && equalsKey(address(slot), key)) {
+						slots.put(index, slot(append(key, hash, entry), hash));
+						return true;
+					}
+
+					index = (index + 1) & mask;
+				}
+
+				// the partition is full
+				if (size + 1 > slots.capacity() * LOAD_FACTOR)
+					return false;
+
+				slots.put(index, slot(append(key, hash, entry), hash));
+				size++;
+				return true;
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		private UIDCacheEntry lookup(byte[] key, int hash) {
+			final ReentrantLock lock = this.lock;
+			lock.lock();
+
+			try {
+				if (slots == null)
+					return null;
+
+				int mask = slots.capacity() - 1;
+				int index = hash & mask;
+
+				long slot;
+				while ((slot = slots.get(index)) != 0) {
+					if (matchesTag(slot, hash)) {
+						long address = address(slot);
+						if (equalsKey(address, key))
+							return read(address);
+					}
+
+					index = (index + 1) & mask;
+				}
+
+				return null;
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		private boolean initialize() throws IOException {
+			ByteBuffer buffer = allocate(INITIAL_SLOTS);
+			if (buffer == null)
+				return false;
+
+			raf = new RandomAccessFile(file, "rw");
+			channel = raf.getChannel();
+			slotBuffer = buffer;
+			slots = buffer.asLongBuffer();
+			return true;
+		}
+
+		private boolean resize() {
+			ByteBuffer buffer = allocate(slots.capacity() << 1);
+			if (buffer == null)
+				return false;
+
+			ByteBuffer oldSlotBuffer = slotBuffer;
+			LongBuffer oldSlots = slots;
+			slotBuffer = buffer;
+			slots = buffer.asLongBuffer();
+			int mask = slots.capacity() - 1;
+
+			for (int i = 0; i < oldSlots.capacity(); i++) {
+				long slot = oldSlots.get(i);
+				if (slot == 0)
+					continue;
+
+				int index = recordHash(address(slot)) & mask;
+				while (slots.get(index) != 0)
+					index = (index + 1) & mask;
+
+				slots.put(index, slot);
+			}
+
+			free(oldSlotBuffer);
+			return true;
+		}
+
+		private long append(byte[] key, int hash, UIDCacheEntry entry) throws IOException {
+			byte[] mapping = entry.getMapping() != null ? entry.getMapping().getBytes(UTF8) : null;
+			int length = HEADER_SIZE + key.length + (mapping != null ? mapping.length : 0);
+			if (length > SEGMENT_SIZE)
+				throw new IOException("Cache entry exceeds the maximum record size.");
+
+			// records must not span segments
+			int offset = (int)(position % SEGMENT_SIZE);
+			if (offset + length > SEGMENT_SIZE) {
+				position += SEGMENT_SIZE - offset;
+				offset = 0;
+			}
+
+			int segment = (int)(position / SEGMENT_SIZE);
+			if (segment == segments.size())
+				segments.add(channel.map(FileChannel.MapMode.READ_WRITE, (long)segment * SEGMENT_SIZE, SEGMENT_SIZE));
+
+			ByteBuffer buffer = segments.get(segment);
+			buffer.putInt(offset + HASH, hash);
+			buffer.putLong(offset + ID, entry.getId());
+			buffer.putLong(offset + ROOT_ID, entry.getRootId());
+			buffer.putInt(offset + TYPE, entry.getType() != null ? entry.getType().ordinal() : -1);
+			buffer.put(offset + FLAGS, (byte)(entry.isReverse() ? 1 : 0));
+			buffer.putInt(offset + KEY_LENGTH, key.length);
+			buffer.putInt(offset + MAPPING_LENGTH, mapping != null ? mapping.length : -1);
+
+			ByteBuffer data = buffer.duplicate();
+			data.position(offset + HEADER_SIZE);
+			data.put(key);
+			if (mapping != null)
+				data.put(mapping);
+
+			long address = position;
+			position += length;
+			return address;
+		}
+
+		private boolean equalsKey(long address, byte[] key) {
+			ByteBuffer buffer = segments.get((int)(address / SEGMENT_SIZE));
+			int offset = (int)(address % SEGMENT_SIZE);
+
+			if (buffer.getInt(offset + KEY_LENGTH) != key.length)
+				return false;
+
+			offset += HEADER_SIZE;
+			for (int i = 0; i < key.length; i++)
+				if (buffer.get(offset + i) != key[i])
+					return false;
+
+			return true;
+		}
+
+		private int recordHash(long address) {
+			return segments.get((int)(address / SEGMENT_SIZE)).getInt((int)(address % SEGMENT_SIZE) + HASH);
+		}
+
+		private UIDCacheEntry read(long address) {
+			ByteBuffer buffer = segments.get((int)(address / SEGMENT_SIZE));
+			int offset = (int)(address % SEGMENT_SIZE);
+
+			long id = buffer.getLong(offset + ID);
+			long rootId = buffer.getLong(offset + ROOT_ID);
+			int type = buffer.getInt(offset + TYPE);
+			boolean reverse = buffer.get(offset + FLAGS) == 1;
+			int keyLength = buffer.getInt(offset + KEY_LENGTH);
+			int mappingLength = buffer.getInt(offset + MAPPING_LENGTH);
+
+			String mapping = null;
+			if (mappingLength >= 0) {
+				byte[] bytes = new byte[mappingLength];
+				ByteBuffer data = buffer.duplicate();
+				data.position(offset + HEADER_SIZE + keyLength);
+				data.get(bytes);
+				mapping = new String(bytes, UTF8);
+			}
+
+			return new UIDCacheEntry(id, rootId, reverse, mapping, type >= 0 ? CityGMLClass.fromInt(type) : null);
+		}
+
+		private void close() {
+			final ReentrantLock lock = this.lock;
+			lock.lock();
+
+			try {
+				if (slotBuffer != null) {
+					free(slotBuffer);
+					slotBuffer = null;
+					slots = null;
+				}
+
+				// unmap the segments so that the file can be deleted
+				for (MappedByteBuffer segment : segments)
+					release(segment);
+
+				segments.clear();
+
+				if (raf != null) {
+					try {
+						raf.close();
+					} catch (IOException e) {
+						//
+					}
+
+					raf = null;
+					channel = null;
+				}
+
+				if (file.exists() && !file.delete())
+					file.deleteOnExit();
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+
+}
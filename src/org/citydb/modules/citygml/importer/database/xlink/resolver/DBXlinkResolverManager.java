@@ -33,6 +33,10 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.StandardOpenOption;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.HashMap;
@@ -42,6 +46,7 @@ import org.citydb.api.event.Event;
 import org.citydb.api.event.EventDispatcher;
 import org.citydb.config.Config;
 import org.citydb.database.adapter.AbstractDatabaseAdapter;
+import org.citydb.io.ZipEntryInputFile;
 import org.citydb.modules.citygml.common.database.cache.CacheTable;
 import org.citydb.modules.citygml.common.database.cache.CacheTableManager;
 import org.citydb.modules.citygml.common.database.cache.model.CacheTableModelEnum;
@@ -121,7 +126,7 @@ public class DBXlinkResolverManager {
 					dbResolver = new XlinkTextureAssociation(connection, texAssHeapView, this);
 				break;
 			case TEXTURE_IMAGE:
-				dbResolver = new XlinkTextureImage(connection, this);
+				dbResolver = new XlinkTextureImage(connection, config, this);
 				break;
 			case SURFACE_DATA_TO_TEX_IMAGE:
 				dbResolver = new XlinkSurfaceDataToTexImage(connection, this);
@@ -183,21 +188,48 @@ public class DBXlinkResolverManager {
 	
 	public InputStream openStream(String fileURI) throws IOException {        
 		try {
-			return new URL(fileURI).openStream();
+			return new URL(resolveArchiveEntry(fileURI)).openStream();
 		} catch (MalformedURLException e) {
-			if (replacePathSeparator)
-				fileURI = fileURI.replace("\\", "/");
-
-			File file = new File(fileURI);
-			if (!file.isAbsolute())
-				file = new File(config.getInternal().getImportPath(), file.getPath());
+			return new FileInputStream(getFile(fileURI));
+		}
+	}
 
-			// skip zero byte file
-			if (file.isFile() && file.length() == 0)
-				throw new IOException("Zero byte file.");
+	public ReadableByteChannel openChannel(String fileURI) throws IOException {
+		try {
+			return Channels.newChannel(new URL(resolveArchiveEntry(fileURI)).openStream());
+		} catch (MalformedURLException e) {
+			return FileChannel.open(getFile(fileURI).toPath(), StandardOpenOption.READ);
+		}
+	}
 
-			return new FileInputStream(file);
+	private String resolveArchiveEntry(String fileURI) {
+		// relative references of files read from an archive point into the archive
+		String importPath = config.getInternal().getImportPath();
+		if (ZipEntryInputFile.isEntryPath(importPath)) {
+			try {
+				new URL(fileURI);
+			} catch (MalformedURLException e) {
+				if (!new File(replacePathSeparator ? fileURI.replace("\\", "/") : fileURI).isAbsolute())
+					return ZipEntryInputFile.resolve(importPath, fileURI);
+			}
 		}
+
+		return fileURI;
+	}
+
+	private File getFile(String fileURI) throws IOException {
+		if (replacePathSeparator)
+			fileURI = fileURI.replace("\\", "/");
+
+		File file = new File(fileURI);
+		if (!file.isAbsolute())
+			file = new File(config.getInternal().getImportPath(), file.getPath());
+
+		// skip zero byte file
+		if (file.isFile() && file.length() == 0)
+			throw new IOException("Zero byte file.");
+
+		return file;
 	}
 	
 	public void executeBatch() throws SQLException {
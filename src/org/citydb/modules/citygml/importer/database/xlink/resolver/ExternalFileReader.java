@@ -0,0 +1,168 @@
+/*
+ * 3D City Database - The Open Source CityGML Database
+ * http://www.3dcitydb.org/
+ * 
+ * Copyright 2013 - 2016
+ * Chair of Geoinformatics
+ * Technical University of Munich, Germany
+ * https://www.gis.bgu.tum.de/
+ * 
+ * The 3D City Database is jointly developed with the following
+ * cooperation partners:
+ * 
+ * virtualcitySYSTEMS GmbH, Berlin <http://www.virtualcitysystems.de/>
+ * M.O.S.S. Computer Grafik Systeme GmbH, Taufkirchen <http://www.moss.de/>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.citydb.modules.citygml.importer.database.xlink.resolver;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Reads external files on a background thread so that disk reads overlap with
+ * database writes. Files are handed out in the order they were submitted, and at
+ * most readAhead files are read in advance of the consumer.
+ */
+class ExternalFileReader {
+	private final DBXlinkResolverManager resolverManager;
+	private final ArrayDeque<Future<ExternalFile>> pending;
+	private final ExecutorService service;
+	private final int readAhead;
+
+	ExternalFileReader(DBXlinkResolverManager resolverManager, int readAhead) {
+		this.resolverManager = resolverManager;
+		this.readAhead = Math.max(readAhead, 1);
+
+		pending = new ArrayDeque<Future<ExternalFile>>(this.readAhead);
+		service = Executors.newFixedThreadPool(1, new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r);
+				t.setDaemon(true);
+				return t;
+			}
+		});
+	}
+
+	void submit(final long id, final String fileURI) {
+		pending.add(service.submit(new Callable<ExternalFile>() {
+			public ExternalFile call() {
+				try {
+					return new ExternalFile(id, fileURI, read(fileURI), null);
+				} catch (IOException e) {
+					return new ExternalFile(id, fileURI, null, e);
+				} catch (RuntimeException e) {
+					return new ExternalFile(id, fileURI, null, new IOException(e));
+				}
+			}
+		}));
+	}
+
+	ExternalFile next(boolean wait) {
+		Future<ExternalFile> future = pending.peek();
+		if (future == null || (!wait && pending.size() <= readAhead && !future.isDone()))
+			return null;
+
+		pending.poll();
+		boolean interrupted = false;
+
+		try {
+			while (true) {
+				try {
+					return future.get();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				} catch (ExecutionException e) {
+					return new ExternalFile(0, null, null, new IOException(e.getCause()));
+				}
+			}
+		} finally {
+			if (interrupted)
+				Thread.currentThread().interrupt();
+		}
+	}
+
+	void shutdown() {
+		service.shutdownNow();
+		pending.clear();
+	}
+
+	private byte[] read(String fileURI) throws IOException {
+		try (ReadableByteChannel channel = resolverManager.openChannel(fileURI)) {
+			if (channel instanceof FileChannel) {
+				long size = ((FileChannel)channel).size();
+				if (size > Integer.MAX_VALUE)
+					throw new IOException("File size exceeds 2 GB.");
+
+				ByteBuffer buffer = ByteBuffer.allocate((int)size);
+				while (buffer.hasRemaining() && channel.read(buffer) != -1);
+
+				return buffer.position() == buffer.capacity() ? buffer.array() : Arrays.copyOf(buffer.array(), buffer.position());
+			}
+
+			ByteBuffer buffer = ByteBuffer.allocate(65536);
+			while (channel.read(buffer) != -1) {
+				if (!buffer.hasRemaining()) {
+					ByteBuffer tmp = ByteBuffer.allocate(buffer.capacity() << 1);
+					buffer.flip();
+					tmp.put(buffer);
+					buffer = tmp;
+				}
+			}
+
+			return Arrays.copyOf(buffer.array(), buffer.position());
+		}
+	}
+
+	static class ExternalFile {
+		private final long id;
+		private final String fileURI;
+		private final byte[] data;
+		private final IOException exception;
+
+		private ExternalFile(long id, String fileURI, byte[] data, IOException exception) {
+			this.id = id;
+			this.fileURI = fileURI;
+			this.data = data;
+			this.exception = exception;
+		}
+
+		long getId() {
+			return id;
+		}
+
+		String getFileURI() {
+			return fileURI;
+		}
+
+		byte[] getData() {
+			return data;
+		}
+
+		IOException getException() {
+			return exception;
+		}
+	}
+
+}
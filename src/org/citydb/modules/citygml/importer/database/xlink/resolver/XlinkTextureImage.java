@@ -32,30 +32,45 @@ import java.io.InputStream;
 import java.sql.Connection;
 import java.sql.SQLException;
 
+import org.citydb.config.Config;
+import org.citydb.config.project.database.UpdateBatching;
 import org.citydb.database.adapter.BlobImportAdapter;
 import org.citydb.database.adapter.BlobType;
 import org.citydb.log.Logger;
 import org.citydb.modules.citygml.common.database.xlink.DBXlinkTextureFile;
-import org.citydb.modules.common.event.CounterEvent;
-import org.citydb.modules.common.event.CounterType;
+import org.citydb.modules.citygml.importer.database.xlink.resolver.ExternalFileReader.ExternalFile;
+import org.citydb.modules.common.metrics.Metrics;
 
 public class XlinkTextureImage implements DBXlinkResolver {
 	private final Logger LOG = Logger.getInstance();
 	private final DBXlinkResolverManager resolverManager;
 
 	private BlobImportAdapter textureImportAdapter;	
-	private CounterEvent counter;
+	private ExternalFileReader fileReader;
+	private Metrics metrics;
 
-	public XlinkTextureImage(Connection externalFileConn, DBXlinkResolverManager resolverManager) throws SQLException {
+	public XlinkTextureImage(Connection externalFileConn, Config config, DBXlinkResolverManager resolverManager) throws SQLException {
 		this.resolverManager = resolverManager;
 		
-		counter = new CounterEvent(CounterType.TEXTURE_IMAGE, 1, this);
+		metrics = Metrics.getInstance();
 		textureImportAdapter = resolverManager.getDatabaseAdapter().getSQLAdapter().getBlobImportAdapter(externalFileConn, BlobType.TEXTURE_IMAGE);
+
+		UpdateBatching updateBatching = config.getProject().getDatabase().getUpdateBatching();
+		int batchSize = updateBatching.getBlobBatchValue();
+		if (batchSize > 1) {
+			textureImportAdapter.setBatchSize(batchSize, updateBatching.getBlobBatchMegabytes() * 1024L * 1024L);
+			fileReader = new ExternalFileReader(resolverManager, batchSize);
+		}
 	}
 
 	public boolean insert(DBXlinkTextureFile xlink) throws SQLException {
-		resolverManager.propagateEvent(counter);			
+		metrics.updateTextureImageCounter(1);			
 		String fileURI = xlink.getFileURI();
+
+		if (fileReader != null) {
+			fileReader.submit(xlink.getId(), fileURI);
+			return importFiles(false);
+		}
 		
 		try (InputStream inputStream = resolverManager.openStream(fileURI)) {
 			return textureImportAdapter.insert(xlink.getId(), inputStream, fileURI);
@@ -65,14 +80,40 @@ public class XlinkTextureImage implements DBXlinkResolver {
 		}
 	}
 
+	private boolean importFiles(boolean wait) throws SQLException {
+		boolean success = true;
+		ExternalFile file = null;
+
+		while ((file = fileReader.next(wait)) != null) {
+			if (file.getException() == null)
+				success &= textureImportAdapter.insertBatch(file.getId(), file.getData(), file.getFileURI());
+			else {
+				LOG.error("Failed to read texture file '" + file.getFileURI() + "': " + file.getException().getMessage());
+				success = false;
+			}
+		}
+
+		return success;
+	}
+
 	@Override
 	public void executeBatch() throws SQLException {
-		// we do not have any action here
+		// texture images are committed by volume in batch mode
 	}
 
 	@Override
 	public void close() throws SQLException {
-		textureImportAdapter.close();
+		try {
+			if (fileReader != null) {
+				importFiles(true);
+				textureImportAdapter.executeBatch();
+			}
+		} finally {
+			if (fileReader != null)
+				fileReader.shutdown();
+
+			textureImportAdapter.close();
+		}
 	}
 
 	@Override
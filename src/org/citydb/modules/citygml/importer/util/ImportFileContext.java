@@ -0,0 +1,131 @@
+/*
+ * 3D City Database - The Open Source CityGML Database
+ * http://www.3dcitydb.org/
+ * 
+ * Copyright 2013 - 2016
+ * Chair of Geoinformatics
+ * Technical University of Munich, Germany
+ * https://www.gis.bgu.tum.de/
+ * 
+ * The 3D City Database is jointly developed with the following
+ * cooperation partners:
+ * 
+ * virtualcitySYSTEMS GmbH, Berlin <http://www.virtualcitysystems.de/>
+ * M.O.S.S. Computer Grafik Systeme GmbH, Taufkirchen <http://www.moss.de/>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.citydb.modules.citygml.importer.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.citydb.io.InputFile;
+import org.citydb.log.Logger;
+import org.citygml4j.model.citygml.CityGML;
+import org.citygml4j.model.gml.base.AbstractGML;
+import org.citygml4j.xml.io.reader.CityGMLReadException;
+import org.citygml4j.xml.io.reader.CityGMLReader;
+
+public class ImportFileContext {
+	private static final String LOCAL_PROPERTY = "importFileContext";
+	private final Logger LOG = Logger.getInstance();
+
+	private final InputFile file;
+	private final String gmlIdCodespace;
+	private final ImportLogger importLogger;
+	private final CityGMLReader reader;
+	private final AtomicInteger pending = new AtomicInteger(1);
+	private volatile boolean closed;
+
+	public ImportFileContext(InputFile file, String gmlIdCodespace, ImportLogger importLogger, CityGMLReader reader) {
+		this.file = file;
+		this.gmlIdCodespace = gmlIdCodespace;
+		this.importLogger = importLogger;
+		this.reader = reader;
+	}
+
+	public File getFile() {
+		return file.getFile();
+	}
+
+	public String getImportPath() {
+		return file.getImportPath();
+	}
+
+	public String getGmlIdCodespace() {
+		return gmlIdCodespace;
+	}
+
+	public CityGMLReader getReader() {
+		return reader;
+	}
+
+	public ImportLogger getImportLogger() {
+		return importLogger;
+	}
+
+	public boolean isClosed() {
+		return closed;
+	}
+
+	public void acquire() {
+		pending.incrementAndGet();
+	}
+
+	public void release() {
+		// the reader of the file holds the initial reference. once the file
+		// has been parsed and every feature has been committed, the reader
+		// can be closed and the import log of this file can be finished
+		if (pending.decrementAndGet() == 0)
+			close(true);
+	}
+
+	public synchronized void close(boolean success) {
+		if (closed)
+			return;
+
+		closed = true;
+		try {
+			reader.close();
+		} catch (CityGMLReadException e) {
+			LOG.error("Failed to close CityGML reader for file " + file.getFile().getName() + ".");
+		}
+
+		if (importLogger != null) {
+			try {
+				importLogger.close(success);
+			} catch (IOException e) {
+				LOG.error("Failed to finish logging of imported top-level features for file " + file.getFile().getName() + ".");
+				LOG.warn("The feature import log is most likely corrupt.");
+			}
+		}
+	}
+
+	public static void set(CityGML cityGML, ImportFileContext context) {
+		if (cityGML instanceof AbstractGML)
+			((AbstractGML)cityGML).setLocalProperty(LOCAL_PROPERTY, context);
+	}
+
+	public static ImportFileContext get(CityGML cityGML) {
+		if (cityGML instanceof AbstractGML) {
+			Object context = ((AbstractGML)cityGML).getLocalProperty(LOCAL_PROPERTY);
+			if (context instanceof ImportFileContext)
+				return (ImportFileContext)context;
+		}
+
+		return null;
+	}
+
+}
@@ -37,13 +37,14 @@ import java.nio.file.Paths;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.ReentrantLock;
 
 import org.citydb.config.project.database.DBConnection;
 import org.citygml4j.model.citygml.CityGMLClass;
 
 public class ImportLogger {
-	private static int counter;
+	private static final AtomicInteger counter = new AtomicInteger();
 	private final ReentrantLock lock = new ReentrantLock();
 	
 	private Path logFile;
@@ -58,7 +59,7 @@ public class ImportLogger {
 		date = Calendar.getInstance().getTime();
 		SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy_MM_dd-HH_mm_ss_SSS");
 
-		logFile = Paths.get(path.toString(), "imported_features-" + dateFormat.format(date) + "_" + (++counter) + ".log");
+		logFile = Paths.get(path.toString(), "imported_features-" + dateFormat.format(date) + "_" + counter.incrementAndGet() + ".log");
 		if (Files.exists(logFile))
 			throw new IOException("The log file '" + logFile.getFileName() + "' for imported-top level features already exists.");
 
@@ -0,0 +1,235 @@
+/*
+ * 3D City Database - The Open Source CityGML Database
+ * http://www.3dcitydb.org/
+ * 
+ * Copyright 2013 - 2016
+ * Chair of Geoinformatics
+ * Technical University of Munich, Germany
+ * https://www.gis.bgu.tum.de/
+ * 
+ * The 3D City Database is jointly developed with the following
+ * cooperation partners:
+ * 
+ * virtualcitySYSTEMS GmbH, Berlin <http://www.virtualcitysystems.de/>
+ * M.O.S.S. Computer Grafik Systeme GmbH, Taufkirchen <http://www.moss.de/>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.citydb.modules.citygml.importer.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.citydb.modules.common.filter.ImportFilter;
+import org.citydb.modules.common.filter.feature.BoundingBoxFilter;
+import org.citydb.modules.common.filter.feature.GmlIdFilter;
+import org.citydb.modules.common.filter.feature.GmlNameFilter;
+import org.citygml4j.model.citygml.CityGMLClass;
+import org.citygml4j.model.gml.geometry.primitives.DirectPosition;
+import org.citygml4j.model.gml.geometry.primitives.Envelope;
+import org.citygml4j.xml.io.reader.XMLChunk;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Evaluates the gml:id, gml:name and bounding box filters on the buffered 
+ * SAX events of a city object chunk before it gets unmarshalled. Only the 
+ * leading GML properties of the feature are read. If a chunk lacks the 
+ * information required by an active filter, it is not rejected here but 
+ * left to the filters applied after unmarshalling.
+ */
+public class XMLChunkFilter {
+	private static final String GML_NAMESPACE = "http://www.opengis.net/gml";
+
+	private final GmlIdFilter gmlIdFilter;
+	private final GmlNameFilter gmlNameFilter;
+	private final BoundingBoxFilter boundingBoxFilter;
+	private final boolean isActive;
+
+	public XMLChunkFilter(ImportFilter importFilter) {
+		gmlIdFilter = importFilter.getGmlIdFilter();
+		gmlNameFilter = importFilter.getGmlNameFilter();
+		boundingBoxFilter = importFilter.getBoundingBoxFilter();
+
+		isActive = gmlIdFilter.isActive() || gmlNameFilter.isActive() || boundingBoxFilter.isActive();
+	}
+
+	public boolean isActive() {
+		return isActive;
+	}
+
+	public boolean filter(XMLChunk chunk) {
+		if (!isActive || !chunk.getCityGMLClass().isInstance(CityGMLClass.ABSTRACT_CITY_OBJECT))
+			return false;
+
+		HeaderReader reader = new HeaderReader();
+		try {
+			chunk.send(reader, false);
+		} catch (SAXException e) {
+			// parsers may wrap the exception used to stop reading
+			if (!reader.isComplete)
+				return false;
+		}
+
+		// gml:id filter
+		if (gmlIdFilter.isActive() && (reader.gmlId == null || gmlIdFilter.filter(reader.gmlId)))
+			return true;
+
+		// gml:name filter
+		if (gmlNameFilter.isActive()) {
+			boolean success = false;
+			for (String name : reader.names) {
+				if (!gmlNameFilter.filter(name)) {
+					success = true;
+					break;
+				}
+			}
+
+			if (!success)
+				return true;
+		}
+
+		// bounding box filter
+		if (boundingBoxFilter.isActive()) {
+			Envelope envelope = reader.getEnvelope();
+			if (envelope != null && boundingBoxFilter.filter(envelope))
+				return true;
+		}
+
+		return false;
+	}
+
+	private static final class StopReadingException extends SAXException {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public synchronized Throwable fillInStackTrace() {
+			return this;
+		}
+	}
+
+	private static final class HeaderReader extends DefaultHandler {
+		private final List<String> names = new ArrayList<String>();
+		private final List<List<Double>> positions = new ArrayList<List<Double>>(2);
+		private String gmlId;
+		private boolean isComplete;
+		private List<Double> lowerCorner;
+		private List<Double> upperCorner;
+
+		private int depth;
+		private boolean isBoundedBy;
+		private boolean isEnvelope;
+		private StringBuilder characters;
+
+		@Override
+		public void startElement(String uri, String localName, String qName, Attributes attributes) throws SAXException {
+			depth++;
+
+			if (depth == 1) {
+				gmlId = attributes.getValue(GML_NAMESPACE, "id");
+				return;
+			}
+
+			boolean isGML = GML_NAMESPACE.equals(uri);
+			if (depth == 2) {
+				// gml:boundedBy is the last property we are interested in
+				if (!isGML || !(localName.equals("name") || localName.equals("boundedBy") 
+						|| localName.equals("description") || localName.equals("metaDataProperty"))) {
+					isComplete = true;
+					throw new StopReadingException();
+				}
+
+				if (localName.equals("name"))
+					characters = new StringBuilder();
+				else
+					isBoundedBy = localName.equals("boundedBy");
+			} else if (depth == 3 && isBoundedBy)
+				isEnvelope = isGML && localName.equals("Envelope");
+			else if (depth == 4 && isEnvelope && isGML && 
+					(localName.equals("lowerCorner") || localName.equals("upperCorner") || localName.equals("pos")))
+				characters = new StringBuilder();
+		}
+
+		@Override
+		public void endElement(String uri, String localName, String qName) throws SAXException {
+			if (characters != null) {
+				if (depth == 2) {
+					String name = characters.toString().trim();
+					if (name.length() > 0)
+						names.add(name);
+				}
+				else if (localName.equals("lowerCorner"))
+					lowerCorner = toList(characters);
+				else if (localName.equals("upperCorner"))
+					upperCorner = toList(characters);
+				else
+					positions.add(toList(characters));
+
+				characters = null;
+			}
+
+			if (depth == 2 && isBoundedBy) {
+				isComplete = true;
+				throw new StopReadingException();
+			}
+
+			depth--;
+		}
+
+		@Override
+		public void endDocument() throws SAXException {
+			isComplete = true;
+		}
+
+		@Override
+		public void characters(char[] ch, int start, int length) throws SAXException {
+			if (characters != null)
+				characters.append(ch, start, length);
+		}
+
+		private Envelope getEnvelope() {
+			// GML 3.1.1 also allows for two gml:pos elements
+			if (lowerCorner == null && upperCorner == null && positions.size() == 2) {
+				lowerCorner = positions.get(0);
+				upperCorner = positions.get(1);
+			}
+
+			if (lowerCorner == null || upperCorner == null 
+					|| lowerCorner.size() < 2 || upperCorner.size() < 2)
+				return null;
+
+			Envelope envelope = new Envelope();
+			envelope.setLowerCorner(new DirectPosition());
+			envelope.getLowerCorner().setValue(lowerCorner);
+			envelope.setUpperCorner(new DirectPosition());
+			envelope.getUpperCorner().setValue(upperCorner);
+
+			return envelope;
+		}
+
+		private List<Double> toList(StringBuilder characters) {
+			List<Double> values = new ArrayList<Double>();
+			for (String value : characters.toString().trim().split("\\s+")) {
+				try {
+					values.add(Double.parseDouble(value));
+				} catch (NumberFormatException e) {
+					//
+				}
+			}
+
+			return values;
+		}
+	}
+
+}
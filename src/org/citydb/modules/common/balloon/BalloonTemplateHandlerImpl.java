@@ -43,6 +43,8 @@ import java.util.List;
 import java.util.ListIterator;
 import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import org.citydb.api.database.BalloonTemplateHandler;
 import org.citydb.api.geometry.GeometryObject;
@@ -1123,6 +1125,20 @@ public class BalloonTemplateHandlerImpl implements BalloonTemplateHandler {
 
 	List<BalloonStatement> statementList = null;
 	List<String> htmlChunkList = null;
+
+	// prepared statements are kept open for the connection they were created on
+	private final HashMap<String, CachedStatement> statementCache = new HashMap<String, CachedStatement>();
+	private Connection statementCacheConnection;
+
+	// plain columns of the rows of a single table that belong to an object.
+	// such statements are evaluated for all prefetched objects at once
+	private static final Pattern BATCH_STATEMENT = Pattern.compile(
+			"SELECT ((\\w+)\\.\\w+(?:, \\2\\.\\w+)*) FROM (\\w+) \\2 WHERE \\2\\.(\\w+) = \\?( ORDER by \\2\\.\\w+)?");
+	private static final String OBJECTCLASS_STATEMENT = "SELECT co.objectclass_id FROM CITYOBJECT co WHERE co.id = ?";
+	private static final int BATCH_SIZE = 100;
+
+	private LinkedHashSet<Long> batchIds = new LinkedHashSet<Long>();
+	private final HashMap<String, HashMap<Long, List<Object[]>>> batchResults = new HashMap<String, HashMap<Long, List<Object[]>>>();
 	
 	public BalloonTemplateHandlerImpl(File templateFile, AbstractDatabaseAdapter databaseAdapter) {
 		this.databaseAdapter = databaseAdapter;
@@ -1219,9 +1235,8 @@ public class BalloonTemplateHandlerImpl implements BalloonTemplateHandler {
 			long id = -1;
 
 			ResultSet rs = null;
-			PreparedStatement query = null;
 			try {
-				query = connection.prepareStatement("SELECT id, objectclass_id FROM CITYOBJECT WHERE gmlid = ?");
+				PreparedStatement query = getCachedStatement("SELECT id, objectclass_id FROM CITYOBJECT WHERE gmlid = ?", connection).statement;
 				query.setString(1, gmlId);
 				rs = query.executeQuery();
 				
@@ -1236,11 +1251,6 @@ public class BalloonTemplateHandlerImpl implements BalloonTemplateHandler {
 					try { rs.close(); }	catch (SQLException sqlEx) {}
 					rs = null;
 				}
-
-				if (query != null) {
-					try { query.close(); } catch (SQLException sqlEx) {}
-					query = null;
-				}
 			}
 
 			if (cityGMLClassForBalloonHandler != cityObjectTypeForGmlId) {
@@ -1282,29 +1292,13 @@ public class BalloonTemplateHandlerImpl implements BalloonTemplateHandler {
 
 			CityGMLClass cityObjectTypeForId = null;
 
-			ResultSet rs = null;
-			PreparedStatement query = null;
 			try {
-				query = connection.prepareStatement("SELECT gmlid, objectclass_id FROM CITYOBJECT WHERE id = ?");
-				query.setLong(1, id);
-				rs = query.executeQuery();
-
-				if (rs.next()) {
-					cityObjectTypeForId = Util.classId2cityObject(rs.getInt("objectclass_id"));
+				List<Object[]> rows = getRows(OBJECTCLASS_STATEMENT, id, connection);
+				if (!rows.isEmpty() && rows.get(0)[0] != null) {
+					cityObjectTypeForId = Util.classId2cityObject(((Number)rows.get(0)[0]).intValue());
 				}
 			}
 			catch (SQLException sqlEx) {}
-			finally {
-				if (rs != null) {
-					try { rs.close(); }	catch (SQLException sqlEx) {}
-					rs = null;
-				}
-
-				if (query != null) {
-					try { query.close(); } catch (SQLException sqlEx) {}
-					query = null;
-				}
-			}
 
 			if (cityGMLClassForBalloonHandler != cityObjectTypeForId) {
 				for (BalloonStatement statement: statementList) {
@@ -1338,6 +1332,8 @@ public class BalloonTemplateHandlerImpl implements BalloonTemplateHandler {
 			PreparedStatement preparedStatement = null;
 			ResultSet rs = null;
 			try {
+				List<Object[]> rows = null;
+
 				if (statement.isForeach()) {
 					return executeForeachStatement(statement, id, lod, connection);
 				}
@@ -1395,27 +1391,35 @@ public class BalloonTemplateHandlerImpl implements BalloonTemplateHandler {
 						}
 					}
 
+					// the resulting statement depends on the object, so it is not worth caching
 					BalloonStatement dummy = new BalloonStatement(notNestedAnymore.toString());
 					preparedStatement = connection.prepareStatement(dummy.getProperSQLStatement(lod));
+					int parameterCount = preparedStatement.getParameterMetaData().getParameterCount();
+					for (int i = 1; i <= parameterCount; i++) {
+						preparedStatement.setLong(i, id);
+					}
+
+					rs = preparedStatement.executeQuery();
+					rows = new ArrayList<Object[]>();
+					int columnCount = rs.getMetaData().getColumnCount();
+					while (rs.next()) {
+						rows.add(getRow(rs, 0, columnCount));
+					}
 				}
 				else { // not nested
 					if (statement.getProperSQLStatement(lod) == null) {
 						// malformed expression between proper START_TAG and END_TAG
 						return result; // skip db call, rs and preparedStatement are currently null
 					}
-					preparedStatement = connection.prepareStatement(statement.getProperSQLStatement(lod));
+					rows = getRows(statement.getProperSQLStatement(lod), id, connection);
 				}
 
-				for (int i = 1; i <= preparedStatement.getParameterMetaData().getParameterCount(); i++) {
-					preparedStatement.setLong(i, id);
-				}
-				rs = preparedStatement.executeQuery();
-				while (rs.next()) {
-					if (rs.getRow() > 1) {
+				for (int row = 0; row < rows.size(); row++) {
+					if (row > 0) {
 						result = result + ", ";
 					}
-					Object object = rs.getObject(1);
-					if (!rs.wasNull() && object != null) {
+					Object object = rows.get(row)[0];
+					if (object != null) {
 						GeometryObject geomObj = databaseAdapter.getGeometryConverter().getGeometry(object);
 						if (geomObj != null) {
 							int dimension = geomObj.getDimension();
@@ -1441,11 +1445,7 @@ public class BalloonTemplateHandlerImpl implements BalloonTemplateHandler {
 							result = result + ")";
 						}
 						else {
-							String tmp = rs.getObject(1).toString();
-							if (tmp.indexOf("oracle.sql.TIMESTAMPTZ") >= 0) {
-								tmp =  rs.getTimestamp(1).toString();
-							}
-							result = result + tmp.replaceAll("\"", "&quot;"); // workaround, the JAXB KML marshaler does not escape " properly;
+							result = result + object.toString().replaceAll("\"", "&quot;"); // workaround, the JAXB KML marshaler does not escape " properly;
 						}
 					}
 				}
@@ -1467,26 +1467,19 @@ public class BalloonTemplateHandlerImpl implements BalloonTemplateHandler {
 	private String executeForeachStatement(BalloonStatement statement, long id, int lod, Connection connection) {
 		String resultBody = "";
 		
-		PreparedStatement preparedStatement = null;
-		ResultSet rs = null;
 		try {
 			if (statement != null && statement.getProperSQLStatement(lod) != null) {
-				preparedStatement = connection.prepareStatement(statement.getProperSQLStatement(lod));
-				for (int i = 1; i <= preparedStatement.getParameterMetaData().getParameterCount(); i++) {
-					preparedStatement.setLong(i, id);
-				}
-
-				rs = preparedStatement.executeQuery();
-				while (rs.next()) {
+				List<Object[]> rows = getRows(statement.getProperSQLStatement(lod), id, connection);
+				for (int row = 0; row < rows.size(); row++) {
 					String iterationBody = statement.getForeachBody();
 					for (int n = 0; n <= statement.getColumnAmount(); n++) {
 						String columnValue = "";
 						if (n == 0) {
-							columnValue = String.valueOf(rs.getRow());
+							columnValue = String.valueOf(row + 1);
 						}
 						else {
-							Object object = rs.getObject(n);
-							if (!rs.wasNull() && object != null) {
+							Object object = rows.get(row)[n - 1];
+							if (object != null) {
 								GeometryObject geomObj = databaseAdapter.getGeometryConverter().getGeometry(object);
 								if (geomObj != null) {
 									int dimension = geomObj.getDimension();
@@ -1512,7 +1505,7 @@ public class BalloonTemplateHandlerImpl implements BalloonTemplateHandler {
 									columnValue = columnValue + ")";
 								}
 								else {
-									columnValue = rs.getObject(n).toString().replaceAll("\"", "&quot;"); // workaround, the JAXB KML marshaler does not escape " properly
+									columnValue = object.toString().replaceAll("\"", "&quot;"); // workaround, the JAXB KML marshaler does not escape " properly
 								}
 							}
 						}
@@ -1525,14 +1518,179 @@ public class BalloonTemplateHandlerImpl implements BalloonTemplateHandler {
 		catch (Exception e) {
 			Logger.getInstance().warn(e.getMessage());
 		}
+		return resultBody;
+	}
+
+	@Override
+	public void prefetch(List<Long> ids) {
+		batchIds = new LinkedHashSet<Long>(ids);
+		batchResults.clear();
+	}
+
+	private List<Object[]> getRows(String sqlStatement, long id, Connection connection) throws SQLException {
+		if (batchIds.contains(id)) {
+			Matcher matcher = BATCH_STATEMENT.matcher(sqlStatement);
+			if (matcher.matches()) {
+				if (!batchResults.containsKey(sqlStatement)) {
+					HashMap<Long, List<Object[]>> results = null;
+					try {
+						results = executeBatchStatement(matcher, connection);
+					}
+					catch (SQLException e) {
+						Logger.getInstance().debug("Failed to query balloon contents of " + batchIds.size() + " objects at once: " + e.getMessage());
+					}
+
+					// a failed batch falls back to querying each object
+					batchResults.put(sqlStatement, results);
+				}
+
+				HashMap<Long, List<Object[]>> results = batchResults.get(sqlStatement);
+				if (results != null) {
+					List<Object[]> rows = results.get(id);
+					return rows != null ? rows : Collections.<Object[]>emptyList();
+				}
+			}
+		}
+
+		CachedStatement cachedStatement = getCachedStatement(sqlStatement, connection);
+		PreparedStatement preparedStatement = cachedStatement.statement;
+		for (int i = 1; i <= cachedStatement.parameterCount; i++) {
+			preparedStatement.setLong(i, id);
+		}
+
+		ResultSet rs = null;
+		try {
+			rs = preparedStatement.executeQuery();
+			List<Object[]> rows = new ArrayList<Object[]>();
+			int columnCount = rs.getMetaData().getColumnCount();
+			while (rs.next()) {
+				rows.add(getRow(rs, 0, columnCount));
+			}
+
+			return rows;
+		}
 		finally {
+			if (rs != null) {
+				try { rs.close(); } catch (SQLException sqlEx) {}
+			}
+		}
+	}
+
+	private HashMap<Long, List<Object[]>> executeBatchStatement(Matcher matcher, Connection connection) throws SQLException {
+		// the object id is selected in front of the placeholder columns
+		String alias = matcher.group(2);
+		String idColumn = alias + "." + matcher.group(4);
+		String sqlStatement = "SELECT " + idColumn + ", " + matcher.group(1) +
+				" FROM " + matcher.group(3) + " " + alias +
+				" WHERE " + idColumn;
+
+		HashMap<Long, List<Object[]>> results = new HashMap<Long, List<Object[]>>();
+		List<Long> ids = new ArrayList<Long>(batchIds);
+
+		switch (databaseAdapter.getDatabaseType()) {
+		case POSTGIS:
+			sqlStatement = sqlStatement + " = ANY(?)";
+			break;
+		case ORACLE:
+			// a fixed number of placeholders keeps the statement reusable,
+			// the unused ones repeat the last id
+			StringBuilder placeholders = new StringBuilder("?");
+			for (int i = 1; i < BATCH_SIZE; i++) {
+				placeholders.append(", ?");
+			}
+			sqlStatement = sqlStatement + " IN (" + placeholders + ")";
+			break;
+		}
+
+		if (matcher.group(5) != null) {
+			sqlStatement = sqlStatement + matcher.group(5);
+		}
+
+		CachedStatement cachedStatement = getCachedStatement(sqlStatement, connection);
+		PreparedStatement preparedStatement = cachedStatement.statement;
+
+		for (int offset = 0; offset < ids.size(); offset += BATCH_SIZE) {
+			List<Long> chunk = ids.subList(offset, Math.min(offset + BATCH_SIZE, ids.size()));
+			switch (databaseAdapter.getDatabaseType()) {
+			case POSTGIS:
+				preparedStatement.setArray(1, connection.createArrayOf("int8", chunk.toArray()));
+				break;
+			case ORACLE:
+				for (int i = 0; i < BATCH_SIZE; i++) {
+					preparedStatement.setLong(i + 1, chunk.get(Math.min(i, chunk.size() - 1)));
+				}
+				break;
+			}
+
+			ResultSet rs = null;
 			try {
-				if (rs != null) rs.close();
-				if (preparedStatement != null) preparedStatement.close();
+				rs = preparedStatement.executeQuery();
+				int columnCount = rs.getMetaData().getColumnCount();
+				while (rs.next()) {
+					long id = rs.getLong(1);
+					List<Object[]> rows = results.get(id);
+					if (rows == null) {
+						rows = new ArrayList<Object[]>();
+						results.put(id, rows);
+					}
+
+					rows.add(getRow(rs, 1, columnCount));
+				}
+			}
+			finally {
+				if (rs != null) {
+					try { rs.close(); } catch (SQLException sqlEx) {}
+				}
 			}
-			catch (Exception e2) {}
 		}
-		return resultBody;
+
+		return results;
+	}
+
+	private Object[] getRow(ResultSet rs, int offset, int columnCount) throws SQLException {
+		Object[] row = new Object[columnCount - offset];
+		for (int i = offset + 1; i <= columnCount; i++) {
+			Object object = rs.getObject(i);
+			if (rs.wasNull()) {
+				object = null;
+			}
+			else if (object != null && object.toString().indexOf("oracle.sql.TIMESTAMPTZ") >= 0) {
+				object = rs.getTimestamp(i);
+			}
+
+			row[i - offset - 1] = object;
+		}
+
+		return row;
+	}
+
+	private CachedStatement getCachedStatement(String sqlStatement, Connection connection) throws SQLException {
+		if (statementCacheConnection != connection) {
+			closeCachedStatements();
+			batchResults.clear();
+			statementCacheConnection = connection;
+		}
+
+		CachedStatement cachedStatement = statementCache.get(sqlStatement);
+		if (cachedStatement == null) {
+			PreparedStatement preparedStatement = connection.prepareStatement(sqlStatement);
+			cachedStatement = new CachedStatement(preparedStatement, preparedStatement.getParameterMetaData().getParameterCount());
+			statementCache.put(sqlStatement, cachedStatement);
+		}
+
+		return cachedStatement;
+	}
+
+	private void closeCachedStatements() {
+		for (CachedStatement cachedStatement : statementCache.values()) {
+			try {
+				cachedStatement.statement.close();
+			}
+			catch (SQLException e) {}
+		}
+
+		statementCache.clear();
+		statementCacheConnection = null;
 	}
 
 	private void fillStatementAndHtmlChunkList(String template) throws Exception {
@@ -1589,6 +1747,16 @@ public class BalloonTemplateHandlerImpl implements BalloonTemplateHandler {
 	}
 
 
+	private static class CachedStatement {
+		private final PreparedStatement statement;
+		private final int parameterCount;
+
+		private CachedStatement(PreparedStatement statement, int parameterCount) {
+			this.statement = statement;
+			this.parameterCount = parameterCount;
+		}
+	}
+
 	private class BalloonStatement {
 		private String rawStatement;
 		private boolean nested = false;
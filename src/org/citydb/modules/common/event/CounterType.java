@@ -28,8 +28,6 @@
 package org.citydb.modules.common.event;
 
 public enum CounterType {
-	TEXTURE_IMAGE,
-	TOPLEVEL_FEATURE,
 	FILE,
 	REMAINING_TILES
 }
@@ -28,8 +28,6 @@
 package org.citydb.modules.common.event;
 
 public enum EventType {
-	FEATURE_COUNTER,
-	GEOMETRY_COUNTER,
 	COUNTER,
 	INTERRUPT,
 	STATUS_DIALOG_PROGRESS_BAR,
@@ -0,0 +1,118 @@
+/*
+ * 3D City Database - The Open Source CityGML Database
+ * http://www.3dcitydb.org/
+ * 
+ * Copyright 2013 - 2016
+ * Chair of Geoinformatics
+ * Technical University of Munich, Germany
+ * https://www.gis.bgu.tum.de/
+ * 
+ * The 3D City Database is jointly developed with the following
+ * cooperation partners:
+ * 
+ * virtualcitySYSTEMS GmbH, Berlin <http://www.virtualcitysystems.de/>
+ * M.O.S.S. Computer Grafik Systeme GmbH, Taufkirchen <http://www.moss.de/>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.citydb.modules.common.metrics;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongBinaryOperator;
+
+/**
+ * Lock-free latency histogram with power-of-two buckets in microseconds. 
+ * Percentiles are reported as the upper bound of the matching bucket.
+ */
+public class LatencyHistogram {
+	private static final int BUCKETS = 40;
+
+	private final String stage;
+	private final LongAdder[] buckets;
+	private final LongAdder count;
+	private final LongAdder total;
+	private final LongAccumulator max;
+
+	LatencyHistogram(String stage) {
+		this.stage = stage;
+
+		buckets = new LongAdder[BUCKETS];
+		for (int i = 0; i < BUCKETS; i++)
+			buckets[i] = new LongAdder();
+
+		count = new LongAdder();
+		total = new LongAdder();
+		max = new LongAccumulator(new LongBinaryOperator() {
+			@Override
+			public long applyAsLong(long left, long right) {
+				return Math.max(left, right);
+			}
+		}, 0);
+	}
+
+	public String getStage() {
+		return stage;
+	}
+
+	public void record(long nanos) {
+		long micros = Math.max(nanos / 1000, 0);
+		buckets[Math.min(64 - Long.numberOfLeadingZeros(micros), BUCKETS - 1)].increment();
+		count.increment();
+		total.add(micros);
+		max.accumulate(micros);
+	}
+
+	public long getCount() {
+		return count.sum();
+	}
+
+	public double getMean() {
+		long count = this.count.sum();
+		return count > 0 ? total.sum() / (double)count / 1000 : 0;
+	}
+
+	public double getMax() {
+		return max.get() / 1000d;
+	}
+
+	public double getPercentile(double percentile) {
+		long[] counts = new long[BUCKETS];
+		long count = 0;
+		for (int i = 0; i < BUCKETS; i++)
+			count += counts[i] = buckets[i].sum();
+
+		if (count == 0)
+			return 0;
+
+		long rank = (long)Math.ceil(percentile * count);
+		long sum = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			sum += counts[i];
+			if (sum >= rank)
+				return Math.min(1L << i, max.get()) / 1000d;
+		}
+
+		return getMax();
+	}
+
+	void reset() {
+		for (LongAdder bucket : buckets)
+			bucket.reset();
+
+		count.reset();
+		total.reset();
+		max.reset();
+	}
+
+}
@@ -0,0 +1,423 @@
+/*
+ * 3D City Database - The Open Source CityGML Database
+ * http://www.3dcitydb.org/
+ * 
+ * Copyright 2013 - 2016
+ * Chair of Geoinformatics
+ * Technical University of Munich, Germany
+ * https://www.gis.bgu.tum.de/
+ * 
+ * The 3D City Database is jointly developed with the following
+ * cooperation partners:
+ * 
+ * virtualcitySYSTEMS GmbH, Berlin <http://www.virtualcitysystems.de/>
+ * M.O.S.S. Computer Grafik Systeme GmbH, Taufkirchen <http://www.moss.de/>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.citydb.modules.common.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.citydb.api.concurrent.WorkerPool;
+import org.citydb.api.log.LogLevel;
+import org.citydb.log.Logger;
+import org.citydb.util.Util;
+import org.citygml4j.model.citygml.CityGMLClass;
+import org.citygml4j.model.gml.GMLClass;
+
+/**
+ * Process-wide progress counters of the running import or export. Workers 
+ * update the counters directly instead of sending counter events through 
+ * the event dispatcher. Controllers, status dialogs and the periodic log 
+ * line read them, and the same values are exposed as MXBean under 
+ * {@value #OBJECT_NAME}.
+ */
+public class Metrics implements MetricsMXBean {
+	public static final String OBJECT_NAME = "org.citydb:type=Metrics";
+	private static final long LOG_INTERVAL = 10;
+	private static Metrics instance = new Metrics();
+
+	private final Logger LOG = Logger.getInstance();
+	private final CityGMLClass[] featureTypes = CityGMLClass.values();
+	private final GMLClass[] geometryTypes = GMLClass.values();
+
+	private final LongAdder topLevelFeatureCounter = new LongAdder();
+	private final LongAdder textureImageCounter = new LongAdder();
+	private final LongAdder savedSequenceRoundTrips = new LongAdder();
+	private final LongAdder textureCacheHits = new LongAdder();
+	private final LongAdder textureCacheMisses = new LongAdder();
+	private final LongAdder geometryObjectCounter = new LongAdder();
+	private final LongAdder[] featureCounter;
+	private final LongAdder[] geometryCounter;
+	private final ConcurrentMap<String, LatencyHistogram> latencies = new ConcurrentHashMap<String, LatencyHistogram>();
+	private final Set<WorkerPool<?>> workerPools = ConcurrentHashMap.newKeySet();
+
+	private volatile String operation;
+	private volatile long startTime;
+	private volatile long stopTime;
+	private LogLevel progressLogLevel = LogLevel.DEBUG;
+	private ScheduledExecutorService reporter;
+	private ScheduledFuture<?> progressLog;
+	private boolean isRegistered;
+
+	private Metrics() {
+		featureCounter = new LongAdder[featureTypes.length];
+		for (int i = 0; i < featureCounter.length; i++)
+			featureCounter[i] = new LongAdder();
+
+		geometryCounter = new LongAdder[geometryTypes.length];
+		for (int i = 0; i < geometryCounter.length; i++)
+			geometryCounter[i] = new LongAdder();
+	}
+
+	public static Metrics getInstance() {
+		return instance;
+	}
+
+	public synchronized void start(String operation) {
+		stopProgressLog();
+
+		topLevelFeatureCounter.reset();
+		textureImageCounter.reset();
+		savedSequenceRoundTrips.reset();
+		textureCacheHits.reset();
+		textureCacheMisses.reset();
+		geometryObjectCounter.reset();
+
+		for (LongAdder counter : featureCounter)
+			counter.reset();
+
+		for (LongAdder counter : geometryCounter)
+			counter.reset();
+
+		for (LatencyHistogram histogram : latencies.values())
+			histogram.reset();
+
+		workerPools.clear();
+
+		this.operation = operation;
+		startTime = System.currentTimeMillis();
+		stopTime = 0;
+
+		if (!isRegistered)
+			register();
+
+		if (reporter == null) {
+			reporter = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, "metrics_reporter");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+
+		progressLog = reporter.scheduleAtFixedRate(new Runnable() {
+			@Override
+			public void run() {
+				LOG.log(progressLogLevel, getProgressMessage());
+			}
+		}, LOG_INTERVAL, LOG_INTERVAL, TimeUnit.SECONDS);
+	}
+
+	public synchronized void stop() {
+		stopProgressLog();
+		stopTime = System.currentTimeMillis();
+		workerPools.clear();
+	}
+
+	public boolean isRunning() {
+		return startTime != 0 && stopTime == 0;
+	}
+
+	public synchronized void setProgressLogLevel(LogLevel progressLogLevel) {
+		this.progressLogLevel = progressLogLevel;
+	}
+
+	public void registerWorkerPool(WorkerPool<?> workerPool) {
+		workerPools.add(workerPool);
+	}
+
+	public LatencyHistogram getLatencyHistogram(String stage) {
+		LatencyHistogram histogram = latencies.get(stage);
+		if (histogram == null) {
+			LatencyHistogram tmp = new LatencyHistogram(stage);
+			histogram = latencies.putIfAbsent(stage, tmp);
+			if (histogram == null)
+				histogram = tmp;
+		}
+
+		return histogram;
+	}
+
+	public void updateTopLevelFeatureCounter(long counter) {
+		topLevelFeatureCounter.add(counter);
+	}
+
+	public void updateTextureImageCounter(long counter) {
+		textureImageCounter.add(counter);
+	}
+
+	public void updateSavedSequenceRoundTrips(long counter) {
+		savedSequenceRoundTrips.add(counter);
+	}
+
+	public void updateTextureCacheHits(long counter) {
+		textureCacheHits.add(counter);
+	}
+
+	public void updateTextureCacheMisses(long counter) {
+		textureCacheMisses.add(counter);
+	}
+
+	public void updateFeatureCounter(CityGMLClass featureType, long counter) {
+		featureCounter[featureType.ordinal()].add(counter);
+	}
+
+	public void updateGeometryCounter(GMLClass geometryType, long counter) {
+		geometryCounter[geometryType.ordinal()].add(counter);
+	}
+
+	public void updateGeometryObjectCounter(long counter) {
+		// geometries whose GML type is not known, e.g. in KML exports
+		geometryObjectCounter.add(counter);
+	}
+
+	public long getTopLevelFeatureCounter() {
+		return topLevelFeatureCounter.sum();
+	}
+
+	public EnumMap<CityGMLClass, Long> getFeatureCounter() {
+		EnumMap<CityGMLClass, Long> counterMap = new EnumMap<CityGMLClass, Long>(CityGMLClass.class);
+		for (int i = 0; i < featureCounter.length; i++) {
+			long counter = featureCounter[i].sum();
+			if (counter > 0)
+				counterMap.put(featureTypes[i], counter);
+		}
+
+		return counterMap;
+	}
+
+	public EnumMap<GMLClass, Long> getGeometryCounter() {
+		EnumMap<GMLClass, Long> counterMap = new EnumMap<GMLClass, Long>(GMLClass.class);
+		for (int i = 0; i < geometryCounter.length; i++) {
+			long counter = geometryCounter[i].sum();
+			if (counter > 0)
+				counterMap.put(geometryTypes[i], counter);
+		}
+
+		return counterMap;
+	}
+
+	@Override
+	public String getOperation() {
+		return operation;
+	}
+
+	@Override
+	public long getElapsedTime() {
+		if (startTime == 0)
+			return 0;
+
+		long stopTime = this.stopTime;
+		return (stopTime != 0 ? stopTime : System.currentTimeMillis()) - startTime;
+	}
+
+	@Override
+	public long getTopLevelFeatureCount() {
+		return topLevelFeatureCounter.sum();
+	}
+
+	@Override
+	public double getThroughput() {
+		long elapsedTime = getElapsedTime();
+		return elapsedTime > 0 ? topLevelFeatureCounter.sum() * 1000d / elapsedTime : 0;
+	}
+
+	@Override
+	public long getTextureImageCount() {
+		return textureImageCounter.sum();
+	}
+
+	@Override
+	public long getGeometryObjectCount() {
+		long geometryObjects = geometryObjectCounter.sum();
+		for (LongAdder counter : geometryCounter)
+			geometryObjects += counter.sum();
+
+		return geometryObjects;
+	}
+
+	@Override
+	public long getSavedSequenceRoundTrips() {
+		return savedSequenceRoundTrips.sum();
+	}
+
+	@Override
+	public long getTextureCacheHits() {
+		return textureCacheHits.sum();
+	}
+
+	@Override
+	public long getTextureCacheMisses() {
+		return textureCacheMisses.sum();
+	}
+
+	@Override
+	public double getTextureCacheHitRate() {
+		long hits = textureCacheHits.sum();
+		long lookups = hits + textureCacheMisses.sum();
+		return lookups > 0 ? (double)hits / lookups : 0;
+	}
+
+	@Override
+	public Map<String, Long> getFeatureCounts() {
+		Map<String, Long> counts = new TreeMap<String, Long>();
+		for (Map.Entry<CityGMLClass, Long> entry : getFeatureCounter().entrySet())
+			counts.put(entry.getKey().toString(), entry.getValue());
+
+		return counts;
+	}
+
+	@Override
+	public Map<String, Long> getGeometryCounts() {
+		Map<String, Long> counts = new TreeMap<String, Long>();
+		for (Map.Entry<GMLClass, Long> entry : getGeometryCounter().entrySet())
+			counts.put(entry.getKey().toString(), entry.getValue());
+
+		return counts;
+	}
+
+	@Override
+	public Map<String, Integer> getQueueDepths() {
+		Map<String, Integer> queueDepths = new TreeMap<String, Integer>();
+		for (WorkerPool<?> workerPool : getActiveWorkerPools()) {
+			Integer queueDepth = queueDepths.get(workerPool.getName());
+			queueDepths.put(workerPool.getName(), (queueDepth != null ? queueDepth : 0) + workerPool.getWorkQueue().size());
+		}
+
+		return queueDepths;
+	}
+
+	@Override
+	public Map<String, Integer> getPoolSizes() {
+		Map<String, Integer> poolSizes = new TreeMap<String, Integer>();
+		for (WorkerPool<?> workerPool : getActiveWorkerPools()) {
+			Integer poolSize = poolSizes.get(workerPool.getName());
+			poolSizes.put(workerPool.getName(), (poolSize != null ? poolSize : 0) + workerPool.getPoolSize());
+		}
+
+		return poolSizes;
+	}
+
+	@Override
+	public Map<String, Double> getLatencies() {
+		Map<String, Double> values = new TreeMap<String, Double>();
+		for (LatencyHistogram histogram : latencies.values()) {
+			if (histogram.getCount() == 0)
+				continue;
+
+			String stage = histogram.getStage();
+			values.put(stage + ".mean", histogram.getMean());
+			values.put(stage + ".p50", histogram.getPercentile(0.5));
+			values.put(stage + ".p99", histogram.getPercentile(0.99));
+			values.put(stage + ".max", histogram.getMax());
+		}
+
+		return values;
+	}
+
+	public String getProgressMessage() {
+		StringBuilder message = new StringBuilder(operation != null ? operation : "Progress").append(": ")
+				.append(getTopLevelFeatureCount()).append(" top-level feature(s) (")
+				.append(String.format("%.1f", getThroughput())).append("/s), ")
+				.append(getTextureImageCount()).append(" texture image(s), elapsed time ")
+				.append(Util.formatElapsedTime(getElapsedTime())).append('.');
+
+		if (getTextureCacheHits() + getTextureCacheMisses() > 0)
+			message.append(String.format(" Texture cache hit rate %.1f%%.", getTextureCacheHitRate() * 100));
+
+		Map<String, Integer> poolSizes = getPoolSizes();
+		if (!poolSizes.isEmpty()) {
+			Map<String, Integer> queueDepths = getQueueDepths();
+			message.append(" Queues:");
+			for (Map.Entry<String, Integer> entry : poolSizes.entrySet()) {
+				message.append(' ').append(entry.getKey()).append('=').append(queueDepths.get(entry.getKey()))
+				.append(" (").append(entry.getValue()).append(" worker(s))");
+			}
+			
+			message.append('.');
+		}
+
+		for (LatencyHistogram histogram : latencies.values()) {
+			if (histogram.getCount() == 0)
+				continue;
+
+			message.append(' ').append(histogram.getStage())
+			.append(String.format(": p50 %.2f ms, p99 %.2f ms, max %.2f ms.", 
+					histogram.getPercentile(0.5), histogram.getPercentile(0.99), histogram.getMax()));
+		}
+
+		return message.toString();
+	}
+
+	private Set<WorkerPool<?>> getActiveWorkerPools() {
+		Iterator<WorkerPool<?>> iter = workerPools.iterator();
+		while (iter.hasNext()) {
+			if (iter.next().isTerminated())
+				iter.remove();
+		}
+
+		return workerPools;
+	}
+
+	private void stopProgressLog() {
+		if (progressLog != null) {
+			progressLog.cancel(false);
+			progressLog = null;
+		}
+	}
+
+	private void register() {
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = new ObjectName(OBJECT_NAME);
+			if (!server.isRegistered(name))
+				server.registerMBean(this, name);
+		} catch (JMException e) {
+			LOG.debug("Failed to register metrics MXBean: " + e.getMessage());
+		}
+
+		isRegistered = true;
+	}
+
+}
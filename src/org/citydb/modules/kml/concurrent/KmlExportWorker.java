@@ -30,13 +30,16 @@ package org.citydb.modules.kml.concurrent;
 import java.io.File;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.locks.ReentrantLock;
 
 import javax.xml.bind.JAXBContext;
 
 import org.citydb.api.concurrent.Worker;
-import org.citydb.api.concurrent.WorkerPool;
 import org.citydb.api.database.BalloonTemplateHandler;
 import org.citydb.api.event.EventDispatcher;
 import org.citydb.config.Config;
@@ -50,7 +53,9 @@ import org.citydb.database.DatabaseConnectionPool;
 import org.citydb.database.adapter.AbstractDatabaseAdapter;
 import org.citydb.database.adapter.BlobExportAdapter;
 import org.citydb.database.adapter.BlobType;
-import org.citydb.modules.common.event.FeatureCounterEvent;
+import org.citydb.log.Logger;
+import org.citydb.modules.common.metrics.LatencyHistogram;
+import org.citydb.modules.common.metrics.Metrics;
 import org.citydb.modules.kml.database.Bridge;
 import org.citydb.modules.kml.database.Building;
 import org.citydb.modules.kml.database.CityFurniture;
@@ -65,16 +70,18 @@ import org.citydb.modules.kml.database.LandUse;
 import org.citydb.modules.kml.database.PlantCover;
 import org.citydb.modules.kml.database.Relief;
 import org.citydb.modules.kml.database.SolitaryVegetationObject;
+import org.citydb.modules.kml.database.StatementCache;
 import org.citydb.modules.kml.database.Transportation;
 import org.citydb.modules.kml.database.Tunnel;
 import org.citydb.modules.kml.database.WaterBody;
-import org.citydb.modules.kml.util.ExportTracker;
+import org.citydb.modules.kml.util.DisplayFormOutput;
 import org.citygml4j.model.citygml.CityGMLClass;
-import org.citygml4j.util.xml.SAXEventBuffer;
 
 import net.opengis.kml._2.ObjectFactory;
 
 public class KmlExportWorker extends Worker<KmlSplittingResult> {
+	private static final int MAX_CACHED_STATEMENTS = 64;
+	private static final int BALLOON_BATCH_SIZE = 32;
 	private final ReentrantLock runLock = new ReentrantLock();
 	private volatile boolean shouldRun = true;
 
@@ -85,9 +92,13 @@ public class KmlExportWorker extends Worker<KmlSplittingResult> {
 	private final EventDispatcher eventDispatcher;
 
 	private Connection connection;
+	private StatementCache statementCache;
 	private ExportFilterConfig filterConfig;
+	private HashMap<Integer, KmlExporterManager> kmlExporterManagers = new HashMap<Integer, KmlExporterManager>();
 	private KmlExporterManager kmlExporterManager;
+	private KmlExporterManager colladaExporterManager;
 	private KmlGenericObject singleObject = null;
+	private Map<String, String> balloonCache;
 
 	private EnumMap<CityGMLClass, Integer>objectGroupCounter = new EnumMap<CityGMLClass, Integer>(CityGMLClass.class);
 	private EnumMap<CityGMLClass, Integer>objectGroupSize = new EnumMap<CityGMLClass, Integer>(CityGMLClass.class);
@@ -95,12 +106,12 @@ public class KmlExportWorker extends Worker<KmlSplittingResult> {
 	private EnumMap<CityGMLClass, BalloonTemplateHandler>balloonTemplateHandler = new EnumMap<CityGMLClass, BalloonTemplateHandler>(CityGMLClass.class);
 
 	private ElevationServiceHandler elevationServiceHandler;
+	private final LatencyHistogram featureLatency;
 
 	public KmlExportWorker(JAXBContext jaxbKmlContext,
 			JAXBContext jaxbColladaContext,
 			DatabaseConnectionPool dbConnectionPool,
-			WorkerPool<SAXEventBuffer> ioWriterPool,
-			ExportTracker tracker,
+			List<DisplayFormOutput> outputs,
 			ObjectFactory kmlFactory,
 			Config config,
 			EventDispatcher eventDispatcher) throws SQLException {
@@ -108,6 +119,8 @@ public class KmlExportWorker extends Worker<KmlSplittingResult> {
 		this.config = config;
 		this.eventDispatcher = eventDispatcher;
 
+		featureLatency = Metrics.getInstance().getLatencyHistogram("kml.feature");
+
 		connection = dbConnectionPool.getConnection();
 		connection.setAutoCommit(false);
 		// try and change workspace if needed
@@ -117,17 +130,27 @@ public class KmlExportWorker extends Worker<KmlSplittingResult> {
 					database.getWorkspaces().getKmlExportWorkspace());
 		}
 		
+		// the feature readers share the prepared statements of this worker
+		statementCache = new StatementCache(connection, MAX_CACHED_STATEMENTS);
+
 		databaseAdapter = dbConnectionPool.getActiveDatabaseAdapter();
 		textureExportAdapter = databaseAdapter.getSQLAdapter().getBlobExportAdapter(connection, BlobType.TEXTURE_IMAGE);
 
-		kmlExporterManager = new KmlExporterManager(jaxbKmlContext,
-				jaxbColladaContext,
-				ioWriterPool,
-				tracker,
-				kmlFactory,
-				textureExportAdapter,
-				eventDispatcher,
-				config);
+		// one exporter manager per display form, each one writing to its own output
+		for (DisplayFormOutput output : outputs) {
+			KmlExporterManager kmlExporterManager = new KmlExporterManager(jaxbKmlContext,
+					jaxbColladaContext,
+					output.getIOWriterPool(),
+					output.getExportTracker(),
+					kmlFactory,
+					textureExportAdapter,
+					eventDispatcher,
+					config);
+
+			kmlExporterManagers.put(output.getDisplayForm().getForm(), kmlExporterManager);
+			if (output.getDisplayForm().getForm() == DisplayForm.COLLADA)
+				colladaExporterManager = kmlExporterManager;
+		}
 		
 		elevationServiceHandler = new ElevationServiceHandler();
 		
@@ -266,7 +289,17 @@ public class KmlExportWorker extends Worker<KmlSplittingResult> {
 			while (shouldRun) {
 				try {
 					work = workQueue.take();
-					doWork(work);
+
+					// objects already waiting in the queue are taken along,
+					// so that their balloons can be queried at once
+					List<KmlSplittingResult> works = new ArrayList<KmlSplittingResult>();
+					works.add(work);
+					if (getBalloonTemplateHandler(work.getCityObjectType()) != null) {
+						while (works.size() < BALLOON_BATCH_SIZE && (work = workQueue.poll()) != null)
+							works.add(work);
+					}
+
+					doWork(works);
 				}
 				catch (InterruptedException ie) {
 					// re-check state
@@ -289,8 +322,6 @@ public class KmlExportWorker extends Worker<KmlSplittingResult> {
 					objectGroupCounter.put(cityObjectType, 0);
 				}
 			}
-			
-			eventDispatcher.triggerEvent(new FeatureCounterEvent(kmlExporterManager.getFeatureCounter(), this));
 		}
 		finally {
 			if (textureExportAdapter != null) {
@@ -301,6 +332,12 @@ public class KmlExportWorker extends Worker<KmlSplittingResult> {
 				}
 			}
 			
+			if (statementCache != null) {
+				Logger.getInstance().debug("KML export worker statement cache: " + statementCache.getHits() + " hits, " + statementCache.getMisses() + " misses, " + statementCache.getResultHits() + " replayed results.");
+				statementCache.close();
+				statementCache = null;
+			}
+
 			if (connection != null) {
 				try {
 					connection.commit(); // for all possible GE_LoDn_zOffset values
@@ -313,211 +350,273 @@ public class KmlExportWorker extends Worker<KmlSplittingResult> {
 		}
 	}
 
-	private void doWork(KmlSplittingResult work) {
+	private void doWork(List<KmlSplittingResult> works) {
 		final ReentrantLock runLock = this.runLock;
 		runLock.lock();
 
-		CityGMLClass featureClass = work.getCityObjectType();
 		try {
-			switch (featureClass) {
-			case BUILDING:
-				singleObject = new Building(connection,
-						kmlExporterManager,
-						kmlFactory,
-						databaseAdapter,
-						textureExportAdapter,
-						elevationServiceHandler,
-						getBalloonTemplateHandler(featureClass),
-						eventDispatcher,
-						config);
-				break;
-
-			case WATER_BODY:
-			case WATER_CLOSURE_SURFACE:
-			case WATER_GROUND_SURFACE:
-			case WATER_SURFACE:
-				singleObject = new WaterBody(connection,
-						kmlExporterManager,
-						kmlFactory,
-						databaseAdapter,
-						textureExportAdapter,
-						elevationServiceHandler,
-						getBalloonTemplateHandler(featureClass),
-						eventDispatcher,
-						config);
-				break;
-
-			case LAND_USE:
-				singleObject = new LandUse(connection,
-						kmlExporterManager,
-						kmlFactory,
-						databaseAdapter,
-						textureExportAdapter,
-						elevationServiceHandler,
-						getBalloonTemplateHandler(featureClass),
-						eventDispatcher,
-						config);
-				break;
-
-			case SOLITARY_VEGETATION_OBJECT:
-				singleObject = new SolitaryVegetationObject(connection,
-						kmlExporterManager,
-						kmlFactory,
-						databaseAdapter,
-						textureExportAdapter,
-						elevationServiceHandler,
-						getBalloonTemplateHandler(featureClass),
-						eventDispatcher,
-						config);
-				break;
-
-			case PLANT_COVER:
-				singleObject = new PlantCover(connection,
-						kmlExporterManager,
-						kmlFactory,
-						databaseAdapter,
-						textureExportAdapter,
-						elevationServiceHandler,
-						getBalloonTemplateHandler(featureClass),
-						eventDispatcher,
-						config);
-				break;
-
-			case TRAFFIC_AREA:
-			case AUXILIARY_TRAFFIC_AREA:
-			case TRANSPORTATION_COMPLEX:
-			case TRACK:
-			case RAILWAY:
-			case ROAD:
-			case SQUARE:
-				singleObject = new Transportation(connection,
-						kmlExporterManager,
-						kmlFactory,
-						databaseAdapter,
-						textureExportAdapter,
-						elevationServiceHandler,
-						getBalloonTemplateHandler(featureClass),
-						eventDispatcher,
-						config);
-				break;
-				
-			case RELIEF_FEATURE:
-				singleObject = new Relief(connection,
-						kmlExporterManager,
-						kmlFactory,
-						databaseAdapter,
-						textureExportAdapter,
-						elevationServiceHandler,
-						getBalloonTemplateHandler(featureClass),
-						eventDispatcher,
-						config);
-				break;
-
-			case GENERIC_CITY_OBJECT:
-				singleObject = new GenericCityObject(connection,
-						kmlExporterManager,
-						kmlFactory,
-						databaseAdapter,
-						textureExportAdapter,
-						elevationServiceHandler,
-						getBalloonTemplateHandler(featureClass),
-						eventDispatcher,
-						config);
-				break;
-
-			case CITY_FURNITURE:
-				singleObject = new CityFurniture(connection,
-						kmlExporterManager,
-						kmlFactory,
-						databaseAdapter,
-						textureExportAdapter,
-						elevationServiceHandler,
-						getBalloonTemplateHandler(featureClass),
-						eventDispatcher,
-						config);
-				break;
-
-			case CITY_OBJECT_GROUP:
-				singleObject = new CityObjectGroup(connection,
-						kmlExporterManager,
-						kmlFactory,
-						databaseAdapter,
-						textureExportAdapter,
-						elevationServiceHandler,
-						getBalloonTemplateHandler(featureClass),
-						eventDispatcher,
-						config);
-				break;
-			case BRIDGE:
-				singleObject = new Bridge(connection,
-						kmlExporterManager,
-						kmlFactory,
-						databaseAdapter,
-						textureExportAdapter,
-						elevationServiceHandler,
-						getBalloonTemplateHandler(featureClass),
-						eventDispatcher,
-						config);
-				break;
-			case TUNNEL:
-				singleObject = new Tunnel(connection,
-						kmlExporterManager,
-						kmlFactory,
-						databaseAdapter,
-						textureExportAdapter,
-						elevationServiceHandler,
-						getBalloonTemplateHandler(featureClass),
-						eventDispatcher,
-						config);
-				break;
-			default:
-				break;
+			if (works.size() > 1) {
+				HashMap<BalloonTemplateHandler, List<Long>> ids = new HashMap<BalloonTemplateHandler, List<Long>>();
+				for (KmlSplittingResult work : works) {
+					BalloonTemplateHandler handler = getBalloonTemplateHandler(work.getCityObjectType());
+					if (handler != null) {
+						List<Long> handlerIds = ids.get(handler);
+						if (handlerIds == null) {
+							handlerIds = new ArrayList<Long>();
+							ids.put(handler, handlerIds);
+						}
+
+						handlerIds.add(work.getId());
+					}
+				}
 
+				for (Map.Entry<BalloonTemplateHandler, List<Long>> entry : ids.entrySet())
+					entry.getKey().prefetch(entry.getValue());
 			}
 
-			singleObject.read(work);
-
-			if (!work.isCityObjectGroup() && 
-					work.getDisplayForm().getForm() == DisplayForm.COLLADA &&
-					singleObject.getGmlId() != null) { // object is filled
-
-				// correction for some CityGML Types exported together
-				if (featureClass == CityGMLClass.PLANT_COVER) featureClass = CityGMLClass.SOLITARY_VEGETATION_OBJECT;
-
-				if (featureClass == CityGMLClass.WATER_CLOSURE_SURFACE ||
-						featureClass == CityGMLClass.WATER_GROUND_SURFACE ||
-						featureClass == CityGMLClass.WATER_SURFACE) featureClass = CityGMLClass.WATER_BODY;
+			for (KmlSplittingResult work : works)
+				doWork(work);
+		}
+		finally {
+			runLock.unlock();
+		}
+	}
 
-				if (featureClass == CityGMLClass.TRAFFIC_AREA ||
-						featureClass == CityGMLClass.AUXILIARY_TRAFFIC_AREA ||
-						featureClass == CityGMLClass.TRACK ||
-						featureClass == CityGMLClass.RAILWAY ||
-						featureClass == CityGMLClass.ROAD ||
-						featureClass == CityGMLClass.SQUARE) featureClass = CityGMLClass.TRANSPORTATION_COMPLEX;
+	private void doWork(KmlSplittingResult work) {
+		final ReentrantLock runLock = this.runLock;
+		runLock.lock();
+		long start = System.nanoTime();
 
-				KmlGenericObject currentObjectGroup = objectGroup.get(featureClass);
-				if (currentObjectGroup == null) {
-					currentObjectGroup = singleObject;
-					objectGroup.put(featureClass, currentObjectGroup);
-				}
-				else {
-					currentObjectGroup.appendObject(singleObject);
-				}
+		try {
+			if (work.getDisplayForms().size() == 1)
+				exportObject(work);
+			else {
+				// the object has been queried once for all display forms,
+				// so export it to each of them in turn. the display forms
+				// share the surface queries and the balloon of the object
+				statementCache.beginObject();
+				balloonCache = new HashMap<String, String>();
 
-				objectGroupCounter.put(featureClass, objectGroupCounter.get(featureClass).intValue() + 1);
-				if (objectGroupCounter.get(featureClass).intValue() == objectGroupSize.get(featureClass).intValue()) {
-					sendGroupToFile(currentObjectGroup);
-					currentObjectGroup = null;
-					objectGroup.put(featureClass, currentObjectGroup);
-					objectGroupCounter.put(featureClass, 0);
+				try {
+					for (DisplayForm displayForm : work.getDisplayForms()) {
+						exportObject(new KmlSplittingResult(work.getId(),
+								work.getGmlId(),
+								work.getCityObjectType(),
+								work.getJson(),
+								displayForm));
+					}
+				} finally {
+					statementCache.endObject();
+					balloonCache = null;
 				}
 			}
 		}
 		finally {
+			featureLatency.record(System.nanoTime() - start);
 			runLock.unlock();
 		}
 	}
 
+	private void exportObject(KmlSplittingResult work) {
+		kmlExporterManager = kmlExporterManagers.get(work.getDisplayForm().getForm());
+
+		CityGMLClass featureClass = work.getCityObjectType();
+		switch (featureClass) {
+		case BUILDING:
+			singleObject = new Building(statementCache.getConnection(),
+					kmlExporterManager,
+					kmlFactory,
+					databaseAdapter,
+					textureExportAdapter,
+					elevationServiceHandler,
+					getBalloonTemplateHandler(featureClass),
+					eventDispatcher,
+					config);
+			break;
+
+		case WATER_BODY:
+		case WATER_CLOSURE_SURFACE:
+		case WATER_GROUND_SURFACE:
+		case WATER_SURFACE:
+			singleObject = new WaterBody(statementCache.getConnection(),
+					kmlExporterManager,
+					kmlFactory,
+					databaseAdapter,
+					textureExportAdapter,
+					elevationServiceHandler,
+					getBalloonTemplateHandler(featureClass),
+					eventDispatcher,
+					config);
+			break;
+
+		case LAND_USE:
+			singleObject = new LandUse(statementCache.getConnection(),
+					kmlExporterManager,
+					kmlFactory,
+					databaseAdapter,
+					textureExportAdapter,
+					elevationServiceHandler,
+					getBalloonTemplateHandler(featureClass),
+					eventDispatcher,
+					config);
+			break;
+
+		case SOLITARY_VEGETATION_OBJECT:
+			singleObject = new SolitaryVegetationObject(statementCache.getConnection(),
+					kmlExporterManager,
+					kmlFactory,
+					databaseAdapter,
+					textureExportAdapter,
+					elevationServiceHandler,
+					getBalloonTemplateHandler(featureClass),
+					eventDispatcher,
+					config);
+			break;
+
+		case PLANT_COVER:
+			singleObject = new PlantCover(statementCache.getConnection(),
+					kmlExporterManager,
+					kmlFactory,
+					databaseAdapter,
+					textureExportAdapter,
+					elevationServiceHandler,
+					getBalloonTemplateHandler(featureClass),
+					eventDispatcher,
+					config);
+			break;
+
+		case TRAFFIC_AREA:
+		case AUXILIARY_TRAFFIC_AREA:
+		case TRANSPORTATION_COMPLEX:
+		case TRACK:
+		case RAILWAY:
+		case ROAD:
+		case SQUARE:
+			singleObject = new Transportation(statementCache.getConnection(),
+					kmlExporterManager,
+					kmlFactory,
+					databaseAdapter,
+					textureExportAdapter,
+					elevationServiceHandler,
+					getBalloonTemplateHandler(featureClass),
+					eventDispatcher,
+					config);
+			break;
+			
+		case RELIEF_FEATURE:
+			singleObject = new Relief(statementCache.getConnection(),
+					kmlExporterManager,
+					kmlFactory,
+					databaseAdapter,
+					textureExportAdapter,
+					elevationServiceHandler,
+					getBalloonTemplateHandler(featureClass),
+					eventDispatcher,
+					config);
+			break;
+
+		case GENERIC_CITY_OBJECT:
+			singleObject = new GenericCityObject(statementCache.getConnection(),
+					kmlExporterManager,
+					kmlFactory,
+					databaseAdapter,
+					textureExportAdapter,
+					elevationServiceHandler,
+					getBalloonTemplateHandler(featureClass),
+					eventDispatcher,
+					config);
+			break;
+
+		case CITY_FURNITURE:
+			singleObject = new CityFurniture(statementCache.getConnection(),
+					kmlExporterManager,
+					kmlFactory,
+					databaseAdapter,
+					textureExportAdapter,
+					elevationServiceHandler,
+					getBalloonTemplateHandler(featureClass),
+					eventDispatcher,
+					config);
+			break;
+
+		case CITY_OBJECT_GROUP:
+			singleObject = new CityObjectGroup(statementCache.getConnection(),
+					kmlExporterManager,
+					kmlFactory,
+					databaseAdapter,
+					textureExportAdapter,
+					elevationServiceHandler,
+					getBalloonTemplateHandler(featureClass),
+					eventDispatcher,
+					config);
+			break;
+		case BRIDGE:
+			singleObject = new Bridge(statementCache.getConnection(),
+					kmlExporterManager,
+					kmlFactory,
+					databaseAdapter,
+					textureExportAdapter,
+					elevationServiceHandler,
+					getBalloonTemplateHandler(featureClass),
+					eventDispatcher,
+					config);
+			break;
+		case TUNNEL:
+			singleObject = new Tunnel(statementCache.getConnection(),
+					kmlExporterManager,
+					kmlFactory,
+					databaseAdapter,
+					textureExportAdapter,
+					elevationServiceHandler,
+					getBalloonTemplateHandler(featureClass),
+					eventDispatcher,
+					config);
+			break;
+		default:
+			break;
+
+		}
+
+		singleObject.setBalloonCache(balloonCache);
+		singleObject.read(work);
+
+		if (!work.isCityObjectGroup() && 
+				work.getDisplayForm().getForm() == DisplayForm.COLLADA &&
+				singleObject.getGmlId() != null) { // object is filled
+
+			// correction for some CityGML Types exported together
+			if (featureClass == CityGMLClass.PLANT_COVER) featureClass = CityGMLClass.SOLITARY_VEGETATION_OBJECT;
+
+			if (featureClass == CityGMLClass.WATER_CLOSURE_SURFACE ||
+					featureClass == CityGMLClass.WATER_GROUND_SURFACE ||
+					featureClass == CityGMLClass.WATER_SURFACE) featureClass = CityGMLClass.WATER_BODY;
+
+			if (featureClass == CityGMLClass.TRAFFIC_AREA ||
+					featureClass == CityGMLClass.AUXILIARY_TRAFFIC_AREA ||
+					featureClass == CityGMLClass.TRACK ||
+					featureClass == CityGMLClass.RAILWAY ||
+					featureClass == CityGMLClass.ROAD ||
+					featureClass == CityGMLClass.SQUARE) featureClass = CityGMLClass.TRANSPORTATION_COMPLEX;
+
+			KmlGenericObject currentObjectGroup = objectGroup.get(featureClass);
+			if (currentObjectGroup == null) {
+				currentObjectGroup = singleObject;
+				objectGroup.put(featureClass, currentObjectGroup);
+			}
+			else {
+				currentObjectGroup.appendObject(singleObject);
+			}
+
+			objectGroupCounter.put(featureClass, objectGroupCounter.get(featureClass).intValue() + 1);
+			if (objectGroupCounter.get(featureClass).intValue() == objectGroupSize.get(featureClass).intValue()) {
+				sendGroupToFile(currentObjectGroup);
+				currentObjectGroup = null;
+				objectGroup.put(featureClass, currentObjectGroup);
+				objectGroupCounter.put(featureClass, 0);
+			}
+		}
+	}
+
 	private void sendGroupToFile(KmlGenericObject objectGroup) {
 		try {
 			double imageScaleFactor = 1;
@@ -544,13 +643,15 @@ public class KmlExportWorker extends Worker<KmlSplittingResult> {
 
 			ColladaBundle colladaBundle = new ColladaBundle();
 			colladaBundle.setCollada(objectGroup.generateColladaTree());
+			if (config.getProject().getKmlExporter().isCreateGltfModel() && !config.getProject().getKmlExporter().isUseExternalGltfConverter())
+				colladaBundle.setGltfMesh(objectGroup.generateGltfMesh(config.getProject().getKmlExporter().isBatchGltfModelsPerTile()));
 			colladaBundle.setTexImages(objectGroup.getTexImages());
 			colladaBundle.setUnsupportedTexImageIds(objectGroup.getUnsupportedTexImageIds());
 			colladaBundle.setPlacemark(objectGroup.createPlacemarkForColladaModel());
 			colladaBundle.setGmlId(objectGroup.getGmlId());
 			colladaBundle.setId(objectGroup.getId());
 
-			kmlExporterManager.print(colladaBundle,
+			colladaExporterManager.print(colladaBundle,
 					objectGroup.getId(),					
 					objectGroup.getBalloonSettings().isBalloonContentInSeparateFile());
 		}
@@ -28,6 +28,7 @@
 package org.citydb.modules.kml.concurrent;
 
 import java.sql.SQLException;
+import java.util.List;
 
 import javax.xml.bind.JAXBContext;
 
@@ -35,14 +36,12 @@ import net.opengis.kml._2.ObjectFactory;
 
 import org.citydb.api.concurrent.Worker;
 import org.citydb.api.concurrent.WorkerFactory;
-import org.citydb.api.concurrent.WorkerPool;
 import org.citydb.api.event.EventDispatcher;
 import org.citydb.config.Config;
 import org.citydb.database.DatabaseConnectionPool;
 import org.citydb.log.Logger;
 import org.citydb.modules.kml.database.KmlSplittingResult;
-import org.citydb.modules.kml.util.ExportTracker;
-import org.citygml4j.util.xml.SAXEventBuffer;
+import org.citydb.modules.kml.util.DisplayFormOutput;
 
 public class KmlExportWorkerFactory implements WorkerFactory<KmlSplittingResult> {
 	private final Logger LOG = Logger.getInstance();
@@ -50,8 +49,7 @@ public class KmlExportWorkerFactory implements WorkerFactory<KmlSplittingResult>
 	private final JAXBContext jaxbKmlContext;
 	private final JAXBContext jaxbColladaContext;
 	private final DatabaseConnectionPool dbConnectionPool;
-	private final WorkerPool<SAXEventBuffer> ioWriterPool;
-	private final ExportTracker tracker;
+	private final List<DisplayFormOutput> outputs;
 	private final ObjectFactory kmlFactory;
 	private final Config config;
 	private final EventDispatcher eventDispatcher;
@@ -60,16 +58,14 @@ public class KmlExportWorkerFactory implements WorkerFactory<KmlSplittingResult>
 			JAXBContext jaxbKmlContext,
 			JAXBContext jaxbColladaContext,
 			DatabaseConnectionPool dbConnectionPool,
-			WorkerPool<SAXEventBuffer> ioWriterPool,
-			ExportTracker tracker,
+			List<DisplayFormOutput> outputs,
 			ObjectFactory kmlFactory,
 			Config config,
 			EventDispatcher eventDispatcher) {
 		this.jaxbKmlContext = jaxbKmlContext;
 		this.jaxbColladaContext = jaxbColladaContext;
 		this.dbConnectionPool = dbConnectionPool;
-		this.ioWriterPool = ioWriterPool;
-		this.tracker = tracker;
+		this.outputs = outputs;
 		this.kmlFactory = kmlFactory;
 		this.config = config;
 		this.eventDispatcher = eventDispatcher;
@@ -84,8 +80,7 @@ public class KmlExportWorkerFactory implements WorkerFactory<KmlSplittingResult>
 					jaxbKmlContext,
 					jaxbColladaContext,
 					dbConnectionPool,
-					ioWriterPool,
-					tracker,
+					outputs,
 					kmlFactory,
 					config,
 					eventDispatcher);
@@ -28,20 +28,20 @@
 package org.citydb.modules.kml.controller;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.nio.charset.Charset;
+import java.nio.file.Files;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.EnumMap;
-import java.util.HashMap;
+import java.util.EnumSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
 
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBElement;
@@ -76,12 +76,12 @@ import org.citydb.modules.common.concurrent.IOWriterWorkerFactory;
 import org.citydb.modules.common.event.CounterEvent;
 import org.citydb.modules.common.event.CounterType;
 import org.citydb.modules.common.event.EventType;
-import org.citydb.modules.common.event.FeatureCounterEvent;
 import org.citydb.modules.common.event.InterruptEvent;
 import org.citydb.modules.common.event.StatusDialogMessage;
 import org.citydb.modules.common.event.StatusDialogTitle;
 import org.citydb.modules.common.filter.ExportFilter;
 import org.citydb.modules.common.filter.FilterMode;
+import org.citydb.modules.common.metrics.Metrics;
 import org.citydb.modules.kml.concurrent.KmlExportWorkerFactory;
 import org.citydb.modules.kml.database.Bridge;
 import org.citydb.modules.kml.database.Building;
@@ -97,8 +97,12 @@ import org.citydb.modules.kml.database.Transportation;
 import org.citydb.modules.kml.database.Tunnel;
 import org.citydb.modules.kml.database.WaterBody;
 import org.citydb.modules.kml.datatype.TypeAttributeValueEnum;
+import org.citydb.modules.kml.gltf.GltfWriter;
 import org.citydb.modules.kml.util.CityObject4JSON;
+import org.citydb.modules.kml.util.DisplayFormOutput;
 import org.citydb.modules.kml.util.ExportTracker;
+import org.citydb.modules.kml.util.KmzWriter;
+import org.citydb.modules.kml.util.TextureImageCache;
 import org.citydb.util.Util;
 import org.citygml4j.model.citygml.CityGMLClass;
 import org.citygml4j.util.xml.SAXEventBuffer;
@@ -142,7 +146,6 @@ public class KmlExporter implements EventHandler {
 
 	private ObjectFactory kmlFactory; 
 	private WorkerPool<KmlSplittingResult> kmlWorkerPool;
-	private SingleWorkerPool<SAXEventBuffer> ioWriterPool;
 	private KmlSplitter kmlSplitter;
 
 	private volatile boolean shouldRun = true;
@@ -151,15 +154,15 @@ public class KmlExporter implements EventHandler {
 	private final String ENCODING = "UTF-8";
 	private final Charset CHARSET = Charset.forName(ENCODING);
 	private final String TEMP_FOLDER = "__temp";
-	private File lastTempFolder = null;
+	private List<File> tempFolders = new CopyOnWriteArrayList<File>();
 	private GeometryObject globeWGS84BboxGeometry;
 	private BoundingBox globeWGS84Bbox; 
 	private int rows = 1;
 	private int columns = 1;
+	private int remainingTiles = 1;
 
-	private EnumMap<CityGMLClass, Long> featureCounterMap = new EnumMap<CityGMLClass, Long>(CityGMLClass.class);
-	private EnumMap<CityGMLClass, Long> totalFeatureCounterMap = new EnumMap<CityGMLClass, Long>(CityGMLClass.class);
-	private long geometryCounter;
+	private final Metrics metrics;
+	private final TextureImageCache textureImageCache;
 
 	public KmlExporter (JAXBContext jaxbKmlContext,
 			JAXBContext jaxbColladaContext,
@@ -173,6 +176,8 @@ public class KmlExporter implements EventHandler {
 		this.eventDispatcher = eventDispatcher;
 
 		kmlFactory = new ObjectFactory();
+		metrics = Metrics.getInstance();
+		textureImageCache = TextureImageCache.getInstance();
 	}
 
 	public void cleanup() {
@@ -180,9 +185,20 @@ public class KmlExporter implements EventHandler {
 	}
 
 	public boolean doProcess() throws KmlExportException {
+		metrics.start("KML/COLLADA export");
+		textureImageCache.init(config.getProject().getKmlExporter().getTextureImageCacheSize() * 1024L * 1024L, 
+				config.getProject().getKmlExporter().isCacheDecodedTextureImages());
+
+		try {
+			return doExport();
+		} finally {
+			textureImageCache.clear();
+			metrics.stop();
+		}
+	}
+
+	private boolean doExport() throws KmlExportException {
 		// adding listener
-		eventDispatcher.addEventHandler(EventType.FEATURE_COUNTER, this);
-		eventDispatcher.addEventHandler(EventType.GEOMETRY_COUNTER, this);
 		eventDispatcher.addEventHandler(EventType.INTERRUPT, this);
 
 		// checking workspace
@@ -239,7 +255,7 @@ public class KmlExporter implements EventHandler {
 			return false;	
 
 		// check collada2gltf tool
-		if (config.getProject().getKmlExporter().isCreateGltfModel()) {
+		if (config.getProject().getKmlExporter().isCreateGltfModel() && config.getProject().getKmlExporter().isUseExternalGltfConverter()) {
 			File file = new File(config.getProject().getKmlExporter().getPathOfGltfConverter());
 
 			if (!file.exists())
@@ -252,7 +268,7 @@ public class KmlExporter implements EventHandler {
 		Tiling tiling = config.getProject().getKmlExporter().getFilter().getComplexFilter().getTiledBoundingBox().getTiling();
 
 		// calculate and display number of tiles to be exported
-		int remainingTiles = 1;
+		remainingTiles = 1;
 		if (isBBoxActive) {
 			try {
 				remainingTiles = calculateRowsColumns();
@@ -277,17 +293,16 @@ public class KmlExporter implements EventHandler {
 			}, 2, 4326);
 		}
 
-		// create a saxWriter instance 
-		// define indent for xml output and namespace mappings
-		SAXWriter saxWriter = new SAXWriter();
-		saxWriter.setIndentString("  ");
-		saxWriter.setHeaderComment("Written by " + this.getClass().getPackage().getImplementationTitle() + ", version \"" +
-				this.getClass().getPackage().getImplementationVersion() + '"', 
-				this.getClass().getPackage().getImplementationVendor());
-		saxWriter.setDefaultNamespace("http://www.opengis.net/kml/2.2"); // default namespace
-		saxWriter.setPrefix("gx", "http://www.google.com/kml/ext/2.2");
-		saxWriter.setPrefix("atom", "http://www.w3.org/2005/Atom");
-		saxWriter.setPrefix("xal", "urn:oasis:names:tc:ciq:xsdschema:xAL:2.0");
+		// get active display forms
+		List<DisplayForm> displayForms = new ArrayList<DisplayForm>();
+		for (DisplayForm displayForm : config.getProject().getKmlExporter().getBuildingDisplayForms()) {
+			if (displayForm.isActive())
+				displayForms.add(displayForm);
+		}
+
+		boolean singlePass = config.getProject().getKmlExporter().isSinglePassDisplayForms() && displayForms.size() > 1;
+		if (singlePass)
+			LOG.info("Exporting all display forms in a single pass over the database.");
 
 		// set export filename and path
 		String path = config.getInternal().getExportFileName().trim();
@@ -313,7 +328,7 @@ public class KmlExporter implements EventHandler {
 		}
 
 		// start writing cityobject JSON file if required
-		FileOutputStream jsonFileWriter = null;
+		FileOutputStream jsonFileWriter = null;
 		boolean jsonHasContent = false;
 		if (config.getProject().getKmlExporter().isWriteJSONFile() && isBBoxActive) {
 			try {
@@ -336,6 +351,7 @@ public class KmlExporter implements EventHandler {
 
 				// track exported objects
 				ExportTracker tracker = new ExportTracker();
+				long exportedObjects = metrics.getTopLevelFeatureCount();
 
 				// set active tile and get tile extent in WGS84
 				GeometryObject wgs84Tile = null;
@@ -351,243 +367,19 @@ public class KmlExporter implements EventHandler {
 					}, 2, 4326);
 				}
 
-				// iterate over display forms
-				for (DisplayForm displayForm : config.getProject().getKmlExporter().getBuildingDisplayForms()) {
-					if (!displayForm.isActive()) 
-						continue;
-
-					if (lastTempFolder != null && lastTempFolder.exists()) 
-						deleteFolder(lastTempFolder); // just in case
-
-					File file = null;
-					ZipOutputStream zipOut = null;
-					String currentWorkingDirectoryPath = null;
-					try {
-						if (isBBoxActive && tiling.getMode() != TilingMode.NO_TILING) {
-							File tilesRootDirectory = new File(path, "Tiles");
-							tilesRootDirectory.mkdir();
-							File rowTilesDirectory = new File(tilesRootDirectory.getPath(),  String.valueOf(i));
-							rowTilesDirectory.mkdir();
-							File columnTilesDirectory = new File(rowTilesDirectory.getPath(),  String.valueOf(j));
-							columnTilesDirectory.mkdir();
-							file = new File(columnTilesDirectory.getPath() + File.separator + fileName + "_Tile_" + i + "_" + j + "_" + displayForm.getName() + fileExtension);
-							currentWorkingDirectoryPath = columnTilesDirectory.getPath();
-						} else {
-							file = new File(path + File.separator + fileName + "_" + displayForm.getName() + fileExtension);
-							currentWorkingDirectoryPath = path;
-						}
-						tracker.setCurrentWorkingDirectoryPath(currentWorkingDirectoryPath);
-
-						eventDispatcher.triggerEvent(new StatusDialogMessage(Language.I18N.getString("kmlExport.dialog.writingToFile"), this));
-						eventDispatcher.triggerEvent(new StatusDialogTitle(file.getName(), this));
-						eventDispatcher.triggerEvent(new CounterEvent(CounterType.REMAINING_TILES, --remainingTiles, this));
-						
-						// open file for writing
-						try {
-							OutputStreamWriter fileWriter = null;
-							if (config.getProject().getKmlExporter().isExportAsKmz()) {
-								zipOut = new ZipOutputStream(new FileOutputStream(file));
-								ZipEntry zipEntry = new ZipEntry("doc.kml");
-								zipOut.putNextEntry(zipEntry);
-								fileWriter = new OutputStreamWriter(zipOut, CHARSET);
-							} else
-								fileWriter = new OutputStreamWriter(new FileOutputStream(file), CHARSET);
-
-							// set output for SAXWriter
-							saxWriter.setOutput(fileWriter);	
-						} catch (IOException e) {
-							throw new KmlExportException("Failed to open file '" + file.getName() + "' for writing.", e);
-						}
-
-						// create worker pools
-						// here we have an open issue: queue sizes are fix...
-						ioWriterPool = new SingleWorkerPool<SAXEventBuffer>(
-								"kml_writer_pool",
-								new IOWriterWorkerFactory(saxWriter, eventDispatcher),
-								100,
-								true);
-
-						kmlWorkerPool = new WorkerPool<KmlSplittingResult>(
-								"db_exporter_pool",
-								config.getProject().getKmlExporter().getResources().getThreadPool().getDefaultPool().getMinThreads(),
-								config.getProject().getKmlExporter().getResources().getThreadPool().getDefaultPool().getMaxThreads(),
-								PoolSizeAdaptationStrategy.AGGRESSIVE,
-								new KmlExportWorkerFactory(
-										jaxbKmlContext,
-										jaxbColladaContext,
-										dbPool,
-										ioWriterPool,
-										tracker,
-										kmlFactory,
-										config,
-										eventDispatcher),
-								300,
-								false);
-
-						// prestart pool workers
-						ioWriterPool.prestartCoreWorkers();
-						kmlWorkerPool.prestartCoreWorkers();
-
-						// fail if we could not start a single import worker
-						if (kmlWorkerPool.getPoolSize() == 0)
-							throw new KmlExportException("Failed to start database export worker pool. Check the database connection pool settings.");
-
-						// create file header writer
-						SAXFragmentWriter fragmentWriter = new SAXFragmentWriter(kmlFactory.createDocument(null).getName(), saxWriter);
-
-						// ok, preparations done. inform user...
-						LOG.info("Exporting to file: " + file.getAbsolutePath());
-
-						// create kml root element
-						KmlType kmlType = kmlFactory.createKmlType();
-						JAXBElement<KmlType> kml = kmlFactory.createKml(kmlType);
-
-						DocumentType document = kmlFactory.createDocumentType();
-						if (isBBoxActive &&	tiling.getMode() != TilingMode.NO_TILING)
-							document.setName(fileName + "_Tile_" + i + "_" + j + "_" + displayForm.getName());
-						else 
-							document.setName(fileName + "_" + displayForm.getName());
-
-						document.setOpen(false);
-						kmlType.setAbstractFeatureGroup(kmlFactory.createDocument(document));
-
-						// write file header
-						Marshaller marshaller = null;
-						try {
-							marshaller = jaxbKmlContext.createMarshaller();
-							fragmentWriter.setWriteMode(WriteMode.HEAD);
-							marshaller.marshal(kml, fragmentWriter);
-
-							if (isBBoxActive 
-									&&	tiling.getMode() != TilingMode.NO_TILING 
-									&& config.getProject().getKmlExporter().getFilter().isSetComplexFilter() 
-									&& config.getProject().getKmlExporter().isShowTileBorders())
-								addBorder(wgs84Tile, null, saxWriter);
-							
-						} catch (JAXBException e) {
-							throw new KmlExportException("Failed to write output file.", e);
-						}
-
-						// get database splitter and start query
-						try {
-							kmlSplitter = new KmlSplitter(
-									dbPool,
-									kmlWorkerPool,
-									exportFilter,
-									displayForm,
-									config);
-
-							if (shouldRun)
-								kmlSplitter.startQuery();
-						} catch (SQLException e) {
-							throw new KmlExportException("Failed to query the database.", e);
-						}
-
-						// shutdown worker pools
-						try {
-							kmlWorkerPool.shutdownAndWait();
-							ioWriterPool.shutdownAndWait();
-						} catch (InterruptedException e) {
-							throw new KmlExportException("Failed to shutdown worker pools.", e);
-						}
-
-						try {
-							// add styles
-							if (!featureCounterMap.isEmpty() &&
-									(!config.getProject().getKmlExporter().isOneFilePerObject() ||
-											config.getProject().getKmlExporter().getFilter().isSetSimpleFilter())) {
-								for (CityGMLClass type : featureCounterMap.keySet()) {
-									if (featureCounterMap.get(type) > 0)
-										addStyle(displayForm, type, saxWriter);
-								}
-							}
-						} catch (JAXBException e) {
-							throw new KmlExportException("Failed to write styles.", e);
-						}
-
-						// write footer element
-						try {
-							fragmentWriter.setWriteMode(WriteMode.TAIL);
-							marshaller.marshal(kml, fragmentWriter);
-						} catch (JAXBException e) {
-							throw new KmlExportException("Failed to write output file.", e);
-						}
-						
-						try {
-							if (!featureCounterMap.isEmpty()) {
-								saxWriter.flush();
-								if (config.getProject().getKmlExporter().isExportAsKmz()) {
-									zipOut.closeEntry();
-
-									List<File> filesToZip = new ArrayList<File>();
-									File tempFolder = new File(currentWorkingDirectoryPath, TEMP_FOLDER);
-									lastTempFolder = tempFolder;
-									int indexOfZipFilePath = tempFolder.getCanonicalPath().length() + 1;
-
-									if (tempFolder.exists()) { // !config.getProject().getKmlExporter().isOneFilePerObject()
-										LOG.info("Zipping to kmz archive from temporary folder...");
-										getAllFiles(tempFolder, filesToZip);
-										for (File fileToZip : filesToZip) {
-											if (!fileToZip.isDirectory()) {
-												FileInputStream inputStream = new FileInputStream(fileToZip);
-												String zipEntryName = fileToZip.getCanonicalPath().substring(indexOfZipFilePath);
-												zipEntryName = zipEntryName.replace(File.separator, "/"); // MUST
-												ZipEntry zipEntry = new ZipEntry(zipEntryName);
-												zipOut.putNextEntry(zipEntry);
-
-												byte[] bytes = new byte[64*1024]; // 64K should be enough for most
-												int length;
-												while ((length = inputStream.read(bytes)) >= 0) {
-													zipOut.write(bytes, 0, length);
-												}
-												inputStream.close();
-												zipOut.closeEntry();
-											}
-										}
-										LOG.info("Removing temporary folder...");
-										deleteFolder(tempFolder);
-									}
-									zipOut.close();
-								}
-							}
-						} catch (Exception e) {
-							throw new KmlExportException("Failed to write output file.", e);
-						}
-						
-						// flush sax writer and close file
-						try {
-							saxWriter.flush();
-							saxWriter.getOutputWriter().close();
-						} catch (Exception e) {
-							throw new KmlExportException("Failed to close output file.", e);
-						}
-
-						// delete empty tile file if requested
-						if (isBBoxActive && featureCounterMap.isEmpty() && !config.getProject().getKmlExporter().isExportEmptyTiles()) {
-							LOG.debug("Tile_" + exportFilter.getBoundingBoxFilter().getTileRow()
-									+ "_" + exportFilter.getBoundingBoxFilter().getTileColumn() + " is empty. Deleting file " + file.getName() + ".");
-							file.delete();
-						}
-
-						eventDispatcher.triggerEvent(new StatusDialogMessage(Language.I18N.getString("export.dialog.finish.msg"), this));
-					} finally {
-						// clean up
-						if (ioWriterPool != null && !ioWriterPool.isTerminated())
-							ioWriterPool.shutdownNow();
-
-						if (kmlWorkerPool != null && !kmlWorkerPool.isTerminated())
-							kmlWorkerPool.shutdownNow();
-
-						try {
-							eventDispatcher.flushEvents();
-						} catch (InterruptedException e) {
-							//
-						}
-					}
+				if (singlePass) {
+					// query the tile once and write all display forms at the same time
+					exportTile(i, j, displayForms, tracker, exportFilter, wgs84Tile, isBBoxActive, tiling, path, fileName, fileExtension);
+				} else {
+					// iterate over display forms
+					for (DisplayForm displayForm : displayForms)
+						exportTile(i, j, Collections.singletonList(displayForm), tracker, exportFilter, wgs84Tile, isBBoxActive, tiling, path, fileName, fileExtension);
 				}
 
+				boolean hasContent = metrics.getTopLevelFeatureCount() > exportedObjects;
+
 				// create reference to tile file in master file
-				if (masterFileWriter != null && !featureCounterMap.isEmpty()) {
+				if (masterFileWriter != null && hasContent) {
 					try {
 						writeMasterFileTileReference(fileName, i, j, wgs84Tile, masterFileWriter);
 					} catch (JAXBException e) {
@@ -597,7 +389,7 @@ public class KmlExporter implements EventHandler {
 				}
 
 				// fill cityobject JSON file after tile has been processed
-				if (jsonFileWriter != null && !featureCounterMap.isEmpty()) {
+				if (jsonFileWriter != null && hasContent) {
 					try {
 						Iterator<CityObject4JSON> iter = tracker.values().iterator();
 						if (iter.hasNext()) {
@@ -617,8 +409,6 @@ public class KmlExporter implements EventHandler {
 						throw new KmlExportException("Failed to write JSON file.", e);
 					}
 				}
-
-				featureCounterMap.clear();
 			}
 		}
 
@@ -656,16 +446,21 @@ public class KmlExporter implements EventHandler {
 		}		
 
 		// show exported features
+		EnumMap<CityGMLClass, Long> totalFeatureCounterMap = metrics.getFeatureCounter();
 		if (!totalFeatureCounterMap.isEmpty()) {
 			LOG.info("Exported CityGML features:");
 			for (CityGMLClass type : totalFeatureCounterMap.keySet())
 				LOG.info(type + ": " + totalFeatureCounterMap.get(type));
 		}
 
-		LOG.info("Processed geometry objects: " + geometryCounter);
+		LOG.info("Processed geometry objects: " + metrics.getGeometryObjectCount());
 
-		if (lastTempFolder != null && lastTempFolder.exists()) 
-			deleteFolder(lastTempFolder); // just in case
+		if (textureImageCache.isEnabled() && metrics.getTextureCacheHits() + metrics.getTextureCacheMisses() > 0) {
+			LOG.debug("Texture image cache: " + metrics.getTextureCacheHits() + " hit(s), " + metrics.getTextureCacheMisses() + " miss(es), hit rate " 
+					+ String.format("%.1f", metrics.getTextureCacheHitRate() * 100) + "%, " + textureImageCache.getEvictions() + " eviction(s).");
+		}
+
+		deleteTempFolders(); // just in case
 
 		if (shouldRun)
 			LOG.info("Total export time: " + Util.formatElapsedTime(System.currentTimeMillis() - start) + ".");
@@ -673,6 +468,315 @@ public class KmlExporter implements EventHandler {
 		return shouldRun;
 	}
 
+	private void exportTile(int row, int column,
+			List<DisplayForm> displayForms,
+			ExportTracker tracker,
+			ExportFilter exportFilter,
+			GeometryObject wgs84Tile,
+			boolean isBBoxActive,
+			Tiling tiling,
+			String path,
+			String fileName,
+			String fileExtension) throws KmlExportException {
+		deleteTempFolders(); // just in case
+
+		List<DisplayFormFile> displayFormFiles = new ArrayList<DisplayFormFile>();
+		try {
+			boolean isTiled = isBBoxActive && tiling.getMode() != TilingMode.NO_TILING;
+			String currentWorkingDirectoryPath = path;
+			if (isTiled) {
+				File tilesRootDirectory = new File(path, "Tiles");
+				tilesRootDirectory.mkdir();
+				File rowTilesDirectory = new File(tilesRootDirectory.getPath(),  String.valueOf(row));
+				rowTilesDirectory.mkdir();
+				File columnTilesDirectory = new File(rowTilesDirectory.getPath(),  String.valueOf(column));
+				columnTilesDirectory.mkdir();
+				currentWorkingDirectoryPath = columnTilesDirectory.getPath();
+			}
+
+			List<DisplayFormOutput> outputs = new ArrayList<DisplayFormOutput>();
+			for (DisplayForm displayForm : displayForms) {
+				String documentName = isTiled ? 
+						fileName + "_Tile_" + row + "_" + column + "_" + displayForm.getName() :
+							fileName + "_" + displayForm.getName();
+
+				// display forms written at the same time must not share their temporary folder
+				ExportTracker displayFormTracker = tracker;
+				if (displayForms.size() > 1) {
+					displayFormTracker = new ExportTracker();
+					displayFormTracker.setTempFolderName(TEMP_FOLDER + "_" + displayForm.getName());
+				}
+				displayFormTracker.setCurrentWorkingDirectoryPath(currentWorkingDirectoryPath);
+
+				// collect the glTF models of the COLLADA display form in a single file per tile
+				displayFormTracker.setGltfBatch(displayForm.getForm() == DisplayForm.COLLADA
+						&& config.getProject().getKmlExporter().isCreateGltfModel()
+						&& !config.getProject().getKmlExporter().isUseExternalGltfConverter()
+						&& config.getProject().getKmlExporter().isBatchGltfModelsPerTile() ? new GltfWriter(config.getProject().getKmlExporter().getAltitudeMode()) : null);
+
+				DisplayFormFile displayFormFile = new DisplayFormFile(displayForm,
+						new File(currentWorkingDirectoryPath + File.separator + documentName + fileExtension),
+						documentName,
+						displayFormTracker);
+				displayFormFiles.add(displayFormFile);
+
+				eventDispatcher.triggerEvent(new StatusDialogMessage(Language.I18N.getString("kmlExport.dialog.writingToFile"), this));
+				eventDispatcher.triggerEvent(new StatusDialogTitle(displayFormFile.file.getName(), this));
+				eventDispatcher.triggerEvent(new CounterEvent(CounterType.REMAINING_TILES, --remainingTiles, this));
+
+				// open file for writing
+				try {
+					OutputStreamWriter fileWriter = null;
+					if (config.getProject().getKmlExporter().isExportAsKmz()) {
+						displayFormFile.kmzWriter = new KmzWriter(displayFormFile.file);
+						fileWriter = new OutputStreamWriter(displayFormFile.kmzWriter.openDocument("doc.kml"), CHARSET);
+
+						// let the workers add their compressed entries to the archive unless
+						// the external glTF converter needs the files in the temporary folder
+						displayFormTracker.setKmzWriter(!config.getProject().getKmlExporter().isCreateGltfModel()
+								|| !config.getProject().getKmlExporter().isUseExternalGltfConverter() ? displayFormFile.kmzWriter : null);
+					} else {
+						fileWriter = new OutputStreamWriter(new FileOutputStream(displayFormFile.file), CHARSET);
+						displayFormTracker.setKmzWriter(null);
+					}
+
+					// set output for SAXWriter
+					displayFormFile.saxWriter.setOutput(fileWriter);	
+				} catch (IOException e) {
+					throw new KmlExportException("Failed to open file '" + displayFormFile.file.getName() + "' for writing.", e);
+				}
+
+				// create writer pool
+				// here we have an open issue: queue sizes are fix...
+				displayFormFile.ioWriterPool = new SingleWorkerPool<SAXEventBuffer>(
+						"kml_writer_pool",
+						new IOWriterWorkerFactory(displayFormFile.saxWriter, eventDispatcher),
+						100,
+						true);
+
+				outputs.add(new DisplayFormOutput(displayForm, displayFormFile.ioWriterPool, displayFormTracker));
+			}
+
+			// create worker pool
+			kmlWorkerPool = new WorkerPool<KmlSplittingResult>(
+					"db_exporter_pool",
+					config.getProject().getKmlExporter().getResources().getThreadPool().getDefaultPool().getMinThreads(),
+					config.getProject().getKmlExporter().getResources().getThreadPool().getDefaultPool().getMaxThreads(),
+					PoolSizeAdaptationStrategy.AGGRESSIVE,
+					new KmlExportWorkerFactory(
+							jaxbKmlContext,
+							jaxbColladaContext,
+							dbPool,
+							outputs,
+							kmlFactory,
+							config,
+							eventDispatcher),
+					300,
+					false);
+
+			metrics.registerWorkerPool(kmlWorkerPool);
+			for (DisplayFormFile displayFormFile : displayFormFiles)
+				metrics.registerWorkerPool(displayFormFile.ioWriterPool);
+
+			// prestart pool workers
+			for (DisplayFormFile displayFormFile : displayFormFiles)
+				displayFormFile.ioWriterPool.prestartCoreWorkers();
+
+			kmlWorkerPool.prestartCoreWorkers();
+
+			// fail if we could not start a single import worker
+			if (kmlWorkerPool.getPoolSize() == 0)
+				throw new KmlExportException("Failed to start database export worker pool. Check the database connection pool settings.");
+
+			for (DisplayFormFile displayFormFile : displayFormFiles) {
+				// ok, preparations done. inform user...
+				LOG.info("Exporting to file: " + displayFormFile.file.getAbsolutePath());
+
+				// create kml root element
+				KmlType kmlType = kmlFactory.createKmlType();
+				displayFormFile.kml = kmlFactory.createKml(kmlType);
+
+				DocumentType document = kmlFactory.createDocumentType();
+				document.setName(displayFormFile.documentName);
+				document.setOpen(false);
+				kmlType.setAbstractFeatureGroup(kmlFactory.createDocument(document));
+
+				// write file header
+				try {
+					displayFormFile.marshaller = jaxbKmlContext.createMarshaller();
+					displayFormFile.fragmentWriter.setWriteMode(WriteMode.HEAD);
+					displayFormFile.marshaller.marshal(displayFormFile.kml, displayFormFile.fragmentWriter);
+
+					if (isTiled 
+							&& config.getProject().getKmlExporter().getFilter().isSetComplexFilter() 
+							&& config.getProject().getKmlExporter().isShowTileBorders())
+						addBorder(wgs84Tile, null, displayFormFile.saxWriter);
+
+				} catch (JAXBException e) {
+					throw new KmlExportException("Failed to write output file.", e);
+				}
+			}
+
+			// get database splitter and start query
+			try {
+				kmlSplitter = new KmlSplitter(
+						dbPool,
+						kmlWorkerPool,
+						exportFilter,
+						displayForms,
+						config);
+
+				if (shouldRun)
+					kmlSplitter.startQuery();
+			} catch (SQLException e) {
+				throw new KmlExportException("Failed to query the database.", e);
+			}
+
+			// shutdown worker pools
+			try {
+				kmlWorkerPool.shutdownAndWait();
+				for (DisplayFormFile displayFormFile : displayFormFiles)
+					displayFormFile.ioWriterPool.shutdownAndWait();
+			} catch (InterruptedException e) {
+				throw new KmlExportException("Failed to shutdown worker pools.", e);
+			}
+
+			for (DisplayFormFile displayFormFile : displayFormFiles) {
+				ExportTracker displayFormTracker = displayFormFile.tracker;
+				boolean isEmpty = displayFormTracker.getFeatureTypes().isEmpty();
+
+				try {
+					// add styles
+					if (!isEmpty &&
+							(!config.getProject().getKmlExporter().isOneFilePerObject() ||
+									config.getProject().getKmlExporter().getFilter().isSetSimpleFilter())) {
+						for (CityGMLClass type : EnumSet.copyOf(displayFormTracker.getFeatureTypes()))
+							addStyle(displayFormFile.displayForm, type, displayFormFile.saxWriter);
+					}
+				} catch (JAXBException e) {
+					throw new KmlExportException("Failed to write styles.", e);
+				}
+
+				// write footer element
+				try {
+					displayFormFile.fragmentWriter.setWriteMode(WriteMode.TAIL);
+					displayFormFile.marshaller.marshal(displayFormFile.kml, displayFormFile.fragmentWriter);
+				} catch (JAXBException e) {
+					throw new KmlExportException("Failed to write output file.", e);
+				}
+
+				try {
+					if (!isEmpty) {
+						displayFormFile.saxWriter.flush();
+						if (config.getProject().getKmlExporter().isExportAsKmz()) {
+							KmzWriter kmzWriter = displayFormFile.kmzWriter;
+							List<File> filesToZip = new ArrayList<File>();
+							File tempFolder = new File(currentWorkingDirectoryPath, displayFormTracker.getTempFolderName());
+							tempFolders.add(tempFolder);
+							int indexOfZipFilePath = tempFolder.getCanonicalPath().length() + 1;
+
+							if (tempFolder.exists()) { // !config.getProject().getKmlExporter().isOneFilePerObject()
+								LOG.info("Zipping to kmz archive from temporary folder...");
+								getAllFiles(tempFolder, filesToZip);
+								for (File fileToZip : filesToZip) {
+									if (!fileToZip.isDirectory()) {
+										String zipEntryName = fileToZip.getCanonicalPath().substring(indexOfZipFilePath);
+										zipEntryName = zipEntryName.replace(File.separator, "/"); // MUST
+										kmzWriter.addEntry(zipEntryName, Files.readAllBytes(fileToZip.toPath()), true);
+									}
+								}
+								LOG.info("Removing temporary folder...");
+								deleteFolder(tempFolder);
+							}
+						}
+					}
+				} catch (Exception e) {
+					throw new KmlExportException("Failed to write output file.", e);
+				}
+
+				// flush sax writer and close file
+				try {
+					displayFormFile.saxWriter.flush();
+					displayFormFile.saxWriter.getOutputWriter().close();
+
+					if (displayFormFile.kmzWriter != null) {
+						displayFormFile.kmzWriter.close();
+						displayFormTracker.setKmzWriter(null);
+					}
+				} catch (Exception e) {
+					throw new KmlExportException("Failed to close output file.", e);
+				}
+
+				// write the glTF models of the tile
+				GltfWriter gltfBatch = displayFormTracker.getGltfBatch();
+				if (gltfBatch != null) {
+					try {
+						if (!gltfBatch.isEmpty()) {
+							boolean binary = config.getProject().getKmlExporter().isCreateGltfBinary();
+							gltfBatch.write(new File(currentWorkingDirectoryPath, displayFormFile.documentName + (binary ? ".glb" : ".gltf")), binary);
+						}
+					} catch (IOException e) {
+						throw new KmlExportException("Failed to write glTF file.", e);
+					} finally {
+						displayFormTracker.setGltfBatch(null);
+					}
+				}
+
+				// delete empty tile file if requested
+				if (isBBoxActive && isEmpty && !config.getProject().getKmlExporter().isExportEmptyTiles()) {
+					LOG.debug("Tile_" + exportFilter.getBoundingBoxFilter().getTileRow()
+							+ "_" + exportFilter.getBoundingBoxFilter().getTileColumn() + " is empty. Deleting file " + displayFormFile.file.getName() + ".");
+					displayFormFile.file.delete();
+				}
+
+				// collect the exported objects of the tile for the JSON file
+				if (displayFormTracker != tracker)
+					tracker.putAll(displayFormTracker);
+			}
+
+			eventDispatcher.triggerEvent(new StatusDialogMessage(Language.I18N.getString("export.dialog.finish.msg"), this));
+		} finally {
+			// clean up
+			for (DisplayFormFile displayFormFile : displayFormFiles) {
+				if (displayFormFile.ioWriterPool != null && !displayFormFile.ioWriterPool.isTerminated())
+					displayFormFile.ioWriterPool.shutdownNow();
+
+				// make sure no spool file is left behind
+				if (displayFormFile.kmzWriter != null) {
+					try {
+						displayFormFile.kmzWriter.close();
+					} catch (IOException e) {
+						//
+					}
+				}
+			}
+
+			if (kmlWorkerPool != null && !kmlWorkerPool.isTerminated())
+				kmlWorkerPool.shutdownNow();
+
+			try {
+				eventDispatcher.flushEvents();
+			} catch (InterruptedException e) {
+				//
+			}
+		}
+	}
+
+	private SAXWriter createSAXWriter() {
+		// define indent for xml output and namespace mappings
+		SAXWriter saxWriter = new SAXWriter();
+		saxWriter.setIndentString("  ");
+		saxWriter.setHeaderComment("Written by " + this.getClass().getPackage().getImplementationTitle() + ", version \"" +
+				this.getClass().getPackage().getImplementationVersion() + '"', 
+				this.getClass().getPackage().getImplementationVendor());
+		saxWriter.setDefaultNamespace("http://www.opengis.net/kml/2.2"); // default namespace
+		saxWriter.setPrefix("gx", "http://www.google.com/kml/ext/2.2");
+		saxWriter.setPrefix("atom", "http://www.w3.org/2005/Atom");
+		saxWriter.setPrefix("xal", "urn:oasis:names:tc:ciq:xsdschema:xAL:2.0");
+
+		return saxWriter;
+	}
+
 	private int calculateRowsColumns() throws SQLException {
 		TiledBoundingBox bbox = config.getProject().getKmlExporter().getFilter().getComplexFilter().getTiledBoundingBox();
 		double autoTileSideLength = config.getProject().getKmlExporter().getAutoTileSideLength();
@@ -706,15 +810,7 @@ public class KmlExporter implements EventHandler {
 	}
 
 	private SAXWriter writeMasterFileHeader(String fileName, String path) throws JAXBException, IOException, SAXException {
-		SAXWriter saxWriter = new SAXWriter();
-		saxWriter.setIndentString("  ");
-		saxWriter.setHeaderComment("Written by " + this.getClass().getPackage().getImplementationTitle() + ", version \"" +
-				this.getClass().getPackage().getImplementationVersion() + '"', 
-				this.getClass().getPackage().getImplementationVendor());
-		saxWriter.setDefaultNamespace("http://www.opengis.net/kml/2.2"); // default namespace
-		saxWriter.setPrefix("gx", "http://www.google.com/kml/ext/2.2");
-		saxWriter.setPrefix("atom", "http://www.w3.org/2005/Atom");
-		saxWriter.setPrefix("xal", "urn:oasis:names:tc:ciq:xsdschema:xAL:2.0");
+		SAXWriter saxWriter = createSAXWriter();
 
 		Marshaller marshaller = jaxbKmlContext.createMarshaller();
 
@@ -1540,6 +1636,15 @@ public class KmlExporter implements EventHandler {
 		}
 	}
 
+	private void deleteTempFolders() {
+		for (File tempFolder : tempFolders) {
+			if (tempFolder.exists())
+				deleteFolder(tempFolder);
+		}
+
+		tempFolders.clear();
+	}
+
 	private static void deleteFolder(File folder) {
 		if (folder == null) return;
 		File[] files = folder.listFiles();
@@ -1556,29 +1661,7 @@ public class KmlExporter implements EventHandler {
 
 	@Override
 	public void handleEvent(Event e) throws Exception {
-		if (e.getEventType() == EventType.FEATURE_COUNTER) {
-			HashMap<CityGMLClass, Long> counterMap = ((FeatureCounterEvent)e).getCounter();
-
-			for (CityGMLClass type : counterMap.keySet()) {
-				Long counter = featureCounterMap.get(type);
-				Long update = counterMap.get(type);
-
-				if (counter == null)
-					featureCounterMap.put(type, update);
-				else
-					featureCounterMap.put(type, counter + update);
-
-				counter = totalFeatureCounterMap.get(type);
-				if (counter == null)
-					totalFeatureCounterMap.put(type, update);
-				else
-					totalFeatureCounterMap.put(type, counter + update);
-			}
-		}
-		else if (e.getEventType() == EventType.GEOMETRY_COUNTER) {
-			geometryCounter++;
-		}
-		else if (e.getEventType() == EventType.INTERRUPT) {
+		if (e.getEventType() == EventType.INTERRUPT) {
 			if (isInterrupted.compareAndSet(false, true)) {
 				shouldRun = false;
 				InterruptEvent interruptEvent = (InterruptEvent)e;
@@ -1610,8 +1693,32 @@ public class KmlExporter implements EventHandler {
 				if (kmlWorkerPool != null)
 					kmlWorkerPool.drainWorkQueue();
 
-				if (lastTempFolder != null && lastTempFolder.exists()) deleteFolder(lastTempFolder); // just in case
+				deleteTempFolders(); // just in case
 			}
 		}
 	}
+
+	private class DisplayFormFile {
+		private final DisplayForm displayForm;
+		private final File file;
+		private final String documentName;
+		private final ExportTracker tracker;
+		private final SAXWriter saxWriter;
+		private final SAXFragmentWriter fragmentWriter;
+		private KmzWriter kmzWriter;
+		private SingleWorkerPool<SAXEventBuffer> ioWriterPool;
+		private Marshaller marshaller;
+		private JAXBElement<KmlType> kml;
+
+		private DisplayFormFile(DisplayForm displayForm, File file, String documentName, ExportTracker tracker) {
+			this.displayForm = displayForm;
+			this.file = file;
+			this.documentName = documentName;
+			this.tracker = tracker;
+
+			saxWriter = createSAXWriter();
+			fragmentWriter = new SAXFragmentWriter(kmlFactory.createDocument(null).getName(), saxWriter);
+		}
+	}
+
 }
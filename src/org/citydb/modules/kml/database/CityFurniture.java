@@ -27,7 +27,6 @@
  */
 package org.citydb.modules.kml.database;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
@@ -51,9 +50,6 @@ import org.citydb.config.project.kmlExporter.KmlExporter;
 import org.citydb.database.adapter.AbstractDatabaseAdapter;
 import org.citydb.database.adapter.BlobExportAdapter;
 import org.citydb.log.Logger;
-import org.citydb.modules.common.event.CounterEvent;
-import org.citydb.modules.common.event.CounterType;
-import org.citydb.modules.common.event.GeometryCounterEvent;
 import org.citydb.textureAtlas.model.TextureImage;
 import org.citydb.util.Util;
 import org.citygml4j.geometry.Matrix;
@@ -485,7 +481,6 @@ public class CityFurniture extends KmlGenericObject{
 		}
 
 		String selectedTheme = config.getProject().getKmlExporter().getAppearanceTheme();
-		int texImageCounter = 0;
 
 		DisplayForm colladaDisplayForm = null;
 		for (DisplayForm displayForm: getDisplayForms()) {
@@ -537,7 +532,7 @@ public class CityFurniture extends KmlGenericObject{
 						}
 
 						// from hier on it is a surfaceMember
-						eventDispatcher.triggerEvent(new GeometryCounterEvent(null, this));
+						metrics.updateGeometryObjectCounter(1);
 
 						String texImageUri = null;
 						StringTokenizer texCoordsTokenized = null;
@@ -586,10 +581,10 @@ public class CityFurniture extends KmlGenericObject{
 										// not already marked as wrapping texture && not already read in
 										TextureImage texImage = null;
 										try {
-											byte[] imageBytes = textureExportAdapter.getInByteArray(textureImageId, texImageUri);
+											byte[] imageBytes = textureImageCache.getImageBytes(textureImageId, texImageUri, textureExportAdapter);
 											if (imageBytes != null) {
 												imageReader.setSupportRGB(generateTextureAtlas);
-												texImage = imageReader.read(new ByteArrayInputStream(imageBytes));
+												texImage = readTexImage(textureImageId, imageBytes);
 											}																																
 										} catch (IOException ioe) {}
 
@@ -600,11 +595,7 @@ public class CityFurniture extends KmlGenericObject{
 											addUnsupportedTexImageId(texImageUri, textureImageId);
 										}
 
-										texImageCounter++;
-										if (texImageCounter > 20) {
-											eventDispatcher.triggerEvent(new CounterEvent(CounterType.TEXTURE_IMAGE, texImageCounter, this));
-											texImageCounter = 0;
-										}
+										metrics.updateTextureImageCounter(1);
 									}
 
 									texCoords = texCoords.replaceAll(";", " "); // substitute of ; for internal ring
@@ -680,9 +671,6 @@ public class CityFurniture extends KmlGenericObject{
 				}
 			}
 		}
-
-		// count rest images
-		eventDispatcher.triggerEvent(new CounterEvent(CounterType.TEXTURE_IMAGE, texImageCounter, this));
 	}
 
 	protected List<PlacemarkType> createPlacemarksForHighlighting(KmlSplittingResult work) throws SQLException {
@@ -29,6 +29,7 @@ package org.citydb.modules.kml.database;
 
 import java.util.HashMap;
 
+import org.citydb.modules.kml.gltf.GltfMesh;
 import org.citydb.textureAtlas.model.TextureImage;
 import org.collada._2005._11.colladaschema.COLLADA;
 
@@ -44,7 +45,7 @@ public class ColladaBundle {
 	private HashMap<String, TextureImage> texImages;
 
 	private COLLADA collada;
-	private String colladaAsString;
+	private GltfMesh gltfMesh;
 	private PlacemarkType placemark;
 	private String gmlId;
 	private long id;
@@ -74,6 +75,14 @@ public class ColladaBundle {
 		return collada;
 	}
 
+	public void setGltfMesh(GltfMesh gltfMesh) {
+		this.gltfMesh = gltfMesh;
+	}
+
+	public GltfMesh getGltfMesh() {
+		return gltfMesh;
+	}
+
 	public void setPlacemark(PlacemarkType placemark) {
 		this.placemark = placemark;
 	}
@@ -98,14 +107,6 @@ public class ColladaBundle {
 		this.id = id;
 	}
 
-	public void setColladaAsString(String colladaAsString) {
-		this.colladaAsString = colladaAsString;
-	}
-
-	public String getColladaAsString() {
-		return colladaAsString;
-	}
-
 	public void setExternalBalloonFileContent(String externalBalloonFileContent) {
 		this.externalBalloonFileContent = externalBalloonFileContent;
 	}
@@ -27,7 +27,6 @@
  */
 package org.citydb.modules.kml.database;
 
-import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.sql.Connection;
@@ -57,9 +56,6 @@ import org.citydb.config.project.kmlExporter.PointDisplayMode;
 import org.citydb.database.adapter.AbstractDatabaseAdapter;
 import org.citydb.database.adapter.BlobExportAdapter;
 import org.citydb.log.Logger;
-import org.citydb.modules.common.event.CounterEvent;
-import org.citydb.modules.common.event.CounterType;
-import org.citydb.modules.common.event.GeometryCounterEvent;
 import org.citydb.textureAtlas.model.TextureImage;
 import org.citydb.util.Util;
 import org.citygml4j.geometry.Matrix;
@@ -533,7 +529,6 @@ public class GenericCityObject extends KmlGenericObject{
 		}
 
 		String selectedTheme = config.getProject().getKmlExporter().getAppearanceTheme();
-		int texImageCounter = 0;
 		
 		DisplayForm colladaDisplayForm = null;
 		for (DisplayForm displayForm: getDisplayForms()) {
@@ -585,7 +580,7 @@ public class GenericCityObject extends KmlGenericObject{
 						}
 
 						// from hier on it is a surfaceMember
-						eventDispatcher.triggerEvent(new GeometryCounterEvent(null, this));
+						metrics.updateGeometryObjectCounter(1);
 
 						String texImageUri = null;
 						StringTokenizer texCoordsTokenized = null;
@@ -634,10 +629,10 @@ public class GenericCityObject extends KmlGenericObject{
 										// not already marked as wrapping texture && not already read in
 										TextureImage texImage = null;
 										try {
-											byte[] imageBytes = textureExportAdapter.getInByteArray(textureImageId, texImageUri);
+											byte[] imageBytes = textureImageCache.getImageBytes(textureImageId, texImageUri, textureExportAdapter);
 											if (imageBytes != null) {
 												imageReader.setSupportRGB(generateTextureAtlas);
-												texImage = imageReader.read(new ByteArrayInputStream(imageBytes));
+												texImage = readTexImage(textureImageId, imageBytes);
 											}																																
 										} catch (IOException ioe) {}
 
@@ -648,11 +643,7 @@ public class GenericCityObject extends KmlGenericObject{
 											addUnsupportedTexImageId(texImageUri, textureImageId);
 										}
 
-										texImageCounter++;
-										if (texImageCounter > 20) {
-											eventDispatcher.triggerEvent(new CounterEvent(CounterType.TEXTURE_IMAGE, texImageCounter, this));
-											texImageCounter = 0;
-										}
+										metrics.updateTextureImageCounter(1);
 									}
 
 									texCoords = texCoords.replaceAll(";", " "); // substitute of ; for internal ring
@@ -728,9 +719,6 @@ public class GenericCityObject extends KmlGenericObject{
 				}
 			}
 		}
-
-		// count rest images
-		eventDispatcher.triggerEvent(new CounterEvent(CounterType.TEXTURE_IMAGE, texImageCounter, this));
 	}
 
 	protected List<PlacemarkType> createPlacemarksForHighlighting(KmlSplittingResult work) throws SQLException {
@@ -881,7 +869,7 @@ public class GenericCityObject extends KmlGenericObject{
 
 			GeometryObject pointOrCurveGeometry = geometryConverterAdapter.getGeometry(buildingGeometryObj);			
 
-			eventDispatcher.triggerEvent(new GeometryCounterEvent(null, this));
+			metrics.updateGeometryObjectCounter(1);
 
 			if (pointOrCurveGeometry.getGeometryType() == GeometryType.POINT) { // point
 				isPoint = true; // dirty hack, don't try this at home
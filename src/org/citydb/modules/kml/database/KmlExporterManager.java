@@ -28,18 +28,23 @@
 package org.citydb.modules.kml.database;
 
 import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
-import java.io.StringWriter;
 import java.nio.charset.Charset;
+import java.nio.file.Files;
 import java.sql.SQLException;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map.Entry;
 import java.util.Set;
+import java.util.zip.CRC32;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
@@ -55,11 +60,15 @@ import org.citydb.config.project.kmlExporter.DisplayForm;
 import org.citydb.database.adapter.BlobExportAdapter;
 import org.citydb.log.Logger;
 import org.citydb.modules.common.balloon.BalloonTemplateHandlerImpl;
-import org.citydb.modules.common.event.CounterEvent;
-import org.citydb.modules.common.event.CounterType;
+import org.citydb.modules.common.metrics.Metrics;
+import org.citydb.modules.kml.gltf.GltfMesh;
+import org.citydb.modules.kml.gltf.GltfWriter;
 import org.citydb.modules.kml.util.CityObject4JSON;
+import org.citydb.modules.kml.util.EncodedTextureImage;
 import org.citydb.modules.kml.util.ExportTracker;
-import org.citygml4j.model.citygml.CityGMLClass;
+import org.citydb.modules.kml.util.KmzWriter;
+import org.citydb.modules.kml.util.TextureImageCache;
+import org.citydb.textureAtlas.model.TextureImage;
 import org.citygml4j.util.xml.SAXEventBuffer;
 
 import net.opengis.kml._2.DocumentType;
@@ -85,11 +94,11 @@ public class KmlExporterManager {
 	
 	private boolean isBBoxActive;
 	private String mainFilename;
-	private HashMap<CityGMLClass, Long> featureCounterMap;
+	private final Metrics metrics;
+	private final TextureImageCache textureImageCache;
 	
 	private final String ENCODING = "UTF-8";
 	private final Charset CHARSET = Charset.forName(ENCODING);
-	private final String TEMP_FOLDER = "__temp";
 
 	public KmlExporterManager(JAXBContext jaxbKmlContext,
 							  JAXBContext jaxbColladaContext,
@@ -125,22 +134,16 @@ public class KmlExporterManager {
 		}
 		mainFilename = mainFilename + ".kml";
 		
-		featureCounterMap = new HashMap<CityGMLClass, Long>();
+		metrics = Metrics.getInstance();
+		textureImageCache = TextureImageCache.getInstance();
 	}
 	
 	public void updateFeatureTracker(KmlSplittingResult work) {
-		Long counter = featureCounterMap.get(work.getCityObjectType());
-		if (counter == null)
-			featureCounterMap.put(work.getCityObjectType(), new Long(1));
-		else
-			featureCounterMap.put(work.getCityObjectType(), counter + 1);		
+		metrics.updateFeatureCounter(work.getCityObjectType(), 1);
+		metrics.updateTopLevelFeatureCounter(1);
 		
 		tracker.put(work.getId(), work.getJson());
-		eventDispatcher.triggerEvent(new CounterEvent(CounterType.TOPLEVEL_FEATURE, 1, this));
-	}
-	
-	public HashMap<CityGMLClass, Long> getFeatureCounter() {
-		return featureCounterMap;
+		tracker.addFeatureType(work.getCityObjectType());
 	}
 	
 	public ExportTracker getExportTracker() {
@@ -192,9 +195,9 @@ public class KmlExporterManager {
         					// --------------- create subfolder ---------------
         					
 							if (config.getProject().getKmlExporter().isExportAsKmz()) {
-								if (!isBBoxActive || !config.getProject().getKmlExporter().isOneFilePerObject()) {
+								if (tracker.getKmzWriter() == null && (!isBBoxActive || !config.getProject().getKmlExporter().isOneFilePerObject())) {
         							// export temporarily as kml, it will be later added to kmz if needed
-    								directory = new File(path, TEMP_FOLDER);
+    								directory = new File(path, tracker.getTempFolderName());
     								if (!directory.exists()) {
     									Logger.getInstance().info("Creating temporary folder...");
     									directory.mkdir();
@@ -212,14 +215,21 @@ public class KmlExporterManager {
 
     						if (!isBBoxActive || !config.getProject().getKmlExporter().isOneFilePerObject() || !config.getProject().getKmlExporter().isExportAsKmz()) {
 	       						try {
-	       							File balloonsDirectory = new File(directory, BalloonTemplateHandlerImpl.balloonDirectoryName);
-	       							if (!balloonsDirectory.exists()) {
-	       								balloonsDirectory.mkdir();
+	       							KmzWriter kmzWriter = tracker.getKmzWriter();
+	       							if (kmzWriter != null) {
+	       								kmzWriter.addEntry(BalloonTemplateHandlerImpl.balloonDirectoryName + "/" + work.getGmlId() + '-' + work.getId() + ".html", 
+	       										placemarkDescription.getBytes(CHARSET), true);
+	       							}
+	       							else {
+		       							File balloonsDirectory = new File(directory, BalloonTemplateHandlerImpl.balloonDirectoryName);
+		       							if (!balloonsDirectory.exists()) {
+		       								balloonsDirectory.mkdir();
+		       							}
+		       							File htmlFile = new File(balloonsDirectory, work.getGmlId() + '-' + work.getId() + ".html");
+		       							FileOutputStream outputStream = new FileOutputStream(htmlFile);
+		       							outputStream.write(placemarkDescription.getBytes(CHARSET));
+		       							outputStream.close();
 	       							}
-	       							File htmlFile = new File(balloonsDirectory, work.getGmlId() + '-' + work.getId() + ".html");
-	       							FileOutputStream outputStream = new FileOutputStream(htmlFile);
-	       							outputStream.write(placemarkDescription.getBytes(CHARSET));
-	       							outputStream.close();
 	       						}
 	       						catch (IOException ioe) {
 	       							ioe.printStackTrace();
@@ -488,17 +498,12 @@ public class KmlExporterManager {
 		if (config.getProject().getKmlExporter().isExportAsKmz() &&	isBBoxActive
 				&& config.getProject().getKmlExporter().isOneFilePerObject()) {
 			
-			// marshalling in parallel threads should save some time
-	        StringWriter sw = new StringWriter();
-	        colladaMarshaller.marshal(colladaBundle.getCollada(), sw);
-	        colladaBundle.setColladaAsString(sw.toString());
-	        colladaBundle.setCollada(null); // free heap space
-
 	        // ----------------- model saving -----------------
 	        ZipEntry zipEntry = new ZipEntry(colladaBundle.getId() + "/" + colladaBundle.getGmlId() + ".dae");
 	        zipOut.putNextEntry(zipEntry);
-	        zipOut.write(colladaBundle.getColladaAsString().getBytes(CHARSET));
+	        colladaMarshaller.marshal(colladaBundle.getCollada(), zipOut);
 	        zipOut.closeEntry();
+	        colladaBundle.setCollada(null); // free heap space
 
 	        // ----------------- image saving -----------------
 	        if (colladaBundle.getUnsupportedTexImageIds() != null) {
@@ -506,13 +511,8 @@ public class KmlExporterManager {
 	        	Iterator<String> iterator = keySet.iterator();
 	        	while (iterator.hasNext()) {
 	        		String imageFilename = iterator.next();
-	        		byte[] ordImageBytes = textureExportAdapter.getInByteArray(colladaBundle.getUnsupportedTexImageIds().get(imageFilename), imageFilename);
-	        		zipEntry = imageFilename.startsWith("..") ?
-	        				   new ZipEntry(imageFilename.substring(3)): // skip .. and File.separator
-	        					   new ZipEntry(colladaBundle.getId() + "/" + imageFilename);
-	        		zipOut.putNextEntry(zipEntry);
-	        		zipOut.write(ordImageBytes, 0, ordImageBytes.length);
-	        		zipOut.closeEntry();
+	        		byte[] ordImageBytes = textureImageCache.getImageBytes(colladaBundle.getUnsupportedTexImageIds().get(imageFilename), imageFilename, textureExportAdapter);
+	        		putZipEntry(zipOut, getKmzEntryName(colladaBundle, imageFilename), ordImageBytes);
 	        	}
 	        }
 
@@ -521,15 +521,8 @@ public class KmlExporterManager {
 	        	Iterator<String> iterator = keySet.iterator();
 	        	while (iterator.hasNext()) {
 	        		String imageFilename = iterator.next();
-	        		BufferedImage texImage = colladaBundle.getTexImages().get(imageFilename).getBufferedImage();
-	        		String imageType = imageFilename.substring(imageFilename.lastIndexOf('.') + 1);
-
-					zipEntry = imageFilename.startsWith("..") ?
-							   new ZipEntry(imageFilename.substring(3)): // skip .. and File.separator
-								   new ZipEntry(colladaBundle.getId() + "/" + imageFilename);
-					zipOut.putNextEntry(zipEntry);
-					ImageIO.write(texImage, imageType, zipOut);
-					zipOut.closeEntry();
+	        		byte[] imageBytes = getImageBytes(imageFilename, colladaBundle.getTexImages().get(imageFilename));
+	        		putZipEntry(zipOut, getKmzEntryName(colladaBundle, imageFilename), imageBytes);
 	        	}
 			}
 
@@ -543,36 +536,138 @@ public class KmlExporterManager {
 
 			zipOut.close();
 		}
+		else if (tracker.getKmzWriter() != null) {
+			// all entries are compressed by this worker, the KMZ writer
+			// just appends them to the archive of the tile
+			KmzWriter kmzWriter = tracker.getKmzWriter();
+			String entryPath = colladaBundle.getId() + "/";
+
+			GltfMesh gltfMesh = colladaBundle.getGltfMesh();
+			GltfWriter gltfBatch = tracker.getGltfBatch();
+			boolean writeColladaModel = gltfMesh == null || !config.getProject().getKmlExporter().isNotCreateColladaFiles();
+			boolean writeTexImages = writeColladaModel || (gltfBatch == null && !config.getProject().getKmlExporter().isEmbedTexturesInGltfFiles());
+
+			// ----------------- model saving -----------------
+			if (writeColladaModel) {
+				OutputStream out = kmzWriter.createEntry(entryPath + colladaBundle.getGmlId() + ".dae");
+				try {
+					colladaMarshaller.marshal(colladaBundle.getCollada(), out);
+				} finally {
+					out.close();
+				}
+
+				colladaBundle.setCollada(null); // free heap space
+			}
+
+			// ----------------- create glTF in-process -----------------
+			if (gltfMesh != null) {
+				boolean embedImages = gltfBatch != null || config.getProject().getKmlExporter().isEmbedTexturesInGltfFiles();
+				addGltfImages(colladaBundle, gltfMesh, embedImages);
+
+				if (gltfBatch != null)
+					gltfBatch.addMesh(gltfMesh);
+				else {
+					boolean binary = config.getProject().getKmlExporter().isCreateGltfBinary();
+					GltfWriter gltfWriter = new GltfWriter();
+					gltfWriter.addMesh(gltfMesh);
+
+					OutputStream out = kmzWriter.createEntry(entryPath + colladaBundle.getGmlId() + (binary ? ".glb" : ".gltf"));
+					try {
+						gltfWriter.write(out, binary);
+					} finally {
+						out.close();
+					}
+				}
+
+				colladaBundle.setGltfMesh(null); // free heap space
+			}
+
+			// ----------------- image saving -----------------
+			if (colladaBundle.getUnsupportedTexImageIds() != null) {
+				for (Entry<String, Long> entry : colladaBundle.getUnsupportedTexImageIds().entrySet()) {
+					String entryName = getKmzEntryName(colladaBundle, entry.getKey());
+					if (!kmzWriter.containsEntry(entryName)) {
+						byte[] imageBytes = textureImageCache.getImageBytes(entry.getValue(), entry.getKey(), textureExportAdapter);
+						if (imageBytes != null)
+							kmzWriter.addEntry(entryName, imageBytes, getImageMimeType(imageBytes) == null);
+					}
+				}
+			}
+
+			if (writeTexImages && colladaBundle.getTexImages() != null) {
+				for (Entry<String, TextureImage> entry : colladaBundle.getTexImages().entrySet()) {
+					String entryName = getKmzEntryName(colladaBundle, entry.getKey());
+					if (!kmzWriter.containsEntry(entryName)) { // avoid encoding shared images twice
+						byte[] imageBytes = getImageBytes(entry.getKey(), entry.getValue());
+						kmzWriter.addEntry(entryName, imageBytes, getImageMimeType(imageBytes) == null);
+					}
+				}
+			}
+
+			// ----------------- balloon saving -----------------
+			if (colladaBundle.getExternalBalloonFileContent() != null) {
+				kmzWriter.addEntry(entryPath + BalloonTemplateHandlerImpl.balloonDirectoryName + "/" + colladaBundle.getGmlId() + '-' + colladaBundle.getId() + ".html", 
+						colladaBundle.getExternalBalloonFileContent().getBytes(CHARSET), true);
+			}
+		}
 		else {			
 			if (config.getProject().getKmlExporter().isExportAsKmz()) {
 				
 				// export temporarily as kml, it will be later added to kmz if needed
-				File tempFolder = new File(path, TEMP_FOLDER);
+				File tempFolder = new File(path, tracker.getTempFolderName());
 				if (!tempFolder.exists()) {
 					Logger.getInstance().info("Creating temporary folder...");
 					tempFolder.mkdir();
 				}
-				path = path + File.separator + TEMP_FOLDER;
+				path = path + File.separator + tracker.getTempFolderName();
 			}
 
+			// the in-process glTF writer does not need the COLLADA model and the images on disk
+			GltfMesh gltfMesh = colladaBundle.getGltfMesh();
+			GltfWriter gltfBatch = tracker.getGltfBatch();
+			boolean writeColladaModel = gltfMesh == null || !config.getProject().getKmlExporter().isNotCreateColladaFiles();
+			boolean writeTexImages = writeColladaModel || (gltfBatch == null && !config.getProject().getKmlExporter().isEmbedTexturesInGltfFiles());
+
 			// --------------- create subfolder ---------------
 			File buildingDirectory = new File(path, String.valueOf(colladaBundle.getId()));
-			if (!buildingDirectory.exists()) {
+			if (!buildingDirectory.exists() 
+					&& (writeTexImages || gltfBatch == null 
+					|| colladaBundle.getUnsupportedTexImageIds() != null 
+					|| colladaBundle.getExternalBalloonFileContent() != null)) {
 				buildingDirectory.mkdir();
 			}
 
 			// ----------------- model saving -----------------
 			File colladaModelFile = new File(buildingDirectory, colladaBundle.getGmlId() + ".dae");
 			File gltfModelFile = new File(buildingDirectory, colladaBundle.getGmlId() + ".gltf");
-			FileOutputStream fos = new FileOutputStream(colladaModelFile);
-	        colladaMarshaller.marshal(colladaBundle.getCollada(), fos);
-	        fos.close();
-	        
-	        // ----------------- create glTF without embedded textures-----------------
-			if (config.getProject().getKmlExporter().isCreateGltfModel() && !config.getProject().getKmlExporter().isEmbedTexturesInGltfFiles()) {
+			if (writeColladaModel) {
+				FileOutputStream fos = new FileOutputStream(colladaModelFile);
+				colladaMarshaller.marshal(colladaBundle.getCollada(), fos);
+				fos.close();
+			}
+
+			// ----------------- create glTF in-process -----------------
+			if (gltfMesh != null) {
+				boolean embedImages = gltfBatch != null || config.getProject().getKmlExporter().isEmbedTexturesInGltfFiles();
+				addGltfImages(colladaBundle, gltfMesh, embedImages);
+
+				if (gltfBatch != null)
+					gltfBatch.addMesh(gltfMesh);
+				else {
+					boolean binary = config.getProject().getKmlExporter().isCreateGltfBinary();
+					GltfWriter gltfWriter = new GltfWriter();
+					gltfWriter.addMesh(gltfMesh);
+					gltfWriter.write(new File(buildingDirectory, colladaBundle.getGmlId() + (binary ? ".glb" : ".gltf")), binary);
+				}
+
+				colladaBundle.setGltfMesh(null); // free heap space
+			}
+
+			// ----------------- create glTF without embedded textures-----------------
+			else if (config.getProject().getKmlExporter().isCreateGltfModel() && !config.getProject().getKmlExporter().isEmbedTexturesInGltfFiles()) {
 				convertColladaToglTF(colladaBundle, buildingDirectory, colladaModelFile, gltfModelFile);
-			}	        
-	        
+			}
+
 			// ----------------- image saving -----------------
 			if (colladaBundle.getUnsupportedTexImageIds() != null) {
 				Set<String> keySet = colladaBundle.getUnsupportedTexImageIds().keySet();
@@ -584,22 +679,19 @@ public class KmlExporterManager {
 				}
 			}
 
-			if (colladaBundle.getTexImages() != null) {
+			if (writeTexImages && colladaBundle.getTexImages() != null) {
 				Set<String> keySet = colladaBundle.getTexImages().keySet();
 				Iterator<String> iterator = keySet.iterator();
 				while (iterator.hasNext()) {
 					String imageFilename = iterator.next();
-					BufferedImage texImage = colladaBundle.getTexImages().get(imageFilename).getBufferedImage();
-					String imageType = imageFilename.substring(imageFilename.lastIndexOf('.') + 1);
-
 					File imageFile = new File(buildingDirectory, imageFilename);
 					if (!imageFile.exists()) // avoid overwriting and access conflicts
-						ImageIO.write(texImage, imageType, imageFile);					
+						Files.write(imageFile.toPath(), getImageBytes(imageFilename, colladaBundle.getTexImages().get(imageFilename)));
 				}
 			}
 	
 			// ----------------- create glTF with embedded textures-----------------
-			if (config.getProject().getKmlExporter().isCreateGltfModel() && config.getProject().getKmlExporter().isEmbedTexturesInGltfFiles()) {
+			if (gltfMesh == null && config.getProject().getKmlExporter().isCreateGltfModel() && config.getProject().getKmlExporter().isEmbedTexturesInGltfFiles()) {
 				convertColladaToglTF(colladaBundle, buildingDirectory, colladaModelFile, gltfModelFile);
 				if (config.getProject().getKmlExporter().isNotCreateColladaFiles() && gltfModelFile.exists()) {
 					Set<String> keySet = colladaBundle.getTexImages().keySet();
@@ -632,6 +724,123 @@ public class KmlExporterManager {
 		}
 	}
 	
+	private void addGltfImages(ColladaBundle colladaBundle, GltfMesh gltfMesh, boolean embedImages) throws IOException, SQLException {
+		if (colladaBundle.getTexImages() != null) {
+			for (Entry<String, TextureImage> entry : colladaBundle.getTexImages().entrySet()) {
+				String imageFilename = entry.getKey();
+				if (!embedImages) {
+					gltfMesh.addImage(imageFilename, imageFilename.replace('\\', '/'));
+					continue;
+				}
+
+				// glTF only supports JPEG and PNG images, which are copied unchanged
+				byte[] encodedImage = entry.getValue() instanceof EncodedTextureImage ? 
+						((EncodedTextureImage)entry.getValue()).getEncodedImage() : null;
+				String mimeType = encodedImage != null ? getImageMimeType(encodedImage) : null;
+				if (mimeType != null) {
+					gltfMesh.addImage(imageFilename, encodedImage, mimeType);
+					continue;
+				}
+
+				String imageType = imageFilename.substring(imageFilename.lastIndexOf('.') + 1).toLowerCase(Locale.ENGLISH);
+				boolean isJpeg = imageType.equals("jpg") || imageType.equals("jpeg");
+				ByteArrayOutputStream out = new ByteArrayOutputStream();
+				if (!isJpeg || !ImageIO.write(entry.getValue().getBufferedImage(), "jpg", out)) {
+					out.reset();
+					isJpeg = false;
+					ImageIO.write(entry.getValue().getBufferedImage(), "png", out);
+				}
+
+				gltfMesh.addImage(imageFilename, out.toByteArray(), isJpeg ? "image/jpeg" : "image/png");
+			}
+		}
+
+		if (colladaBundle.getUnsupportedTexImageIds() != null) {
+			for (Entry<String, Long> entry : colladaBundle.getUnsupportedTexImageIds().entrySet()) {
+				String imageFilename = entry.getKey();
+				byte[] imageBytes = textureImageCache.getImageBytes(entry.getValue(), imageFilename, textureExportAdapter);
+				String mimeType = imageBytes != null ? getImageMimeType(imageBytes) : null;
+
+				if (mimeType != null) {
+					if (embedImages)
+						gltfMesh.addImage(imageFilename, imageBytes, mimeType);
+					else
+						gltfMesh.addImage(imageFilename, imageFilename.replace('\\', '/'));
+
+					continue;
+				}
+
+				// glTF only supports JPEG and PNG images, so other formats are converted to PNG
+				// and embedded because the original file cannot be referenced by the model
+				BufferedImage image = null;
+				if (imageBytes != null) {
+					try {
+						image = ImageIO.read(new ByteArrayInputStream(imageBytes));
+					} catch (IOException e) {
+						//
+					}
+				}
+
+				ByteArrayOutputStream out = new ByteArrayOutputStream();
+				if (image != null && ImageIO.write(image, "png", out))
+					gltfMesh.addImage(imageFilename, out.toByteArray(), "image/png");
+				else
+					Logger.getInstance().warn("Skipping texture image '" + imageFilename + "' of city object '" 
+							+ colladaBundle.getGmlId() + "' in glTF model: unsupported image format.");
+			}
+		}
+	}
+
+	private byte[] getImageBytes(String imageFilename, TextureImage texImage) throws IOException {
+		// copy the original image if it has not been modified
+		if (texImage instanceof EncodedTextureImage) {
+			byte[] encodedImage = ((EncodedTextureImage)texImage).getEncodedImage();
+			if (encodedImage != null)
+				return encodedImage;
+		}
+
+		String imageType = imageFilename.substring(imageFilename.lastIndexOf('.') + 1);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ImageIO.write(texImage.getBufferedImage(), imageType, out);
+		return out.toByteArray();
+	}
+
+	private String getImageMimeType(byte[] imageBytes) {
+		if (imageBytes.length > 3) {
+			if ((imageBytes[0] & 0xFF) == 0xFF && (imageBytes[1] & 0xFF) == 0xD8)
+				return "image/jpeg";
+			else if ((imageBytes[0] & 0xFF) == 0x89 && imageBytes[1] == 'P' && imageBytes[2] == 'N' && imageBytes[3] == 'G')
+				return "image/png";
+		}
+
+		return null;
+	}
+
+	private String getKmzEntryName(ColladaBundle colladaBundle, String imageFilename) {
+		imageFilename = imageFilename.replace('\\', '/');
+		return imageFilename.startsWith("../") ?
+				imageFilename.substring(3) : // skip .. and File.separator
+					colladaBundle.getId() + "/" + imageFilename;
+	}
+
+	private void putZipEntry(ZipOutputStream zipOut, String name, byte[] data) throws IOException {
+		ZipEntry zipEntry = new ZipEntry(name);
+
+		// JPEG and PNG images are already compressed
+		if (getImageMimeType(data) != null) {
+			CRC32 crc = new CRC32();
+			crc.update(data);
+			zipEntry.setMethod(ZipEntry.STORED);
+			zipEntry.setSize(data.length);
+			zipEntry.setCompressedSize(data.length);
+			zipEntry.setCrc(crc.getValue());
+		}
+
+		zipOut.putNextEntry(zipEntry);
+		zipOut.write(data, 0, data.length);
+		zipOut.closeEntry();
+	}
+
 	private void convertColladaToglTF(ColladaBundle colladaBundle, File buildingDirectory, File colladaModelFile, File gltfModelFile) {
 		String collada2gltfPath = config.getProject().getKmlExporter().getPathOfGltfConverter();
 		File collada2gltfFile = new File(collada2gltfPath);
@@ -31,7 +31,6 @@ import java.awt.Graphics2D;
 import java.awt.RenderingHints;
 import java.awt.Transparency;
 import java.awt.image.BufferedImage;
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.math.BigInteger;
 import java.sql.Connection;
@@ -45,6 +44,7 @@ import java.util.GregorianCalendar;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.StringTokenizer;
 
@@ -76,10 +76,11 @@ import org.citydb.config.project.kmlExporter.KmlExporter;
 import org.citydb.database.adapter.AbstractDatabaseAdapter;
 import org.citydb.database.adapter.BlobExportAdapter;
 import org.citydb.log.Logger;
-import org.citydb.modules.common.event.CounterEvent;
-import org.citydb.modules.common.event.CounterType;
-import org.citydb.modules.common.event.GeometryCounterEvent;
+import org.citydb.modules.common.metrics.Metrics;
 import org.citydb.modules.kml.datatype.TypeAttributeValueEnum;
+import org.citydb.modules.kml.gltf.GltfMesh;
+import org.citydb.modules.kml.util.EncodedTextureImage;
+import org.citydb.modules.kml.util.TextureImageCache;
 import org.citydb.textureAtlas.TextureAtlasCreator;
 import org.citydb.textureAtlas.image.ImageReader;
 import org.citydb.textureAtlas.model.TextureImage;
@@ -151,7 +152,7 @@ public abstract class KmlGenericObject {
 	private final String NO_TEXIMAGE = "default";
 
 	private HashMap<Long, SurfaceInfo> surfaceInfos = new HashMap<Long, SurfaceInfo>();
-	private NodeZ coordinateTree;
+	private VertexIndex vertexIndex = new VertexIndex(TOLERANCE);
 
 	// key is surfaceId, surfaceId is originally a Long, here we use an Object for compatibility with the textureAtlasAPI
 	private HashMap<Object, String> texImageUris = new HashMap<Object, String>();
@@ -165,7 +166,6 @@ public abstract class KmlGenericObject {
 
 	private long id;
 	private String gmlId;
-	private BigInteger vertexIdCounter = new BigInteger("-1");
 	protected VertexInfo firstVertexInfo = null;
 	private VertexInfo lastVertexInfo = null;
 
@@ -188,6 +188,9 @@ public abstract class KmlGenericObject {
 	protected BalloonTemplateHandler balloonTemplateHandler;
 	protected EventDispatcher eventDispatcher;
 	protected Config config;
+	protected Metrics metrics;
+	protected TextureImageCache textureImageCache;
+	protected Map<String, String> balloonCache;
 
 	protected int currentLod;
 	protected DatabaseSrs dbSrs;
@@ -214,6 +217,8 @@ public abstract class KmlGenericObject {
 		this.eventDispatcher = eventDispatcher;
 		this.config = config;
 
+		metrics = Metrics.getInstance();
+		textureImageCache = TextureImageCache.getInstance();
 		this.databaseAdapter = databaseAdapter;
 		geometryConverterAdapter = databaseAdapter.getGeometryConverter();
 		dbSrs = databaseAdapter.getConnectionMetaData().getReferenceSystem();
@@ -239,6 +244,10 @@ public abstract class KmlGenericObject {
 		this.balloonTemplateHandler = balloonTemplateHandler;
 	}
 
+	public void setBalloonCache(Map<String, String> balloonCache) {
+		this.balloonCache = balloonCache;
+	}
+
 	public void setId(long id) {
 		this.id = id;
 	}
@@ -667,64 +676,11 @@ public abstract class KmlGenericObject {
 			// --------------------------- geometry (variable part) ---------------------------
 			SurfaceInfo surfaceInfo = surfaceInfos.get(surfaceId);						
 			List<VertexInfo> vertexInfos = surfaceInfo.getVertexInfos();
-			double[] ordinatesArray = new double[vertexInfos.size() * 3];
-
-			int count = 0;
-			for (VertexInfo vertexInfo : vertexInfos) {
-				ordinatesArray[count++] = vertexInfo.getX() - origin.x;
-				ordinatesArray[count++] = vertexInfo.getY() - origin.y;
-				ordinatesArray[count++] = vertexInfo.getZ() - origin.z;
-			}
-
-			GeometryInfo ginfo = new GeometryInfo(GeometryInfo.POLYGON_ARRAY);
-			ginfo.setCoordinates(ordinatesArray);
-			ginfo.setContourCounts(surfaceInfo.getRingCountAsArray());
-			ginfo.setStripCounts(surfaceInfo.getVertexCount());
-			int outerRingCount = ginfo.getStripCounts()[0];
+			GeometryInfo ginfo = triangulate(surfaceInfo);
 
-			// triangulate the surface geometry
-			ginfo.convertToIndexedTriangles();
-
-			// generate normals
-			NormalGenerator ng = new NormalGenerator();
-			ng.generateNormals(ginfo);
-			
 			int[] indexes = ginfo.getCoordinateIndices();
 			int[] normalIndexes = ginfo.getNormalIndices();			
 			Vector3f[] normals = ginfo.getNormals();
-			
-			// fix a reversed orientation of the triangulated surface 
-			byte[] edges = {0, 1, 1, 2, 2, 0};			
-			boolean hasFound = false;
-			boolean reverse = false;
-
-			for (int i = 0; !hasFound && i < indexes.length; i += 3) {				
-				// skip degenerated triangles
-				if (indexes[i] == indexes[i + 1] || indexes[i + 1] == indexes[i + 2] || indexes[i] == indexes[i + 2])
-					continue;
-
-				// find the first edge on the exterior ring
-				for (int j = 0; j < edges.length; j += 2) {
-					int first = i + edges[j];
-					int second = i + edges[j + 1]; 
-
-					if (indexes[first] < outerRingCount && indexes[second] < outerRingCount && Math.abs(indexes[first] - indexes[second]) == 1) {
-						// ok, we found it. now check the order of the vertex indices
-						hasFound = true;						
-						if (indexes[first] > indexes[second])
-							reverse = true;
-
-						break;
-					}
-				}
-			}
-
-			// reverse indexes and normals
-			if (reverse) {
-				ginfo.reverse();
-				for (int i = 0; i < normals.length; i++)
-					normals[i].negate();
-			}
 
 			// use vertex indices of the triangulation to populate
 			// the vertex arrays in the collada file
@@ -823,6 +779,150 @@ public abstract class KmlGenericObject {
 		return collada;
 	}
 
+	private GeometryInfo triangulate(SurfaceInfo surfaceInfo) {
+		double[] ordinatesArray = new double[surfaceInfo.getVertexInfos().size() * 3];
+
+		int count = 0;
+		for (VertexInfo vertexInfo : surfaceInfo.getVertexInfos()) {
+			ordinatesArray[count++] = vertexInfo.getX() - origin.x;
+			ordinatesArray[count++] = vertexInfo.getY() - origin.y;
+			ordinatesArray[count++] = vertexInfo.getZ() - origin.z;
+		}
+
+		GeometryInfo ginfo = new GeometryInfo(GeometryInfo.POLYGON_ARRAY);
+		ginfo.setCoordinates(ordinatesArray);
+		ginfo.setContourCounts(surfaceInfo.getRingCountAsArray());
+		ginfo.setStripCounts(surfaceInfo.getVertexCount());
+		int outerRingCount = ginfo.getStripCounts()[0];
+
+		// triangulate the surface geometry
+		ginfo.convertToIndexedTriangles();
+
+		// generate normals
+		NormalGenerator ng = new NormalGenerator();
+		ng.generateNormals(ginfo);
+		
+		int[] indexes = ginfo.getCoordinateIndices();
+		Vector3f[] normals = ginfo.getNormals();
+		
+		// fix a reversed orientation of the triangulated surface 
+		byte[] edges = {0, 1, 1, 2, 2, 0};			
+		boolean hasFound = false;
+		boolean reverse = false;
+
+		for (int i = 0; !hasFound && i < indexes.length; i += 3) {				
+			// skip degenerated triangles
+			if (indexes[i] == indexes[i + 1] || indexes[i + 1] == indexes[i + 2] || indexes[i] == indexes[i + 2])
+				continue;
+
+			// find the first edge on the exterior ring
+			for (int j = 0; j < edges.length; j += 2) {
+				int first = i + edges[j];
+				int second = i + edges[j + 1]; 
+
+				if (indexes[first] < outerRingCount && indexes[second] < outerRingCount && Math.abs(indexes[first] - indexes[second]) == 1) {
+					// ok, we found it. now check the order of the vertex indices
+					hasFound = true;						
+					if (indexes[first] > indexes[second])
+						reverse = true;
+
+					break;
+				}
+			}
+		}
+
+		// reverse indexes and normals
+		if (reverse) {
+			ginfo.reverse();
+			for (int i = 0; i < normals.length; i++)
+				normals[i].negate();
+		}
+
+		return ginfo;
+	}
+
+	public GltfMesh generateGltfMesh(boolean georeference) throws SQLException {
+		GltfMesh mesh = new GltfMesh(gmlId);
+		boolean generateNormals = getColladaOptions().isGenerateSurfaceNormals();
+		HashMap<String, GltfMesh.Primitive> primitivesByTexImageName = new HashMap<String, GltfMesh.Primitive>();
+		List<GltfMesh.Primitive> untexturedPrimitives = new ArrayList<GltfMesh.Primitive>();
+
+		for (Long surfaceId : surfaceInfos.keySet()) {
+			String texImageName = texImageUris.get(surfaceId);
+			X3DMaterial x3dMaterial = getX3dMaterial(surfaceId);
+			boolean surfaceTextured = true;
+			if (texImageName == null) {
+				surfaceTextured = false;
+				texImageName = (x3dMaterial != null) ?
+						buildNameFromX3dMaterial(x3dMaterial):
+							NO_TEXIMAGE; // <- should never happen
+			}
+
+			GltfMesh.Primitive primitive = primitivesByTexImageName.get(texImageName);
+			if (primitive == null) {
+				// textured primitives come first like the triangles of the COLLADA model
+				primitive = new GltfMesh.Primitive(replaceExtensionWithSuffix(texImageName, "_mat"), ignoreSurfaceOrientation);
+				if (surfaceTextured) {
+					primitive.setImageName(texImageName);
+					mesh.addPrimitive(primitive);
+				} else {
+					untexturedPrimitives.add(primitive);
+					if (x3dMaterial != null) {
+						Color diffuseColor = x3dMaterial.isSetDiffuseColor() ? x3dMaterial.getDiffuseColor() : new Color(0.8, 0.8, 0.8);
+						double alpha = x3dMaterial.isSetTransparency() ? 1.0 - x3dMaterial.getTransparency() : 1.0;
+						primitive.setBaseColor(diffuseColor.getRed(), diffuseColor.getGreen(), diffuseColor.getBlue(), alpha);
+
+						if (x3dMaterial.isSetEmissiveColor()) {
+							Color emissiveColor = x3dMaterial.getEmissiveColor();
+							primitive.setEmissiveColor(emissiveColor.getRed(), emissiveColor.getGreen(), emissiveColor.getBlue());
+						}
+					}
+				}
+
+				primitivesByTexImageName.put(texImageName, primitive);
+			}
+
+			SurfaceInfo surfaceInfo = surfaceInfos.get(surfaceId);
+			List<VertexInfo> vertexInfos = surfaceInfo.getVertexInfos();
+			GeometryInfo ginfo = triangulate(surfaceInfo);
+
+			int[] indexes = ginfo.getCoordinateIndices();
+			int[] normalIndexes = ginfo.getNormalIndices();
+			Vector3f[] normals = ginfo.getNormals();
+
+			for (int i = 0; i < indexes.length; i++) {
+				VertexInfo vertexInfo = vertexInfos.get(indexes[i]);
+
+				float[] normal = null;
+				if (generateNormals) {
+					Vector3f vector = normals[normalIndexes[i]];
+					normal = new float[]{vector.x, vector.y, vector.z};
+				}
+
+				double[] texCoord = null;
+				if (surfaceTextured) {
+					TexCoords texCoords = vertexInfo.getTexCoords(surfaceId);
+					texCoord = texCoords != null ? new double[]{texCoords.getS(), texCoords.getT()} : new double[2];
+				}
+
+				primitive.addVertex(vertexInfo.getVertexId().longValue(), 
+						reducePrecisionForXorY(vertexInfo.getX() - origin.x),
+						reducePrecisionForXorY(vertexInfo.getY() - origin.y),
+						reducePrecisionForZ(vertexInfo.getZ() - origin.z),
+						normal, 
+						texCoord);
+			}
+		}
+
+		for (GltfMesh.Primitive primitive : untexturedPrimitives)
+			mesh.addPrimitive(primitive);
+
+		if (georeference)
+			mesh.setLocation(location.x, location.y, location.z + reducePrecisionForZ(getZOffset()), getModelHeading());
+
+		return mesh;
+	}
+
 	private String replaceExtensionWithSuffix (String imageName, String suffix) {
 		int indexOfExtension = imageName.lastIndexOf('.');
 		if (indexOfExtension != -1) {
@@ -865,6 +965,11 @@ public abstract class KmlGenericObject {
 		}
 	}
 
+	protected TextureImage readTexImage(long textureImageId, byte[] imageBytes) throws IOException {
+		TextureImage texImage = textureImageCache.readImage(textureImageId, imageBytes, imageReader);
+		return texImage != null ? new EncodedTextureImage(texImage.getBufferedImage(), imageBytes) : null;
+	}
+
 	protected void addTexImage(String texImageUri, TextureImage texImage){
 		if (texImage != null) {
 			texImages.put(texImageUri, texImage);
@@ -912,84 +1017,20 @@ public abstract class KmlGenericObject {
 	}
 
 	protected VertexInfo setVertexInfoForXYZ(long surfaceId, double x, double y, double z){
-		vertexIdCounter = vertexIdCounter.add(BigInteger.ONE);
-		VertexInfo vertexInfo = new VertexInfo(vertexIdCounter, x, y, z);
-		NodeZ nodeToInsert = new NodeZ(z, new NodeY(y, new NodeX(x, vertexInfo)));
-		if (coordinateTree == null) {
-			coordinateTree =  nodeToInsert;
-			firstVertexInfo = vertexInfo;
-			lastVertexInfo = vertexInfo;
-		}
-		else {
-			Node node = insertNode(coordinateTree, nodeToInsert);
-			if (node.value instanceof VertexInfo)
-				vertexInfo = (VertexInfo)node.value;
-		}
-
-		return vertexInfo;
-	}
-
-	private Node insertNode(Node currentBasis, Node nodeToInsert) {
-		int compareKeysResult = compareKeys(nodeToInsert.key, currentBasis.key, TOLERANCE);
-		if (compareKeysResult > 0) {
-			if (currentBasis.rightArc == null){
-				currentBasis.setRightArc(nodeToInsert);
-				linkCurrentVertexInfoToLastVertexInfo(nodeToInsert);
-				return nodeToInsert;
-			}
-			else {
-				return insertNode(currentBasis.rightArc, nodeToInsert);
-			}
-		}
-		else if (compareKeysResult < 0) {
-			if (currentBasis.leftArc == null){
-				currentBasis.setLeftArc(nodeToInsert);
-				linkCurrentVertexInfoToLastVertexInfo(nodeToInsert);
-				return nodeToInsert;
-			}
-			else {
-				return insertNode(currentBasis.leftArc, nodeToInsert);
-			}
-		}
-		else {
-			return replaceOrAddValue(currentBasis, nodeToInsert);
-		}
-	}
+		VertexInfo vertexInfo = vertexIndex.get(x, y, z);
+		if (vertexInfo == null) {
+			vertexInfo = new VertexInfo(BigInteger.valueOf(vertexIndex.size()), x, y, z);
+			vertexIndex.put(vertexInfo);
 
-	private Node replaceOrAddValue(Node currentBasis, Node nodeToInsert) {
-		if (nodeToInsert.value instanceof VertexInfo) {
-			VertexInfo vertexInfoToInsert = (VertexInfo)nodeToInsert.value;
-			if (currentBasis.value == null) { // no vertexInfo yet for this point
-				currentBasis.value = nodeToInsert.value;
-				linkCurrentVertexInfoToLastVertexInfo(vertexInfoToInsert);
-			} else
-				vertexIdCounter = vertexIdCounter.subtract(BigInteger.ONE);
+			if (firstVertexInfo == null)
+				firstVertexInfo = vertexInfo;
+			else
+				lastVertexInfo.setNextVertexInfo(vertexInfo);
 
-			return currentBasis;
-		}
-		else { // Node
-			return insertNode((Node)currentBasis.value, (Node)nodeToInsert.value);
-		}
-	}
-
-	private void linkCurrentVertexInfoToLastVertexInfo (Node node) {
-		while (!(node.value instanceof VertexInfo)) {
-			node = (Node)node.value;
+			lastVertexInfo = vertexInfo;
 		}
-		linkCurrentVertexInfoToLastVertexInfo((VertexInfo)node.value);
-	}
 
-	private void linkCurrentVertexInfoToLastVertexInfo (VertexInfo currentVertexInfo) {
-		lastVertexInfo.setNextVertexInfo(currentVertexInfo);
-		lastVertexInfo = currentVertexInfo;
-	}
-
-	private int compareKeys (double key1, double key2, double tolerance){
-		int result = 0;
-		if (Math.abs(key1 - key2) > tolerance) {
-			result = key1 > key2 ? 1 : -1;
-		}
-		return result;
+		return vertexInfo;
 	}
 
 	public void appendObject (KmlGenericObject objectToAppend) {
@@ -1361,7 +1402,7 @@ public abstract class KmlGenericObject {
 			Object buildingGeometryObj = rs.getObject(1); 
 
 			if (!rs.wasNull() && buildingGeometryObj != null) {
-				eventDispatcher.triggerEvent(new GeometryCounterEvent(null, this));
+				metrics.updateGeometryObjectCounter(1);
 
 				GeometryObject groundSurface = convertToWGS84(geometryConverterAdapter.getGeometry(buildingGeometryObj));
 				if (groundSurface.getGeometryType() != GeometryType.POLYGON && groundSurface.getGeometryType() != GeometryType.MULTI_POLYGON)
@@ -1423,7 +1464,7 @@ public abstract class KmlGenericObject {
 			Object buildingGeometryObj = rs.getObject(1); 
 
 			if (!rs.wasNull() && buildingGeometryObj != null) {
-				eventDispatcher.triggerEvent(new GeometryCounterEvent(null, this));
+				metrics.updateGeometryObjectCounter(1);
 
 				GeometryObject groundSurface = convertToWGS84(geometryConverterAdapter.getGeometry(buildingGeometryObj));
 				if (groundSurface.getGeometryType() != GeometryType.POLYGON && groundSurface.getGeometryType() != GeometryType.MULTI_POLYGON)
@@ -1520,7 +1561,7 @@ public abstract class KmlGenericObject {
 
 			GeometryObject surface = convertToWGS84(geometryConverterAdapter.getPolygon(buildingGeometryObj));
 
-			eventDispatcher.triggerEvent(new GeometryCounterEvent(null, this));
+			metrics.updateGeometryObjectCounter(1);
 
 			polygon = kmlFactory.createPolygonType();
 			switch (config.getProject().getKmlExporter().getAltitudeMode()) {
@@ -1687,7 +1728,6 @@ public abstract class KmlGenericObject {
 	protected void fillGenericObjectForCollada(ResultSet rs, boolean generateTextureAtlas) throws SQLException {
 
 		String selectedTheme = config.getProject().getKmlExporter().getAppearanceTheme();
-		int texImageCounter = 0;
 		
 		DisplayForm colladaDisplayForm = null;
 		for (DisplayForm displayForm: getDisplayForms()) {
@@ -1752,7 +1792,7 @@ public abstract class KmlGenericObject {
 						}
 
 						// from here on it is an elementary surfaceMember
-						eventDispatcher.triggerEvent(new GeometryCounterEvent(null, this));
+						metrics.updateGeometryObjectCounter(1);
 
 						String texImageUri = null;
 						StringTokenizer texCoordsTokenized = null;
@@ -1818,22 +1858,18 @@ public abstract class KmlGenericObject {
 									if ((getUnsupportedTexImageId(texImageUri) == -1) && (getTexImage(texImageUri) == null)) { 
 										// not already marked as wrapping texture && not already read in
 										TextureImage texImage = null;
-										byte[] imageBytes = textureExportAdapter.getInByteArray(textureImageId, texImageUri);
+										byte[] imageBytes = textureImageCache.getImageBytes(textureImageId, texImageUri, textureExportAdapter);
 										if (imageBytes != null) {
 											imageReader.setSupportRGB(generateTextureAtlas);
 											try {
-												texImage = imageReader.read(new ByteArrayInputStream(imageBytes));
+												texImage = readTexImage(textureImageId, imageBytes);
 
 												if (texImage != null) // image in JPEG, PNG or another usual format
 													addTexImage(texImageUri, texImage);
 												else
 													addUnsupportedTexImageId(texImageUri, textureImageId);
 
-												texImageCounter++;
-												if (texImageCounter > 20) {
-													eventDispatcher.triggerEvent(new CounterEvent(CounterType.TEXTURE_IMAGE, texImageCounter, this));
-													texImageCounter = 0;
-												}
+												metrics.updateTextureImageCounter(1);
 											} catch (IOException ioe) {
 												//
 											}
@@ -1916,9 +1952,6 @@ public abstract class KmlGenericObject {
 				}
 			}
 		}
-
-		// count rest images
-		eventDispatcher.triggerEvent(new CounterEvent(CounterType.TEXTURE_IMAGE, texImageCounter, this));
 	}
 
 	public PlacemarkType createPlacemarkForColladaModel() throws SQLException {
@@ -1963,18 +1996,8 @@ public abstract class KmlGenericObject {
 		location.setAltitude(this.location.z + reducePrecisionForZ(getZOffset()));
 		model.setLocation(location);
 
-		// correct heading value
-		double lat1 = Math.toRadians(this.location.y);
-		double[] dummy = convertPointCoordinatesToWGS84(new double[] {origin.x, origin.y - 20, origin.z});
-		double lat2 = Math.toRadians(dummy[1]);
-		double dLon = Math.toRadians(dummy[0] - this.location.x);
-		double y = Math.sin(dLon) * Math.cos(lat2);
-		double x = Math.cos(lat1)*Math.sin(lat2) - Math.sin(lat1)*Math.cos(lat2)*Math.cos(dLon);
-		double bearing = Math.toDegrees(Math.atan2(y, x));
-		bearing = (bearing + 180) % 360;
-
 		OrientationType orientation = kmlFactory.createOrientationType();
-		orientation.setHeading(reducePrecisionForZ(bearing));
+		orientation.setHeading(reducePrecisionForZ(getModelHeading()));
 		model.setOrientation(orientation);
 
 		LinkType link = kmlFactory.createLinkType();
@@ -1995,6 +2018,18 @@ public abstract class KmlGenericObject {
 	}
 
 
+	protected double getModelHeading() throws SQLException {
+		// correct heading value
+		double lat1 = Math.toRadians(this.location.y);
+		double[] dummy = convertPointCoordinatesToWGS84(new double[] {origin.x, origin.y - 20, origin.z});
+		double lat2 = Math.toRadians(dummy[1]);
+		double dLon = Math.toRadians(dummy[0] - this.location.x);
+		double y = Math.sin(dLon) * Math.cos(lat2);
+		double x = Math.cos(lat1)*Math.sin(lat2) - Math.sin(lat1)*Math.cos(lat2)*Math.cos(dLon);
+		double bearing = Math.toDegrees(Math.atan2(y, x));
+		return (bearing + 180) % 360;
+	}
+
 	protected List<PlacemarkType> createPlacemarksForHighlighting(KmlSplittingResult work) throws SQLException {
 
 		List<PlacemarkType> placemarkList= new ArrayList<PlacemarkType>();
@@ -2150,6 +2185,23 @@ public abstract class KmlGenericObject {
 	}
 
 	protected void addBalloonContents(PlacemarkType placemark, long id) {
+		// the display forms of an object share the same balloon
+		String key = id + ":" + currentLod;
+		String description = null;
+
+		if (balloonCache != null && balloonCache.containsKey(key))
+			description = balloonCache.get(key);
+		else {
+			description = getBalloonContents(id);
+			if (balloonCache != null)
+				balloonCache.put(key, description);
+		}
+
+		if (description != null)
+			placemark.setDescription(description);
+	}
+
+	private String getBalloonContents(long id) {
 		try {
 			switch (getBalloonSettings().getBalloonContentMode()) {
 			case GEN_ATTRIB:
@@ -2158,24 +2210,24 @@ public abstract class KmlGenericObject {
 					if (getBalloonTemplateHandler() == null) { // just in case
 						setBalloonTemplateHandler(databaseAdapter.getBalloonTemplateHandler(balloonTemplate));
 					}
-					placemark.setDescription(getBalloonTemplateHandler().getBalloonContent(balloonTemplate, id, currentLod, connection));
+					return getBalloonTemplateHandler().getBalloonContent(balloonTemplate, id, currentLod, connection);
 				}
 				break;
 			case GEN_ATTRIB_AND_FILE:
 				balloonTemplate = getBalloonContentFromGenericAttribute(id);
 				if (balloonTemplate != null) {
-					placemark.setDescription(getBalloonTemplateHandler().getBalloonContent(balloonTemplate, id, currentLod, connection));
-					break;
+					return getBalloonTemplateHandler().getBalloonContent(balloonTemplate, id, currentLod, connection);
 				}
 			case FILE :
 				if (getBalloonTemplateHandler() != null) {
-					getBalloonTemplateHandler().getBalloonContent(id, currentLod, connection);
-					placemark.setDescription(getBalloonTemplateHandler().getBalloonContent(id, currentLod, connection));
+					return getBalloonTemplateHandler().getBalloonContent(id, currentLod, connection);
 				}
 				break;
 			}
 		}
 		catch (Exception e) { } // invalid balloons are silently discarded
+
+		return null;
 	}
 
 	protected void fillX3dMaterialValues (X3DMaterial x3dMaterial, ResultSet rs) throws SQLException {
@@ -2423,49 +2475,4 @@ public abstract class KmlGenericObject {
 		return convertedGeomObj;
 	}
 
-	protected class Node{
-		double key;
-		Object value;
-		Node rightArc;
-		Node leftArc;
-
-		protected Node(double key, Object value){
-			this.key = key;
-			this.value = value;
-		}
-
-		protected void setLeftArc(Node leftArc) {
-			this.leftArc = leftArc;
-		}
-
-		protected Node getLeftArc() {
-			return leftArc;
-		}
-
-		protected void setRightArc (Node rightArc) {
-			this.rightArc = rightArc;
-		}
-
-		protected Node getRightArc() {
-			return rightArc;
-		}
-	}
-
-	protected class NodeX extends Node{
-		protected NodeX(double key, Object value){
-			super(key, value);
-		}
-	}
-	protected class NodeY extends Node{
-		protected NodeY(double key, Object value){
-			super(key, value);
-		}
-	}
-	protected class NodeZ extends Node{
-		protected NodeZ(double key, Object value){
-			super(key, value);
-		}
-	}
-
-
 }
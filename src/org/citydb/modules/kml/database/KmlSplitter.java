@@ -32,6 +32,7 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.HashSet;
+import java.util.List;
 
 import org.citydb.api.concurrent.WorkerPool;
 import org.citydb.api.database.DatabaseSrs;
@@ -57,7 +58,7 @@ import org.citygml4j.model.gml.geometry.primitives.Envelope;
 public class KmlSplitter {
 	private final HashSet<CityGMLClass> CURRENTLY_ALLOWED_CITY_OBJECT_TYPES = new HashSet<CityGMLClass>();
 	private final WorkerPool<KmlSplittingResult> dbWorkerPool;
-	private final DisplayForm displayForm;
+	private final List<DisplayForm> displayForms;
 	private final ExportFilter exportFilter;
 	private ExportFilterConfig filterConfig;
 	private volatile boolean shouldRun = true;
@@ -69,11 +70,11 @@ public class KmlSplitter {
 	public KmlSplitter(DatabaseConnectionPool dbConnectionPool, 
 			WorkerPool<KmlSplittingResult> dbWorkerPool,
 			ExportFilter exportFilter, 
-			DisplayForm displayForm,
+			List<DisplayForm> displayForms,
 			Config config) throws SQLException {
 		this.dbWorkerPool = dbWorkerPool;
 		this.exportFilter = exportFilter;
-		this.displayForm = displayForm;
+		this.displayForms = displayForms;
 		this.filterConfig = config.getProject().getKmlExporter().getFilter();
 		
 		CURRENTLY_ALLOWED_CITY_OBJECT_TYPES.clear();
@@ -284,7 +285,7 @@ public class KmlSplitter {
 			cityObject4Json.setEnvelope(getEnvelopeInWGS84(envelope));
 			
 			// put on work queue
-			KmlSplittingResult splitter = new KmlSplittingResult(id, gmlId, cityObjectType, cityObject4Json, displayForm);
+			KmlSplittingResult splitter = new KmlSplittingResult(id, gmlId, cityObjectType, cityObject4Json, displayForms);
 			dbWorkerPool.addWork(splitter);
 
 			if (splitter.isCityObjectGroup()) {
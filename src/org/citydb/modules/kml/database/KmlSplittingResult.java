@@ -27,6 +27,9 @@
  */
 package org.citydb.modules.kml.database;
 
+import java.util.Collections;
+import java.util.List;
+
 import org.citydb.config.project.kmlExporter.DisplayForm;
 import org.citydb.modules.kml.util.CityObject4JSON;
 import org.citygml4j.model.citygml.CityGMLClass;
@@ -36,6 +39,7 @@ public class KmlSplittingResult {
 	private long id;
 	private String gmlId;
 	private DisplayForm displayForm;
+	private List<DisplayForm> displayForms;
 	private CityGMLClass cityObjectType;
 	private CityObject4JSON json;
 
@@ -45,6 +49,12 @@ public class KmlSplittingResult {
 		this.setCityObjectType(cityObjectType);
 		this.setDisplayForm(displayForm);
 		this.setJson(json);
+		displayForms = Collections.singletonList(displayForm);
+	}
+
+	public KmlSplittingResult(long id, String gmlId, CityGMLClass cityObjectType, CityObject4JSON json, List<DisplayForm> displayForms) {
+		this(id, gmlId, cityObjectType, json, displayForms.get(0));
+		this.displayForms = displayForms;
 	}
 
 	public long getId() {
@@ -71,6 +81,10 @@ public class KmlSplittingResult {
 		return displayForm;
 	}
 
+	public List<DisplayForm> getDisplayForms() {
+		return displayForms;
+	}
+
 	public CityGMLClass getCityObjectType() {
 		return cityObjectType;
 	}
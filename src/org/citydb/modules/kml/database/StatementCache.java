@@ -0,0 +1,454 @@
+/*
+ * 3D City Database - The Open Source CityGML Database
+ * http://www.3dcitydb.org/
+ * 
+ * Copyright 2013 - 2016
+ * Chair of Geoinformatics
+ * Technical University of Munich, Germany
+ * https://www.gis.bgu.tum.de/
+ * 
+ * The 3D City Database is jointly developed with the following
+ * cooperation partners:
+ * 
+ * virtualcitySYSTEMS GmbH, Berlin <http://www.virtualcitysystems.de/>
+ * M.O.S.S. Computer Grafik Systeme GmbH, Taufkirchen <http://www.moss.de/>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.citydb.modules.kml.database;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.ParameterMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Keeps the prepared statements of the KML readers open for the lifetime of
+ * an export worker. The readers use the connection returned by {@link #getConnection()}
+ * and close their statements as usual; a closed statement is handed out again the
+ * next time the same SQL text is prepared. Every checkout is wrapped in its own
+ * handle, so closing a handle twice does not release a statement that has been
+ * handed out again. The cache is bounded and evicts the least recently used
+ * statement. Instances are not thread-safe and must be confined to the thread
+ * that owns the underlying connection.
+ * 
+ * Between {@link #beginObject()} and {@link #endObject()}, the rows of every
+ * select query are kept in memory and replayed if the same query is executed
+ * again with the same parameters. This way, the display forms of an object
+ * share the geometry and balloon queries of this object. Any other statement
+ * executed in between discards the kept rows.
+ */
+public class StatementCache {
+	private final Connection connection;
+	private final Connection proxy;
+	private final LinkedHashMap<String, CachedStatement> statements;
+
+	private Map<String, CachedResult> results;
+	private long hits;
+	private long misses;
+	private long resultHits;
+
+	public StatementCache(Connection connection, final int maxSize) {
+		this.connection = connection;
+
+		statements = new LinkedHashMap<String, CachedStatement>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, CachedStatement> eldest) {
+				if (size() > maxSize) {
+					eldest.getValue().evict();
+					return true;
+				}
+
+				return false;
+			}
+		};
+
+		proxy = (Connection)Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class}, new InvocationHandler() {
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+				if (method.getName().equals("prepareStatement") && args != null) {
+					if (args.length == 1)
+						return prepareStatement((String)args[0], ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+					else if (args.length == 3 && method.getParameterTypes()[1] == int.class)
+						return prepareStatement((String)args[0], (Integer)args[1], (Integer)args[2]);
+				}
+
+				return invokeTarget(StatementCache.this.connection, method, args);
+			}
+		});
+	}
+
+	public Connection getConnection() {
+		return proxy;
+	}
+
+	public long getHits() {
+		return hits;
+	}
+
+	public long getMisses() {
+		return misses;
+	}
+
+	public long getResultHits() {
+		return resultHits;
+	}
+
+	public void beginObject() {
+		results = new HashMap<String, CachedResult>();
+	}
+
+	public void endObject() {
+		results = null;
+	}
+
+	public void close() {
+		for (CachedStatement statement : statements.values())
+			statement.evict();
+
+		statements.clear();
+	}
+
+	private PreparedStatement prepareStatement(String sql, int resultSetType, int resultSetConcurrency) throws SQLException {
+		String key = new StringBuilder().append(resultSetType).append(':').append(resultSetConcurrency).append(':').append(sql).toString();
+
+		CachedStatement statement = statements.get(key);
+		if (statement != null && !statement.inUse) {
+			hits++;
+			return statement.checkout();
+		}
+
+		misses++;
+		PreparedStatement preparedStatement = connection.prepareStatement(sql, resultSetType, resultSetConcurrency);
+
+		// the cached statement is still in use by an enclosing query,
+		// so hand out a statement that is closed on release
+		if (statement != null) {
+			CachedStatement uncached = new CachedStatement(preparedStatement, sql);
+			uncached.evicted = true;
+			return uncached.checkout();
+		}
+
+		statement = new CachedStatement(preparedStatement, sql);
+		statements.put(key, statement);
+		return statement.checkout();
+	}
+
+	private ResultSet executeQuery(CachedStatement cached, Map<Integer, Object> parameters) throws SQLException {
+		if (!cached.isQuery) {
+			// statements changing the database invalidate the kept rows
+			results.clear();
+			return cached.statement.executeQuery();
+		}
+
+		// queries with parameters other than numbers and strings are not kept
+		String key = getResultKey(cached.sql, parameters);
+		if (key == null)
+			return cached.statement.executeQuery();
+
+		CachedResult result = results.get(key);
+		if (result == null) {
+			ResultSet rs = cached.statement.executeQuery();
+			try {
+				result = new CachedResult(rs);
+			} finally {
+				rs.close();
+			}
+
+			results.put(key, result);
+		} else
+			resultHits++;
+
+		return result.open();
+	}
+
+	private String getResultKey(String sql, Map<Integer, Object> parameters) {
+		StringBuilder key = new StringBuilder(sql);
+		for (Map.Entry<Integer, Object> entry : parameters.entrySet()) {
+			Object value = entry.getValue();
+			if (value != null && !(value instanceof Number) && !(value instanceof String))
+				return null;
+
+			key.append('\n').append(entry.getKey()).append('=').append(value);
+		}
+
+		return key.toString();
+	}
+
+	private static Object invokeTarget(Object target, Method method, Object[] args) throws Throwable {
+		try {
+			return method.invoke(target, args);
+		} catch (InvocationTargetException e) {
+			throw e.getCause();
+		}
+	}
+
+	private final class CachedStatement {
+		private final PreparedStatement statement;
+		private final String sql;
+		private final boolean isQuery;
+		private ParameterMetaData parameterMetaData;
+		private boolean inUse;
+		private boolean evicted;
+
+		private CachedStatement(PreparedStatement statement, String sql) {
+			this.statement = statement;
+			this.sql = sql;
+
+			String prefix = sql.trim().toLowerCase(Locale.ENGLISH);
+			isQuery = prefix.startsWith("select") || prefix.startsWith("with");
+		}
+
+		private PreparedStatement checkout() {
+			inUse = true;
+			return (PreparedStatement)Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(), new Class<?>[]{PreparedStatement.class}, new Handle(this));
+		}
+
+		private void release() throws SQLException {
+			inUse = false;
+			if (evicted)
+				statement.close();
+		}
+
+		private void evict() {
+			evicted = true;
+			if (!inUse) {
+				try {
+					statement.close();
+				} catch (SQLException e) {
+					//
+				}
+			}
+		}
+	}
+
+	private final class Handle implements InvocationHandler {
+		private final CachedStatement cached;
+		private final Map<Integer, Object> parameters = new TreeMap<Integer, Object>();
+		private boolean closed;
+
+		private Handle(CachedStatement cached) {
+			this.cached = cached;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			String name = method.getName();
+
+			if (name.equals("close")) {
+				// only the first close of this checkout releases the statement
+				if (!closed) {
+					closed = true;
+					cached.release();
+				}
+
+				return null;
+			}
+
+			if (name.equals("isClosed"))
+				return closed || cached.statement.isClosed();
+
+			if (closed && method.getDeclaringClass() != Object.class)
+				throw new SQLException("The statement has already been closed.");
+
+			if (name.equals("getParameterMetaData")) {
+				if (cached.parameterMetaData == null)
+					cached.parameterMetaData = cached.statement.getParameterMetaData();
+
+				return cached.parameterMetaData;
+			}
+
+			if (results != null) {
+				if (name.equals("executeQuery") && args == null)
+					return StatementCache.this.executeQuery(cached, parameters);
+
+				if (name.startsWith("set") && args != null && args.length == 2 && args[0] instanceof Integer)
+					parameters.put((Integer)args[0], args[1]);
+				else if (name.equals("clearParameters"))
+					parameters.clear();
+				else if (name.startsWith("execute"))
+					results.clear();
+			}
+
+			return invokeTarget(cached.statement, method, args);
+		}
+	}
+
+	private static final class CachedResult {
+		private final ResultSetMetaData metaData;
+		private final Map<String, Integer> columns = new HashMap<String, Integer>();
+		private final List<Object[]> rows = new ArrayList<Object[]>();
+
+		private CachedResult(ResultSet rs) throws SQLException {
+			metaData = rs.getMetaData();
+			int columnCount = metaData.getColumnCount();
+			int[] types = new int[columnCount];
+
+			for (int i = 1; i <= columnCount; i++) {
+				String label = metaData.getColumnLabel(i).toLowerCase(Locale.ENGLISH);
+				if (!columns.containsKey(label))
+					columns.put(label, i);
+
+				types[i - 1] = metaData.getColumnType(i);
+			}
+
+			while (rs.next()) {
+				Object[] row = new Object[columnCount];
+				for (int i = 1; i <= columnCount; i++) {
+					switch (types[i - 1]) {
+					case Types.DATE:
+					case Types.TIME:
+					case Types.TIMESTAMP:
+						row[i - 1] = rs.getTimestamp(i);
+						break;
+					case Types.CHAR:
+					case Types.VARCHAR:
+					case Types.LONGVARCHAR:
+					case Types.NCHAR:
+					case Types.NVARCHAR:
+					case Types.CLOB:
+					case Types.NCLOB:
+						row[i - 1] = rs.getString(i);
+						break;
+					default:
+						row[i - 1] = rs.getObject(i);
+					}
+				}
+
+				rows.add(row);
+			}
+		}
+
+		private ResultSet open() {
+			return (ResultSet)Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[]{ResultSet.class}, new ResultHandle(this));
+		}
+	}
+
+	private static final class ResultHandle implements InvocationHandler {
+		private final CachedResult result;
+		private int row = -1;
+		private boolean wasNull;
+		private boolean closed;
+
+		private ResultHandle(CachedResult result) {
+			this.result = result;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			String name = method.getName();
+
+			if (method.getDeclaringClass() == Object.class) {
+				if (name.equals("equals"))
+					return proxy == args[0];
+				else if (name.equals("hashCode"))
+					return System.identityHashCode(proxy);
+				else
+					return "CachedResultSet";
+			}
+
+			if (name.equals("close")) {
+				closed = true;
+				return null;
+			}
+
+			if (name.equals("isClosed"))
+				return closed;
+
+			if (closed)
+				throw new SQLException("The result set has already been closed.");
+
+			int size = result.rows.size();
+			if (name.equals("next")) {
+				if (row < size)
+					row++;
+
+				return row < size;
+			} else if (name.equals("isBeforeFirst"))
+				return row < 0 && size > 0;
+			else if (name.equals("beforeFirst")) {
+				row = -1;
+				return null;
+			} else if (name.equals("getRow"))
+				return row >= 0 && row < size ? row + 1 : 0;
+			else if (name.equals("wasNull"))
+				return wasNull;
+			else if (name.equals("getMetaData"))
+				return result.metaData;
+			else if (name.equals("findColumn"))
+				return findColumn((String)args[0]);
+			else if (name.startsWith("get") && args != null && args.length == 1)
+				return getValue(name, args[0] instanceof Integer ? (Integer)args[0] : findColumn((String)args[0]));
+
+			throw new SQLFeatureNotSupportedException("Method " + name + " is not supported by cached result sets.");
+		}
+
+		private int findColumn(String label) throws SQLException {
+			Integer index = result.columns.get(label.toLowerCase(Locale.ENGLISH));
+			if (index == null)
+				throw new SQLException("Invalid column name '" + label + "'.");
+
+			return index;
+		}
+
+		private Object getValue(String name, int column) throws SQLException {
+			if (row < 0 || row >= result.rows.size())
+				throw new SQLException("The result set is not positioned on a row.");
+
+			Object value = result.rows.get(row)[column - 1];
+			wasNull = value == null;
+
+			if (name.equals("getObject"))
+				return value;
+			else if (name.equals("getString"))
+				return value == null ? null : value instanceof BigDecimal ? ((BigDecimal)value).toPlainString() : value.toString();
+			else if (name.equals("getTimestamp"))
+				return value == null || value instanceof Timestamp ? value : new Timestamp(((Date)value).getTime());
+
+			Number number = value == null ? 0 : value instanceof Number ? (Number)value : new BigDecimal(value.toString());
+			if (name.equals("getLong"))
+				return number.longValue();
+			else if (name.equals("getInt"))
+				return number.intValue();
+			else if (name.equals("getDouble"))
+				return number.doubleValue();
+			else if (name.equals("getFloat"))
+				return number.floatValue();
+			else if (name.equals("getShort"))
+				return number.shortValue();
+
+			throw new SQLFeatureNotSupportedException("Method " + name + " is not supported by cached result sets.");
+		}
+	}
+
+}
@@ -48,7 +48,6 @@ import org.citydb.config.project.kmlExporter.DisplayForm;
 import org.citydb.database.adapter.AbstractDatabaseAdapter;
 import org.citydb.database.adapter.BlobExportAdapter;
 import org.citydb.log.Logger;
-import org.citydb.modules.common.event.GeometryCounterEvent;
 
 import net.opengis.kml._2.AltitudeModeEnumType;
 import net.opengis.kml._2.LineStringType;
@@ -314,7 +313,7 @@ public class Transportation extends KmlGenericObject{
 			Object buildingGeometryObj = rs.getObject(1); 
 			if (!rs.wasNull() && buildingGeometryObj != null) {
 				GeometryObject pointOrCurveGeometry = geometryConverterAdapter.getGeometry(buildingGeometryObj);
-				eventDispatcher.triggerEvent(new GeometryCounterEvent(null, this));
+				metrics.updateGeometryObjectCounter(1);
 
 				if (pointOrCurveGeometry.getGeometryType() == GeometryType.POINT) { // point
 					double[] ordinatesArray = pointOrCurveGeometry.getCoordinates(0);
@@ -0,0 +1,152 @@
+/*
+ * 3D City Database - The Open Source CityGML Database
+ * http://www.3dcitydb.org/
+ * 
+ * Copyright 2013 - 2016
+ * Chair of Geoinformatics
+ * Technical University of Munich, Germany
+ * https://www.gis.bgu.tum.de/
+ * 
+ * The 3D City Database is jointly developed with the following
+ * cooperation partners:
+ * 
+ * virtualcitySYSTEMS GmbH, Berlin <http://www.virtualcitysystems.de/>
+ * M.O.S.S. Computer Grafik Systeme GmbH, Taufkirchen <http://www.moss.de/>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.citydb.modules.kml.database;
+
+/**
+ * Open addressing hash index for vertices. Coordinates are snapped to a grid 
+ * whose cells are twice as wide as the tolerance. Two vertices are considered 
+ * equal if they differ by at most the tolerance in each coordinate, so a 
+ * lookup only needs to probe the cell of the vertex and the neighbouring 
+ * cells on the side closer to it.
+ */
+class VertexIndex {
+	private final double tolerance;
+	private final double scale;
+
+	private long[] cellX;
+	private long[] cellY;
+	private long[] cellZ;
+	private VertexInfo[] vertexInfos;
+	private int mask;
+	private int size;
+
+	VertexIndex(double tolerance) {
+		this.tolerance = tolerance;
+		scale = 1 / (2 * tolerance);
+		allocate(64);
+	}
+
+	VertexInfo get(double x, double y, double z) {
+		double sx = x * scale;
+		double sy = y * scale;
+		double sz = z * scale;
+
+		long cx = (long)Math.floor(sx);
+		long cy = (long)Math.floor(sy);
+		long cz = (long)Math.floor(sz);
+
+		// neighbouring cell that may contain vertices within the tolerance
+		long nx = sx - cx < 0.5 ? cx - 1 : cx + 1;
+		long ny = sy - cy < 0.5 ? cy - 1 : cy + 1;
+		long nz = sz - cz < 0.5 ? cz - 1 : cz + 1;
+
+		for (int i = 0; i < 8; i++) {
+			VertexInfo vertexInfo = get((i & 1) == 0 ? cx : nx, 
+					(i & 2) == 0 ? cy : ny, 
+					(i & 4) == 0 ? cz : nz, 
+					x, y, z);
+
+			if (vertexInfo != null)
+				return vertexInfo;
+		}
+
+		return null;
+	}
+
+	void put(VertexInfo vertexInfo) {
+		if (2 * (size + 1) > vertexInfos.length)
+			resize();
+
+		insert((long)Math.floor(vertexInfo.getX() * scale), 
+				(long)Math.floor(vertexInfo.getY() * scale),
+				(long)Math.floor(vertexInfo.getZ() * scale),
+				vertexInfo);
+
+		size++;
+	}
+
+	int size() {
+		return size;
+	}
+
+	private VertexInfo get(long cx, long cy, long cz, double x, double y, double z) {
+		// a cell may hold several vertices, so check all entries up to the next free slot
+		for (int slot = hash(cx, cy, cz) & mask; vertexInfos[slot] != null; slot = (slot + 1) & mask) {
+			if (cellX[slot] == cx && cellY[slot] == cy && cellZ[slot] == cz) {
+				VertexInfo vertexInfo = vertexInfos[slot];
+				if (Math.abs(vertexInfo.getX() - x) <= tolerance
+						&& Math.abs(vertexInfo.getY() - y) <= tolerance
+						&& Math.abs(vertexInfo.getZ() - z) <= tolerance)
+					return vertexInfo;
+			}
+		}
+
+		return null;
+	}
+
+	private void insert(long cx, long cy, long cz, VertexInfo vertexInfo) {
+		int slot = hash(cx, cy, cz) & mask;
+		while (vertexInfos[slot] != null)
+			slot = (slot + 1) & mask;
+
+		cellX[slot] = cx;
+		cellY[slot] = cy;
+		cellZ[slot] = cz;
+		vertexInfos[slot] = vertexInfo;
+	}
+
+	private void resize() {
+		long[] oldCellX = cellX;
+		long[] oldCellY = cellY;
+		long[] oldCellZ = cellZ;
+		VertexInfo[] oldVertexInfos = vertexInfos;
+
+		allocate(oldVertexInfos.length << 1);
+		for (int i = 0; i < oldVertexInfos.length; i++) {
+			if (oldVertexInfos[i] != null)
+				insert(oldCellX[i], oldCellY[i], oldCellZ[i], oldVertexInfos[i]);
+		}
+	}
+
+	private void allocate(int capacity) {
+		cellX = new long[capacity];
+		cellY = new long[capacity];
+		cellZ = new long[capacity];
+		vertexInfos = new VertexInfo[capacity];
+		mask = capacity - 1;
+	}
+
+	private int hash(long cx, long cy, long cz) {
+		long h = cx * 0x9E3779B97F4A7C15L;
+		h = (h ^ cy) * 0xC2B2AE3D27D4EB4FL;
+		h = (h ^ cz) * 0x165667B19E3779F9L;
+		h ^= h >>> 29;
+		return (int)(h ^ (h >>> 32));
+	}
+
+}
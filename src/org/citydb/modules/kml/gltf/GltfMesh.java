@@ -0,0 +1,298 @@
+/*
+ * 3D City Database - The Open Source CityGML Database
+ * http://www.3dcitydb.org/
+ * 
+ * Copyright 2013 - 2016
+ * Chair of Geoinformatics
+ * Technical University of Munich, Germany
+ * https://www.gis.bgu.tum.de/
+ * 
+ * The 3D City Database is jointly developed with the following
+ * cooperation partners:
+ * 
+ * virtualcitySYSTEMS GmbH, Berlin <http://www.virtualcitysystems.de/>
+ * M.O.S.S. Computer Grafik Systeme GmbH, Taufkirchen <http://www.moss.de/>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.citydb.modules.kml.gltf;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * Triangle mesh of a KML/COLLADA object group in the layout required by 
+ * glTF 2.0. Vertices are stored per primitive and are de-duplicated on 
+ * their position, normal and texture coordinates. Coordinates are kept 
+ * relative to the origin of the object group with the z axis pointing up, 
+ * the conversion to the y-up convention of glTF is done by {@link GltfWriter}.
+ */
+public class GltfMesh {
+	private final String name;
+	private final List<Primitive> primitives = new ArrayList<Primitive>();
+	private final LinkedHashMap<String, Image> images = new LinkedHashMap<String, Image>();
+
+	private boolean isGeoreferenced;
+	private double longitude;
+	private double latitude;
+	private double altitude;
+	private double heading;
+
+	public GltfMesh(String name) {
+		this.name = name;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public void addPrimitive(Primitive primitive) {
+		primitives.add(primitive);
+	}
+
+	public List<Primitive> getPrimitives() {
+		return primitives;
+	}
+
+	public boolean isEmpty() {
+		for (Primitive primitive : primitives) {
+			if (primitive.indexCount > 0)
+				return false;
+		}
+
+		return true;
+	}
+
+	public void addImage(String imageName, byte[] data, String mimeType) {
+		images.put(imageName, new Image(data, mimeType, null));
+	}
+
+	public void addImage(String imageName, String uri) {
+		images.put(imageName, new Image(null, null, uri));
+	}
+
+	public Image getImage(String imageName) {
+		return images.get(imageName);
+	}
+
+	public void setLocation(double longitude, double latitude, double altitude, double heading) {
+		this.longitude = longitude;
+		this.latitude = latitude;
+		this.altitude = altitude;
+		this.heading = heading;
+		isGeoreferenced = true;
+	}
+
+	public boolean isGeoreferenced() {
+		return isGeoreferenced;
+	}
+
+	public double getLongitude() {
+		return longitude;
+	}
+
+	public double getLatitude() {
+		return latitude;
+	}
+
+	public double getAltitude() {
+		return altitude;
+	}
+
+	public double getHeading() {
+		return heading;
+	}
+
+	public static class Primitive {
+		private final String materialName;
+		private final boolean doubleSided;
+		private String imageName;
+		private float[] baseColor = {1, 1, 1, 1};
+		private float[] emissiveColor = {0, 0, 0};
+
+		private HashMap<VertexKey, Integer> vertexIndex = new HashMap<VertexKey, Integer>();
+		private float[] positions = new float[3 * 64];
+		private float[] normals;
+		private float[] texCoords;
+		private int[] indices = new int[64];
+		private int vertexCount;
+		private int indexCount;
+
+		public Primitive(String materialName, boolean doubleSided) {
+			this.materialName = materialName;
+			this.doubleSided = doubleSided;
+		}
+
+		public void addVertex(long vertexId, double x, double y, double z, float[] normal, double[] texCoord) {
+			VertexKey key = new VertexKey(vertexId, normal, texCoord);
+			Integer index = vertexIndex.get(key);
+			if (index == null) {
+				index = vertexCount++;
+				vertexIndex.put(key, index);
+
+				positions = ensureCapacity(positions, vertexCount * 3);
+				positions[index * 3] = (float)x;
+				positions[index * 3 + 1] = (float)y;
+				positions[index * 3 + 2] = (float)z;
+
+				if (normal != null) {
+					normals = ensureCapacity(normals != null ? normals : new float[positions.length], vertexCount * 3);
+					System.arraycopy(normal, 0, normals, index * 3, 3);
+				}
+
+				if (texCoord != null) {
+					texCoords = ensureCapacity(texCoords != null ? texCoords : new float[positions.length / 3 * 2], vertexCount * 2);
+					texCoords[index * 2] = (float)texCoord[0];
+					texCoords[index * 2 + 1] = (float)(1 - texCoord[1]); // glTF places the origin of images top left
+				}
+			}
+
+			if (indexCount == indices.length)
+				indices = Arrays.copyOf(indices, indices.length * 2);
+
+			indices[indexCount++] = index;
+		}
+
+		public void setImageName(String imageName) {
+			this.imageName = imageName;
+		}
+
+		public String getImageName() {
+			return imageName;
+		}
+
+		public void setBaseColor(double red, double green, double blue, double alpha) {
+			baseColor = new float[]{(float)red, (float)green, (float)blue, (float)alpha};
+		}
+
+		public float[] getBaseColor() {
+			return baseColor;
+		}
+
+		public void setEmissiveColor(double red, double green, double blue) {
+			emissiveColor = new float[]{(float)red, (float)green, (float)blue};
+		}
+
+		public float[] getEmissiveColor() {
+			return emissiveColor;
+		}
+
+		public String getMaterialName() {
+			return materialName;
+		}
+
+		public boolean isDoubleSided() {
+			return doubleSided;
+		}
+
+		public int getVertexCount() {
+			return vertexCount;
+		}
+
+		public int getIndexCount() {
+			return indexCount;
+		}
+
+		public float[] getPositions() {
+			return positions;
+		}
+
+		public float[] getNormals() {
+			return normals;
+		}
+
+		public float[] getTexCoords() {
+			return texCoords;
+		}
+
+		public int[] getIndices() {
+			return indices;
+		}
+
+		public void trimToSize() {
+			// the lookup table is only needed while building the primitive
+			vertexIndex = new HashMap<VertexKey, Integer>();
+			positions = Arrays.copyOf(positions, vertexCount * 3);
+			if (normals != null)
+				normals = Arrays.copyOf(normals, vertexCount * 3);
+			if (texCoords != null)
+				texCoords = Arrays.copyOf(texCoords, vertexCount * 2);
+			indices = Arrays.copyOf(indices, indexCount);
+		}
+
+		private float[] ensureCapacity(float[] array, int length) {
+			return array.length < length ? Arrays.copyOf(array, Math.max(length, array.length * 2)) : array;
+		}
+	}
+
+	public static class Image {
+		private final byte[] data;
+		private final String mimeType;
+		private final String uri;
+
+		private Image(byte[] data, String mimeType, String uri) {
+			this.data = data;
+			this.mimeType = mimeType;
+			this.uri = uri;
+		}
+
+		public byte[] getData() {
+			return data;
+		}
+
+		public String getMimeType() {
+			return mimeType;
+		}
+
+		public String getUri() {
+			return uri;
+		}
+	}
+
+	private static final class VertexKey {
+		private final long vertexId;
+		private final float[] normal;
+		private final double[] texCoord;
+		private final int hashCode;
+
+		private VertexKey(long vertexId, float[] normal, double[] texCoord) {
+			this.vertexId = vertexId;
+			this.normal = normal;
+			this.texCoord = texCoord;
+
+			int hashCode = (int)(vertexId ^ (vertexId >>> 32));
+			hashCode = 31 * hashCode + Arrays.hashCode(normal);
+			this.hashCode = 31 * hashCode + Arrays.hashCode(texCoord);
+		}
+
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof VertexKey))
+				return false;
+
+			VertexKey other = (VertexKey)obj;
+			return vertexId == other.vertexId
+					&& Arrays.equals(normal, other.normal)
+					&& Arrays.equals(texCoord, other.texCoord);
+		}
+	}
+
+}
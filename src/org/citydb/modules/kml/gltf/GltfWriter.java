@@ -0,0 +1,544 @@
+/*
+ * 3D City Database - The Open Source CityGML Database
+ * http://www.3dcitydb.org/
+ * 
+ * Copyright 2013 - 2016
+ * Chair of Geoinformatics
+ * Technical University of Munich, Germany
+ * https://www.gis.bgu.tum.de/
+ * 
+ * The 3D City Database is jointly developed with the following
+ * cooperation partners:
+ * 
+ * virtualcitySYSTEMS GmbH, Berlin <http://www.virtualcitysystems.de/>
+ * M.O.S.S. Computer Grafik Systeme GmbH, Taufkirchen <http://www.moss.de/>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.citydb.modules.kml.gltf;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.citydb.config.project.kmlExporter.AltitudeMode;
+import org.citydb.modules.kml.gltf.GltfMesh.Image;
+import org.citydb.modules.kml.gltf.GltfMesh.Primitive;
+
+/**
+ * Writes one or more {@link GltfMesh} instances as glTF 2.0 asset, either 
+ * as JSON file with an embedded base64 buffer or as binary glTF (GLB). 
+ * 
+ * A single mesh is written in its local coordinate system like the 
+ * corresponding COLLADA model. Georeferenced meshes are placed in a local 
+ * east-north-up frame using the location and heading of the KML model, 
+ * so that many objects can be batched into one file. The origin of this 
+ * frame is the center of all model locations at zero altitude. It is 
+ * stored together with the KML altitude mode as extras of the root node. 
+ * Since KML altitudes are either relative to the terrain or to the geoid, 
+ * it is up to the consumer to place the origin in the earth-centered, 
+ * earth-fixed frame. Meshes can be added concurrently.
+ */
+public class GltfWriter {
+	private final Charset CHARSET = Charset.forName("UTF-8");
+	private final int GLB_MAGIC = 0x46546C67;
+	private final int GLB_VERSION = 2;
+	private final int CHUNK_JSON = 0x4E4F534A;
+	private final int CHUNK_BIN = 0x004E4942;
+	private final int FLOAT = 5126;
+	private final int UNSIGNED_SHORT = 5123;
+	private final int UNSIGNED_INT = 5125;
+	private final int ARRAY_BUFFER = 34962;
+	private final int ELEMENT_ARRAY_BUFFER = 34963;
+	private final int REPEAT = 10497;
+
+	// WGS84 ellipsoid
+	private final double SEMI_MAJOR_AXIS = 6378137.0;
+	private final double ECCENTRICITY_SQUARED = 6.69437999014e-3;
+
+	// rotates the z-up coordinates of the meshes into the y-up convention of glTF
+	private final double[] Z_UP_TO_Y_UP = {1, 0, 0, 0, 0, 0, -1, 0, 0, 1, 0, 0, 0, 0, 0, 1};
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private final List<GltfMesh> meshes = new ArrayList<GltfMesh>();
+	private final AltitudeMode altitudeMode;
+
+	public GltfWriter(AltitudeMode altitudeMode) {
+		this.altitudeMode = altitudeMode;
+	}
+
+	public GltfWriter() {
+		this(null);
+	}
+
+	public void addMesh(GltfMesh mesh) {
+		if (mesh.isEmpty())
+			return;
+
+		for (Primitive primitive : mesh.getPrimitives())
+			primitive.trimToSize();
+
+		final ReentrantLock lock = this.lock;
+		lock.lock();
+
+		try {
+			meshes.add(mesh);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public boolean isEmpty() {
+		final ReentrantLock lock = this.lock;
+		lock.lock();
+
+		try {
+			return meshes.isEmpty();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public void clear() {
+		final ReentrantLock lock = this.lock;
+		lock.lock();
+
+		try {
+			meshes.clear();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public void write(File file, boolean binary) throws IOException {
+		OutputStream out = new BufferedOutputStream(new FileOutputStream(file));
+		try {
+			write(out, binary);
+		} finally {
+			out.close();
+		}
+	}
+
+	public void write(OutputStream out, boolean binary) throws IOException {
+		List<GltfMesh> meshes;
+		final ReentrantLock lock = this.lock;
+		lock.lock();
+
+		try {
+			meshes = new ArrayList<GltfMesh>(this.meshes);
+		} finally {
+			lock.unlock();
+		}
+
+		BinaryBuffer buffer = new BinaryBuffer();
+		StringBuilder bufferViews = new StringBuilder();
+		StringBuilder accessors = new StringBuilder();
+		StringBuilder materials = new StringBuilder();
+		StringBuilder textures = new StringBuilder();
+		StringBuilder images = new StringBuilder();
+		StringBuilder jsonMeshes = new StringBuilder();
+		StringBuilder nodes = new StringBuilder();
+		StringBuilder children = new StringBuilder();
+		Counter counter = new Counter();
+		double[] origin = getOrigin(meshes);
+		double[] toLocal = origin != null ? invert(getEcefMatrix(origin[0], origin[1], 0, 0)) : null;
+
+		for (GltfMesh mesh : meshes) {
+			HashMap<String, Integer> textureIndex = new HashMap<String, Integer>();
+			StringBuilder jsonPrimitives = new StringBuilder();
+
+			for (Primitive primitive : mesh.getPrimitives()) {
+				if (primitive.getIndexCount() == 0)
+					continue;
+
+				int vertexCount = primitive.getVertexCount();
+				StringBuilder attributes = new StringBuilder();
+
+				// positions
+				float[] positions = primitive.getPositions();
+				float[] min = {Float.MAX_VALUE, Float.MAX_VALUE, Float.MAX_VALUE};
+				float[] max = {-Float.MAX_VALUE, -Float.MAX_VALUE, -Float.MAX_VALUE};
+				for (int i = 0; i < vertexCount * 3; i++) {
+					min[i % 3] = Math.min(min[i % 3], positions[i]);
+					max[i % 3] = Math.max(max[i % 3], positions[i]);
+				}
+
+				int bufferView = addBufferView(bufferViews, counter, buffer.putFloats(positions), positions.length * 4, ARRAY_BUFFER);
+				attributes.append("\"POSITION\":").append(addAccessor(accessors, counter, bufferView, FLOAT, vertexCount, "VEC3", min, max));
+
+				// normals
+				float[] normals = primitive.getNormals();
+				if (normals != null) {
+					bufferView = addBufferView(bufferViews, counter, buffer.putFloats(normals), normals.length * 4, ARRAY_BUFFER);
+					attributes.append(",\"NORMAL\":").append(addAccessor(accessors, counter, bufferView, FLOAT, vertexCount, "VEC3", null, null));
+				}
+
+				// texture coordinates
+				float[] texCoords = primitive.getTexCoords();
+				if (texCoords != null) {
+					bufferView = addBufferView(bufferViews, counter, buffer.putFloats(texCoords), texCoords.length * 4, ARRAY_BUFFER);
+					attributes.append(",\"TEXCOORD_0\":").append(addAccessor(accessors, counter, bufferView, FLOAT, vertexCount, "VEC2", null, null));
+				}
+
+				// indices
+				int[] indices = primitive.getIndices();
+				boolean shortIndices = vertexCount <= 0xFFFF;
+				int offset = shortIndices ? buffer.putShorts(indices) : buffer.putInts(indices);
+				bufferView = addBufferView(bufferViews, counter, offset, indices.length * (shortIndices ? 2 : 4), ELEMENT_ARRAY_BUFFER);
+				int indexAccessor = addAccessor(accessors, counter, bufferView, shortIndices ? UNSIGNED_SHORT : UNSIGNED_INT, indices.length, "SCALAR", null, null);
+
+				// texture
+				Integer texture = null;
+				if (primitive.getImageName() != null && texCoords != null) {
+					texture = textureIndex.get(primitive.getImageName());
+					if (texture == null) {
+						Image image = mesh.getImage(primitive.getImageName());
+						if (image != null) {
+							appendSeparator(images);
+							if (image.getData() != null) {
+								bufferView = addBufferView(bufferViews, counter, buffer.putBytes(image.getData()), image.getData().length, 0);
+								images.append("{\"bufferView\":").append(bufferView).append(",\"mimeType\":").append(quote(image.getMimeType())).append('}');
+							} else
+								images.append("{\"uri\":").append(quote(image.getUri())).append('}');
+
+							appendSeparator(textures);
+							textures.append("{\"sampler\":0,\"source\":").append(counter.images++).append('}');
+							texture = counter.textures++;
+							textureIndex.put(primitive.getImageName(), texture);
+						}
+					}
+				}
+
+				// material
+				float[] baseColor = primitive.getBaseColor();
+				appendSeparator(materials);
+				materials.append("{\"name\":").append(quote(primitive.getMaterialName()))
+				.append(",\"pbrMetallicRoughness\":{\"baseColorFactor\":").append(toArray(baseColor));
+				if (texture != null)
+					materials.append(",\"baseColorTexture\":{\"index\":").append(texture).append('}');
+				materials.append(",\"metallicFactor\":0,\"roughnessFactor\":1}")
+				.append(",\"emissiveFactor\":").append(toArray(primitive.getEmissiveColor()));
+				if (baseColor[3] < 1)
+					materials.append(",\"alphaMode\":\"BLEND\"");
+				materials.append(",\"doubleSided\":").append(primitive.isDoubleSided()).append('}');
+
+				appendSeparator(jsonPrimitives);
+				jsonPrimitives.append("{\"attributes\":{").append(attributes).append("},\"indices\":").append(indexAccessor)
+				.append(",\"material\":").append(counter.materials++).append(",\"mode\":4}");
+			}
+
+			// glTF requires at least one primitive per mesh
+			if (jsonPrimitives.length() == 0)
+				continue;
+
+			appendSeparator(jsonMeshes);
+			jsonMeshes.append("{\"name\":").append(quote(mesh.getName())).append(",\"primitives\":[").append(jsonPrimitives).append("]}");
+
+			nodes.append(",{\"name\":").append(quote(mesh.getName())).append(",\"mesh\":").append(counter.meshes++);
+			if (mesh.isGeoreferenced()) {
+				// clamped models are placed on the ground at the origin
+				double altitude = altitudeMode != AltitudeMode.CLAMP_TO_GROUND ? mesh.getAltitude() : 0;
+				double[] matrix = getEcefMatrix(mesh.getLongitude(), mesh.getLatitude(), altitude, mesh.getHeading());
+				nodes.append(",\"matrix\":").append(toArray(multiply(toLocal, matrix)));
+			}
+			nodes.append('}');
+
+			appendSeparator(children);
+			children.append(counter.meshes);
+		}
+
+		StringBuilder json = new StringBuilder("{\"asset\":{\"version\":\"2.0\",\"generator\":")
+		.append(quote(getGenerator())).append("},\"scene\":0,\"scenes\":[{\"nodes\":[0]}]")
+		.append(",\"nodes\":[{\"matrix\":").append(toArray(Z_UP_TO_Y_UP));
+		if (children.length() > 0)
+			json.append(",\"children\":[").append(children).append(']');
+		if (origin != null) {
+			json.append(",\"extras\":{\"longitude\":").append(origin[0]).append(",\"latitude\":").append(origin[1]).append(",\"altitude\":0");
+			if (altitudeMode != null)
+				json.append(",\"altitudeMode\":").append(quote(altitudeMode.value()));
+			json.append('}');
+		}
+		json.append('}').append(nodes).append(']')
+		.append(",\"meshes\":[").append(jsonMeshes).append(']')
+		.append(",\"materials\":[").append(materials).append(']')
+		.append(",\"accessors\":[").append(accessors).append(']')
+		.append(",\"bufferViews\":[").append(bufferViews).append(']');
+
+		if (counter.textures > 0) {
+			json.append(",\"samplers\":[{\"wrapS\":").append(REPEAT).append(",\"wrapT\":").append(REPEAT).append("}]")
+			.append(",\"textures\":[").append(textures).append(']')
+			.append(",\"images\":[").append(images).append(']');
+		}
+
+		byte[] bin = buffer.toByteArray();
+		json.append(",\"buffers\":[{\"byteLength\":").append(bin.length);
+		if (!binary)
+			json.append(",\"uri\":\"data:application/octet-stream;base64,").append(Base64.getEncoder().encodeToString(bin)).append('"');
+		json.append("}]}");
+
+		byte[] jsonBytes = json.toString().getBytes(CHARSET);
+		if (binary) {
+			int jsonLength = align(jsonBytes.length);
+			int binLength = align(bin.length);
+
+			ByteBuffer header = ByteBuffer.allocate(20).order(ByteOrder.LITTLE_ENDIAN);
+			header.putInt(GLB_MAGIC).putInt(GLB_VERSION).putInt(12 + 8 + jsonLength + 8 + binLength);
+			header.putInt(jsonLength).putInt(CHUNK_JSON);
+			out.write(header.array());
+			out.write(jsonBytes);
+			for (int i = jsonBytes.length; i < jsonLength; i++)
+				out.write(' ');
+
+			ByteBuffer binHeader = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+			binHeader.putInt(binLength).putInt(CHUNK_BIN);
+			out.write(binHeader.array());
+			out.write(bin);
+			for (int i = bin.length; i < binLength; i++)
+				out.write(0);
+		} else
+			out.write(jsonBytes);
+	}
+
+	private int addBufferView(StringBuilder bufferViews, Counter counter, int byteOffset, int byteLength, int target) {
+		appendSeparator(bufferViews);
+		bufferViews.append("{\"buffer\":0,\"byteOffset\":").append(byteOffset).append(",\"byteLength\":").append(byteLength);
+		if (target != 0)
+			bufferViews.append(",\"target\":").append(target);
+		bufferViews.append('}');
+
+		return counter.bufferViews++;
+	}
+
+	private int addAccessor(StringBuilder accessors, Counter counter, int bufferView, int componentType, int count, String type, float[] min, float[] max) {
+		appendSeparator(accessors);
+		accessors.append("{\"bufferView\":").append(bufferView).append(",\"componentType\":").append(componentType)
+		.append(",\"count\":").append(count).append(",\"type\":\"").append(type).append('"');
+		if (min != null && max != null)
+			accessors.append(",\"min\":").append(toArray(min)).append(",\"max\":").append(toArray(max));
+		accessors.append('}');
+
+		return counter.accessors++;
+	}
+
+	private double[] getOrigin(List<GltfMesh> meshes) {
+		double minLon = Double.MAX_VALUE, minLat = Double.MAX_VALUE;
+		double maxLon = -Double.MAX_VALUE, maxLat = -Double.MAX_VALUE;
+		boolean isGeoreferenced = false;
+
+		for (GltfMesh mesh : meshes) {
+			if (mesh.isGeoreferenced()) {
+				minLon = Math.min(minLon, mesh.getLongitude());
+				minLat = Math.min(minLat, mesh.getLatitude());
+				maxLon = Math.max(maxLon, mesh.getLongitude());
+				maxLat = Math.max(maxLat, mesh.getLatitude());
+				isGeoreferenced = true;
+			}
+		}
+
+		return isGeoreferenced ? new double[]{(minLon + maxLon) / 2, (minLat + maxLat) / 2} : null;
+	}
+
+	private double[] getEcefMatrix(double longitude, double latitude, double altitude, double heading) {
+		double lon = Math.toRadians(longitude);
+		double lat = Math.toRadians(latitude);
+		heading = Math.toRadians(heading);
+		double sinLon = Math.sin(lon), cosLon = Math.cos(lon);
+		double sinLat = Math.sin(lat), cosLat = Math.cos(lat);
+		double sinHeading = Math.sin(heading), cosHeading = Math.cos(heading);
+
+		// local east, north and up axes at the model location
+		double[] east = {-sinLon, cosLon, 0};
+		double[] north = {-sinLat * cosLon, -sinLat * sinLon, cosLat};
+		double[] up = {cosLat * cosLon, cosLat * sinLon, sinLat};
+
+		double n = SEMI_MAJOR_AXIS / Math.sqrt(1 - ECCENTRICITY_SQUARED * sinLat * sinLat);
+		double h = altitude;
+
+		// the heading rotates the model clockwise around the up axis like in KML
+		double[] matrix = new double[16];
+		for (int i = 0; i < 3; i++) {
+			matrix[i] = east[i] * cosHeading - north[i] * sinHeading;
+			matrix[4 + i] = east[i] * sinHeading + north[i] * cosHeading;
+			matrix[8 + i] = up[i];
+		}
+
+		matrix[12] = (n + h) * cosLat * cosLon;
+		matrix[13] = (n + h) * cosLat * sinLon;
+		matrix[14] = (n * (1 - ECCENTRICITY_SQUARED) + h) * sinLat;
+		matrix[15] = 1;
+
+		return matrix;
+	}
+
+	private double[] invert(double[] matrix) {
+		// the matrix is a rotation followed by a translation
+		double[] inverse = new double[16];
+		for (int i = 0; i < 3; i++) {
+			for (int j = 0; j < 3; j++)
+				inverse[j * 4 + i] = matrix[i * 4 + j];
+
+			inverse[12 + i] = -(matrix[i * 4] * matrix[12] + matrix[i * 4 + 1] * matrix[13] + matrix[i * 4 + 2] * matrix[14]);
+		}
+
+		inverse[15] = 1;
+		return inverse;
+	}
+
+	private double[] multiply(double[] a, double[] b) {
+		// matrices are stored in column-major order
+		double[] product = new double[16];
+		for (int column = 0; column < 4; column++) {
+			for (int row = 0; row < 4; row++) {
+				double value = 0;
+				for (int k = 0; k < 4; k++)
+					value += a[k * 4 + row] * b[column * 4 + k];
+
+				product[column * 4 + row] = value;
+			}
+		}
+
+		return product;
+	}
+
+	private String getGenerator() {
+		Package pkg = getClass().getPackage();
+		return pkg.getImplementationTitle() != null ? 
+				pkg.getImplementationTitle() + ", version " + pkg.getImplementationVersion() : "3D City Database Importer/Exporter";
+	}
+
+	private void appendSeparator(StringBuilder builder) {
+		if (builder.length() > 0)
+			builder.append(',');
+	}
+
+	private String toArray(float[] values) {
+		StringBuilder builder = new StringBuilder("[");
+		for (int i = 0; i < values.length; i++) {
+			if (i > 0)
+				builder.append(',');
+			builder.append(values[i]);
+		}
+
+		return builder.append(']').toString();
+	}
+
+	private String toArray(double[] values) {
+		StringBuilder builder = new StringBuilder("[");
+		for (int i = 0; i < values.length; i++) {
+			if (i > 0)
+				builder.append(',');
+			builder.append(values[i]);
+		}
+
+		return builder.append(']').toString();
+	}
+
+	private String quote(String value) {
+		StringBuilder builder = new StringBuilder("\"");
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			switch (c) {
+			case '"':
+				builder.append("\\\"");
+				break;
+			case '\\':
+				builder.append("\\\\");
+				break;
+			default:
+				if (c < 0x20)
+					builder.append(String.format("\\u%04x", (int)c));
+				else
+					builder.append(c);
+			}
+		}
+
+		return builder.append('"').toString();
+	}
+
+	private static int align(int length) {
+		return (length + 3) & ~3;
+	}
+
+	private static final class Counter {
+		private int bufferViews;
+		private int accessors;
+		private int materials;
+		private int textures;
+		private int images;
+		private int meshes;
+	}
+
+	private static final class BinaryBuffer {
+		private ByteBuffer buffer = ByteBuffer.allocate(64 * 1024).order(ByteOrder.LITTLE_ENDIAN);
+
+		private int putFloats(float[] values) {
+			int offset = reserve(values.length * 4);
+			buffer.asFloatBuffer().put(values);
+			buffer.position(offset + values.length * 4);
+			return offset;
+		}
+
+		private int putInts(int[] values) {
+			int offset = reserve(values.length * 4);
+			buffer.asIntBuffer().put(values);
+			buffer.position(offset + values.length * 4);
+			return offset;
+		}
+
+		private int putShorts(int[] values) {
+			int offset = reserve(values.length * 2);
+			for (int value : values)
+				buffer.putShort((short)value);
+
+			return offset;
+		}
+
+		private int putBytes(byte[] values) {
+			int offset = reserve(values.length);
+			buffer.put(values);
+			return offset;
+		}
+
+		private int reserve(int length) {
+			// every buffer view starts at a multiple of four bytes
+			while (buffer.position() % 4 != 0)
+				buffer.put((byte)0);
+
+			if (buffer.remaining() < length) {
+				ByteBuffer tmp = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + length)).order(ByteOrder.LITTLE_ENDIAN);
+				buffer.flip();
+				tmp.put(buffer);
+				buffer = tmp;
+			}
+
+			return buffer.position();
+		}
+
+		private byte[] toByteArray() {
+			byte[] bytes = new byte[buffer.position()];
+			System.arraycopy(buffer.array(), 0, bytes, 0, bytes.length);
+			return bytes;
+		}
+	}
+
+}
@@ -0,0 +1,53 @@
+/*
+ * 3D City Database - The Open Source CityGML Database
+ * http://www.3dcitydb.org/
+ * 
+ * Copyright 2013 - 2016
+ * Chair of Geoinformatics
+ * Technical University of Munich, Germany
+ * https://www.gis.bgu.tum.de/
+ * 
+ * The 3D City Database is jointly developed with the following
+ * cooperation partners:
+ * 
+ * virtualcitySYSTEMS GmbH, Berlin <http://www.virtualcitysystems.de/>
+ * M.O.S.S. Computer Grafik Systeme GmbH, Taufkirchen <http://www.moss.de/>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.citydb.modules.kml.util;
+
+import java.awt.image.BufferedImage;
+
+import org.citydb.textureAtlas.model.TextureImage;
+
+/**
+ * Texture image that remembers the encoded bytes it was decoded from. As 
+ * long as the image has not been replaced, e.g. by scaling, the encoded 
+ * bytes can be written to the output instead of encoding the image again.
+ */
+public class EncodedTextureImage extends TextureImage {
+	private final BufferedImage decodedImage;
+	private final byte[] encodedImage;
+
+	public EncodedTextureImage(BufferedImage image, byte[] encodedImage) {
+		super(image);
+		this.decodedImage = image;
+		this.encodedImage = encodedImage;
+	}
+
+	public byte[] getEncodedImage() {
+		return getBufferedImage() == decodedImage ? encodedImage : null;
+	}
+
+}
@@ -28,15 +28,26 @@
 package org.citydb.modules.kml.util;
 
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Map.Entry;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
+import org.citydb.modules.kml.gltf.GltfWriter;
+import org.citygml4j.model.citygml.CityGMLClass;
+
 public class ExportTracker {
 	
 	private final ConcurrentHashMap<Long, CityObject4JSON> map;
+	private final Set<CityGMLClass> featureTypes;
 	private String currentWorkingDirectoryPath;
+	private String tempFolderName = "__temp";
+	private GltfWriter gltfBatch;
+	private KmzWriter kmzWriter;
 	
 	public ExportTracker() {
 		map = new ConcurrentHashMap<Long, CityObject4JSON>();
+		featureTypes = Collections.newSetFromMap(new ConcurrentHashMap<CityGMLClass, Boolean>());
 	}
 	
 	public void put(long id, CityObject4JSON json) {
@@ -47,14 +58,28 @@ public class ExportTracker {
 		return map.get(id);
 	}
 	
+	public void putAll(ExportTracker other) {
+		for (Entry<Long, CityObject4JSON> entry : other.map.entrySet())
+			map.putIfAbsent(entry.getKey(), entry.getValue());
+	}
+	
 	public void clear() {
 		map.clear();
+		featureTypes.clear();
 	}
 	
 	public Collection<CityObject4JSON> values() {
 		return map.values();
 	}
 
+	public void addFeatureType(CityGMLClass featureType) {
+		featureTypes.add(featureType);
+	}
+
+	public Set<CityGMLClass> getFeatureTypes() {
+		return featureTypes;
+	}
+
 	public String getCurrentWorkingDirectoryPath() {
 		return currentWorkingDirectoryPath;
 	}
@@ -62,5 +87,29 @@ public class ExportTracker {
 	public void setCurrentWorkingDirectoryPath(String currentWorkingDirectoryPath) {
 		this.currentWorkingDirectoryPath = currentWorkingDirectoryPath;
 	}
+
+	public String getTempFolderName() {
+		return tempFolderName;
+	}
+
+	public void setTempFolderName(String tempFolderName) {
+		this.tempFolderName = tempFolderName;
+	}
+
+	public GltfWriter getGltfBatch() {
+		return gltfBatch;
+	}
+
+	public void setGltfBatch(GltfWriter gltfBatch) {
+		this.gltfBatch = gltfBatch;
+	}
+
+	public KmzWriter getKmzWriter() {
+		return kmzWriter;
+	}
+
+	public void setKmzWriter(KmzWriter kmzWriter) {
+		this.kmzWriter = kmzWriter;
+	}
 	
 }
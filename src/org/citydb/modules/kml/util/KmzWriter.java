@@ -0,0 +1,454 @@
+/*
+ * 3D City Database - The Open Source CityGML Database
+ * http://www.3dcitydb.org/
+ * 
+ * Copyright 2013 - 2016
+ * Chair of Geoinformatics
+ * Technical University of Munich, Germany
+ * https://www.gis.bgu.tum.de/
+ * 
+ * The 3D City Database is jointly developed with the following
+ * cooperation partners:
+ * 
+ * virtualcitySYSTEMS GmbH, Berlin <http://www.virtualcitysystems.de/>
+ * M.O.S.S. Computer Grafik Systeme GmbH, Taufkirchen <http://www.moss.de/>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.citydb.modules.kml.util;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Writes a KMZ archive whose entries are compressed by the threads that 
+ * create them. The root KML document is streamed into the first entry of 
+ * the archive. All other entries are deflated or stored by the calling 
+ * thread and appended to a spool file next to the archive, so concurrent 
+ * callers only serialize on copying already compressed bytes. When the 
+ * archive is closed, the spool file is appended to the document entry 
+ * and the central directory is written.
+ */
+public class KmzWriter {
+	private static final Charset CHARSET = Charset.forName("UTF-8");
+	private static final int LOCAL_HEADER = 0x04034b50;
+	private static final int DATA_DESCRIPTOR = 0x08074b50;
+	private static final int CENTRAL_HEADER = 0x02014b50;
+	private static final int ZIP64_END = 0x06064b50;
+	private static final int ZIP64_LOCATOR = 0x07064b50;
+	private static final int END = 0x06054b50;
+	private static final int VERSION = 20;
+	private static final int VERSION_ZIP64 = 45;
+	private static final int FLAG_DATA_DESCRIPTOR = 0x0008;
+	private static final int FLAG_UTF8 = 0x0800;
+	private static final long MAX_32 = 0xFFFFFFFFL;
+	private static final int MAX_16 = 0xFFFF;
+
+	private static final ThreadLocal<Deflater> deflaters = new ThreadLocal<Deflater>() {
+		@Override
+		protected Deflater initialValue() {
+			return new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+		}
+	};
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Set<String> entryNames = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+	private final List<CentralEntry> entries = new ArrayList<CentralEntry>();
+	private final File spoolFile;
+	private final CountingOutputStream out;
+	private final CountingOutputStream spool;
+	private final int dosTime;
+
+	private DocumentOutputStream document;
+	private boolean isClosed;
+
+	public KmzWriter(File file) throws IOException {
+		out = new CountingOutputStream(new BufferedOutputStream(new FileOutputStream(file), 64 * 1024));
+		spoolFile = File.createTempFile(file.getName(), ".tmp", file.getAbsoluteFile().getParentFile());
+		spool = new CountingOutputStream(new BufferedOutputStream(new FileOutputStream(spoolFile), 64 * 1024));
+		dosTime = getDosTime();
+	}
+
+	public OutputStream openDocument(String name) throws IOException {
+		if (document != null)
+			throw new IOException("The document entry of the KMZ archive has already been opened.");
+
+		entryNames.add(name);
+		CentralEntry entry = new CentralEntry(name, Deflater.DEFLATED, out.getCount());
+		writeLocalHeader(out, entry, FLAG_DATA_DESCRIPTOR);
+		document = new DocumentOutputStream(entry, out.getCount());
+		return document;
+	}
+
+	public boolean containsEntry(String name) {
+		return entryNames.contains(name);
+	}
+
+	public boolean addEntry(String name, byte[] data, boolean compress) throws IOException {
+		if (!entryNames.add(name))
+			return false;
+
+		CRC32 crc = new CRC32();
+		crc.update(data);
+
+		byte[] compressed = data;
+		if (compress) {
+			Deflater deflater = deflaters.get();
+			deflater.reset();
+			deflater.setInput(data);
+			deflater.finish();
+
+			ByteArrayOutputStream buffer = new ByteArrayOutputStream(Math.max(data.length / 2, 64));
+			byte[] tmp = new byte[8 * 1024];
+			while (!deflater.finished()) {
+				int length = deflater.deflate(tmp);
+				buffer.write(tmp, 0, length);
+			}
+
+			compressed = buffer.toByteArray();
+		}
+
+		append(new CentralEntry(name, compress ? Deflater.DEFLATED : 0, 0), crc.getValue(), compressed, data.length);
+		return true;
+	}
+
+	public OutputStream createEntry(String name) {
+		return new EntryOutputStream(name);
+	}
+
+	public void close() throws IOException {
+		final ReentrantLock lock = this.lock;
+		lock.lock();
+
+		try {
+			if (isClosed)
+				return;
+
+			isClosed = true;
+			if (document != null)
+				document.close();
+
+			spool.close();
+
+			// append the pre-compressed entries
+			long spoolOffset = out.getCount();
+			InputStream in = new FileInputStream(spoolFile);
+			try {
+				byte[] buffer = new byte[64 * 1024];
+				int length;
+				while ((length = in.read(buffer)) != -1)
+					out.write(buffer, 0, length);
+			} finally {
+				in.close();
+			}
+
+			// write central directory with the document first
+			List<CentralEntry> centralEntries = new ArrayList<CentralEntry>(entries.size() + 1);
+			if (document != null)
+				centralEntries.add(document.entry);
+
+			for (CentralEntry entry : entries) {
+				entry.offset += spoolOffset;
+				centralEntries.add(entry);
+			}
+
+			long centralOffset = out.getCount();
+			for (CentralEntry entry : centralEntries)
+				writeCentralHeader(out, entry);
+
+			long centralSize = out.getCount() - centralOffset;
+			writeEnd(out, centralEntries.size(), centralOffset, centralSize);
+		} finally {
+			try {
+				out.close();
+			} finally {
+				spool.close();
+				spoolFile.delete();
+				lock.unlock();
+			}
+		}
+	}
+
+	private void append(CentralEntry entry, long crc, byte[] data, long size) throws IOException {
+		entry.crc = crc;
+		entry.compressedSize = data.length;
+		entry.size = size;
+
+		if (entry.compressedSize >= MAX_32 || entry.size >= MAX_32)
+			throw new IOException("The KMZ entry " + entry.getName() + " is too large.");
+
+		final ReentrantLock lock = this.lock;
+		lock.lock();
+
+		try {
+			if (isClosed)
+				throw new IOException("The KMZ archive has already been closed.");
+
+			entry.offset = spool.getCount();
+			writeLocalHeader(spool, entry, 0);
+			spool.write(data);
+			entries.add(entry);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void writeLocalHeader(OutputStream out, CentralEntry entry, int flags) throws IOException {
+		entry.flags = flags | FLAG_UTF8;
+		writeInt(out, LOCAL_HEADER);
+		writeShort(out, VERSION);
+		writeShort(out, entry.flags);
+		writeShort(out, entry.method);
+		writeInt(out, dosTime);
+		writeInt(out, entry.crc);
+		writeInt(out, entry.compressedSize);
+		writeInt(out, entry.size);
+		writeShort(out, entry.name.length);
+		writeShort(out, 0);
+		out.write(entry.name);
+	}
+
+	private void writeCentralHeader(OutputStream out, CentralEntry entry) throws IOException {
+		boolean zip64 = entry.offset >= MAX_32;
+		writeInt(out, CENTRAL_HEADER);
+		writeShort(out, zip64 ? VERSION_ZIP64 : VERSION);
+		writeShort(out, zip64 ? VERSION_ZIP64 : VERSION);
+		writeShort(out, entry.flags);
+		writeShort(out, entry.method);
+		writeInt(out, dosTime);
+		writeInt(out, entry.crc);
+		writeInt(out, entry.compressedSize);
+		writeInt(out, entry.size);
+		writeShort(out, entry.name.length);
+		writeShort(out, zip64 ? 12 : 0);
+		writeShort(out, 0);
+		writeShort(out, 0);
+		writeShort(out, 0);
+		writeInt(out, 0);
+		writeInt(out, zip64 ? MAX_32 : entry.offset);
+		out.write(entry.name);
+
+		if (zip64) {
+			writeShort(out, 0x0001);
+			writeShort(out, 8);
+			writeLong(out, entry.offset);
+		}
+	}
+
+	private void writeEnd(CountingOutputStream out, int entries, long centralOffset, long centralSize) throws IOException {
+		if (entries >= MAX_16 || centralOffset >= MAX_32 || centralSize >= MAX_32) {
+			long zip64Offset = out.getCount();
+			writeInt(out, ZIP64_END);
+			writeLong(out, 44);
+			writeShort(out, VERSION_ZIP64);
+			writeShort(out, VERSION_ZIP64);
+			writeInt(out, 0);
+			writeInt(out, 0);
+			writeLong(out, entries);
+			writeLong(out, entries);
+			writeLong(out, centralSize);
+			writeLong(out, centralOffset);
+
+			writeInt(out, ZIP64_LOCATOR);
+			writeInt(out, 0);
+			writeLong(out, zip64Offset);
+			writeInt(out, 1);
+		}
+
+		writeInt(out, END);
+		writeShort(out, 0);
+		writeShort(out, 0);
+		writeShort(out, Math.min(entries, MAX_16));
+		writeShort(out, Math.min(entries, MAX_16));
+		writeInt(out, Math.min(centralSize, MAX_32));
+		writeInt(out, Math.min(centralOffset, MAX_32));
+		writeShort(out, 0);
+	}
+
+	private int getDosTime() {
+		Calendar calendar = Calendar.getInstance();
+		int year = calendar.get(Calendar.YEAR);
+		if (year < 1980)
+			return (1 << 21) | (1 << 16);
+
+		return (year - 1980) << 25
+				| (calendar.get(Calendar.MONTH) + 1) << 21
+				| calendar.get(Calendar.DAY_OF_MONTH) << 16
+				| calendar.get(Calendar.HOUR_OF_DAY) << 11
+				| calendar.get(Calendar.MINUTE) << 5
+				| calendar.get(Calendar.SECOND) >> 1;
+	}
+
+	private static void writeShort(OutputStream out, int value) throws IOException {
+		out.write(value & 0xFF);
+		out.write((value >>> 8) & 0xFF);
+	}
+
+	private static void writeInt(OutputStream out, long value) throws IOException {
+		writeShort(out, (int)(value & 0xFFFF));
+		writeShort(out, (int)((value >>> 16) & 0xFFFF));
+	}
+
+	private static void writeLong(OutputStream out, long value) throws IOException {
+		writeInt(out, value & MAX_32);
+		writeInt(out, value >>> 32);
+	}
+
+	private static final class CentralEntry {
+		private final byte[] name;
+		private final int method;
+		private int flags;
+		private long crc;
+		private long compressedSize;
+		private long size;
+		private long offset;
+
+		private CentralEntry(String name, int method, long offset) {
+			this.name = name.getBytes(CHARSET);
+			this.method = method;
+			this.offset = offset;
+		}
+
+		private String getName() {
+			return new String(name, CHARSET);
+		}
+	}
+
+	private final class EntryOutputStream extends DeflaterOutputStream {
+		private final String name;
+		private final CRC32 crc = new CRC32();
+		private long size;
+		private boolean closed;
+
+		private EntryOutputStream(String name) {
+			super(new ByteArrayOutputStream(8 * 1024), new Deflater(Deflater.DEFAULT_COMPRESSION, true), 8 * 1024);
+			this.name = name;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			super.write(b, off, len);
+			crc.update(b, off, len);
+			size += len;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			write(new byte[]{(byte)b}, 0, 1);
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (closed)
+				return;
+
+			closed = true;
+			finish();
+			def.end();
+
+			if (entryNames.add(name))
+				append(new CentralEntry(name, Deflater.DEFLATED, 0), crc.getValue(), ((ByteArrayOutputStream)out).toByteArray(), size);
+		}
+	}
+
+	private final class DocumentOutputStream extends DeflaterOutputStream {
+		private final CentralEntry entry;
+		private final long dataOffset;
+		private final CRC32 crc = new CRC32();
+		private long size;
+		private boolean closed;
+
+		private DocumentOutputStream(CentralEntry entry, long dataOffset) {
+			super(KmzWriter.this.out, new Deflater(Deflater.DEFAULT_COMPRESSION, true), 64 * 1024);
+			this.entry = entry;
+			this.dataOffset = dataOffset;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			super.write(b, off, len);
+			crc.update(b, off, len);
+			size += len;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			write(new byte[]{(byte)b}, 0, 1);
+		}
+
+		@Override
+		public void close() throws IOException {
+			// finishes the document entry but keeps the archive open
+			if (closed)
+				return;
+
+			closed = true;
+			finish();
+			def.end();
+
+			entry.crc = crc.getValue();
+			entry.size = size;
+			entry.compressedSize = KmzWriter.this.out.getCount() - dataOffset;
+			if (entry.compressedSize >= MAX_32 || entry.size >= MAX_32)
+				throw new IOException("The KMZ entry " + entry.getName() + " is too large.");
+
+			writeInt(KmzWriter.this.out, DATA_DESCRIPTOR);
+			writeInt(KmzWriter.this.out, entry.crc);
+			writeInt(KmzWriter.this.out, entry.compressedSize);
+			writeInt(KmzWriter.this.out, entry.size);
+		}
+	}
+
+	private static final class CountingOutputStream extends FilterOutputStream {
+		private long count;
+
+		private CountingOutputStream(OutputStream out) {
+			super(out);
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			out.write(b);
+			count++;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			out.write(b, off, len);
+			count += len;
+		}
+
+		private long getCount() {
+			return count;
+		}
+	}
+
+}
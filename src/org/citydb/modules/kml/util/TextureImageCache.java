@@ -0,0 +1,290 @@
+/*
+ * 3D City Database - The Open Source CityGML Database
+ * http://www.3dcitydb.org/
+ * 
+ * Copyright 2013 - 2016
+ * Chair of Geoinformatics
+ * Technical University of Munich, Germany
+ * https://www.gis.bgu.tum.de/
+ * 
+ * The 3D City Database is jointly developed with the following
+ * cooperation partners:
+ * 
+ * virtualcitySYSTEMS GmbH, Berlin <http://www.virtualcitysystems.de/>
+ * M.O.S.S. Computer Grafik Systeme GmbH, Taufkirchen <http://www.moss.de/>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.citydb.modules.kml.util;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.citydb.database.adapter.BlobExportAdapter;
+import org.citydb.modules.common.metrics.Metrics;
+import org.citydb.textureAtlas.image.ImageReader;
+import org.citydb.textureAtlas.model.TextureImage;
+
+/**
+ * Process-wide cache of texture images shared by all KML export workers. 
+ * Entries are keyed by TEX_IMAGE.ID and hold the encoded image bytes and, 
+ * if enabled, the decoded image. The cache is split into segments with 
+ * their own lock and LRU order, and each segment evicts its least recently 
+ * used entries once it exceeds its share of the memory budget.
+ * 
+ * Decoded images are shared between workers. Callers receive a new 
+ * {@link TextureImage} wrapping the cached image and must not draw on it.
+ */
+public class TextureImageCache {
+	private static TextureImageCache instance = new TextureImageCache();
+
+	private final int SEGMENTS = 16;
+	private final long ENTRY_OVERHEAD = 64;
+
+	private final Metrics metrics;
+	private final Segment[] segments;
+	private final LongAdder evictions = new LongAdder();
+	private volatile boolean enabled;
+	private volatile boolean cacheDecodedImages;
+
+	private TextureImageCache() {
+		metrics = Metrics.getInstance();
+		segments = new Segment[SEGMENTS];
+		for (int i = 0; i < segments.length; i++)
+			segments[i] = new Segment();
+	}
+
+	public static TextureImageCache getInstance() {
+		return instance;
+	}
+
+	public void init(long maxSize, boolean cacheDecodedImages) {
+		clear();
+
+		long segmentSize = maxSize / SEGMENTS;
+		for (Segment segment : segments)
+			segment.maxSize = segmentSize;
+
+		this.cacheDecodedImages = cacheDecodedImages;
+		enabled = segmentSize > 0;
+	}
+
+	public void clear() {
+		for (Segment segment : segments)
+			segment.clear();
+
+		evictions.reset();
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public byte[] getImageBytes(long id, String name, BlobExportAdapter textureExportAdapter) throws SQLException {
+		if (!enabled)
+			return textureExportAdapter.getInByteArray(id, name);
+
+		Segment segment = getSegment(id);
+		Entry entry = segment.get(id);
+		if (entry != null) {
+			metrics.updateTextureCacheHits(1);
+			return entry.bytes;
+		}
+
+		metrics.updateTextureCacheMisses(1);
+		byte[] bytes = textureExportAdapter.getInByteArray(id, name);
+		if (bytes != null)
+			segment.put(id, bytes);
+
+		return bytes;
+	}
+
+	public TextureImage readImage(long id, byte[] bytes, ImageReader imageReader) throws IOException {
+		if (!enabled || !cacheDecodedImages)
+			return imageReader.read(new ByteArrayInputStream(bytes));
+
+		Segment segment = getSegment(id);
+		boolean supportRGB = imageReader.isSupportRGB();
+
+		Entry entry = segment.get(id);
+		if (entry != null && entry.image != null && entry.supportRGB == supportRGB)
+			return new TextureImage(entry.image);
+
+		TextureImage texImage = imageReader.read(new ByteArrayInputStream(bytes));
+		if (texImage != null)
+			segment.putImage(id, bytes, texImage.getBufferedImage(), supportRGB);
+
+		return texImage;
+	}
+
+	public long getSize() {
+		long size = 0;
+		for (Segment segment : segments)
+			size += segment.getSize();
+
+		return size;
+	}
+
+	public int getEntries() {
+		int entries = 0;
+		for (Segment segment : segments)
+			entries += segment.getEntries();
+
+		return entries;
+	}
+
+	public long getEvictions() {
+		return evictions.sum();
+	}
+
+	private long getImageSize(BufferedImage image) {
+		return (long)image.getWidth() * image.getHeight() * Math.max(image.getColorModel().getPixelSize() / 8, 1);
+	}
+
+	private Segment getSegment(long id) {
+		long hash = id * 0x9E3779B97F4A7C15L;
+		return segments[(int)(hash >>> 60) & (SEGMENTS - 1)];
+	}
+
+	private final class Entry {
+		private final byte[] bytes;
+		private BufferedImage image;
+		private boolean supportRGB;
+		private long size;
+
+		private Entry(byte[] bytes) {
+			this.bytes = bytes;
+			size = bytes.length + ENTRY_OVERHEAD;
+		}
+
+		private void setImage(BufferedImage image, boolean supportRGB) {
+			if (this.image != null)
+				size -= getImageSize(this.image);
+
+			this.image = image;
+			this.supportRGB = supportRGB;
+			size += getImageSize(image);
+		}
+	}
+
+	private final class Segment {
+		private final ReentrantLock lock = new ReentrantLock();
+		private final LinkedHashMap<Long, Entry> entries = new LinkedHashMap<Long, Entry>(16, 0.75f, true);
+		private long maxSize;
+		private long size;
+
+		private Entry get(long id) {
+			final ReentrantLock lock = this.lock;
+			lock.lock();
+
+			try {
+				return entries.get(id);
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		private void put(long id, byte[] bytes) {
+			Entry entry = new Entry(bytes);
+			if (entry.size > maxSize)
+				return;
+
+			final ReentrantLock lock = this.lock;
+			lock.lock();
+
+			try {
+				if (entries.containsKey(id))
+					return;
+
+				entries.put(id, entry);
+				size += entry.size;
+				evict();
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		private void putImage(long id, byte[] bytes, BufferedImage image, boolean supportRGB) {
+			if (bytes.length + ENTRY_OVERHEAD + getImageSize(image) > maxSize)
+				return;
+
+			final ReentrantLock lock = this.lock;
+			lock.lock();
+
+			try {
+				Entry entry = entries.get(id);
+				if (entry == null) {
+					entry = new Entry(bytes);
+					entries.put(id, entry);
+				} else
+					size -= entry.size;
+
+				entry.setImage(image, supportRGB);
+				size += entry.size;
+				evict();
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		private void evict() {
+			Iterator<Entry> iter = entries.values().iterator();
+			while (size > maxSize && iter.hasNext()) {
+				size -= iter.next().size;
+				iter.remove();
+				evictions.increment();
+			}
+		}
+
+		private void clear() {
+			final ReentrantLock lock = this.lock;
+			lock.lock();
+
+			try {
+				entries.clear();
+				size = 0;
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		private long getSize() {
+			final ReentrantLock lock = this.lock;
+			lock.lock();
+
+			try {
+				return size;
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		private int getEntries() {
+			final ReentrantLock lock = this.lock;
+			lock.lock();
+
+			try {
+				return entries.size();
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+
+}
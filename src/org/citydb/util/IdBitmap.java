@@ -0,0 +1,149 @@
+/*
+ * 3D City Database - The Open Source CityGML Database
+ * http://www.3dcitydb.org/
+ * 
+ * Copyright 2013 - 2016
+ * Chair of Geoinformatics
+ * Technical University of Munich, Germany
+ * https://www.gis.bgu.tum.de/
+ * 
+ * The 3D City Database is jointly developed with the following
+ * cooperation partners:
+ * 
+ * virtualcitySYSTEMS GmbH, Berlin <http://www.virtualcitysystems.de/>
+ * M.O.S.S. Computer Grafik Systeme GmbH, Taufkirchen <http://www.moss.de/>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.citydb.util;
+
+import java.util.Arrays;
+
+/**
+ * Compressed bitmap on positive long ids, organized like a roaring bitmap.
+ * 
+ * Ids are split into a high part selecting a container and the low 16 bits stored
+ * in that container. Sparse containers keep their values in a sorted char array,
+ * and containers exceeding 4096 values are converted to a plain bitset of 1024
+ * longs. Ids should be added in ascending order for best performance.
+ * 
+ * The bitmap is not thread-safe while being built. Once it has been safely
+ * published, concurrent calls to {@link #contains(long)} are fine.
+ */
+public final class IdBitmap {
+	private static final int MAX_ARRAY_SIZE = 4096;
+	private static final int BITSET_SIZE = 1024;
+
+	private long[] keys = new long[16];
+	private Object[] containers = new Object[16];
+	private int[] cardinalities = new int[16];
+	private int size;
+	private long cardinality;
+
+	public void add(long id) {
+		long key = id >>> 16;
+		char low = (char)id;
+
+		// ids are usually added in ascending order
+		int index = size > 0 && keys[size - 1] == key ? size - 1 : Arrays.binarySearch(keys, 0, size, key);
+		if (index < 0)
+			index = insertContainer(-index - 1, key);
+
+		Object container = containers[index];
+		if (container instanceof long[]) {
+			long[] bitset = (long[])container;
+			long word = bitset[low >>> 6];
+			long mask = 1L << low;
+			if ((word & mask) == 0) {
+				bitset[low >>> 6] = word | mask;
+				cardinalities[index]++;
+				cardinality++;
+			}
+		} else {
+			char[] values = (char[])container;
+			int n = cardinalities[index];
+			int pos = n > 0 && values[n - 1] < low ? -n - 1 : Arrays.binarySearch(values, 0, n, low);
+			if (pos >= 0)
+				return;
+
+			pos = -pos - 1;
+			if (n == MAX_ARRAY_SIZE) {
+				long[] bitset = new long[BITSET_SIZE];
+				for (int i = 0; i < n; i++)
+					bitset[values[i] >>> 6] |= 1L << values[i];
+
+				bitset[low >>> 6] |= 1L << low;
+				containers[index] = bitset;
+			} else {
+				if (n == values.length)
+					containers[index] = values = Arrays.copyOf(values, Math.min(MAX_ARRAY_SIZE, n * 2));
+
+				System.arraycopy(values, pos, values, pos + 1, n - pos);
+				values[pos] = low;
+			}
+
+			cardinalities[index]++;
+			cardinality++;
+		}
+	}
+
+	public boolean contains(long id) {
+		int index = Arrays.binarySearch(keys, 0, size, id >>> 16);
+		if (index < 0)
+			return false;
+
+		char low = (char)id;
+		Object container = containers[index];
+		if (container instanceof long[])
+			return (((long[])container)[low >>> 6] & (1L << low)) != 0;
+		else
+			return Arrays.binarySearch((char[])container, 0, cardinalities[index], low) >= 0;
+	}
+
+	public long getCardinality() {
+		return cardinality;
+	}
+
+	public boolean isEmpty() {
+		return cardinality == 0;
+	}
+
+	public long getSizeInBytes() {
+		long bytes = size * 24L;
+		for (int i = 0; i < size; i++) {
+			Object container = containers[i];
+			bytes += container instanceof long[] ? BITSET_SIZE * 8L : ((char[])container).length * 2L;
+		}
+
+		return bytes;
+	}
+
+	private int insertContainer(int index, long key) {
+		if (size == keys.length) {
+			keys = Arrays.copyOf(keys, size * 2);
+			containers = Arrays.copyOf(containers, size * 2);
+			cardinalities = Arrays.copyOf(cardinalities, size * 2);
+		}
+
+		System.arraycopy(keys, index, keys, index + 1, size - index);
+		System.arraycopy(containers, index, containers, index + 1, size - index);
+		System.arraycopy(cardinalities, index, cardinalities, index + 1, size - index);
+
+		keys[index] = key;
+		containers[index] = new char[4];
+		cardinalities[index] = 0;
+		size++;
+
+		return index;
+	}
+}